@@ -0,0 +1,122 @@
+package to.etc.util;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Generates fast accessors for property getters and setters. Calling a getter through
+ * Method.invoke costs an access check, argument array handling and an exception wrapper
+ * on every call; the functions generated here by {@link LambdaMetafactory} call the
+ * method directly, and can be inlined by the JIT.
+ *
+ * <p>The functions are generated with a lookup in the class declaring the method, so that
+ * they work for non-public classes too, and resolve classes from the class loader of that
+ * class. When this is not possible (a security manager, or a JVM that does not allow it) the
+ * create methods return null, and the caller must use reflection. The generated functions
+ * do not check their arguments: the caller must make sure that the instance has the right
+ * type, and that a setter value can be cast (and unboxed) to the parameter type.</p>
+ */
+final public class MethodAccessors {
+	/** The access modes of a full Lookup: PUBLIC | PRIVATE | PROTECTED | PACKAGE. */
+	static private final int ALL_MODES = 0x0f;
+
+	/** Set the system property to use reflection everywhere, to rule out this class when hunting bugs. */
+	static private final boolean DISABLED = Boolean.getBoolean("to.etc.util.MethodAccessors.disabled");
+
+	private MethodAccessors() {
+	}
+
+	/**
+	 * Create a function calling the specified getter, or return null if that is not possible.
+	 */
+	@Nullable
+	static public Function<Object, Object> createGetter(@NonNull Method getter) {
+		if(DISABLED || Modifier.isStatic(getter.getModifiers()) || getter.getParameterCount() != 0 || getter.getReturnType() == void.class)
+			return null;
+		Class<?> owner = getter.getDeclaringClass();
+		try {
+			Lookup lookup = getLookup(owner);
+			MethodHandle mh = lookup.unreflect(getter);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+				MethodType.methodType(Object.class, Object.class), mh, MethodType.methodType(box(getter.getReturnType()), owner));
+			return (Function<Object, Object>) site.getTarget().invoke();
+		} catch(Throwable x) {
+			return null;
+		}
+	}
+
+	/**
+	 * Create a function calling the specified setter, or return null if that is not possible.
+	 */
+	@Nullable
+	static public BiConsumer<Object, Object> createSetter(@NonNull Method setter) {
+		if(DISABLED || Modifier.isStatic(setter.getModifiers()) || setter.getParameterCount() != 1)
+			return null;
+		Class<?> owner = setter.getDeclaringClass();
+		try {
+			Lookup lookup = getLookup(owner);
+			MethodHandle mh = lookup.unreflect(setter);
+			CallSite site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+				MethodType.methodType(void.class, Object.class, Object.class), mh, MethodType.methodType(void.class, owner, box(setter.getParameterTypes()[0])));
+			return (BiConsumer<Object, Object>) site.getTarget().invoke();
+		} catch(Throwable x) {
+			return null;
+		}
+	}
+
+	/**
+	 * Return the wrapper type for a primitive type, or the type itself.
+	 */
+	@NonNull
+	static public Class<?> box(@NonNull Class<?> type) {
+		if(!type.isPrimitive())
+			return type;
+		if(type == int.class)
+			return Integer.class;
+		if(type == long.class)
+			return Long.class;
+		if(type == boolean.class)
+			return Boolean.class;
+		if(type == double.class)
+			return Double.class;
+		if(type == float.class)
+			return Float.class;
+		if(type == short.class)
+			return Short.class;
+		if(type == byte.class)
+			return Byte.class;
+		if(type == char.class)
+			return Character.class;
+		return Void.class;
+	}
+
+	/**
+	 * Get a lookup with full access inside the specified class. Java 9 and later have
+	 * MethodHandles.privateLookupIn for this; on Java 8 the private Lookup constructor
+	 * is used.
+	 */
+	@NonNull
+	static private Lookup getLookup(@NonNull Class<?> owner) throws Exception {
+		try {
+			Method m = MethodHandles.class.getMethod("privateLookupIn", Class.class, Lookup.class);
+			return (Lookup) m.invoke(null, owner, MethodHandles.lookup());
+		} catch(NoSuchMethodException x) {
+			//-- Java 8
+		}
+		Constructor<Lookup> c = Lookup.class.getDeclaredConstructor(Class.class, int.class);
+		c.setAccessible(true);
+		return c.newInstance(owner, Integer.valueOf(ALL_MODES));
+	}
+}
@@ -46,17 +46,25 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -216,59 +224,62 @@ final public class ConnectionPool {
 	private Driver m_driver;
 
 	/** T if this pool is set to pooled mode. */
-	private boolean m_isPooled;
+	private volatile boolean m_isPooled;
 
 	/** The properties to pass to the driver's connect method. */
 	private final Properties m_properties = new Properties();
 
 	/** When T this pool has been destroyed and cannot be used anymore. */
-	private boolean m_destroyed;
+	private volatile boolean m_destroyed;
 
 	/** The dbtype obtained from the driver. */
 	private DbType m_dbType = DbType.UNKNOWN;
 
 	/** The CALCULATED SQL statement that is to be sent as a check for valid cnnections, if m_check is null. */
-	private String m_check_calc;
+	private volatile String m_check_calc;
 
 	/** Per-thread configuration of connection handling for debug and JUnit test purposes. */
 	private ThreadLocal<ThreadConfig> m_threadConfig = new ThreadLocal<ThreadConfig>();
 
 	/*---------- Connection administration ---------------------------*/
-	/** All connection entries that are allocated but free for use. */
-	private Stack<PoolEntry> m_freeList = new Stack<PoolEntry>();
+	/** All connection entries that are allocated but free for use. The most recently released one is first. */
+	private final ConcurrentLinkedDeque<PoolEntry> m_freeList = new ConcurrentLinkedDeque<PoolEntry>();
 
 	/** The connections that are currently in use (both pooled and unpooled), */
-	private Set<PoolEntry> m_usedSet = new HashSet<PoolEntry>();
+	private final Set<PoolEntry> m_usedSet = ConcurrentHashMap.newKeySet();
+
+	/** The threads waiting for a connection in lock-free mode, longest waiting first. */
+	private final ConcurrentLinkedQueue<Waiter> m_waiterQueue = new ConcurrentLinkedQueue<Waiter>();
 
 	/** The current #of allocated and used unpooled connections. */
-	private int m_unpooledAllocatedCount;
+	private final AtomicInteger m_unpooledAllocatedCount = new AtomicInteger();
 
-	private int m_unpooledMaxUsed;
+	private final AtomicInteger m_unpooledMaxUsed = new AtomicInteger();
 
 	/**
 	 * The current #of connections allocated for the POOL. This does NOT include
 	 * the unpooled connections. The total #of connections used by the pool is
 	 * the sum of this variable plus m_n_unpooled_inuse.
 	 */
-	private int m_pooledAllocatedCount;
+	private final AtomicInteger m_pooledAllocatedCount = new AtomicInteger();
 
 	/** The current #of connections used by the clients of the pool, */
-	private int m_pooledUsedCount;
+	private final AtomicInteger m_pooledUsedCount = new AtomicInteger();
 
 	/** The max. #of connections that was simultaneously used by the pool. */
-	private int m_pooledMaxUsed;
+	private final AtomicInteger m_pooledMaxUsed = new AtomicInteger();
 
 	/** #of connection allocations (alloc/free) done. */
-	private int m_poolAllocationCount;
+	private final AtomicInteger m_poolAllocationCount = new AtomicInteger();
 
 	/** #of connection allocations directly from the database.. */
-	private int m_databaseAllocationCount;
+	private final AtomicInteger m_databaseAllocationCount = new AtomicInteger();
 
 	/** The #of times we had to wait for a pooled connection. */
-	private int m_n_connectionwaits;
+	private final AtomicInteger m_n_connectionwaits = new AtomicInteger();
 
 	/** The #of times we failed an allocation because all pooled connections were used. */
-	private int m_n_connectionfails;
+	private final AtomicInteger m_n_connectionfails = new AtomicInteger();
 
 	/** The #of connections that were disconnected because they were assumed to be hanging. */
 	private int m_n_hangdisconnects;
@@ -280,16 +291,23 @@ final public class ConnectionPool {
 	private List<ConnectionProxy> m_releasedConnections = Collections.EMPTY_LIST;
 
 	/** The #of statements CURRENTLY allocated by the pool */
-	protected int m_n_open_stmt;
+	private final AtomicInteger m_n_open_stmt = new AtomicInteger();
 
 	/** The #of statements MAX allocated by the pool */
-	protected int m_peak_open_stmt;
+	private final AtomicInteger m_peak_open_stmt = new AtomicInteger();
 
-	/** The #of resultsets opened by all statements in the pool */
-	protected long m_n_open_rs;
+	/** The #of resultsets opened by all statements in the pool. Striped, because every result set changes it. */
+	private final LongAdder m_n_open_rs = new LongAdder();
 
 	/** The #of prepare statements executed. */
-	protected long m_statementTotalPrepareCount;
+	private final LongAdder m_statementTotalPrepareCount = new LongAdder();
+
+	/** Statement cache counters, summed over all connections. */
+	private final LongAdder m_statementCacheHits = new LongAdder();
+
+	private final LongAdder m_statementCacheMisses = new LongAdder();
+
+	private final LongAdder m_statementCacheEvictions = new LongAdder();
 
 	/// The #of rows returned.
 	@Deprecated
@@ -307,10 +325,10 @@ final public class ConnectionPool {
 	private final int m_conntime_warning_ms = 8000;
 
 	/** T if this pool has stack tracing enabled. */
-	protected boolean m_dbg_stacktrace = true;
+	private volatile boolean m_dbg_stacktrace = true;
 
 	/** The sequence generator for entries. */
-	private int m_entryidgen;
+	private final AtomicInteger m_entryidgen = new AtomicInteger();
 
 	private volatile int m_forceTimeout;
 
@@ -428,8 +446,13 @@ final public class ConnectionPool {
 				throw new SQLException("Pool " + getID() + ": driver path '" + c().getDriverPath() + "' does not exist");
 		}
 
-		if(c().getBinaryLogFile() != null)
-			setFileLogging(c().getBinaryLogFile());
+		File binaryLogFile = c().getBinaryLogFile();
+		if(binaryLogFile != null) {
+			if(c().getBinaryLogSegmentSize() > 0)
+				setSegmentedFileLogging(binaryLogFile, c().getBinaryLogSegmentSize(), c().getBinaryLogSegments());
+			else
+				setFileLogging(binaryLogFile);
+		}
 
 		String plsqldebug = DbPoolUtil.getPlSqlDebug(getID());
 		if(null != plsqldebug)
@@ -577,9 +600,7 @@ final public class ConnectionPool {
 
 		while(tries-- > 0) {
 			Connection dbc = null;
-			synchronized(this) {
-				m_databaseAllocationCount++;
-			}
+			m_databaseAllocationCount.incrementAndGet();
 
 			try {
 				//				ALLOC.msg(m_id+": get connection on "+m_url+", uid="+m_uid);
@@ -634,14 +655,14 @@ final public class ConnectionPool {
 			//-- Allocate to the min. #of connections. If it fails we die.
 			for(int i = 0; i < c().getMinConns(); i++) {
 				Connection c = getCheckedConnection();
-				PoolEntry pe = new PoolEntry(c, this, m_entryidgen++, c().getUid());
-				m_freeList.add(pe);
+				PoolEntry pe = new PoolEntry(c, this, m_entryidgen.getAndIncrement(), c().getUid());
+				m_freeList.addFirst(pe);
 				if(c().isSqlTraceMode())
 					pe.setSqlTraceMode(true);
-				m_pooledAllocatedCount++;
+				m_pooledAllocatedCount.incrementAndGet();
 			}
 			m_isPooled = true;
-			System.out.println(m_pooledAllocatedCount + " connections allocated, okay.");
+			System.out.println(m_pooledAllocatedCount.get() + " connections allocated, okay.");
 		} catch(SQLException x) {
 			System.out.println("FAILED " + x.toString());
 			throw x;
@@ -657,31 +678,45 @@ final public class ConnectionPool {
 			return;
 
 		//-- We are no longer reachable from the pool manager- destroy ourself in piece.
-		Set<PoolEntry> usedset;
-		Stack<PoolEntry> freelist;
+		List<PoolEntry> usedset;
+		List<PoolEntry> freelist;
 		synchronized(this) {
 			if(m_destroyed)
 				return;
 			m_destroyed = true;
 
-			usedset = m_usedSet;
-			freelist = m_freeList;
-			m_usedSet = new HashSet<PoolEntry>();
-			m_freeList = new Stack<PoolEntry>();
-			m_statementTotalPrepareCount = 0;
-			m_n_open_rs = 0;
-			m_n_open_stmt = 0;
-			m_pooledUsedCount = 0;
-			m_pooledAllocatedCount = 0;
+			usedset = new ArrayList<PoolEntry>(m_usedSet);
+			freelist = new ArrayList<PoolEntry>(m_freeList);
+			m_usedSet.clear();
+			m_freeList.clear();
+			m_statementTotalPrepareCount.reset();
+			m_statementCacheHits.reset();
+			m_statementCacheMisses.reset();
+			m_statementCacheEvictions.reset();
+			m_n_open_rs.reset();
+			m_n_open_stmt.set(0);
+			m_pooledUsedCount.set(0);
+			m_pooledAllocatedCount.set(0);
 			m_n_rows = 0;
-			m_unpooledAllocatedCount = 0;
+			m_unpooledAllocatedCount.set(0);
 			m_isPooled = false;
-			m_pooledMaxUsed = 0;
-			m_peak_open_stmt = 0;
+			m_pooledMaxUsed.set(0);
+			m_peak_open_stmt.set(0);
+			notifyAll();
 		}
 
+		//-- Wake all lock-free waiters so that they find out the pool is gone
+		for(Waiter w : m_waiterQueue)
+			w.wake();
+
 		deinitPool(freelist);
 		deinitPool(usedset);
+
+		MappedStatementLog log = m_segmentedLog;
+		if(null != log) {
+			m_segmentedLog = null;
+			log.terminate();
+		}
 	}
 
 	/**
@@ -699,7 +734,7 @@ final public class ConnectionPool {
 		}
 	}
 
-	private synchronized void usable() {
+	private void usable() {
 		if(m_destroyed)
 			throw new IllegalStateException("This pool(" + getID() + ") has been destroyed.");
 	}
@@ -713,8 +748,8 @@ final public class ConnectionPool {
 	 * @param what
 	 * @param dbc
 	 */
-	private synchronized void dbgAlloc(final String what, final Connection dbc) {
-		m_poolAllocationCount++;
+	private void dbgAlloc(final String what, final Connection dbc) {
+		m_poolAllocationCount.incrementAndGet();
 		if(c().isLogAllocation() || c().isLogAllocationStack()) {
 			System.out.println("DEBUG: pool(" + m_id + ") ALLOCATED connection " + dbc);
 			if(c().isLogAllocationStack()) {
@@ -724,14 +759,14 @@ final public class ConnectionPool {
 		if(!ALLOC.isLoggable(Level.FINE))
 			return;
 		StringBuilder sb = new StringBuilder();
-		sb.append("ALLOCATE pool(" + m_id + ") " + what + " database[allocated for pool=" + m_pooledAllocatedCount + ", allocated unpooled=" + m_unpooledAllocatedCount + "] pool[inuse=" + m_pooledUsedCount
+		sb.append("ALLOCATE pool(" + m_id + ") " + what + " database[allocated for pool=" + m_pooledAllocatedCount.get() + ", allocated unpooled=" + m_unpooledAllocatedCount.get() + "] pool[inuse=" + m_pooledUsedCount.get()
 			+ ", free=" + m_freeList.size() + "]");
 		sb.append("\nConnection: " + dbc + "\n");
 		DbPoolUtil.getThreadAndLocation(sb);
 		ALLOC.fine(sb.toString());
 	}
 
-	public synchronized void dbgRelease(final String what, final Connection dbc) {
+	public void dbgRelease(final String what, final Connection dbc) {
 		if(c().isLogAllocation() || c().isLogAllocationStack()) {
 			System.out.println("DEBUG: pool(" + m_id + ") CLOSED connection " + dbc + " (back to pool set)");
 			if(c().isLogAllocationStack()) {
@@ -741,7 +776,7 @@ final public class ConnectionPool {
 		if(!ALLOC.isLoggable(Level.FINE))
 			return;
 		StringBuilder sb = new StringBuilder();
-		sb.append("RELEASED pool(" + m_id + ") " + what + " database[allocated for pool=" + m_pooledAllocatedCount + ", allocated unpooled=" + m_unpooledAllocatedCount + "] pool[inuse=" + m_pooledUsedCount
+		sb.append("RELEASED pool(" + m_id + ") " + what + " database[allocated for pool=" + m_pooledAllocatedCount.get() + ", allocated unpooled=" + m_unpooledAllocatedCount.get() + "] pool[inuse=" + m_pooledUsedCount.get()
 			+ ", free=" + m_freeList.size() + "]");
 		if(dbc != null)
 			sb.append("\nConnection: " + dbc + "\n");
@@ -768,6 +803,9 @@ final public class ConnectionPool {
 	 * @throws SQLException
 	 */
 	private PoolEntry allocateConnectionInner(final boolean unpooled) throws SQLException {
+		if(c().isLockFreeAllocation())
+			return allocateConnectionLockFree(unpooled);
+
 		int newid = 0;
 		long ets = -1; // No end time yet known
 
@@ -777,32 +815,12 @@ final public class ConnectionPool {
 				usable();
 
 				//-- 1. Is a connection available in the free pool?
-				while(!m_freeList.isEmpty()) {
-					PoolEntry pe = m_freeList.pop();
-					m_usedSet.add(pe); // Saved used entry.
-					pe.setUnpooled(unpooled); // Tell the entry whether it is a pooled one or not
-
-					if(unpooled) {
-						/*
-						 * Unpooled connections are no longer part of the pool. Because
-						 * this connection was gotten from the pooled set we decrement
-						 * the "connections allocated" for the pool.
-						 */
-						m_pooledAllocatedCount--; // One less allocated in the poolset.
-						m_unpooledAllocatedCount++; // And one more in use
-						if(m_unpooledAllocatedCount > m_unpooledMaxUsed)
-							m_unpooledMaxUsed = m_unpooledAllocatedCount;
-					} else {
-						//-- Unpooled connections influence the "used" count.
-						m_pooledUsedCount++;
-						if(m_pooledUsedCount > m_pooledMaxUsed)
-							m_pooledMaxUsed = m_pooledUsedCount;
-					}
-					return pe;
-				}
+				PoolEntry pe = m_freeList.pollFirst();
+				if(null != pe)
+					return claimFreeEntry(pe, unpooled);
 
 				//-- 2. No free connections. Can we allocate another one?
-				if(m_pooledAllocatedCount < c().getMaxConns() || unpooled) {
+				if(m_pooledAllocatedCount.get() < c().getMaxConns() || unpooled) {
 					/*
 					 * We may allocate a new connection. Update data to show
 					 * that we allocate one, then break the loop to do the
@@ -810,24 +828,17 @@ final public class ConnectionPool {
 					 * the connection count is not exceeded while we allocate
 					 * another connection.
 					 */
-					if(!unpooled) {
-						m_pooledAllocatedCount++; // Increment actual allocation count
-						m_pooledUsedCount++; // One more used,
-						if(m_pooledUsedCount > m_pooledMaxUsed)
-							m_pooledMaxUsed = m_pooledUsedCount;
-					} else {
-						m_unpooledAllocatedCount++;
-						if(m_unpooledAllocatedCount > m_unpooledMaxUsed)
-							m_unpooledMaxUsed = m_unpooledAllocatedCount;
-					}
+					if(!unpooled)
+						m_pooledAllocatedCount.incrementAndGet(); // Increment actual allocation count
+					countNewEntry(unpooled);
 
 					//-- Save data for the creation later,
-					newid = m_entryidgen++;
+					newid = m_entryidgen.getAndIncrement();
 					break; // Enter the "allocate new" code.
 				}
 
 				//-- 3. Auch! Nothing! Wait till a connection is released!!
-				m_n_connectionwaits++;
+				m_n_connectionwaits.incrementAndGet();
 				long cts = System.currentTimeMillis();
 				if(ets == -1) {
 					//-- This is the 1st time through the loop: set the end time;
@@ -851,6 +862,141 @@ final public class ConnectionPool {
 		 * new connection. The connection has already been counted in. This
 		 * must be done outside a lock because JDBC (Oracle driver) may lock also.
 		 */
+		return createNewEntry(unpooled, newid);
+	}
+
+	/** The #of times the lock-free allocation retries before it queues up as a waiter. */
+	static private final int MAX_SPINS = 32;
+
+	/**
+	 * Lock-free version of {@link #allocateConnectionInner(boolean)}, used when {@link PoolConfig#isLockFreeAllocation()} is set.
+	 * A free entry is taken from the free list without locking; if there is none and the pool may grow, a place
+	 * is reserved by a compare-and-set on the allocated count. If neither works it retries a few times, then queues itself as a
+	 * waiter and parks until a released connection is handed to it directly, or until 10 seconds have passed.
+	 * Waiters are served in the order they arrived.
+	 */
+	private PoolEntry allocateConnectionLockFree(final boolean unpooled) throws SQLException {
+		Waiter waiter = null;
+		long deadline = 0;
+		int spins = 0;
+		try {
+			for(;;) {
+				usable();
+
+				//-- 0. Did a releasing thread hand us a connection?
+				if(null != waiter) {
+					PoolEntry pe = waiter.getEntry();
+					if(null != pe) {
+						waiter = null;								// Already removed from the queue by the releaser
+						return claimFreeEntry(pe, unpooled);
+					}
+				}
+
+				//-- 1. Is a connection available in the free pool?
+				PoolEntry pe = m_freeList.pollFirst();
+				if(null != pe) {
+					if(null != waiter) {
+						PoolEntry handed = leaveWaiterQueue(waiter);
+						waiter = null;
+						if(null != handed) {
+							handOff(pe);							// We got two- give one back
+							pe = handed;
+						}
+					}
+					return claimFreeEntry(pe, unpooled);
+				}
+
+				//-- 2. No free connections. Can we allocate another one?
+				if(unpooled || incrementIfBelow(m_pooledAllocatedCount, c().getMaxConns())) {
+					if(null != waiter) {
+						PoolEntry handed = leaveWaiterQueue(waiter);
+						waiter = null;
+						if(null != handed) {
+							if(!unpooled) {
+								m_pooledAllocatedCount.decrementAndGet();		// Undo the reservation
+								signalWaiter();
+							}
+							return claimFreeEntry(handed, unpooled);
+						}
+					}
+					countNewEntry(unpooled);
+					return createNewEntry(unpooled, m_entryidgen.getAndIncrement());
+				}
+
+				//-- 3. Connections are usually released quickly, so retry a few times before queueing up.
+				if(null == waiter && spins++ < MAX_SPINS) {
+					Thread.yield();
+					continue;
+				}
+
+				//-- 4. Queue up, then look at the free list once more before parking so that a release in between is not missed.
+				if(null == waiter) {
+					m_n_connectionwaits.incrementAndGet();
+					deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+					waiter = new Waiter();
+					m_waiterQueue.add(waiter);
+					continue;
+				}
+				long left = deadline - System.nanoTime();
+				if(left <= 0) {
+					PoolEntry handed = leaveWaiterQueue(waiter);
+					waiter = null;
+					if(null != handed)
+						return claimFreeEntry(handed, unpooled);
+					return null;
+				}
+				LockSupport.parkNanos(this, left);
+				if(Thread.interrupted())
+					throw new SQLException("dbPool " + m_id + ": interrupted while waiting for connection to become available");
+			}
+		} finally {
+			if(null != waiter) {
+				//-- Leaving because of an exception: return anything handed to us.
+				PoolEntry handed = leaveWaiterQueue(waiter);
+				if(null != handed)
+					handOff(handed);
+			}
+		}
+	}
+
+	/**
+	 * Mark an entry taken from the free list (or handed over by a releasing thread) as used.
+	 */
+	private PoolEntry claimFreeEntry(PoolEntry pe, boolean unpooled) {
+		m_usedSet.add(pe); // Saved used entry.
+		pe.setUnpooled(unpooled); // Tell the entry whether it is a pooled one or not
+
+		if(unpooled) {
+			/*
+			 * Unpooled connections are no longer part of the pool. Because
+			 * this connection was gotten from the pooled set we decrement
+			 * the "connections allocated" for the pool.
+			 */
+			m_pooledAllocatedCount.decrementAndGet(); // One less allocated in the poolset.
+			updateMax(m_unpooledMaxUsed, m_unpooledAllocatedCount.incrementAndGet()); // And one more in use
+		} else {
+			//-- Unpooled connections influence the "used" count.
+			updateMax(m_pooledMaxUsed, m_pooledUsedCount.incrementAndGet());
+		}
+		return pe;
+	}
+
+	/**
+	 * Count a connection that is about to be created as used. For a pooled connection the
+	 * allocated count must already have been incremented.
+	 */
+	private void countNewEntry(boolean unpooled) {
+		if(!unpooled)
+			updateMax(m_pooledMaxUsed, m_pooledUsedCount.incrementAndGet()); // One more used,
+		else
+			updateMax(m_unpooledMaxUsed, m_unpooledAllocatedCount.incrementAndGet());
+	}
+
+	/**
+	 * Create the entry for a new database connection, which has already been counted in. This
+	 * must be called outside any lock because JDBC (Oracle driver) may lock also.
+	 */
+	private PoolEntry createNewEntry(boolean unpooled, int newid) throws SQLException {
 		boolean ok = false;
 		PoolEntry pe = null;
 		try {
@@ -864,21 +1010,119 @@ final public class ConnectionPool {
 			return pe;
 		} finally {
 			//-- We need to handle accounting!!
-			synchronized(this) {
-				if(ok) {
-					m_usedSet.add(pe);
-				} else {
-					//-- Decrement all counters that were upped assuming the code worked.
-					if(!unpooled) {
-						m_pooledAllocatedCount--;
-						m_pooledUsedCount--;
-					} else
-						m_unpooledAllocatedCount--;
-				}
+			if(ok) {
+				m_usedSet.add(pe);
+			} else {
+				//-- Decrement all counters that were upped assuming the code worked.
+				if(!unpooled) {
+					m_pooledAllocatedCount.decrementAndGet();
+					m_pooledUsedCount.decrementAndGet();
+					if(c().isLockFreeAllocation())
+						signalWaiter();
+				} else
+					m_unpooledAllocatedCount.decrementAndGet();
 			}
 		}
 	}
 
+	/**
+	 * Give a free entry to the longest waiting thread, or put it in the free list if nobody waits.
+	 */
+	private void handOff(PoolEntry pe) {
+		PoolEntry entry = pe;
+		for(;;) {
+			Waiter w;
+			while(null != (w = m_waiterQueue.poll())) {
+				if(w.offer(entry))
+					return;
+			}
+			m_freeList.addFirst(entry);
+			if(m_waiterQueue.isEmpty())
+				return;
+
+			//-- Someone queued up while we were adding to the free list: take an entry out again for it.
+			entry = m_freeList.pollFirst();
+			if(null == entry)
+				return;
+		}
+	}
+
+	/**
+	 * Wake the longest waiting thread so that it can try to create a connection, after the allocated count decreased.
+	 */
+	private void signalWaiter() {
+		Waiter w = m_waiterQueue.peek();
+		if(null != w)
+			w.wake();
+	}
+
+	/**
+	 * Stop waiting. Returns the entry that was handed to the waiter before it could leave, if any.
+	 */
+	@Nullable
+	private PoolEntry leaveWaiterQueue(Waiter w) {
+		PoolEntry handed = w.cancel();
+		m_waiterQueue.remove(w);
+		return handed;
+	}
+
+	/**
+	 * Increment the counter if it is below max; returns false if it was not.
+	 */
+	static private boolean incrementIfBelow(AtomicInteger counter, int max) {
+		for(;;) {
+			int v = counter.get();
+			if(v >= max)
+				return false;
+			if(counter.compareAndSet(v, v + 1))
+				return true;
+		}
+	}
+
+	static private void updateMax(AtomicInteger max, int value) {
+		for(;;) {
+			int v = max.get();
+			if(value <= v || max.compareAndSet(v, value))
+				return;
+		}
+	}
+
+	/**
+	 * A thread waiting for a connection in lock-free mode. A releasing thread hands over its
+	 * entry by setting the slot; the waiter gives up by setting it to CANCELLED. Whichever
+	 * happens first wins, so an entry is never handed to a thread that left.
+	 */
+	static private final class Waiter {
+		static private final Object CANCELLED = new Object();
+
+		private final Thread m_thread = Thread.currentThread();
+
+		private final AtomicReference<Object> m_slot = new AtomicReference<>();
+
+		boolean offer(PoolEntry pe) {
+			if(!m_slot.compareAndSet(null, pe))
+				return false;
+			LockSupport.unpark(m_thread);
+			return true;
+		}
+
+		@Nullable
+		PoolEntry getEntry() {
+			Object o = m_slot.get();
+			return o instanceof PoolEntry ? (PoolEntry) o : null;
+		}
+
+		@Nullable
+		PoolEntry cancel() {
+			if(m_slot.compareAndSet(null, CANCELLED))
+				return null;
+			return getEntry();
+		}
+
+		void wake() {
+			LockSupport.unpark(m_thread);
+		}
+	}
 
 	/**
 	 * Allocates a connection or aborts if it is impossible to do so within
@@ -917,16 +1161,14 @@ final public class ConnectionPool {
 			}
 
 			if(ctries > 5) { // If too many retries abort,
-				m_n_connectionfails++;
+				m_n_connectionfails.incrementAndGet();
 				StringBuilder sb = new StringBuilder(1024 * 1024);
 				dumpUsedConnections(sb);
 				String msg = sb.toString();
 				saveError("No more database connections for pool=" + getID() + " - ABORTING REQUEST", msg);
 				throw new SQLException("PANIC: Could not obtain a database connection - pool is exhausted!");
 			}
-			m_n_connectionwaits++;
-
-
+			m_n_connectionwaits.incrementAndGet();
 		}
 
 		//-- We tried it way too many times.... Run the expiry scanner in FORCED mode.
@@ -938,9 +1180,7 @@ final public class ConnectionPool {
 			return pe;
 
 		//-- We're dyyyyyying.....
-		synchronized(this) {
-			m_n_connectionfails++;
-		}
+		m_n_connectionfails.incrementAndGet();
 		throw new SQLException("PANIC: Could not obtain a database connection - pool is exhausted (and no connections can be forcefully released)!");
 	}
 
@@ -980,54 +1220,70 @@ final public class ConnectionPool {
 			ex.printStackTrace();
 			throw ex;
 		} finally {
-			synchronized(this) {
-				/*
-				 * If the reset was okay AND the connection count does not exceed
-				 * the max count we return this to the pool, else we discard the
-				 * connection.
-				 */
-				boolean unpooled = pe.isUnpooled();
-				if(ok) {
-					if(unpooled && (m_pooledAllocatedCount >= c().getMaxConns() || !pe.getUserID().equals(c().getUid()))) // Unpooled are returned only when #allocated not too big,
-						ok = false; // ok=false means do not re-use the connection
-				}
-				if(ok) {
-					//-- We are sure that we want to put this back into the poolset's free list.
-					if(!m_usedSet.remove(pe)) {
-						//--cannot happen.
-						String subj = "pool(" + m_id + "): connection not in USED pool??";
-						StringBuilder sb = new StringBuilder(65536);
-						sb.append("Connection not in used pool! Location of release is:\n");
-						DbPoolUtil.getThreadAndLocation(sb);
-						sb.append("\n\nConnection dump:\n");
-						DbPoolUtil.printTracepoints(new StringPrinter(sb), pc, true);
-						String msg = sb.toString();
-						saveError(subj, msg);
-						m_manager.panic(subj, msg);
-						throw new IllegalStateException(subj);
-					}
-					if(unpooled) {
-						m_unpooledAllocatedCount--; // Decrement #of unpooled, because this moves to pooled.
-						m_pooledAllocatedCount++; // Unpooled means another allocated one now
-					} else
-						m_pooledUsedCount--; // Decrement pool use count for pooled,
-					m_freeList.push(pe);
-					pe = null; // Make sure we do not use this again ;-)
-					dbgRelease("returned to pool", pc);
-				}
+			if(c().isLockFreeAllocation()) {
+				ok = returnToFreeList(pe, pc, ok);
+			} else {
+				synchronized(this) {
+					ok = returnToFreeList(pe, pc, ok);
 
-				//-- Notify any waiters that another slot is available
-				//				System.out.println("POOL["+m_id+"]: connection returned, #used is "+m_n_used);
-				try {
-					notify();
-				} catch(Exception x) {}
+					//-- Notify any waiters that another slot is available
+					try {
+						notify();
+					} catch(Exception x) {}
+				}
 			}
-			if(ok)
-				return;
+			if(!ok) {
+				//-- If the code above was not OK we need to discard outside of the lock
+				discardEntry(pe);
+			}
+		}
+	}
 
-			//-- If the code above was not OK we need to discard outside of the lock
-			discardEntry(pe);
+	/**
+	 * Put a released entry back in the free list, or in lock-free mode hand it to the longest waiting
+	 * thread. Returns false if the entry cannot be reused and must be discarded.
+	 */
+	private boolean returnToFreeList(PoolEntry pe, ConnectionProxy pc, boolean ok) {
+		/*
+		 * If the reset was okay AND the connection count does not exceed
+		 * the max count we return this to the pool, else we discard the
+		 * connection.
+		 */
+		if(!ok)
+			return false;
+		boolean unpooled = pe.isUnpooled();
+		if(unpooled) {
+			//-- Unpooled are returned only when #allocated not too big,
+			if(!pe.getUserID().equals(c().getUid()) || !incrementIfBelow(m_pooledAllocatedCount, c().getMaxConns()))
+				return false;
 		}
+
+		//-- We are sure that we want to put this back into the poolset's free list.
+		if(!m_usedSet.remove(pe)) {
+			//--cannot happen.
+			if(unpooled)
+				m_pooledAllocatedCount.decrementAndGet();
+			String subj = "pool(" + m_id + "): connection not in USED pool??";
+			StringBuilder sb = new StringBuilder(65536);
+			sb.append("Connection not in used pool! Location of release is:\n");
+			DbPoolUtil.getThreadAndLocation(sb);
+			sb.append("\n\nConnection dump:\n");
+			DbPoolUtil.printTracepoints(new StringPrinter(sb), pc, true);
+			String msg = sb.toString();
+			saveError(subj, msg);
+			m_manager.panic(subj, msg);
+			throw new IllegalStateException(subj);
+		}
+		if(unpooled)
+			m_unpooledAllocatedCount.decrementAndGet(); // Decrement #of unpooled, because this moves to pooled.
+		else
+			m_pooledUsedCount.decrementAndGet(); // Decrement pool use count for pooled,
+		dbgRelease("returned to pool", pc);
+		if(c().isLockFreeAllocation())
+			handOff(pe);
+		else
+			m_freeList.addFirst(pe);
+		return true;
 	}
 
 	/**
@@ -1039,10 +1295,12 @@ final public class ConnectionPool {
 	synchronized void removeEntryFromPool(PoolEntry pe) {
 		boolean unpooled = pe.isUnpooled();
 		if(unpooled)
-			m_unpooledAllocatedCount--; // #of unpooled is one down
+			m_unpooledAllocatedCount.decrementAndGet(); // #of unpooled is one down
 		else {
-			m_pooledUsedCount--;
-			m_pooledAllocatedCount--; // One less allocated because it's connection will be/is freed.
+			m_pooledUsedCount.decrementAndGet();
+			m_pooledAllocatedCount.decrementAndGet(); // One less allocated because it's connection will be/is freed.
+			if(c().isLockFreeAllocation())
+				signalWaiter();
 		}
 		if(!m_usedSet.remove(pe)) {
 			//-- cannot happen.
@@ -1063,30 +1321,17 @@ final public class ConnectionPool {
 	 * @param pe
 	 */
 	private void discardEntry(final PoolEntry pe) {
-		String subj = null;
-		String msg = null;
-		synchronized(this) {
-			if(!pe.isUnpooled()) { // Discarding pooled means current allocation count must be decremented.
-				m_pooledAllocatedCount--; // One less allocated in the pool
-				m_pooledUsedCount--; // And one less used,
-			} else
-				m_unpooledAllocatedCount--;
-			//System.out.println("DISCARD pool=" + m_id + " connection discarded to server; conns=" + m_pooledAllocatedCount + ", #unpooled=" + m_unpooledAllocatedCount);
-
-			if(!m_usedSet.remove(pe)) {
-				subj = "pool(" + m_id + "): connection not in USED pool??";
-				StringBuilder sb = new StringBuilder(65536);
-				sb.append("Connection not in used pool! Location of release is:\n");
-				DbPoolUtil.getThreadAndLocation(sb);
-				//				sb.append("\n\nConnection stack dump:\n");
-				//				DbPoolUtil.printTracepoints(sb, )
-				msg = sb.toString();
-				saveError(subj, msg);
+		String msg;
+		if(c().isLockFreeAllocation()) {
+			msg = forgetEntry(pe);
+			signalWaiter();
+		} else {
+			synchronized(this) {
+				msg = forgetEntry(pe);
+				try {
+					notify();
+				} catch(Exception x) {}
 			}
-
-			try {
-				notify();
-			} catch(Exception x) {}
 		}
 
 		/*
@@ -1095,12 +1340,35 @@ final public class ConnectionPool {
 		pe.closeResources();
 		pe.releaseConnection();
 
-		if(subj != null) {
+		if(msg != null) {
+			String subj = "pool(" + m_id + "): connection not in USED pool??";
 			m_manager.panic(subj, msg);
 			throw new IllegalStateException(subj);
 		}
 	}
 
+	/**
+	 * Remove a discarded entry from the counts and the used set. Returns an error message if it was not in the used set.
+	 */
+	@Nullable
+	private String forgetEntry(final PoolEntry pe) {
+		if(!pe.isUnpooled()) { // Discarding pooled means current allocation count must be decremented.
+			m_pooledAllocatedCount.decrementAndGet(); // One less allocated in the pool
+			m_pooledUsedCount.decrementAndGet(); // And one less used,
+		} else
+			m_unpooledAllocatedCount.decrementAndGet();
+		//System.out.println("DISCARD pool=" + m_id + " connection discarded to server; conns=" + m_pooledAllocatedCount + ", #unpooled=" + m_unpooledAllocatedCount);
+
+		if(m_usedSet.remove(pe))
+			return null;
+		StringBuilder sb = new StringBuilder(65536);
+		sb.append("Connection not in used pool! Location of release is:\n");
+		DbPoolUtil.getThreadAndLocation(sb);
+		String msg = sb.toString();
+		saveError("pool(" + m_id + "): connection not in USED pool??", msg);
+		return msg;
+	}
+
 
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Accessing all connections.							*/
@@ -1117,16 +1385,13 @@ final public class ConnectionPool {
 	 * @return
 	 */
 	public List<ConnectionProxy> getUsedConnections() {
-		synchronized(this) {
-			List<ConnectionProxy> res = new ArrayList<ConnectionProxy>(m_usedSet.size());
-			for(PoolEntry pe : m_usedSet) {
-				ConnectionProxy px = pe.getProxy();
-				if(px == null) // cannot happen
-					throw new IllegalStateException("POOLERR: proxy is null on USED entry=" + pe);
+		List<ConnectionProxy> res = new ArrayList<ConnectionProxy>(m_usedSet.size());
+		for(PoolEntry pe : m_usedSet) {
+			ConnectionProxy px = pe.getProxy();
+			if(px != null) // Null while the entry is between allocation and getting its proxy
 				res.add(px);
-			}
-			return res;
 		}
+		return res;
 	}
 
 	/**
@@ -1162,10 +1427,7 @@ final public class ConnectionPool {
 	 */
 	public Connection getUnpooledConnection(String username, String password) throws SQLException {
 		IConnectionEventListener d = m_manager.getConnectionEventListener();
-		int newid;
-		synchronized(this) {
-			newid = m_entryidgen++;
-		}
+		int newid = m_entryidgen.getAndIncrement();
 
 		boolean ok = false;
 		PoolEntry pe = null;
@@ -1182,11 +1444,9 @@ final public class ConnectionPool {
 			return dbc;
 		} finally {
 			//-- We need to handle accounting!!
-			synchronized(this) {
-				if(ok) {
-					m_unpooledAllocatedCount++;
-					m_usedSet.add(pe);
-				}
+			if(ok) {
+				m_unpooledAllocatedCount.incrementAndGet();
+				m_usedSet.add(pe);
 			}
 		}
 	}
@@ -1236,7 +1496,7 @@ final public class ConnectionPool {
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Connection usage time statistics.					*/
 	/*--------------------------------------------------------------*/
-	private final int[] m_usetime_ar = new int[10];
+	private final AtomicIntegerArray m_usetime_ar = new AtomicIntegerArray(10);
 
 	static private final int[] TIMES = new int[]{10, 20, 50, 100, 250, 500, 1000, 2000, 4000};
 
@@ -1264,9 +1524,7 @@ final public class ConnectionPool {
 	void handleConnectionUsageTime(final ConnectionProxy pe, final long ut) {
 		//-- Add to statistics.
 		int slot = getTimeSlot(ut);
-		synchronized(m_usetime_ar) {
-			m_usetime_ar[slot]++;
-		}
+		m_usetime_ar.incrementAndGet(slot);
 		if(ut < m_conntime_warning_ms)
 			return;
 		//
@@ -1287,11 +1545,10 @@ final public class ConnectionPool {
 	}
 
 	public int[] getUseTimeTable() {
-		int[] ar = new int[m_usetime_ar.length];
-		synchronized(m_usetime_ar) {
-			System.arraycopy(m_usetime_ar, 0, ar, 0, m_usetime_ar.length);
-			return ar;
-		}
+		int[] ar = new int[m_usetime_ar.length()];
+		for(int i = 0; i < ar.length; i++)
+			ar[i] = m_usetime_ar.get(i);
+		return ar;
 	}
 
 	//	static private final String[] COLOR = new String[]{"#660000", "#330000",};
@@ -1467,23 +1724,50 @@ final public class ConnectionPool {
 
 	private Thread m_logWriterThread;
 
-	private List<byte[]> m_logBufferList = new ArrayList<byte[]>();
+	private final ArrayDeque<byte[]> m_logBufferList = new ArrayDeque<byte[]>();
 
 	static private final int MAX_LOG_QUEUED = 30;
 
 	private OutputStream m_fileLogStream;
 
+	/** When set, statements are logged to memory-mapped segments by this instead of to m_fileLogStream. */
+	@Nullable
+	private volatile MappedStatementLog m_segmentedLog;
+
 	static public final long STMT_START_MAGIC = 0xabbacafebabedeadl;
 
 	public boolean isFileLogging() {
+		if(m_segmentedLog != null)
+			return true;
 		synchronized(m_logBufferList) {
 			return m_fileLogging;
 		}
 	}
 
+	/**
+	 * Log all statements to rotating memory-mapped segments of segmentMB MB each, keeping the last
+	 * maxSegments segments (0 keeps all). Statement threads never block on this log; when the
+	 * writer cannot keep up records are dropped.
+	 */
+	public void setSegmentedFileLogging(File target, int segmentMB, int maxSegments) {
+		synchronized(m_logBufferList) {
+			if(m_fileLogging || m_segmentedLog != null)
+				throw new IllegalArgumentException("File logging is already enabled");
+			m_segmentedLog = new MappedStatementLog(getID(), target, segmentMB * 1024 * 1024, maxSegments);
+		}
+	}
+
+	/**
+	 * The #of statement log records dropped because the segmented log's writer could not keep up.
+	 */
+	public long getStatementLogDropCount() {
+		MappedStatementLog log = m_segmentedLog;
+		return null == log ? 0 : log.getDroppedCount();
+	}
+
 	public void setFileLogging(File target) {
 		synchronized(m_logBufferList) {
-			if(m_fileLogging)
+			if(m_fileLogging || m_segmentedLog != null)
 				throw new IllegalArgumentException("File logging is already enabled");
 			try {
 				m_fileLogStream = new FileOutputStream(target, true);
@@ -1498,6 +1782,11 @@ final public class ConnectionPool {
 	}
 
 	private void writeStatement(StatementProxy ls, byte stmtType) {
+		MappedStatementLog log = m_segmentedLog;
+		if(null != log) {
+			log.writeStatement(ls, stmtType);
+			return;
+		}
 		if(!isFileLogging())
 			return;
 
@@ -1512,6 +1801,11 @@ final public class ConnectionPool {
 	}
 
 	public void writeSpecial(ConnectionProxy cp, byte stmtType) {
+		MappedStatementLog log = m_segmentedLog;
+		if(null != log) {
+			log.writeSpecial(cp, stmtType);
+			return;
+		}
 		if(!isFileLogging())
 			return;
 
@@ -1582,7 +1876,7 @@ final public class ConnectionPool {
 		for(;;) {
 			synchronized(m_logBufferList) {
 				if(m_logBufferList.size() > 0) {
-					byte[] buf = m_logBufferList.remove(0);
+					byte[] buf = m_logBufferList.pollFirst();
 
 					if(m_logBufferList.size() == MAX_LOG_QUEUED - 1) {
 						m_logBufferList.notify(); // Wake one writer
@@ -1713,11 +2007,11 @@ final public class ConnectionPool {
 	 * @return
 	 * @throws SQLException
 	 */
-	private synchronized String getCheckString() throws SQLException {
+	private String getCheckString() throws SQLException {
 		return m_check_calc;
 	}
 
-	synchronized public boolean isPooledMode() {
+	public boolean isPooledMode() {
 		return m_isPooled;
 	}
 
@@ -1742,10 +2036,17 @@ final public class ConnectionPool {
 		return m_forceTimeout;
 	}
 
+	/**
+	 * Decide whether a new connection records stacks in its tracepoints, according to the pool's {@link TracepointMode}.
+	 */
+	boolean isTracingConnection() {
+		return c().getTracepointMode().isTracingConnection(c().getTracepointSampleRate());
+	}
+
 	/**
 	 *	Returns T if stack tracking is enabled for debugging purposes.
 	 */
-	public synchronized boolean dbgIsStackTraceEnabled() {
+	public boolean dbgIsStackTraceEnabled() {
 		return m_dbg_stacktrace;
 	}
 
@@ -1755,7 +2056,7 @@ final public class ConnectionPool {
 	 *  servlet path) causes the pool to remember the last 10 stack paths that
 	 *  accessed a connection.
 	 */
-	public synchronized void dbgSetStacktrace(final boolean on) {
+	public void dbgSetStacktrace(final boolean on) {
 		m_dbg_stacktrace = on;
 	}
 
@@ -1801,38 +2102,45 @@ final public class ConnectionPool {
 	 * pool statistics in proper relation.
 	 */
 	public synchronized PoolStats getPoolStatistics() {
-		return new PoolStats(m_unpooledAllocatedCount, m_pooledAllocatedCount, m_pooledUsedCount, //
-			m_pooledMaxUsed, m_poolAllocationCount, m_n_connectionwaits, //
-			m_n_connectionfails, m_n_hangdisconnects, m_n_open_stmt, //
-			m_peak_open_stmt, m_n_open_rs, m_statementTotalPrepareCount, //
+		return new PoolStats(m_unpooledAllocatedCount.get(), m_pooledAllocatedCount.get(), m_pooledUsedCount.get(), //
+			m_pooledMaxUsed.get(), m_poolAllocationCount.get(), m_n_connectionwaits.get(), //
+			m_n_connectionfails.get(), m_n_hangdisconnects, m_n_open_stmt.get(), //
+			m_peak_open_stmt.get(), m_n_open_rs.sum(), m_statementTotalPrepareCount.sum(), //
 			m_n_rows, //
 			new ArrayList<ConnectionProxy>(m_currentlyHangingConnections), //
-			m_databaseAllocationCount, //
-			m_unpooledMaxUsed
+			m_databaseAllocationCount.get(), //
+			m_unpooledMaxUsed.get(), //
+			m_statementCacheHits.sum(), m_statementCacheMisses.sum(), m_statementCacheEvictions.sum()
 		);
 	}
 
-	synchronized void incOpenStmt() {
-		m_n_open_stmt++;
-		m_statementTotalPrepareCount++;
-		if(m_n_open_stmt > m_peak_open_stmt)
-			m_peak_open_stmt = m_n_open_stmt;
+	void incOpenStmt() {
+		m_statementTotalPrepareCount.increment();
+		updateMax(m_peak_open_stmt, m_n_open_stmt.incrementAndGet());
 	}
 
-	synchronized void decOpenStmt() {
-		m_n_open_stmt--;
+	void decOpenStmt() {
+		m_n_open_stmt.decrementAndGet();
 	}
 
-	//	synchronized void decOpenStmt(final int count) {
-	//		m_n_open_stmt -= count;
-	//	}
+	void incStatementCacheHit() {
+		m_statementCacheHits.increment();
+	}
+
+	void incStatementCacheMiss() {
+		m_statementCacheMisses.increment();
+	}
+
+	void incStatementCacheEviction() {
+		m_statementCacheEvictions.increment();
+	}
 
-	synchronized void incOpenRS() {
-		m_n_open_rs++;
+	void incOpenRS() {
+		m_n_open_rs.increment();
 	}
 
-	synchronized void decOpenRS() {
-		m_n_open_rs--;
+	void decOpenRS() {
+		m_n_open_rs.decrement();
 	}
 
 	public synchronized void setAttribute(@NonNull String name, @Nullable Object value) {
@@ -79,6 +79,9 @@ final public class ConnectionProxy implements Connection {
 	 */
 	final private boolean m_saveTracePoints;
 
+	/** T if this connection's tracepoints record a stack, as decided by the pool's {@link TracepointMode}. */
+	final private boolean m_traceStacks;
+
 	/** This connection's state. Only connections in state OPEN are usable; all others abort immediately on use. In addition, only in state OPEN will this be the PoolEntry's proxy. */
 	private ConnState m_state = ConnState.OPEN;
 
@@ -126,9 +129,10 @@ final public class ConnectionProxy implements Connection {
 		m_id = id;
 		m_ownerThread = ownerThread;
 		m_saveTracePoints = tracepoints;
-		m_allocationTS = System.currentTimeMillis();
+		m_traceStacks = pe.getPool().isTracingConnection();
+		m_allocationPoint = createTracepoint(null);
+		m_allocationTS = m_allocationPoint.getTimestamp();
 		m_lastUsedTS = m_allocationTS;
-		m_allocationPoint = Tracepoint.create(null);
 		m_unpooled = isunpooled;
 	}
 
@@ -290,7 +294,7 @@ final public class ConnectionProxy implements Connection {
 		getPool().writeSpecial(this, StatementProxy.ST_CLOSE);
 
 		//-- Handle local chores locking THIS
-		Tracepoint tp = Tracepoint.create(null);
+		Tracepoint tp = createTracepoint(null);
 		long duration;
 		synchronized(this) {
 			if(m_state != ConnState.OPEN)
@@ -319,7 +323,7 @@ final public class ConnectionProxy implements Connection {
 	 */
 	void forceInvalid() throws SQLException {
 		//-- Handle local chores locking THIS
-		Tracepoint tp = Tracepoint.create(null);
+		Tracepoint tp = createTracepoint(null);
 		synchronized(this) {
 			if(m_state != ConnState.OPEN)
 				return; // Already invalidated or closed.
@@ -381,7 +385,11 @@ final public class ConnectionProxy implements Connection {
 		//ORDERED: remove before adding to prevent maxsize overflow.
 		if(m_tracePointList.size() >= MAX_TRACEDEPTH)
 			m_tracePointList.remove(0);
-		m_tracePointList.add(Tracepoint.create(sql));
+		m_tracePointList.add(createTracepoint(sql));
+	}
+
+	private Tracepoint createTracepoint(@Nullable String sql) {
+		return Tracepoint.create(sql, m_traceStacks, m_pe.getPool().c().getTracepointDepth());
 	}
 
 	/**
@@ -577,6 +585,10 @@ final public class ConnectionProxy implements Connection {
 	 * Proxy to add resource.
 	 * @param thing
 	 */
+	boolean releaseCachedStatement(StatementCache.CachedStatement cs) {
+		return m_pe.releaseCachedStatement(cs);
+	}
+
 	void addResource(Object thing) {
 		m_pe.addResource(thing);
 	}
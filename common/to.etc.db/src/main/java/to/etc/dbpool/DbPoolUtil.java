@@ -139,6 +139,8 @@ public class DbPoolUtil {
 			ix++;
 		}
 		int ex = ix; // End bound, exclusive
+		if(ex > len)
+			ex = len;
 		if(linelimit > 0) {
 			if(ex - sx > linelimit)
 				ex = sx + linelimit;
@@ -484,7 +486,7 @@ public class DbPoolUtil {
 		.text(", used ").text(strMilli(cts, pc.getLastUsedTime())).text(" ago") //
 		.nl();
 		StringBuilder	sb = new StringBuilder();
-		strStacktraceFiltered(sb, tp.getElements());
+		strTracepointStack(sb, tp);
 		p.pre(CSS_STACK, sb.toString());
 		sb.setLength(0);
 
@@ -498,7 +500,7 @@ public class DbPoolUtil {
 				p.header(CSS_TRACEPT, sb.toString());
 
 				sb.setLength(0);
-				strStacktraceFiltered(sb, tp.getElements());
+				strTracepointStack(sb, tp);
 				p.pre(CSS_STACK, sb.toString());
 			}
 		}
@@ -598,6 +600,16 @@ public class DbPoolUtil {
 		return sb.toString();
 	}
 
+	/**
+	 * Append the filtered stack of a tracepoint, or a remark when it did not record one.
+	 */
+	static public void strTracepointStack(StringBuilder sb, Tracepoint tp) {
+		if(tp.hasStack())
+			strStacktraceFiltered(sb, tp.getElements());
+		else
+			sb.append("    (no stack recorded, see the pool's 'tracepoints' setting)\n");
+	}
+
 	static public String getStack(Tracepoint tp) {
 		StringBuilder sb = new StringBuilder(8192);
 		strStacktraceFiltered(sb, tp.getElements(), 50, 0);
@@ -138,7 +138,7 @@ final class HangCheckState {
 	}
 
 	public void appendTracepoint(Tracepoint allocationPoint) {
-		DbPoolUtil.strStacktraceFiltered(m_sb, allocationPoint.getElements());
+		DbPoolUtil.strTracepointStack(m_sb, allocationPoint);
 	}
 
 	public String getReport() {
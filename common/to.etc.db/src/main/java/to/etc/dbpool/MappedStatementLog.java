@@ -0,0 +1,463 @@
+package to.etc.dbpool;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the binary statement log into memory-mapped segment files. Statement threads claim a slot
+ * in a lock-free ring with a single CAS and encode their record directly into that slot's reusable
+ * buffer; a single writer thread copies the filled slots, in order, into the current mapped segment.
+ * When the ring is full a record is dropped instead of blocking the statement.
+ *
+ * <p>Segments are named after the log file with a 6-digit sequence number appended (log.000001,
+ * log.000002 ...), and are rotated when the next record does not fit. Only the last
+ * "maxSegments" segments are kept. A segment is truncated to its used size when it is closed;
+ * a segment that was not closed properly ends in zero bytes, which the replay reader skips.
+ * The mapping is released before truncating, as Windows refuses to truncate a file that is still mapped.
+ * The records have exactly the same format as the ones written by the stream logger.</p>
+ */
+final class MappedStatementLog implements Runnable {
+	static private final int SLOTS = 8192;
+
+	static private final long PARK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+	final private String m_poolId;
+
+	final private File m_base;
+
+	final private int m_segmentSize;
+
+	final private int m_maxSegments;
+
+	/*--- The ring ---*/
+	final private int m_mask;
+
+	final private Slot[] m_slots;
+
+	final private AtomicLongArray m_sequence;
+
+	final private AtomicLong m_enqueuePos = new AtomicLong();
+
+	/** Only changed by the writer thread. */
+	private volatile long m_dequeuePos;
+
+	final private AtomicLong m_droppedCount = new AtomicLong();
+
+	final private Thread m_thread;
+
+	/** Flushes the log when the VM exits; removed again when the log is terminated earlier. */
+	final private Thread m_shutdownHook;
+
+	private volatile boolean m_sleeping;
+
+	private volatile boolean m_terminated;
+
+	/*--- Writer thread state ---*/
+	private int m_segmentNumber;
+
+	@Nullable
+	private FileChannel m_channel;
+
+	@Nullable
+	private MappedByteBuffer m_map;
+
+	MappedStatementLog(String poolId, File base, int segmentSize, int maxSegments) {
+		m_poolId = poolId;
+		m_base = base;
+		m_segmentSize = segmentSize;
+		m_maxSegments = maxSegments;
+		m_mask = SLOTS - 1;
+		m_slots = new Slot[SLOTS];
+		m_sequence = new AtomicLongArray(SLOTS);
+		for(int i = 0; i < SLOTS; i++) {
+			m_slots[i] = new Slot();
+			m_sequence.set(i, i);
+		}
+		m_segmentNumber = findLastSegment(base);
+
+		Thread t = m_thread = new Thread(this, "dblgwr " + poolId);
+		t.setDaemon(true);
+		t.start();
+		Thread hook = m_shutdownHook = new Thread(this::terminate, "dblgwr shutdown");
+		Runtime.getRuntime().addShutdownHook(hook);
+	}
+
+	/**
+	 * Return the file name for segment #nr of the log.
+	 */
+	static public File getSegmentFile(File base, int nr) {
+		return new File(base.getPath() + "." + String.format("%06d", Integer.valueOf(nr)));
+	}
+
+	/**
+	 * Find the highest segment number already present for the log, so that a restart does not overwrite it.
+	 */
+	static private int findLastSegment(File base) {
+		File dir = base.getAbsoluteFile().getParentFile();
+		String prefix = base.getName() + ".";
+		String[] names = dir == null ? null : dir.list();
+		int max = 0;
+		if(null != names) {
+			for(String name : names) {
+				if(name.startsWith(prefix) && name.length() == prefix.length() + 6) {
+					try {
+						max = Math.max(max, Integer.parseInt(name.substring(prefix.length())));
+					} catch(NumberFormatException x) {
+						// Not a segment
+					}
+				}
+			}
+		}
+		return max;
+	}
+
+	long getDroppedCount() {
+		return m_droppedCount.get();
+	}
+
+	Thread getShutdownHook() {
+		return m_shutdownHook;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Producers.											*/
+	/*--------------------------------------------------------------*/
+	/**
+	 * Log an executed statement.
+	 */
+	void writeStatement(StatementProxy sp, byte stmtType) {
+		long pos = claim();
+		if(pos < 0)
+			return;
+		Slot s = m_slots[(int) (pos & m_mask)];
+		try {
+			s.header(stmtType, sp._conn().getId());
+			s.putString(sp.getSQL());
+			if(sp instanceof PreparedStatementProxy) {
+				Object[] par = ((PreparedStatementProxy) sp).internalGetParameters();
+				s.putInt(par.length);
+				for(Object p : par)
+					s.putParameter(p);
+			} else
+				s.putInt(0);						// Zero parameters.
+		} catch(Exception x) {
+			System.out.println("pool(" + m_poolId + ") failed to create statement image, statement ignored: " + x);
+			s.m_length = 0;
+		}
+		publish(pos);
+	}
+
+	/**
+	 * Log a connection event like commit or close.
+	 */
+	void writeSpecial(ConnectionProxy cp, byte stmtType) {
+		long pos = claim();
+		if(pos < 0)
+			return;
+		m_slots[(int) (pos & m_mask)].header(stmtType, cp.getId());
+		publish(pos);
+	}
+
+	/**
+	 * Claim the next slot, or return -1 when the ring is full.
+	 */
+	private long claim() {
+		if(m_terminated) {
+			m_droppedCount.incrementAndGet();
+			return -1;
+		}
+		long pos = m_enqueuePos.get();
+		for(;;) {
+			int ix = (int) (pos & m_mask);
+			long dif = m_sequence.get(ix) - pos;
+			if(dif == 0) {
+				if(m_enqueuePos.compareAndSet(pos, pos + 1))
+					return pos;
+				pos = m_enqueuePos.get();
+			} else if(dif < 0) {
+				m_droppedCount.incrementAndGet();			// The slot still holds last lap's record: full
+				return -1;
+			} else {
+				pos = m_enqueuePos.get();					// Another producer took this slot
+			}
+		}
+	}
+
+	private void publish(long pos) {
+		m_sequence.set((int) (pos & m_mask), pos + 1);
+		if(m_sleeping)
+			LockSupport.unpark(m_thread);
+	}
+
+	/**
+	 * A reusable record buffer, written only by the producer that claimed it and then only read by the writer.
+	 */
+	static private final class Slot {
+		private byte[] m_data = new byte[1024];
+
+		private int m_length;
+
+		void header(byte stmtType, int connectionId) {
+			m_length = 0;
+			putLong(ConnectionPool.STMT_START_MAGIC);
+			putByte(stmtType);
+			putLong(System.currentTimeMillis());
+			putInt(connectionId);
+		}
+
+		private void ensure(int extra) {
+			if(m_length + extra > m_data.length) {
+				byte[] nw = new byte[Math.max(m_data.length * 2, m_length + extra)];
+				System.arraycopy(m_data, 0, nw, 0, m_length);
+				m_data = nw;
+			}
+		}
+
+		void putByte(int v) {
+			ensure(1);
+			m_data[m_length++] = (byte) v;
+		}
+
+		void putInt(int v) {
+			ensure(4);
+			byte[] d = m_data;
+			int o = m_length;
+			d[o] = (byte) (v >> 24);
+			d[o + 1] = (byte) (v >> 16);
+			d[o + 2] = (byte) (v >> 8);
+			d[o + 3] = (byte) v;
+			m_length = o + 4;
+		}
+
+		void putLong(long v) {
+			putInt((int) (v >> 32));
+			putInt((int) v);
+		}
+
+		/**
+		 * Write the string as its length and its UTF-8 bytes, encoding directly into the buffer.
+		 */
+		void putString(String s) {
+			int lenpos = m_length;
+			putInt(0);
+			int len = s.length();
+			ensure(len);
+			for(int i = 0; i < len; i++) {
+				char c = s.charAt(i);
+				if(c < 0x80) {
+					if(m_length >= m_data.length)
+						ensure(1);
+					m_data[m_length++] = (byte) c;
+				} else if(c < 0x800) {
+					ensure(2);
+					m_data[m_length++] = (byte) (0xc0 | (c >> 6));
+					m_data[m_length++] = (byte) (0x80 | (c & 0x3f));
+				} else if(Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, s.charAt(++i));
+					ensure(4);
+					m_data[m_length++] = (byte) (0xf0 | (cp >> 18));
+					m_data[m_length++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+					m_data[m_length++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+					m_data[m_length++] = (byte) (0x80 | (cp & 0x3f));
+				} else if(Character.isSurrogate(c)) {
+					putByte('?');								// Unpaired surrogate, like String.getBytes does
+				} else {
+					ensure(3);
+					m_data[m_length++] = (byte) (0xe0 | (c >> 12));
+					m_data[m_length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+					m_data[m_length++] = (byte) (0x80 | (c & 0x3f));
+				}
+			}
+			int n = m_length - lenpos - 4;
+			m_data[lenpos] = (byte) (n >> 24);
+			m_data[lenpos + 1] = (byte) (n >> 16);
+			m_data[lenpos + 2] = (byte) (n >> 8);
+			m_data[lenpos + 3] = (byte) n;
+		}
+
+		void putParameter(@Nullable Object object) {
+			if(null == object) {
+				putByte('0');
+			} else if(object instanceof Integer) {
+				putByte('i');
+				putInt(((Integer) object).intValue());
+			} else if(object instanceof Long) {
+				putByte('l');
+				putLong(((Long) object).longValue());
+			} else if(object instanceof BigDecimal) {
+				putByte('B');
+				putString(object.toString());
+			} else if(object instanceof Double) {
+				putByte('d');
+				putString(object.toString());
+			} else if(object instanceof Float) {
+				putByte('f');
+				putString(object.toString());
+			} else if(object instanceof String) {
+				putByte('$');
+				putString((String) object);
+			} else if(object instanceof Date) {
+				putByte('T');
+				putLong(((Date) object).getTime());
+			} else {
+				putByte('?');
+				putString(object.getClass().getName());
+			}
+		}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Writer thread.										*/
+	/*--------------------------------------------------------------*/
+	/**
+	 * Write everything that is still queued, close the segment and stop the writer thread.
+	 */
+	void terminate() {
+		m_terminated = true;
+		LockSupport.unpark(m_thread);
+		try {
+			m_thread.join(5000);
+		} catch(InterruptedException x) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(m_shutdownHook);
+		} catch(IllegalStateException x) {
+			// Already shutting down, which is when the hook itself calls us
+		}
+	}
+
+	@Override
+	public void run() {
+		long lastDropReport = 0;
+		try {
+			for(;;) {
+				long pos = m_dequeuePos;
+				int ix = (int) (pos & m_mask);
+				if(m_sequence.get(ix) != pos + 1) {
+					if(m_terminated && m_enqueuePos.get() == pos)
+						break;
+					m_sleeping = true;
+					if(m_sequence.get(ix) != pos + 1)			// Recheck after announcing we sleep, to not miss a wakeup
+						LockSupport.parkNanos(PARK_INTERVAL);
+					m_sleeping = false;
+
+					long dropped = m_droppedCount.get();
+					if(dropped != lastDropReport) {
+						lastDropReport = dropped;
+						System.out.println("pool(" + m_poolId + ") " + dropped + " statement log records dropped because the log queue was full");
+					}
+					continue;
+				}
+
+				Slot s = m_slots[ix];
+				if(s.m_length > 0)
+					append(s.m_data, s.m_length);
+				m_sequence.set(ix, pos + m_mask + 1);			// Free the slot for the next lap
+				m_dequeuePos = pos + 1;
+			}
+		} catch(Exception x) {
+			System.out.println("pool(" + m_poolId + ") statement log write error " + x + ": logging cancelled");
+			x.printStackTrace();
+			m_terminated = true;
+		} finally {
+			closeSegment();
+		}
+	}
+
+	private void append(byte[] data, int length) throws IOException {
+		if(length > m_segmentSize) {
+			System.out.println("pool(" + m_poolId + ") statement log record of " + length + " bytes is bigger than a segment, ignored");
+			return;
+		}
+		MappedByteBuffer map = m_map;
+		if(null == map || map.remaining() < length)
+			map = openSegment();
+		map.put(data, 0, length);
+	}
+
+	private MappedByteBuffer openSegment() throws IOException {
+		closeSegment();
+		int nr = ++m_segmentNumber;
+		File f = getSegmentFile(m_base, nr);
+		File parent = f.getAbsoluteFile().getParentFile();
+		if(null != parent)
+			parent.mkdirs();
+		FileChannel fc = m_channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer map = m_map = fc.map(FileChannel.MapMode.READ_WRITE, 0, m_segmentSize);
+
+		if(m_maxSegments > 0) {
+			File old = getSegmentFile(m_base, nr - m_maxSegments);
+			if(old.exists())
+				old.delete();
+		}
+		return map;
+	}
+
+	/**
+	 * Flush the current segment and cut off its unused part.
+	 */
+	private void closeSegment() {
+		FileChannel fc = m_channel;
+		MappedByteBuffer map = m_map;
+		m_channel = null;
+		m_map = null;
+		if(null == fc || null == map)
+			return;
+		try {
+			map.force();
+			int size = map.position();
+			unmap(map);
+			fc.truncate(size);
+		} catch(Exception x) {
+			System.out.println("pool(" + m_poolId + ") cannot finish statement log segment: " + x);
+		}
+		try {
+			fc.close();
+		} catch(Exception x) {
+			// Ignore
+		}
+	}
+
+	/**
+	 * Release the mapping now instead of when the buffer is garbage collected. The buffer must not
+	 * be used afterwards. There is no public API for this, so it uses Unsafe.invokeCleaner on Java 9
+	 * and later, and the buffer's cleaner on Java 8. When neither works the mapping stays until GC.
+	 */
+	static private void unmap(MappedByteBuffer map) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field f = unsafeClass.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			invokeCleaner.invoke(f.get(null), map);
+			return;
+		} catch(NoSuchMethodException x) {
+			// Java 8: use the cleaner below
+		} catch(Exception x) {
+			return;
+		}
+
+		try {
+			Object cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner").invoke(map);
+			if(null != cleaner)
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch(Exception x) {
+			// Leave it to the garbage collector
+		}
+	}
+}
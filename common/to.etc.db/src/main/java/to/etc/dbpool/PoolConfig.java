@@ -63,7 +63,7 @@ final public class PoolConfig {
 	private boolean m_logAllocationStack;
 
 	/** When T this logs all statements to stdout */
-	private boolean m_logStatements;
+	private volatile boolean m_logStatements;
 
 	private boolean m_ignoreUnclosed;
 
@@ -78,6 +78,27 @@ final public class PoolConfig {
 
 	private File m_binaryLogFile;
 
+	/** When &gt; 0 the binary log is written to memory-mapped segments of this many MB, see {@link #getBinaryLogSegmentSize()}. */
+	private int m_binaryLogSegmentSize;
+
+	/** The #of binary log segments to keep. */
+	private int m_binaryLogSegments = 16;
+
+	/** When T connections are allocated and released without locking the pool, see {@link #isLockFreeAllocation()}. */
+	private boolean m_lockFreeAllocation;
+
+	/** Which tracepoints get a stack, see {@link #getTracepointMode()}. */
+	private TracepointMode m_tracepointMode = TracepointMode.FULL;
+
+	/** In {@link TracepointMode#SAMPLED} mode, one in this many connections is traced. */
+	private int m_tracepointSampleRate = 100;
+
+	/** The max #of stack frames kept per tracepoint. */
+	private int m_tracepointDepth = 64;
+
+	/** The #of prepared statements cached per connection; 0 disables the cache. */
+	private int m_statementCacheSize;
+
 	static public class Template {
 		/** The max. #of connections that can be allocated before the pool blocks */
 		private int m_max_conns;
@@ -123,6 +144,20 @@ final public class PoolConfig {
 
 		private File m_binaryLogFile;
 
+		private int m_binaryLogSegmentSize;
+
+		private int m_binaryLogSegments = 16;
+
+		private boolean m_lockFreeAllocation;
+
+		private TracepointMode m_tracepointMode = TracepointMode.FULL;
+
+		private int m_tracepointSampleRate = 100;
+
+		private int m_tracepointDepth = 64;
+
+		private int m_statementCacheSize;
+
 		public void setDriverPath(File driverPath) {
 			m_driverPath = driverPath;
 		}
@@ -179,6 +214,14 @@ final public class PoolConfig {
 			m_binaryLogFile = binaryLogFile;
 		}
 
+		public void setBinaryLogSegmentSize(int binaryLogSegmentSize) {
+			m_binaryLogSegmentSize = binaryLogSegmentSize;
+		}
+
+		public void setBinaryLogSegments(int binaryLogSegments) {
+			m_binaryLogSegments = binaryLogSegments;
+		}
+
 		public void setUrl(String url) {
 			m_url = url;
 		}
@@ -202,6 +245,26 @@ final public class PoolConfig {
 		public void setMinConns(int min_conns) {
 			m_min_conns = min_conns;
 		}
+
+		public void setLockFreeAllocation(boolean lockFreeAllocation) {
+			m_lockFreeAllocation = lockFreeAllocation;
+		}
+
+		public void setTracepointMode(TracepointMode tracepointMode) {
+			m_tracepointMode = tracepointMode;
+		}
+
+		public void setTracepointSampleRate(int tracepointSampleRate) {
+			m_tracepointSampleRate = tracepointSampleRate;
+		}
+
+		public void setTracepointDepth(int tracepointDepth) {
+			m_tracepointDepth = tracepointDepth;
+		}
+
+		public void setStatementCacheSize(int statementCacheSize) {
+			m_statementCacheSize = statementCacheSize;
+		}
 	}
 
 	PoolConfig(String driver, String url, String userid, String passwd, String driverpath) throws SQLException {
@@ -218,6 +281,8 @@ final public class PoolConfig {
 
 	public PoolConfig(Template tpl) {
 		m_binaryLogFile = tpl.m_binaryLogFile;
+		m_binaryLogSegmentSize = Math.max(0, tpl.m_binaryLogSegmentSize);
+		m_binaryLogSegments = Math.max(0, tpl.m_binaryLogSegments);
 		m_checkConnection = tpl.m_checkConnection;
 		m_checkSQL = tpl.m_checkSQL;
 		m_collectStatistics = tpl.m_collectStatistics;
@@ -237,7 +302,11 @@ final public class PoolConfig {
 		m_sqlTraceMode = tpl.m_sqlTraceMode;
 		m_uid = tpl.m_uid;
 		m_url = tpl.m_url;
-
+		m_lockFreeAllocation = tpl.m_lockFreeAllocation;
+		m_tracepointMode = tpl.m_tracepointMode;
+		m_tracepointSampleRate = Math.max(1, tpl.m_tracepointSampleRate);
+		m_tracepointDepth = Math.max(1, tpl.m_tracepointDepth);
+		m_statementCacheSize = Math.max(0, tpl.m_statementCacheSize);
 	}
 
 	/**
@@ -288,6 +357,20 @@ final public class PoolConfig {
 			m_logStatements = cs.getBool(id, "logstatements", false);
 			m_logAllocation = cs.getBool(id, "logallocation", false);
 			m_logAllocationStack = cs.getBool(id, "logallocationstack", false);
+			m_lockFreeAllocation = cs.getBool(id, "lockfree", false);
+
+			dp = cs.getProperty(id, "tracepoints");
+			if(dp == null || "full".equalsIgnoreCase(dp) || "on".equalsIgnoreCase(dp))
+				m_tracepointMode = TracepointMode.FULL;
+			else if("sampled".equalsIgnoreCase(dp))
+				m_tracepointMode = TracepointMode.SAMPLED;
+			else if("off".equalsIgnoreCase(dp))
+				m_tracepointMode = TracepointMode.OFF;
+			else
+				throw new IllegalStateException("Invalid 'tracepoints' mode: must be full, sampled or off.");
+			m_tracepointSampleRate = Math.max(1, cs.getInt(id, "tracepointsample", 100));
+			m_tracepointDepth = Math.max(1, cs.getInt(id, "tracepointdepth", 64));
+			m_statementCacheSize = Math.max(0, cs.getInt(id, "statementcache", 0));
 
 			dp = cs.getProperty(id, "driverpath");
 			if(dp != null) {
@@ -303,6 +386,8 @@ final public class PoolConfig {
 			if(null != bf) {
 				m_binaryLogFile = new File(bf);
 			}
+			m_binaryLogSegmentSize = Math.max(0, cs.getInt(id, "binaryLogSegmentSize", 0));
+			m_binaryLogSegments = Math.max(0, cs.getInt(id, "binaryLogSegments", 16));
 		} catch(Exception x) {
 			x.printStackTrace();
 			throw new RuntimeException("Pool " + id + " parameter error: " + x, x);
@@ -390,7 +475,7 @@ final public class PoolConfig {
 		return m_logAllocationStack;
 	}
 
-	public synchronized boolean isLogStatements() {
+	public boolean isLogStatements() {
 		return m_logStatements;
 	}
 
@@ -418,6 +503,62 @@ final public class PoolConfig {
 		return m_binaryLogFile;
 	}
 
+	/**
+	 * When &gt; 0, the binary statement log is written without locking to rotating memory-mapped
+	 * segments of this many MB, named after {@link #getBinaryLogFile()} with a sequence number
+	 * appended. When 0 (the default) the log is appended to the log file itself.
+	 */
+	public int getBinaryLogSegmentSize() {
+		return m_binaryLogSegmentSize;
+	}
+
+	/**
+	 * The #of segments of a segmented binary log to keep; older ones are deleted. 0 keeps all.
+	 */
+	public int getBinaryLogSegments() {
+		return m_binaryLogSegments;
+	}
+
+	/**
+	 * When T, the pool hands out and takes back connections without taking the pool's lock: free
+	 * connections are kept in a lock-free list, and a returned connection is handed directly to the
+	 * thread that waited longest for one. When F (the default) all allocation and release runs under
+	 * the pool's monitor, and waiting threads are woken by notify.
+	 */
+	public boolean isLockFreeAllocation() {
+		return m_lockFreeAllocation;
+	}
+
+	/**
+	 * Which tracepoints record a stack trace. FULL (the default) records a stack for every tracepoint,
+	 * SAMPLED records stacks for one in {@link #getTracepointSampleRate()} connections only, and OFF
+	 * records none. Tracepoints without stack still have their time and SQL.
+	 */
+	public TracepointMode getTracepointMode() {
+		return m_tracepointMode;
+	}
+
+	public int getTracepointSampleRate() {
+		return m_tracepointSampleRate;
+	}
+
+	/**
+	 * The max #of stack frames that a tracepoint keeps once its stack is needed. This does not make
+	 * capturing the stack cheaper, as the exception used always records the full stack.
+	 */
+	public int getTracepointDepth() {
+		return m_tracepointDepth;
+	}
+
+	/**
+	 * The max #of prepared statements that each connection keeps open for reuse. Closing a prepared
+	 * statement returns it to its connection's cache, and preparing the same SQL again on that
+	 * connection reuses it. 0 (the default) disables the cache.
+	 */
+	public int getStatementCacheSize() {
+		return m_statementCacheSize;
+	}
+
 	/**
 	 * Returns the time, in seconds, that a LONGRUNNING connection is
 	 * allowed to run past the expiry time. A LONGRUNNING connection
@@ -430,7 +571,7 @@ final public class PoolConfig {
 		return 5 * 60;
 	}
 
-	public synchronized void setLogStatements(boolean logStatements) {
+	public void setLogStatements(boolean logStatements) {
 		m_logStatements = logStatements;
 	}
 }
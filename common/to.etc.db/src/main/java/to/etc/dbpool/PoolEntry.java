@@ -24,15 +24,19 @@
  */
 package to.etc.dbpool;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
- * Entry in the connection pool, either used or free. Data in here is protected
- * by the POOL.
+ * Entry in the connection pool, either used or free. The proxy and the tracked
+ * resources are protected by the entry itself; invalidation also locks the pool,
+ * always before the entry.
  *
  * @author <a href="mailto:jal@etc.to">Frits Jalvingh</a>
  * Created on Nov 2, 2010
@@ -51,18 +55,22 @@ final class PoolEntry {
 	private final Connection m_cx;
 
 	/** T if this is an unpooled connection. */
-	private boolean m_unpooled;
+	private volatile boolean m_unpooled;
 
 	private boolean m_sqlTrace;
 
-	/** The connection proxy that currently references this connection. */
-	private ConnectionProxy m_proxy;
+	/** The connection proxy that currently references this connection. Changed with this entry locked. */
+	private volatile ConnectionProxy m_proxy;
 
 	private int m_timeout;
 
 	/** This entry's state; will change if the entry is forced closed. */
 	//@GuardedBy("m_pool")
-	private ConnState m_state = ConnState.OPEN;
+	private volatile ConnState m_state = ConnState.OPEN;
+
+	/** The prepared statements kept open for reuse, if the pool has a statement cache. */
+	@Nullable
+	private final StatementCache m_statementCache;
 
 	PoolEntry(final Connection cx, final ConnectionPool pool, final int idnr, final String userid) throws SQLException {
 		m_pool = pool;
@@ -70,6 +78,8 @@ final class PoolEntry {
 		m_id = idnr;
 		m_userID = userid;
 		m_timeout = pool.getForceTimeout();
+		int cacheSize = pool.c().getStatementCacheSize();
+		m_statementCache = cacheSize > 0 ? new StatementCache(pool, cacheSize) : null;
 	}
 
 	/*--------------------------------------------------------------*/
@@ -111,27 +121,20 @@ final class PoolEntry {
 	/*	CODING:	Simple locking accessor code.						*/
 	/*--------------------------------------------------------------*/
 	/**
-	 * Abort if the entry has been closed. LOCKS POOL
+	 * Abort if the entry has been closed.
 	 */
 	private void usable() {
-		synchronized(m_pool) {
-			if(m_state != ConnState.OPEN)
-				throw new IllegalStateException("PoolEntry was " + m_state);
-		}
+		ConnState state = m_state;
+		if(state != ConnState.OPEN)
+			throw new IllegalStateException("PoolEntry was " + state);
 	}
 
-	//@GuardedBy("m_pool")
 	void setUnpooled(final boolean unpooled) {
-		synchronized(m_pool) {
-			m_unpooled = unpooled;
-		}
+		m_unpooled = unpooled;
 	}
 
-	//@GuardedBy("m_pool")
 	boolean isUnpooled() {
-		synchronized(m_pool) {
-			return m_unpooled;
-		}
+		return m_unpooled;
 	}
 
 	/**
@@ -174,14 +177,11 @@ final class PoolEntry {
 	/*	CODING:	Proxy management.									*/
 	/*--------------------------------------------------------------*/
 	/**
-	 * Returns the current proxy. Returns null if unassigned. LOCKS POOL.
+	 * Returns the current proxy. Returns null if unassigned.
 	 * @return
 	 */
-	//@GuardedBy("m_pool")
 	ConnectionProxy getProxy() {
-		synchronized(m_pool) {
-			return m_proxy;
-		}
+		return m_proxy;
 	}
 
 	/**
@@ -191,7 +191,7 @@ final class PoolEntry {
 	ConnectionProxy proxyMake() {
 		int id = PoolManager.nextConnID();
 		ConnectionProxy px = new ConnectionProxy(this, id, Thread.currentThread(), m_pool.dbgIsStackTraceEnabled(), isUnpooled());
-		synchronized(m_pool) {
+		synchronized(this) {
 			usable();
 
 			if(m_proxy != null) {
@@ -213,7 +213,7 @@ final class PoolEntry {
 	 */
 	void release(final ConnectionProxy pc) throws SQLException {
 		String panictext = null;
-		synchronized(m_pool) {
+		synchronized(this) {
 			if(pc != m_proxy) {
 				panictext = "DB Proxy closed but entry is not owning it??";
 			} else {
@@ -250,16 +250,21 @@ final class PoolEntry {
 	void invalidate(final ConnectionProxy pc) {
 		String panictext = null;
 		synchronized(m_pool) {
-			if(m_state != ConnState.OPEN)
-				return; // Already released/releasing
-
-			if(pc != m_proxy) {
-				panictext = "DB Proxy closed but entry is not owning it??";
-			} else {
-				m_proxy = null; // Currently unattached
-				m_state = ConnState.INVALIDATED; // Make sure all normal calls fail on this afterwards.
-				m_pool.removeEntryFromPool(this); // Remove all references to this entry
+			boolean remove = false;
+			synchronized(this) {
+				if(m_state != ConnState.OPEN)
+					return; // Already released/releasing
+
+				if(pc != m_proxy) {
+					panictext = "DB Proxy closed but entry is not owning it??";
+				} else {
+					m_proxy = null; // Currently unattached
+					m_state = ConnState.INVALIDATED; // Make sure all normal calls fail on this afterwards.
+					remove = true;
+				}
 			}
+			if(remove)
+				m_pool.removeEntryFromPool(this); // Remove all references to this entry
 		}
 		m_pool.getManager().removeThreadConnection(pc);
 
@@ -297,6 +302,9 @@ final class PoolEntry {
 	 * any failure. After this the PE is fully unusable. The state should already reflect that.
 	 */
 	void releaseConnection() {
+		StatementCache cache = m_statementCache;
+		if(null != cache)
+			cache.closeAll();
 		try {
 			m_cx.rollback();
 		} catch(Exception x) {}
@@ -336,7 +344,7 @@ final class PoolEntry {
 	/*	CODING:	Connection resource management...					*/
 	/*--------------------------------------------------------------*/
 	/** All objects allocated FROM this connection. */
-	//@GuardedBy("m_pool")
+	//@GuardedBy("this")
 	private HashSet<Object> m_use_set = new HashSet<Object>();
 
 	/**
@@ -344,7 +352,7 @@ final class PoolEntry {
 	 * released when the time comes. Aborts if the entry is currently closed.
 	 */
 	void addResource(final Object o) {
-		synchronized(m_pool) {
+		synchronized(this) {
 			if(m_state == ConnState.OPEN) {
 				//-- No problems: just add to the set of resources. If we are between proxy invalidate and this-invalidate the latter closes this too.
 				m_use_set.add(o); // Add, do not allow duplicates.
@@ -362,7 +370,7 @@ final class PoolEntry {
 	 * Removes a tracked resource when it was closed normally.
 	 */
 	void removeResource(final ConnectionProxy pc, final Object o) {
-		synchronized(m_pool) {
+		synchronized(this) {
 			if(m_state != ConnState.OPEN)
 				return;
 			if(!m_use_set.remove(o)) { // Remove from set,
@@ -384,7 +392,7 @@ final class PoolEntry {
 	 */
 	void closeResources() {
 		Set<Object> todo;
-		synchronized(m_pool) {
+		synchronized(this) {
 			todo = m_use_set;
 			m_use_set = new HashSet<Object>();
 		}
@@ -424,6 +432,18 @@ final class PoolEntry {
 		}
 	}
 
+	/**
+	 * Called when a prepared statement from the statement cache is closed. Returns F if the statement
+	 * could not be cached because this entry is no longer usable; the caller must then close it.
+	 */
+	boolean releaseCachedStatement(StatementCache.CachedStatement cs) {
+		StatementCache cache = m_statementCache;
+		if(null == cache || m_state != ConnState.OPEN)
+			return false;
+		cache.release(cs);
+		return true;
+	}
+
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Tracked resource allocation routines..				*/
 	/*--------------------------------------------------------------*/
@@ -431,7 +451,11 @@ final class PoolEntry {
 		PreparedStatementProxy ps = new PreparedStatementProxy(pc, p1);
 		try {
 			pc.statsHandler().prepareStatement(ps);
-			ps.associate(getConnection().prepareStatement(p1));
+			StatementCache cache = m_statementCache;
+			if(null == cache)
+				ps.associate(getConnection().prepareStatement(p1));
+			else
+				ps.associateCached(cache.prepare(getConnection(), p1, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
 		} finally {
 			pc.statsHandler().prepareStatementEnd(ps);
 		}
@@ -444,7 +468,11 @@ final class PoolEntry {
 		PreparedStatementProxy ps = new PreparedStatementProxy(pc, p1);
 		try {
 			pc.statsHandler().prepareStatement(ps);
-			ps.associate(getConnection().prepareStatement(p1, p2, p3));
+			StatementCache cache = m_statementCache;
+			if(null == cache)
+				ps.associate(getConnection().prepareStatement(p1, p2, p3));
+			else
+				ps.associateCached(cache.prepare(getConnection(), p1, p2, p3));
 		} finally {
 			pc.statsHandler().prepareStatementEnd(ps);
 		}
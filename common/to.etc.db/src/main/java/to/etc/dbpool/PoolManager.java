@@ -474,15 +474,15 @@ final public class PoolManager {
 	/*	CODING:	Thread connection info (test for unclosed conns).	*/
 	/*--------------------------------------------------------------*/
 
-	private boolean m_checkCloseConnections;
+	private volatile boolean m_checkCloseConnections;
 
 	final private ThreadLocal<Set<ConnectionProxy>> m_threadConnections = new ThreadLocal<Set<ConnectionProxy>>();
 
-	public synchronized boolean isCheckCloseConnections() {
+	public boolean isCheckCloseConnections() {
 		return m_checkCloseConnections;
 	}
 
-	public synchronized void setCheckCloseConnections(boolean checkCloseConnections) {
+	public void setCheckCloseConnections(boolean checkCloseConnections) {
 		m_checkCloseConnections = checkCloseConnections;
 	}
 
@@ -84,8 +84,17 @@ final public class PoolStats {
 
 	final private List<ConnectionProxy> m_hangingConnections;
 
+	/** The #of prepares that reused a statement from a connection's statement cache. */
+	final private long m_statementCacheHits;
+
+	/** The #of prepares with a statement cache that had to prepare a new statement. */
+	final private long m_statementCacheMisses;
+
+	/** The #of statements closed because their connection's statement cache was full. */
+	final private long m_statementCacheEvictions;
+
 	PoolStats(int nUnpooledInuse, int nPooledAllocated, int nPooledInuse, int maxUsed, int nConnallocations, int nConnectionwaits, int nConnectionfails, int nHangdisconnects, int nOpenStmt,
-		int peakOpenStmt, long nOpenRs, long nExec, long nRows, List<ConnectionProxy> hang, int totaldb, int unpooledmax) {
+		int peakOpenStmt, long nOpenRs, long nExec, long nRows, List<ConnectionProxy> hang, int totaldb, int unpooledmax, long cacheHits, long cacheMisses, long cacheEvictions) {
 		m_unpooledAllocated = nUnpooledInuse;
 		m_pooledAllocated = nPooledAllocated;
 		m_pooledUsed = nPooledInuse;
@@ -102,6 +111,9 @@ final public class PoolStats {
 		m_hangingConnections = hang;
 		m_totalDatabaseAllocations = totaldb;
 		m_unpooledMaxAllocated = unpooledmax;
+		m_statementCacheHits = cacheHits;
+		m_statementCacheMisses = cacheMisses;
+		m_statementCacheEvictions = cacheEvictions;
 	}
 
 	public int getTotalDatabaseAllocations() {
@@ -186,6 +198,18 @@ final public class PoolStats {
 		return m_n_rows;
 	}
 
+	public long getStatementCacheHits() {
+		return m_statementCacheHits;
+	}
+
+	public long getStatementCacheMisses() {
+		return m_statementCacheMisses;
+	}
+
+	public long getStatementCacheEvictions() {
+		return m_statementCacheEvictions;
+	}
+
 	public List<ConnectionProxy> getCurrentlyHangingConnections() {
 		return m_hangingConnections;
 	}
@@ -44,6 +44,9 @@ public class PreparedStatementProxy extends StatementProxy implements PreparedSt
 
 	private int m_maxpar;
 
+	/** When the statement came from the connection's statement cache, this returns it there on close. */
+	private StatementCache.CachedStatement m_cached;
+
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Changed/intercepted methods..						*/
 	/*--------------------------------------------------------------*/
@@ -52,6 +55,22 @@ public class PreparedStatementProxy extends StatementProxy implements PreparedSt
 		super(c, sql);
 	}
 
+	void associateCached(StatementCache.CachedStatement cs) throws SQLException {
+		m_cached = cs;
+		associate(cs.getStatement());
+	}
+
+	/**
+	 * Return a cached statement to the statement cache instead of closing it.
+	 */
+	@Override
+	protected void closeRealStatement(Statement st) throws SQLException {
+		StatementCache.CachedStatement cs = m_cached;
+		m_cached = null;
+		if(null == cs || !_conn().releaseCachedStatement(cs))
+			st.close();
+	}
+
 	@Override
 	protected void appendQuery(StringBuilder sb) {
 		if(getSQL() != null) {
@@ -0,0 +1,194 @@
+package to.etc.dbpool;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * An LRU cache of the prepared statements of a single database connection, keyed by the SQL and the
+ * result set type and concurrency. A statement is taken out of the cache while a proxy uses it, and
+ * put back when that proxy is closed; statements pushed out of the cache are closed. If the same SQL
+ * is prepared twice at the same time the second statement is just closed after use.
+ */
+final class StatementCache {
+	final private ConnectionPool m_pool;
+
+	final private int m_maxSize;
+
+	/** The cached, currently unused statements, least recently used first. */
+	final private LinkedHashMap<Key, CachedStatement> m_map = new LinkedHashMap<>(32, 0.75f, true);
+
+	StatementCache(ConnectionPool pool, int maxSize) {
+		m_pool = pool;
+		m_maxSize = maxSize;
+	}
+
+	static private final class Key {
+		final private String m_sql;
+
+		final private int m_type;
+
+		final private int m_concurrency;
+
+		Key(String sql, int type, int concurrency) {
+			m_sql = sql;
+			m_type = type;
+			m_concurrency = concurrency;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object o) {
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return m_type == k.m_type && m_concurrency == k.m_concurrency && m_sql.equals(k.m_sql);
+		}
+
+		@Override
+		public int hashCode() {
+			return (m_sql.hashCode() * 31 + m_type) * 31 + m_concurrency;
+		}
+	}
+
+	/**
+	 * A statement that can be cached, with the settings it had when it was prepared so that
+	 * changes made by its user can be undone before it is reused.
+	 */
+	static final class CachedStatement {
+		final private Key m_key;
+
+		final private PreparedStatement m_statement;
+
+		final private int m_fetchSize;
+
+		final private int m_maxRows;
+
+		final private int m_queryTimeout;
+
+		CachedStatement(Key key, PreparedStatement statement) throws SQLException {
+			m_key = key;
+			m_statement = statement;
+			m_fetchSize = statement.getFetchSize();
+			m_maxRows = statement.getMaxRows();
+			m_queryTimeout = statement.getQueryTimeout();
+		}
+
+		PreparedStatement getStatement() {
+			return m_statement;
+		}
+
+		/**
+		 * Clear everything the previous user left on the statement: an open result set, batched
+		 * rows that were never executed, parameters, warnings and changed settings. If any of this
+		 * fails the statement is not cached.
+		 */
+		void reset() throws SQLException {
+			PreparedStatement ps = m_statement;
+			ResultSet rs = ps.getResultSet();
+			if(null != rs)
+				rs.close();
+			ps.clearBatch();
+			ps.clearParameters();
+			ps.clearWarnings();
+			if(ps.getFetchSize() != m_fetchSize)
+				ps.setFetchSize(m_fetchSize);
+			if(ps.getMaxRows() != m_maxRows)
+				ps.setMaxRows(m_maxRows);
+			if(ps.getQueryTimeout() != m_queryTimeout)
+				ps.setQueryTimeout(m_queryTimeout);
+		}
+	}
+
+	/**
+	 * Return a cached statement for the SQL, or prepare a new one.
+	 */
+	CachedStatement prepare(Connection dbc, String sql, int type, int concurrency) throws SQLException {
+		Key key = new Key(sql, type, concurrency);
+		CachedStatement cs;
+		synchronized(this) {
+			cs = m_map.remove(key);
+		}
+		if(null != cs) {
+			m_pool.incStatementCacheHit();
+			return cs;
+		}
+		m_pool.incStatementCacheMiss();
+		PreparedStatement ps = type == ResultSet.TYPE_FORWARD_ONLY && concurrency == ResultSet.CONCUR_READ_ONLY
+			? dbc.prepareStatement(sql)
+			: dbc.prepareStatement(sql, type, concurrency);
+		try {
+			return new CachedStatement(key, ps);
+		} catch(SQLException x) {
+			close(ps);
+			throw x;
+		}
+	}
+
+	/**
+	 * Put a statement back after use. If that fails, or if the cache has another statement for the
+	 * same SQL, the statement is closed. The least recently used statements are closed when the
+	 * cache is full.
+	 */
+	void release(CachedStatement cs) {
+		try {
+			cs.reset();
+		} catch(Exception x) {
+			close(cs.getStatement());
+			return;
+		}
+
+		List<CachedStatement> evicted = null;
+		synchronized(this) {
+			if(m_map.containsKey(cs.m_key)) {
+				evicted = new ArrayList<>(1);
+				evicted.add(cs);
+			} else {
+				m_map.put(cs.m_key, cs);
+				Iterator<CachedStatement> it = m_map.values().iterator();
+				while(m_map.size() > m_maxSize && it.hasNext()) {
+					if(null == evicted)
+						evicted = new ArrayList<>();
+					evicted.add(it.next());
+					it.remove();
+					m_pool.incStatementCacheEviction();
+				}
+			}
+		}
+		if(null != evicted) {
+			for(CachedStatement e : evicted)
+				close(e.getStatement());
+		}
+	}
+
+	/**
+	 * Close all cached statements; called before the connection itself is closed.
+	 */
+	void closeAll() {
+		List<CachedStatement> list;
+		synchronized(this) {
+			list = new ArrayList<>(m_map.values());
+			m_map.clear();
+		}
+		for(CachedStatement cs : list)
+			close(cs.getStatement());
+	}
+
+	synchronized int size() {
+		return m_map.size();
+	}
+
+	static private void close(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch(Exception x) {
+			// Ignore
+		}
+	}
+}
@@ -114,7 +114,7 @@ public class StatementProxy implements Statement {
 
 		m_closeReason = "Normal close call";
 		try {
-			m_st.close();
+			closeRealStatement(m_st);
 		} finally {
 			m_st = null; // Force this connection cleared
 			try {
@@ -125,6 +125,13 @@ public class StatementProxy implements Statement {
 		}
 	}
 
+	/**
+	 * Called by a normal close to close the real statement.
+	 */
+	protected void closeRealStatement(Statement st) throws SQLException {
+		st.close();
+	}
+
 	public Connection getRealConnection() {
 		getRealStatement(); // Check if already closed.
 		return m_c.getRealConnection();
@@ -138,6 +145,13 @@ public class StatementProxy implements Statement {
 		return _conn().getPool();
 	}
 
+	/**
+	 * The ID of the pool this statement's connection belongs to.
+	 */
+	public String getPoolID() {
+		return pool().getID();
+	}
+
 	/**
 	 * This gets called when the Connection was closed, and it closes the
 	 * resources. This only closes the actual statement and does not remove
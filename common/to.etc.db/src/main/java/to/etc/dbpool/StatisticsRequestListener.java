@@ -161,6 +161,7 @@ final public class StatisticsRequestListener implements ServletRequestListener {
 
 			//-- Merge into globals if applicable
 			if(null != global) {
+				global.getLatencyStatistics().merge(statisticsCollector, duration);
 				synchronized(global.getStore()) {
 					global.getStore().merge(pc);
 					global.addRequestInfo(icb);
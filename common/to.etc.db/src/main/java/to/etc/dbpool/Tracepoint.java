@@ -24,28 +24,54 @@
  */
 package to.etc.dbpool;
 
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+
 /**
- * This contains a stack trace location. It is not yet pruned.
+ * This contains a stack trace location. It is not yet pruned. The stack is captured without
+ * converting it to {@link StackTraceElement}s; that only happens when {@link #getElements()} is
+ * called, and then only for the first frames. A tracepoint can also be created without any stack
+ * when the pool's {@link TracepointMode} says so; its elements are then empty.
+ * <p>Capturing still costs: creating the exception calls fillInStackTrace, which records the
+ * <i>whole</i> stack, however deep. The max depth only limits the frames that are converted and
+ * kept when the stack is shown. To make tracing itself cheaper use a {@link TracepointMode} that
+ * records fewer stacks.</p>
  *
  * @author <a href="mailto:jal@etc.to">Frits Jalvingh</a>
  * Created on Nov 2, 2010
  */
 final public class Tracepoint {
-	final private long m_timestamp;
+	static private final StackTraceElement[] NO_STACK = new StackTraceElement[0];
 
-	final private StackTraceElement[] m_elements;
+	static private final int DEFAULT_DEPTH = 64;
 
+	final private long m_timestamp;
+
+	/** The captured location, or null if no stack was recorded. */
+	@Nullable
 	final private RuntimeException m_asException;
 
+	/** The max #of frames to keep when the elements are materialized. */
+	final private int m_maxDepth;
+
+	/** The stack frames, created on 1st use. */
+	@Nullable
+	private volatile StackTraceElement[] m_elements;
+
 	final private String m_sql;
 
-	private Tracepoint(long ts, RuntimeException x, String sql) {
-		m_elements = x.getStackTrace();
+	private Tracepoint(long ts, @Nullable RuntimeException x, int maxDepth, String sql) {
 		m_asException = x;
+		m_maxDepth = maxDepth;
 		m_timestamp = ts;
 		m_sql = sql;
 	}
 
+	/**
+	 * The location as an exception, or null if this tracepoint has no stack.
+	 */
+	@Nullable
 	public RuntimeException getException() {
 		return m_asException;
 	}
@@ -54,8 +80,30 @@ final public class Tracepoint {
 		return m_sql;
 	}
 
+	/**
+	 * T if this tracepoint recorded a stack.
+	 */
+	public boolean hasStack() {
+		return m_asException != null;
+	}
+
+	/**
+	 * Return the stack, limited to the max depth. Returns an empty array if no stack was recorded.
+	 */
 	public StackTraceElement[] getElements() {
-		return m_elements;
+		StackTraceElement[] elements = m_elements;
+		if(null == elements) {
+			RuntimeException x = m_asException;
+			if(null == x)
+				elements = NO_STACK;
+			else {
+				elements = x.getStackTrace();
+				if(elements.length > m_maxDepth)
+					elements = Arrays.copyOf(elements, m_maxDepth);
+			}
+			m_elements = elements;
+		}
+		return elements;
 	}
 
 	public long getTimestamp() {
@@ -64,14 +112,16 @@ final public class Tracepoint {
 
 	/**
 	 * Create a tracepoint for the current stack location and timestamp.
-	 * @return
 	 */
 	static Tracepoint create(String sql) {
-		try {
-			throw new RuntimeException();
-		} catch(RuntimeException x) {
-			StackTraceElement[] se = x.getStackTrace();
-			return new Tracepoint(System.currentTimeMillis(), x, sql);
-		}
+		return create(sql, true, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Create a tracepoint for the current timestamp, with the current stack location if withStack is T.
+	 * The full stack is captured; maxDepth only limits what {@link #getElements()} returns.
+	 */
+	static Tracepoint create(String sql, boolean withStack, int maxDepth) {
+		return new Tracepoint(System.currentTimeMillis(), withStack ? new RuntimeException("Tracepoint") : null, maxDepth, sql);
 	}
 }
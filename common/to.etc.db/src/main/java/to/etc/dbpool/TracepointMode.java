@@ -0,0 +1,61 @@
+/*
+ * DomUI Java User Interface - shared code
+ * Copyright (c) 2010 by Frits Jalvingh, Itris B.V.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * See the "sponsors" file for a list of supporters.
+ *
+ * The latest version of DomUI and related code, support and documentation
+ * can be found at http://www.domui.org/
+ * The contact for the project is Frits Jalvingh <jal@etc.to>.
+ */
+package to.etc.dbpool;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Defines which connection pool tracepoints get a stack trace. Tracepoints are saved when a connection
+ * is allocated, used and closed; their stack is what hang detection and the pool's info pages show.
+ * Recording a stack is the expensive part of a tracepoint, so this is the setting that makes tracing
+ * cheaper; the tracepoint depth only limits what is kept for display.
+ */
+public enum TracepointMode {
+	/** Tracepoints only record their time and SQL, no stack. */
+	OFF,
+
+	/** One in every n connections records stacks for all of its tracepoints, the others record none. */
+	SAMPLED,
+
+	/** All tracepoints record a stack. */
+	FULL;
+
+	/**
+	 * Decide whether a new connection records stacks in its tracepoints. In SAMPLED mode this
+	 * is true for, on average, one in sampleRate connections.
+	 */
+	public boolean isTracingConnection(int sampleRate) {
+		switch(this) {
+			default:
+				return true;
+
+			case OFF:
+				return false;
+
+			case SAMPLED:
+				return sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+		}
+	}
+}
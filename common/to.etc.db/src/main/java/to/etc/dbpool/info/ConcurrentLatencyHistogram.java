@@ -0,0 +1,73 @@
+package to.etc.dbpool.info;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link LatencyHistogram} that many threads can add to without locking. Threads usually collect
+ * their values in a private LatencyHistogram and merge that in once; readers take a {@link #snapshot()}.
+ * The buckets cover values up to about 2^41 (36 minutes in nanoseconds); larger values are counted
+ * in the last bucket but still reported as the exact maximum.
+ */
+final public class ConcurrentLatencyHistogram {
+	static private final int MAX_BUCKETS = LatencyHistogram.bucket(1L << 41) + 1;
+
+	@NonNull
+	private final AtomicLongArray m_counts = new AtomicLongArray(MAX_BUCKETS);
+
+	@NonNull
+	private final LongAdder m_total = new LongAdder();
+
+	@NonNull
+	private final AtomicLong m_max = new AtomicLong();
+
+	public void add(long value) {
+		if(value < 0)
+			value = 0;
+		m_counts.incrementAndGet(Math.min(LatencyHistogram.bucket(value), MAX_BUCKETS - 1));
+		m_total.add(value);
+		updateMax(value);
+	}
+
+	/**
+	 * Add all values of a (thread-private) histogram.
+	 */
+	public void add(@NonNull LatencyHistogram h) {
+		if(h.getCount() == 0)
+			return;
+		int limit = h.getBucketLimit();
+		for(int i = 0; i < limit; i++) {
+			long c = h.getBucketCount(i);
+			if(c != 0)
+				m_counts.addAndGet(Math.min(i, MAX_BUCKETS - 1), c);
+		}
+		m_total.add(h.getTotal());
+		updateMax(h.getMax());
+	}
+
+	private void updateMax(long value) {
+		for(;;) {
+			long cur = m_max.get();
+			if(value <= cur || m_max.compareAndSet(cur, value))
+				return;
+		}
+	}
+
+	/**
+	 * Return a copy of the current state. Values that are added while the copy is made may or may not be in it.
+	 */
+	@NonNull
+	public LatencyHistogram snapshot() {
+		long[] counts = new long[MAX_BUCKETS];
+		long count = 0;
+		for(int i = 0; i < MAX_BUCKETS; i++) {
+			long c = m_counts.get(i);
+			counts[i] = c;
+			count += c;
+		}
+		return new LatencyHistogram(counts, count, m_total.sum(), m_max.get());
+	}
+}
@@ -40,6 +40,8 @@ final public class GlobalPerformanceStore {
 
 	final private PerformanceStore m_store = new PerformanceCollector();
 
+	final private LatencyStatistics m_latency = new LatencyStatistics();
+
 	public GlobalPerformanceStore() {
 		//-- Register the other performance classes for requests.
 		m_store.define(REQ_EXEC_TIME, "REQ: slowest requests", true, 20);
@@ -50,6 +52,13 @@ final public class GlobalPerformanceStore {
 		return m_store;
 	}
 
+	/**
+	 * The latency distributions; these can be used without locking.
+	 */
+	public LatencyStatistics getLatencyStatistics() {
+		return m_latency;
+	}
+
 	/**
 	 * Returns (a copy of) all currently defined performance lists. The copy's (accessible data) is threadsafe.
 	 * @return
@@ -93,5 +102,6 @@ final public class GlobalPerformanceStore {
 		synchronized(getStore()) {
 			getStore().clear();
 		}
+		m_latency.clear();
 	}
 }
@@ -547,6 +547,8 @@ final public class JspPageHandler {
 		if(null != m_globalStore) {
 			tagText("a", "Show global statistics", "href", urlBuilder("show", "globalstats"));
 			text("\u00a0\u00a0\u00a0");
+			atag("Show latency percentiles", "show", "latency");
+			text("\u00a0\u00a0\u00a0");
 			if(null == StatisticsRequestListener.getSessionStatistics(getRequest())) {
 				atag("Enable session tracing", "action", "sessionon");
 			} else {
@@ -667,6 +669,42 @@ final public class JspPageHandler {
 		expandTemplate2("jspGlobalOverview", "list", m_globalStore.getLists());
 	}
 
+	/**
+	 * Show the latency percentiles per pool, per statement and per request URL.
+	 */
+	public void showLatency() throws Exception {
+		backlink();
+		if(null == m_globalStore) {
+			full("br");
+			text("Statistics are not enabled.");
+			return;
+		}
+		LatencyStatistics ls = m_globalStore.getLatencyStatistics();
+		displayLatencyTable("Statement latency per pool", ls.getPools());
+		displayLatencyTable("Statement latency per statement (literals replaced by ?)", ls.getStatements());
+		displayLatencyTable("Request duration per URL", ls.getRequests());
+	}
+
+	private void displayLatencyTable(String title, List<LatencyStatistics.Item> list) throws Exception {
+		tagText("h2", title);
+		full("table", "width", "100%", "class", "maintbl");
+		full("tr");
+		for(String h : new String[]{"#", "Total", "p50", "p95", "p99", "Max"})
+			tagText("td", h, "nowrap", "nowrap", "width", "1%");
+		tagText("td", "Key", "width", "99%");
+		etag("tr");
+		for(LatencyStatistics.Item item : list) {
+			LatencyHistogram h = item.getHistogram();
+			full("tr", "class", "statrow " + odd());
+			tagText("td", DbPoolUtil.strCommad(h.getCount()), "nowrap", "nowrap", "align", "right");
+			for(long v : new long[]{h.getTotal(), h.getPercentile(0.5), h.getPercentile(0.95), h.getPercentile(0.99), h.getMax()})
+				tagText("td", DbPoolUtil.strNanoTime(v), "nowrap", "nowrap", "align", "right");
+			tagText("td", item.getKey(), "valign", "top");
+			etag("tr");
+		}
+		etag("table");
+	}
+
 	public void showGloballist() throws Exception {
 		backlink();
 		full("br");
@@ -0,0 +1,149 @@
+package to.etc.dbpool.info;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * A log-linear histogram of durations. Values below 32 each have their own bucket; above that every
+ * power of two is split into 32 buckets, so a percentile is never off by more than about 3% while
+ * the histogram stays small whatever the range of values. The unit of the values is up to the user.
+ * This class is not thread-safe.
+ */
+final public class LatencyHistogram {
+	static private final int SUB_BITS = 5;
+
+	static private final int SUB_COUNT = 1 << SUB_BITS;
+
+	/** The bucket counts, grown up to the highest bucket used. */
+	@NonNull
+	private long[] m_counts = new long[SUB_COUNT * 2];
+
+	private long m_count;
+
+	private long m_total;
+
+	private long m_max;
+
+	public LatencyHistogram() {}
+
+	LatencyHistogram(@NonNull long[] counts, long count, long total, long max) {
+		m_counts = counts;
+		m_count = count;
+		m_total = total;
+		m_max = max;
+	}
+
+	/**
+	 * Return the index of the bucket for a value.
+	 */
+	static int bucket(long value) {
+		if(value < SUB_COUNT)
+			return (int) value;
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int shift = msb - SUB_BITS;
+		return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+	}
+
+	/**
+	 * Return the highest value that falls into a bucket.
+	 */
+	static long bucketHigh(int bucket) {
+		if(bucket < SUB_COUNT)
+			return bucket;
+		int shift = bucket / SUB_COUNT - 1;
+		long sub = bucket % SUB_COUNT + SUB_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	public void add(long value) {
+		if(value < 0)
+			value = 0;
+		int b = bucket(value);
+		if(b >= m_counts.length) {
+			long[] nw = new long[Math.max(b + 1, m_counts.length * 2)];
+			System.arraycopy(m_counts, 0, nw, 0, m_counts.length);
+			m_counts = nw;
+		}
+		m_counts[b]++;
+		m_count++;
+		m_total += value;
+		if(value > m_max)
+			m_max = value;
+	}
+
+	/**
+	 * Add all values of another histogram to this one.
+	 */
+	public void add(@NonNull LatencyHistogram other) {
+		if(other.m_counts.length > m_counts.length) {
+			long[] nw = new long[other.m_counts.length];
+			System.arraycopy(m_counts, 0, nw, 0, m_counts.length);
+			m_counts = nw;
+		}
+		for(int i = 0; i < other.m_counts.length; i++)
+			m_counts[i] += other.m_counts[i];
+		m_count += other.m_count;
+		m_total += other.m_total;
+		if(other.m_max > m_max)
+			m_max = other.m_max;
+	}
+
+	public long getCount() {
+		return m_count;
+	}
+
+	public long getTotal() {
+		return m_total;
+	}
+
+	public long getMax() {
+		return m_max;
+	}
+
+	public long getMean() {
+		return m_count == 0 ? 0 : m_total / m_count;
+	}
+
+	/**
+	 * Return the value below which the specified fraction (0..1) of all values falls, with the
+	 * precision of the buckets.
+	 */
+	public long getPercentile(double fraction) {
+		if(m_count == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * m_count);
+		if(rank < 1)
+			rank = 1;
+		long seen = 0;
+		for(int i = 0; i < m_counts.length; i++) {
+			seen += m_counts[i];
+			if(seen >= rank)
+				return Math.min(bucketHigh(i), m_max);
+		}
+		return m_max;
+	}
+
+	/**
+	 * The #of buckets that can be non-empty.
+	 */
+	int getBucketLimit() {
+		return m_counts.length;
+	}
+
+	long getBucketCount(int bucket) {
+		return m_counts[bucket];
+	}
+
+	/**
+	 * Call the consumer for every non-empty bucket with its upper bound and count, in increasing order.
+	 */
+	public void forEachBucket(@NonNull IBucketConsumer consumer) {
+		for(int i = 0; i < m_counts.length; i++) {
+			if(m_counts[i] != 0)
+				consumer.bucket(bucketHigh(i), m_counts[i]);
+		}
+	}
+
+	public interface IBucketConsumer {
+		void bucket(long upperBound, long count);
+	}
+}
@@ -0,0 +1,174 @@
+package to.etc.dbpool.info;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency distributions over all requests, per statement fingerprint, per request URL and per pool.
+ * Each request collects its latencies in its own {@link StatisticsCollector} and merges them in when
+ * it finishes; the merge does not lock. All durations are in nanoseconds.
+ *
+ * <p>The #of statements and URLs kept is limited; anything beyond that is counted under
+ * {@link #OTHER} so that applications generating unique SQL cannot fill the heap.</p>
+ */
+final public class LatencyStatistics {
+	static public final String OTHER = "(other)";
+
+	static private final int MAX_STATEMENTS = 1000;
+
+	static private final int MAX_REQUESTS = 500;
+
+	@NonNull
+	private final Map<String, ConcurrentLatencyHistogram> m_statementMap = new ConcurrentHashMap<>();
+
+	@NonNull
+	private final Map<String, ConcurrentLatencyHistogram> m_requestMap = new ConcurrentHashMap<>();
+
+	@NonNull
+	private final Map<String, ConcurrentLatencyHistogram> m_poolMap = new ConcurrentHashMap<>();
+
+	/**
+	 * A snapshot of one distribution.
+	 */
+	final static public class Item {
+		@NonNull
+		private final String m_key;
+
+		@NonNull
+		private final LatencyHistogram m_histogram;
+
+		Item(@NonNull String key, @NonNull LatencyHistogram histogram) {
+			m_key = key;
+			m_histogram = histogram;
+		}
+
+		@NonNull
+		public String getKey() {
+			return m_key;
+		}
+
+		@NonNull
+		public LatencyHistogram getHistogram() {
+			return m_histogram;
+		}
+	}
+
+	/**
+	 * Merge the latencies of a finished request.
+	 */
+	public void merge(@NonNull StatisticsCollector sc, long requestDuration) {
+		get(m_requestMap, sc.getIdent(), MAX_REQUESTS).add(requestDuration);
+		for(StatementStatistics ss : sc.getStatementMap().values())
+			get(m_statementMap, ss.getFingerprint(), MAX_STATEMENTS).add(ss.getHistogram());
+		for(Map.Entry<String, LatencyHistogram> me : sc.getPoolHistograms().entrySet())
+			get(m_poolMap, me.getKey(), Integer.MAX_VALUE).add(me.getValue());
+	}
+
+	@NonNull
+	static private ConcurrentLatencyHistogram get(@NonNull Map<String, ConcurrentLatencyHistogram> map, @NonNull String key, int max) {
+		ConcurrentLatencyHistogram h = map.get(key);
+		if(null != h)
+			return h;
+		if(map.size() >= max)
+			key = OTHER;
+		return map.computeIfAbsent(key, a -> new ConcurrentLatencyHistogram());
+	}
+
+	@NonNull
+	public List<Item> getStatements() {
+		return snapshot(m_statementMap);
+	}
+
+	@NonNull
+	public List<Item> getRequests() {
+		return snapshot(m_requestMap);
+	}
+
+	@NonNull
+	public List<Item> getPools() {
+		return snapshot(m_poolMap);
+	}
+
+	/**
+	 * Snapshot all histograms of a map, ordered by their total time, largest first.
+	 */
+	@NonNull
+	static private List<Item> snapshot(@NonNull Map<String, ConcurrentLatencyHistogram> map) {
+		List<Item> res = new ArrayList<>(map.size());
+		for(Map.Entry<String, ConcurrentLatencyHistogram> me : map.entrySet())
+			res.add(new Item(me.getKey(), me.getValue().snapshot()));
+		res.sort((a, b) -> Long.compare(b.getHistogram().getTotal(), a.getHistogram().getTotal()));
+		return res;
+	}
+
+	public void clear() {
+		m_statementMap.clear();
+		m_requestMap.clear();
+		m_poolMap.clear();
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Plain text metrics export.							*/
+	/*--------------------------------------------------------------*/
+	/**
+	 * Write all distributions in the Prometheus text format, as summaries in seconds with the
+	 * 0.5, 0.95 and 0.99 quantiles, a count and a sum. Each summary is followed by a gauge family with the max.
+	 */
+	public void writeMetrics(@NonNull Appendable a) throws IOException {
+		writeSummary(a, "dbpool_pool_latency_seconds", "Statement latency per pool", "pool", getPools());
+		writeSummary(a, "dbpool_statement_latency_seconds", "Latency per statement fingerprint", "statement", getStatements());
+		writeSummary(a, "dbpool_request_duration_seconds", "Duration of requests using the database, per URL", "url", getRequests());
+	}
+
+	static private void writeSummary(@NonNull Appendable a, @NonNull String name, @NonNull String help, @NonNull String label, @NonNull List<Item> list) throws IOException {
+		a.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		a.append("# TYPE ").append(name).append(" summary\n");
+		for(Item item : list) {
+			LatencyHistogram h = item.getHistogram();
+			String lbl = label + "=\"" + escape(item.getKey()) + "\"";
+			quantile(a, name, lbl, "0.5", h.getPercentile(0.5));
+			quantile(a, name, lbl, "0.95", h.getPercentile(0.95));
+			quantile(a, name, lbl, "0.99", h.getPercentile(0.99));
+			a.append(name).append("_count{").append(lbl).append("} ").append(Long.toString(h.getCount())).append('\n');
+			a.append(name).append("_sum{").append(lbl).append("} ").append(seconds(h.getTotal())).append('\n');
+		}
+
+		//-- A summary may only hold quantiles, _count and _sum, so the max is a gauge family of its own.
+		String max = name + "_max";
+		a.append("# HELP ").append(max).append(" Maximum of: ").append(help).append('\n');
+		a.append("# TYPE ").append(max).append(" gauge\n");
+		for(Item item : list) {
+			String lbl = label + "=\"" + escape(item.getKey()) + "\"";
+			a.append(max).append('{').append(lbl).append("} ").append(seconds(item.getHistogram().getMax())).append('\n');
+		}
+	}
+
+	static private void quantile(@NonNull Appendable a, @NonNull String name, @NonNull String lbl, @NonNull String q, long value) throws IOException {
+		a.append(name).append('{').append(lbl).append(",quantile=\"").append(q).append("\"} ").append(seconds(value)).append('\n');
+	}
+
+	@NonNull
+	static private String seconds(long ns) {
+		return Double.toString(ns / 1.0e9);
+	}
+
+	@NonNull
+	static private String escape(@NonNull String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '\\' || c == '"')
+				sb.append('\\').append(c);
+			else if(c == '\n')
+				sb.append("\\n");
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+}
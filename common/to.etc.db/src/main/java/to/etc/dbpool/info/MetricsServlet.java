@@ -0,0 +1,32 @@
+package to.etc.dbpool.info;
+
+import to.etc.dbpool.StatisticsRequestListener;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Exports the pool's latency statistics as plain text, in the Prometheus text format, so that they
+ * can be scraped by a monitoring system. Map it to an URL in web.xml; it only has data when statistics
+ * collection is enabled through {@link StatisticsRequestListener}.
+ */
+public class MetricsServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		resp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+		resp.setHeader("Cache-Control", "no-cache");
+		PrintWriter pw = resp.getWriter();
+		GlobalPerformanceStore store = StatisticsRequestListener.getGlobalStore();
+		if(null == store) {
+			pw.append("# dbpool statistics collection is disabled\n");
+			return;
+		}
+		store.getLatencyStatistics().writeMetrics(pw);
+	}
+}
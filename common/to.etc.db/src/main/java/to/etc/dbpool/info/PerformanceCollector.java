@@ -108,7 +108,7 @@ final public class PerformanceCollector extends PerformanceStore implements IPer
 			max = counterList.size();
 		for(int i = 0; i < max; i++) {
 			StatementStatistics sc = counterList.get(i);
-			addItem(SQL_EXEC_COUNT, sc.getSQL(), sc.getExecutions(), request, sc);
+			addItem(SQL_EXEC_COUNT, sc.getFingerprint(), sc.getExecutions(), request, sc);
 		}
 
 		//-- By rows altered/returned
@@ -118,7 +118,7 @@ final public class PerformanceCollector extends PerformanceStore implements IPer
 			max = counterList.size();
 		for(int i = 0; i < max; i++) {
 			StatementStatistics sc = counterList.get(i);
-			addItem(SQL_ROW_COUNT, sc.getSQL(), sc.getRows(), request, sc);
+			addItem(SQL_ROW_COUNT, sc.getFingerprint(), sc.getRows(), request, sc);
 		}
 
 		//-- By fetch time
@@ -128,7 +128,7 @@ final public class PerformanceCollector extends PerformanceStore implements IPer
 			max = counterList.size();
 		for(int i = 0; i < max; i++) {
 			StatementStatistics sc = counterList.get(i);
-			addItem(SQL_FETCH_TIME, sc.getSQL(), sc.getTotalFetchDuration(), request, sc);
+			addItem(SQL_FETCH_TIME, sc.getFingerprint(), sc.getTotalFetchDuration(), request, sc);
 		}
 
 		//-- By execution time
@@ -138,7 +138,7 @@ final public class PerformanceCollector extends PerformanceStore implements IPer
 			max = counterList.size();
 		for(int i = 0; i < max; i++) {
 			StatementStatistics sc = counterList.get(i);
-			addItem(SQL_EXEC_TIME, sc.getSQL(), sc.getTotalExecuteDuration(), request, sc);
+			addItem(SQL_EXEC_TIME, sc.getFingerprint(), sc.getTotalExecuteDuration(), request, sc);
 		}
 
 		//-- By total time
@@ -148,7 +148,7 @@ final public class PerformanceCollector extends PerformanceStore implements IPer
 			max = counterList.size();
 		for(int i = 0; i < max; i++) {
 			StatementStatistics sc = counterList.get(i);
-			addItem(SQL_TOTAL_TIME, sc.getSQL(), sc.getTotalExecuteDuration() + sc.getTotalFetchDuration(), request, sc);
+			addItem(SQL_TOTAL_TIME, sc.getFingerprint(), sc.getTotalExecuteDuration() + sc.getTotalFetchDuration(), request, sc);
 		}
 	}
 }
@@ -0,0 +1,174 @@
+package to.etc.dbpool.info;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reduces a SQL statement to its "shape", so that statements that only differ in their literal
+ * values, whitespace, comments or keyword case are counted as the same statement. String and
+ * numeric literals become ?, whitespace is collapsed, comments are removed and everything outside
+ * quotes is lowercased. A list of parameters like (?, ?, ?) becomes (?+), so that IN lists of
+ * different length get the same fingerprint. An IN list with a single value becomes (?+) too, but
+ * other single parameters in parentheses, like upper(?), are kept.
+ */
+final public class SqlFingerprint {
+	static private final int MAX_CACHED = 5000;
+
+	/** Fingerprints by SQL text; cleared when it gets too big, to protect against applications generating unique SQL. */
+	static private final Map<String, String> m_cache = new ConcurrentHashMap<>();
+
+	private SqlFingerprint() {}
+
+	/**
+	 * Return the fingerprint, using the result of an earlier call for the same SQL if possible.
+	 */
+	@NonNull
+	static public String cached(@NonNull String sql) {
+		String fp = m_cache.get(sql);
+		if(null == fp) {
+			fp = fingerprint(sql);
+			if(m_cache.size() >= MAX_CACHED)
+				m_cache.clear();
+			m_cache.put(sql, fp);
+		}
+		return fp;
+	}
+
+	@NonNull
+	static public String fingerprint(@NonNull String sql) {
+		int len = sql.length();
+		StringBuilder sb = new StringBuilder(len);
+		int ix = 0;
+		boolean space = false;
+		while(ix < len) {
+			char c = sql.charAt(ix);
+			if(Character.isWhitespace(c)) {
+				space = true;
+				ix++;
+				continue;
+			}
+			if(c == '-' && ix + 1 < len && sql.charAt(ix + 1) == '-') {
+				while(ix < len && sql.charAt(ix) != '\n')
+					ix++;
+				space = true;
+				continue;
+			}
+			if(c == '/' && ix + 1 < len && sql.charAt(ix + 1) == '*') {
+				int end = sql.indexOf("*/", ix + 2);
+				ix = end < 0 ? len : end + 2;
+				space = true;
+				continue;
+			}
+			if(space && sb.length() > 0)
+				sb.append(' ');
+			space = false;
+
+			if(c == '\'') {
+				//-- String literal, with '' as an escaped quote
+				ix++;
+				while(ix < len) {
+					if(sql.charAt(ix) == '\'') {
+						if(ix + 1 < len && sql.charAt(ix + 1) == '\'') {
+							ix += 2;
+							continue;
+						}
+						break;
+					}
+					ix++;
+				}
+				ix++;
+				sb.append('?');
+			} else if(c == '"') {
+				//-- Quoted identifier: keep as-is
+				int end = sql.indexOf('"', ix + 1);
+				end = end < 0 ? len : end + 1;
+				sb.append(sql, ix, end);
+				ix = end;
+			} else if(Character.isDigit(c) || (c == '.' && ix + 1 < len && Character.isDigit(sql.charAt(ix + 1)))) {
+				if(sb.length() > 0 && isIdentifierChar(sb.charAt(sb.length() - 1))) {
+					sb.append(c);						// Part of a name like t1
+					ix++;
+				} else {
+					while(ix < len && (Character.isLetterOrDigit(sql.charAt(ix)) || sql.charAt(ix) == '.'))
+						ix++;
+					sb.append('?');
+				}
+			} else if(isIdentifierChar(c)) {
+				while(ix < len && isIdentifierChar(sql.charAt(ix)))
+					sb.append(Character.toLowerCase(sql.charAt(ix++)));
+			} else {
+				sb.append(c);
+				ix++;
+			}
+		}
+		return collapseLists(sb);
+	}
+
+	static private boolean isIdentifierChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+	}
+
+	/**
+	 * Replace every (?, ?, ...) and every in (?) by (?+).
+	 */
+	@NonNull
+	static private String collapseLists(@NonNull StringBuilder sb) {
+		StringBuilder res = new StringBuilder(sb.length());
+		int len = sb.length();
+		int ix = 0;
+		while(ix < len) {
+			char c = sb.charAt(ix);
+			if(c == '(') {
+				int end = scanList(sb, ix + 1, isAfterIn(res));
+				if(end > 0) {
+					res.append("(?+)");
+					ix = end;
+					continue;
+				}
+			}
+			res.append(c);
+			ix++;
+		}
+		return res.toString();
+	}
+
+	/**
+	 * True when the text ends in the keyword "in", optionally followed by a space.
+	 */
+	static private boolean isAfterIn(@NonNull StringBuilder sb) {
+		int end = sb.length();
+		if(end > 0 && sb.charAt(end - 1) == ' ')
+			end--;
+		if(end < 2 || sb.charAt(end - 2) != 'i' || sb.charAt(end - 1) != 'n')
+			return false;
+		return end == 2 || !isIdentifierChar(sb.charAt(end - 3));
+	}
+
+	/**
+	 * If a list of at least two ? (or one when it is an IN list) starts at ix, return the index after
+	 * its closing parenthesis, else -1.
+	 */
+	static private int scanList(@NonNull StringBuilder sb, int ix, boolean inList) {
+		int len = sb.length();
+		int count = 0;
+		for(;;) {
+			while(ix < len && sb.charAt(ix) == ' ')
+				ix++;
+			if(ix >= len || sb.charAt(ix) != '?')
+				return -1;
+			ix++;
+			count++;
+			while(ix < len && sb.charAt(ix) == ' ')
+				ix++;
+			if(ix >= len)
+				return -1;
+			char c = sb.charAt(ix++);
+			if(c == ')')
+				return count > 1 || inList ? ix : -1;
+			if(c != ',')
+				return -1;
+		}
+	}
+}
@@ -1,11 +1,18 @@
 package to.etc.dbpool.info;
 
 /**
- * The statistics for a single SQL statement during the request/response cycle.
+ * The statistics for a single SQL statement during the request/response cycle. Statements that only
+ * differ in their literals are counted together, under their {@link SqlFingerprint}.
  */
 final public class StatementStatistics {
+	final private String m_fingerprint;
+
+	/** The first SQL text seen for the fingerprint. */
 	final private String m_sql;
 
+	/** The execute+fetch time of each execution, in nanos. */
+	final private LatencyHistogram m_histogram = new LatencyHistogram();
+
 	private int m_executions;
 
 	private long m_rows;
@@ -15,7 +22,8 @@ final public class StatementStatistics {
 	/** Total time spent executing all these queries. */
 	private long m_totalExecuteNS;
 
-	StatementStatistics(String sql) {
+	StatementStatistics(String fingerprint, String sql) {
+		m_fingerprint = fingerprint;
 		m_sql = sql;
 	}
 
@@ -23,6 +31,18 @@ final public class StatementStatistics {
 		return m_sql;
 	}
 
+	public String getFingerprint() {
+		return m_fingerprint;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return m_histogram;
+	}
+
+	void addLatency(long dt) {
+		m_histogram.add(dt);
+	}
+
 	void incExecutions() {
 		m_executions++;
 	}
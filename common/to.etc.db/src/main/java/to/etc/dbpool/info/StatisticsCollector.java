@@ -39,8 +39,15 @@ final public class StatisticsCollector extends StatisticsCollectorBase implement
 
 	private final boolean m_collectOraclePerformanceData;
 
+	/** The statistics per statement fingerprint. */
 	private Map<String, StatementStatistics> m_sqlMap = new HashMap<String, StatementStatistics>();
 
+	/** The statistics by SQL text, to skip fingerprinting for repeated statements. */
+	private Map<String, StatementStatistics> m_textMap = new HashMap<String, StatementStatistics>();
+
+	/** Latencies of all statements per pool ID. */
+	private Map<String, LatencyHistogram> m_poolMap = new HashMap<String, LatencyHistogram>();
+
 	final private String m_fullRequestURL;
 
 	private boolean m_disabled;
@@ -73,23 +80,49 @@ final public class StatisticsCollector extends StatisticsCollectorBase implement
 	/*	CODING:	Per-statement counters maintenance....				*/
 	/*--------------------------------------------------------------*/
 	/**
-	 * Add/locate the counter structure for the specified SQL statement.
+	 * Add/locate the counter structure for the specified SQL statement's fingerprint.
 	 * @param sql
 	 * @return
 	 */
 	private StatementStatistics findCounter(final String sql) {
-		StatementStatistics c = m_sqlMap.get(sql);
+		StatementStatistics c = m_textMap.get(sql);
 		if(c == null) {
-			c = new StatementStatistics(sql);
-			m_sqlMap.put(sql, c);
+			String fp = SqlFingerprint.cached(sql);
+			c = m_sqlMap.get(fp);
+			if(c == null) {
+				c = new StatementStatistics(fp, sql);
+				m_sqlMap.put(fp, c);
+			}
+			m_textMap.put(sql, c);
 		}
 		return c;
 	}
 
+	/**
+	 * Return the statistics per statement fingerprint.
+	 */
 	public Map<String, StatementStatistics> getStatementMap() {
 		return m_sqlMap;
 	}
 
+	/**
+	 * Return the latency histogram of all statements, per pool ID.
+	 */
+	public Map<String, LatencyHistogram> getPoolHistograms() {
+		return m_poolMap;
+	}
+
+	private void addLatency(StatementProxy sp, StatementStatistics c, long duration) {
+		c.addLatency(duration);
+		String id = sp.getPoolID();
+		LatencyHistogram h = m_poolMap.get(id);
+		if(h == null) {
+			h = new LatencyHistogram();
+			m_poolMap.put(id, h);
+		}
+		h.add(duration);
+	}
+
 	public List<StatementStatistics>	getCounters() {
 		return new ArrayList<>(m_sqlMap.values());
 	}
@@ -168,6 +201,7 @@ final public class StatisticsCollector extends StatisticsCollectorBase implement
 		c.incRows(rowCount);
 		c.addTotalFetchDuration(fetchDuration);
 		c.addTotalExecuteDuration(executeDuration);
+		addLatency(sp, c, executeDuration + fetchDuration);
 	}
 
 	@Override
@@ -181,6 +215,7 @@ final public class StatisticsCollector extends StatisticsCollectorBase implement
 		c.incExecutions();
 		c.incRows(rowcount);
 		c.addTotalExecuteDuration(updateDuration);
+		addLatency(sp, c, updateDuration);
 	}
 
 	@Override
@@ -194,6 +229,7 @@ final public class StatisticsCollector extends StatisticsCollectorBase implement
 		c.incExecutions();
 		c.incRows(updatedrowcount);
 		c.addTotalExecuteDuration(updateDuration);
+		addLatency(sp, c, updateDuration);
 	}
 
 	@Override
@@ -205,6 +241,7 @@ final public class StatisticsCollector extends StatisticsCollectorBase implement
 		StatementStatistics c = findCounter(sp.getSQL());
 		c.incExecutions();
 		c.addTotalExecuteDuration(updateDuration);
+		addLatency(sp, c, updateDuration);
 	}
 
 
@@ -216,7 +253,8 @@ final public class StatisticsCollector extends StatisticsCollectorBase implement
 
 		/*
 		 * We have no duration per-statement. The only way we can handle individual statements is by
-		 * spreading the execution time over the statements. We assign by using rowcount.
+		 * spreading the execution time over the statements. We assign by using rowcount. As
+		 * there is no real latency per statement the batch is not added to the histograms.
 		 */
 		double totalToGive = executeDuration;
 		double rowsLeft = totalRows;
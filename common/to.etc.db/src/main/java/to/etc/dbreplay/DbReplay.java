@@ -1,16 +1,12 @@
 package to.etc.dbreplay;
 
-import org.eclipse.jdt.annotation.Nullable;
 import to.etc.dbpool.ConnectionPool;
 import to.etc.dbpool.DbPoolUtil;
 import to.etc.dbpool.PoolManager;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.text.DateFormat;
@@ -32,8 +28,17 @@ public class DbReplay {
 
 	private File m_driverPath;
 
-	/** The buffered input file containing statements. */
-	private BufferedInputStream m_bis;
+	/** Decodes the input files in parallel. */
+	private ParallelLogReader m_reader;
+
+	/** The files to read: the log file, or all segments of a segmented log in order. */
+	private List<File> m_inputFiles = new ArrayList<File>();
+
+	/** The #of threads decoding the input, set by -threads. */
+	private int m_readerThreads = Runtime.getRuntime().availableProcessors();
+
+	/** The #of statements to report in the analysis, set by -top. */
+	private int m_topCount = 25;
 
 	private long m_firstTime;
 
@@ -71,7 +76,7 @@ public class DbReplay {
 	private IReplayer m_replayer;
 
 	private enum XType {
-		DUMP, RUN
+		DUMP, RUN, ANALYZE
 	}
 
 	private void run(String[] args) throws Exception {
@@ -90,10 +95,13 @@ public class DbReplay {
 				case RUN:
 					runEmulation();
 					break;
+				case ANALYZE:
+					runAnalysis();
+					break;
 			}
 		} catch(Exception x) {
 			System.err.println("Error: " + x);
-			System.err.println("   -at record " + m_recordNumber + ", file offset " + m_fileOffset);
+			System.err.println("   -at record " + m_recordNumber);
 			x.printStackTrace();
 		} finally {
 			releaseAll();
@@ -126,13 +134,32 @@ public class DbReplay {
 	}
 
 
+	/**
+	 * Analyze the log without executing anything.
+	 */
+	private void runAnalysis() throws Exception {
+		LogAnalyzer la = new LogAnalyzer(m_topCount);
+		m_startTime = System.currentTimeMillis();
+		for(; ; ) {
+			ReplayRecord rr = m_reader.next();
+			if(null == rr)
+				break;
+			m_recordNumber++;
+			la.add(rr);
+		}
+		m_endTime = System.currentTimeMillis();
+		la.report(System.out);
+		System.out.println();
+		System.out.println("Read " + DbPoolUtil.strCommad(m_reader.getTotalBytes()) + " bytes in " + DbPoolUtil.strMillis(m_endTime - m_startTime));
+	}
+
 	private void runEmulation() throws Exception {
 		initialize();
 
 		//-- Input distributor loop.
 		m_startTime = System.currentTimeMillis();
 		for(; ; ) {
-			ReplayRecord rr = ReplayRecord.readRecord(this);
+			ReplayRecord rr = m_reader.next();
 			if(null == rr)
 				break;
 			if(m_recordNumber == 0) {
@@ -149,7 +176,7 @@ public class DbReplay {
 		}
 
 		m_endTime = System.currentTimeMillis();
-		System.out.println("Normal EOF after " + m_recordNumber + " records and " + m_fileOffset + " file bytes");
+		System.out.println("Normal EOF after " + m_recordNumber + " records and " + m_reader.getTotalBytes() + " file bytes");
 		Date st = new Date(m_firstTime);
 		Date et = new Date(m_lastRecordTime);
 		DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -171,6 +198,16 @@ public class DbReplay {
 						throw new IllegalArgumentException(m_poolFile + ": file not found");
 				} else if("-dump".equals(s)) {
 					m_runType = XType.DUMP;
+				} else if("-analyze".equals(s)) {
+					m_runType = XType.ANALYZE;
+				} else if("-top".equals(s)) {
+					if(argc >= args.length)
+						throw new IllegalArgumentException("Missing count after -top");
+					m_topCount = Integer.parseInt(args[argc++]);
+				} else if("-threads".equals(s)) {
+					if(argc >= args.length)
+						throw new IllegalArgumentException("Missing count after -threads");
+					m_readerThreads = Integer.parseInt(args[argc++]);
 				} else if("-schema".equals(s)) {
 					if(argc >= args.length)
 						throw new IllegalArgumentException("Missing name after -schema");
@@ -206,8 +243,9 @@ public class DbReplay {
 			} else {
 				if(m_inputFile == null) {
 					m_inputFile = new File(s);
-					if(!m_inputFile.exists() || !m_inputFile.isFile())
-						throw new Exception(m_inputFile + ": file does not exist or is not a file.");
+					m_inputFiles = findInputFiles(m_inputFile);
+					if(m_inputFiles.isEmpty())
+						throw new Exception(m_inputFile + ": file does not exist or is not a file, and no log segments of that name were found.");
 				} else if(m_poolId == null) {
 					m_poolId = s;
 				} else {
@@ -221,7 +259,7 @@ public class DbReplay {
 			usage("Missing input file name");
 			return false;
 		}
-		if(m_poolId == null && m_dbHost == null) {
+		if(m_poolId == null && m_dbHost == null && m_runType != XType.ANALYZE) {
 			usage("Missing pool ID or database (-db) specification");
 			return false;
 		}
@@ -263,6 +301,10 @@ public class DbReplay {
 			//
 			+ "-db [userid:password@host/sid]: shorthand to connect to this specific database.\n" //
 			+ "-driver|-dp [path]: path to the Oracle driver .jar file, if not present on the classpath\n" //
+			+ "-threads n: the #of threads decoding the input file (default: #of processors)\n" //
+			+ "\n** analysis options **\n" //
+			+ "-analyze: only analyze the log, without a database: statement counts and latencies, connection concurrency and the slowest statements\n" //
+			+ "-top n: the #of statements to report in the analysis (default 25)\n" //
 			+ "\n** replay options **\n" //
 			+ "-maxwait [milliseconds]: set the max time to wait between successive statements to a #of milliseconds. This ignores the real times that statements were sent to the database.\n"
 			+ "-log: create a log of statements in dbreplay.log\n" //
@@ -282,12 +324,10 @@ public class DbReplay {
 			m_log = null;
 		}
 
-		try {
-			if(m_bis != null)
-				m_bis.close();
-			m_bis = null;
-		} catch(Exception x) {
-			System.err.println("term: cannot close input file: " + x);
+		ParallelLogReader reader = m_reader;
+		if(null != reader) {
+			reader.close();
+			m_reader = null;
 		}
 
 		try {
@@ -306,7 +346,31 @@ public class DbReplay {
 	}
 
 	private void openSource() throws Exception {
-		m_bis = new BufferedInputStream(new FileInputStream(m_inputFile), 65536);
+		m_reader = new ParallelLogReader(m_inputFiles, m_readerThreads);
+	}
+
+	/**
+	 * If the file exists it is the log; if not, the log might have been written as memory-mapped segments
+	 * named file.000001, file.000002 etc, which are then returned in order.
+	 */
+	static List<File> findInputFiles(File file) {
+		List<File> res = new ArrayList<File>();
+		if(file.isFile()) {
+			res.add(file);
+			return res;
+		}
+		File dir = file.getAbsoluteFile().getParentFile();
+		String prefix = file.getName() + ".";
+		File[] ar = dir == null ? null : dir.listFiles();
+		if(null == ar)
+			return res;
+		for(File f : ar) {
+			String name = f.getName();
+			if(f.isFile() && name.startsWith(prefix) && name.length() == prefix.length() + 6 && name.substring(prefix.length()).chars().allMatch(Character::isDigit))
+				res.add(f);
+		}
+		res.sort((a, b) -> a.getName().compareTo(b.getName()));
+		return res;
 	}
 
 	private void initialize() throws Exception {
@@ -331,72 +395,8 @@ public class DbReplay {
 	}
 
 
-	/*--------------------------------------------------------------*/
-	/*	CODING:	Accessing the data stream.							*/
-	/*--------------------------------------------------------------*/
-
-	private long m_fileOffset;
-
 	private int m_recordNumber;
 
-	/**
-	 *
-	 * @param is
-	 * @return
-	 * @throws Exception
-	 */
-	@Nullable
-	public String readString() throws Exception {
-		int len = readInt();
-		if(len < 0)
-			return null;
-		byte[] data = new byte[len];
-		int szrd = m_bis.read(data);
-		if(szrd != len)
-			throw new IOException("Unexpected EOF: got " + szrd + " bytes but needed " + len);
-		m_fileOffset += len;
-		return new String(data, "utf-8");
-	}
-
-
-	public long readLong() throws Exception {
-		long a = (readInt() & 0xffffffffl);
-		long b = (readInt() & 0xffffffffl);
-		return (a << 32) | b;
-	}
-
-	public int readInt() throws Exception {
-		int v = m_bis.read();
-		if(v == -1)
-			throw new EofException();
-		int r = v << 24;
-
-		v = m_bis.read();
-		if(v == -1)
-			throw new EofException();
-		r |= v << 16;
-
-		v = m_bis.read();
-		if(v == -1)
-			throw new EofException();
-		r |= v << 8;
-
-		v = m_bis.read();
-		if(v == -1)
-			throw new EofException();
-		r |= v;
-
-		m_fileOffset += 4;
-		return r;
-	}
-
-	public int readByte() throws Exception {
-		int b = m_bis.read();
-		if(-1 == b)
-			throw new EofException();
-		return b;
-	}
-
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Execution framework.								*/
 	/*--------------------------------------------------------------*/
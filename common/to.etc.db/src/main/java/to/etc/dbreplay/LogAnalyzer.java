@@ -0,0 +1,206 @@
+package to.etc.dbreplay;
+
+import org.eclipse.jdt.annotation.NonNull;
+import to.etc.dbpool.DbPoolUtil;
+import to.etc.dbpool.StatementProxy;
+import to.etc.dbpool.info.LatencyHistogram;
+import to.etc.dbpool.info.SqlFingerprint;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Offline analysis of a statement log, without a database. It reports per statement fingerprint the
+ * #of executions and the distribution of their latency, the connection concurrency per minute and
+ * the slowest statements.
+ *
+ * <p>The log only contains the time a statement was sent, not how long it took. The latency of a
+ * statement is therefore estimated as the time until the next record on the same connection, which
+ * includes the time the application spent between the two; it is an upper bound.</p>
+ */
+final class LogAnalyzer {
+	static private final long MINUTE = 60 * 1000;
+
+	private final int m_topCount;
+
+	/** The last statement per connection that has not yet been followed by another record. */
+	@NonNull
+	private final Map<Integer, ReplayRecord> m_pendingMap = new HashMap<>();
+
+	/** All connections seen and not yet closed. */
+	@NonNull
+	private final Set<Integer> m_openSet = new HashSet<>();
+
+	@NonNull
+	private final Map<String, Stats> m_statsMap = new HashMap<>();
+
+	/** Per minute: max #of open connections, #of distinct connections used, #of records. */
+	@NonNull
+	private final TreeMap<Long, Minute> m_minuteMap = new TreeMap<>();
+
+	@NonNull
+	private final PriorityQueue<Slow> m_slowest = new PriorityQueue<>((a, b) -> Long.compare(a.m_duration, b.m_duration));
+
+	@NonNull
+	private final Map<String, String> m_fingerprintCache = new HashMap<>();
+
+	private long m_recordCount;
+
+	private long m_firstTime;
+
+	private long m_lastTime;
+
+	static private final class Stats {
+		@NonNull
+		final String m_fingerprint;
+
+		@NonNull
+		final LatencyHistogram m_histogram = new LatencyHistogram();
+
+		long m_count;
+
+		Stats(@NonNull String fingerprint) {
+			m_fingerprint = fingerprint;
+		}
+	}
+
+	static private final class Minute {
+		int m_maxOpen;
+
+		@NonNull
+		final Set<Integer> m_usedSet = new HashSet<>();
+
+		long m_records;
+	}
+
+	static private final class Slow {
+		final long m_duration;
+
+		@NonNull
+		final ReplayRecord m_record;
+
+		Slow(long duration, @NonNull ReplayRecord record) {
+			m_duration = duration;
+			m_record = record;
+		}
+	}
+
+	LogAnalyzer(int topCount) {
+		m_topCount = topCount;
+	}
+
+	public void add(@NonNull ReplayRecord rr) {
+		long time = rr.getStatementTime();
+		if(m_recordCount++ == 0)
+			m_firstTime = time;
+		m_lastTime = time;
+		Integer conn = Integer.valueOf(rr.getConnectionId());
+
+		//-- Any earlier statement on this connection has now completed.
+		ReplayRecord prev = m_pendingMap.remove(conn);
+		if(null != prev)
+			completed(prev, time - prev.getStatementTime());
+
+		String sql = rr.getSql();
+		if(null != sql) {
+			Stats st = getStats(sql);
+			st.m_count++;
+			m_pendingMap.put(conn, rr);
+		}
+
+		if(rr.getType() == StatementProxy.ST_CLOSE)
+			m_openSet.remove(conn);
+		else
+			m_openSet.add(conn);
+
+		Minute m = m_minuteMap.computeIfAbsent(Long.valueOf(time / MINUTE), a -> new Minute());
+		m.m_records++;
+		m.m_usedSet.add(conn);
+		if(m_openSet.size() > m.m_maxOpen)
+			m.m_maxOpen = m_openSet.size();
+	}
+
+	@NonNull
+	private Stats getStats(@NonNull String sql) {
+		String fp = m_fingerprintCache.get(sql);
+		if(null == fp) {
+			fp = SqlFingerprint.fingerprint(sql);
+			if(m_fingerprintCache.size() > 100000)
+				m_fingerprintCache.clear();
+			m_fingerprintCache.put(sql, fp);
+		}
+		String key = fp;
+		return m_statsMap.computeIfAbsent(key, a -> new Stats(key));
+	}
+
+	private void completed(@NonNull ReplayRecord rr, long duration) {
+		String sql = rr.getSql();
+		if(null == sql)
+			return;
+		getStats(sql).m_histogram.add(duration);
+		if(m_topCount <= 0)
+			return;
+		if(m_slowest.size() < m_topCount)
+			m_slowest.add(new Slow(duration, rr));
+		else {
+			Slow least = m_slowest.peek();
+			if(null != least && least.m_duration < duration) {
+				m_slowest.poll();
+				m_slowest.add(new Slow(duration, rr));
+			}
+		}
+	}
+
+	public void report(@NonNull PrintStream ps) {
+		ps.println("Analyzed " + DbPoolUtil.strCommad(m_recordCount) + " records from " + DbReplay.format(new Date(m_firstTime)) + " till " + DbReplay.format(new Date(m_lastTime))
+			+ ", " + DbPoolUtil.strMillis(m_lastTime - m_firstTime));
+		ps.println("Latencies are estimated as the time until the next record on the same connection, in milliseconds.");
+
+		//-- Statements by total time
+		List<Stats> list = new ArrayList<>(m_statsMap.values());
+		list.sort((a, b) -> Long.compare(b.m_histogram.getTotal(), a.m_histogram.getTotal()));
+		ps.println();
+		ps.println("** Statements by total estimated time (" + list.size() + " distinct)");
+		ps.println(String.format("%10s %12s %8s %8s %8s %8s %8s  %s", "count", "total", "mean", "p50", "p90", "p99", "max", "statement"));
+		int n = 0;
+		for(Stats st : list) {
+			if(m_topCount > 0 && n++ >= m_topCount)
+				break;
+			LatencyHistogram h = st.m_histogram;
+			ps.println(String.format("%10d %12d %8d %8d %8d %8d %8d  %s", Long.valueOf(st.m_count), Long.valueOf(h.getTotal()), Long.valueOf(h.getMean()), Long.valueOf(h.getPercentile(0.5)),
+				Long.valueOf(h.getPercentile(0.9)), Long.valueOf(h.getPercentile(0.99)), Long.valueOf(h.getMax()), st.m_fingerprint));
+		}
+
+		//-- Concurrency
+		ps.println();
+		ps.println("** Connection concurrency per minute");
+		ps.println(String.format("%-19s %8s %8s %10s", "minute", "open", "used", "records"));
+		for(Map.Entry<Long, Minute> me : m_minuteMap.entrySet()) {
+			Minute m = me.getValue();
+			ps.println(String.format("%-19s %8d %8d %10d", DbReplay.format(new Date(me.getKey().longValue() * MINUTE)), Integer.valueOf(m.m_maxOpen), Integer.valueOf(m.m_usedSet.size()),
+				Long.valueOf(m.m_records)));
+		}
+
+		//-- Slowest statements
+		List<Slow> slow = new ArrayList<>(m_slowest);
+		slow.sort((a, b) -> Long.compare(b.m_duration, a.m_duration));
+		ps.println();
+		ps.println("** " + slow.size() + " slowest statements");
+		for(Slow s : slow) {
+			ps.println(String.format("%8d  %s", Long.valueOf(s.m_duration), s.m_record.getSummary()));
+		}
+	}
+
+	long getCount(@NonNull String fingerprint) {
+		Stats st = m_statsMap.get(fingerprint);
+		return st == null ? 0 : st.m_count;
+	}
+}
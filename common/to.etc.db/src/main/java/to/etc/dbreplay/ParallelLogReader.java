@@ -0,0 +1,196 @@
+package to.etc.dbreplay;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import to.etc.dbpool.ConnectionPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a statement log by memory-mapping it and decoding fixed-size chunks of it in parallel,
+ * while still returning the records in log order. A chunk owns every record whose start marker lies
+ * inside it; a worker that starts in the middle of the file first searches for the next start marker
+ * and checks that a valid record follows it, and a record that extends past the end of its chunk is
+ * decoded completely by the chunk it started in.
+ *
+ * <p>Only a bounded number of chunks is decoded ahead of the consumer, so memory use does not
+ * depend on the size of the log.</p>
+ */
+final class ParallelLogReader implements AutoCloseable {
+	static private final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+	/** The part of a file mapped for one chunk: records starting in the chunk may extend this far past it. */
+	static private final long MAX_MAPPED = Integer.MAX_VALUE;
+
+	static private final long MAGIC = ConnectionPool.STMT_START_MAGIC;
+
+	@NonNull
+	private final List<Chunk> m_chunkList = new ArrayList<>();
+
+	@NonNull
+	private final ExecutorService m_executor;
+
+	@NonNull
+	private final ArrayDeque<Future<List<ReplayRecord>>> m_pending = new ArrayDeque<>();
+
+	/** The max #of chunks decoded ahead of the consumer. */
+	private final int m_lookAhead;
+
+	private int m_nextChunk;
+
+	@NonNull
+	private List<ReplayRecord> m_current = Collections.emptyList();
+
+	private int m_currentIndex;
+
+	private long m_totalBytes;
+
+	static private final class Chunk {
+		@NonNull
+		final File m_file;
+
+		final long m_start;
+
+		final long m_end;
+
+		Chunk(@NonNull File file, long start, long end) {
+			m_file = file;
+			m_start = start;
+			m_end = end;
+		}
+	}
+
+	ParallelLogReader(@NonNull List<File> files, int threads) {
+		this(files, threads, CHUNK_SIZE);
+	}
+
+	ParallelLogReader(@NonNull List<File> files, int threads, long chunkSize) {
+		if(threads < 1)
+			threads = 1;
+		for(File f : files) {
+			long size = f.length();
+			m_totalBytes += size;
+			for(long start = 0; start < size; start += chunkSize)
+				m_chunkList.add(new Chunk(f, start, Math.min(size, start + chunkSize)));
+		}
+		m_lookAhead = threads * 2;
+		m_executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r);
+			t.setName("logreader");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * The total size of the input files.
+	 */
+	public long getTotalBytes() {
+		return m_totalBytes;
+	}
+
+	/**
+	 * Return the next record in log order, or null at the end of the log.
+	 */
+	@Nullable
+	public ReplayRecord next() throws Exception {
+		while(m_currentIndex >= m_current.size()) {
+			while(m_pending.size() < m_lookAhead && m_nextChunk < m_chunkList.size()) {
+				Chunk c = m_chunkList.get(m_nextChunk++);
+				m_pending.add(m_executor.submit(() -> decodeChunk(c)));
+			}
+			Future<List<ReplayRecord>> f = m_pending.poll();
+			if(null == f)
+				return null;
+			try {
+				m_current = f.get();
+			} catch(ExecutionException x) {
+				Throwable cause = x.getCause();
+				if(cause instanceof Exception)
+					throw (Exception) cause;
+				throw x;
+			}
+			m_currentIndex = 0;
+		}
+		return m_current.get(m_currentIndex++);
+	}
+
+	@Override
+	public void close() {
+		m_executor.shutdownNow();
+		m_pending.clear();
+	}
+
+	/**
+	 * Decode all records that start inside the chunk.
+	 */
+	@NonNull
+	static List<ReplayRecord> decodeChunk(@NonNull Chunk c) throws Exception {
+		List<ReplayRecord> res = new ArrayList<>();
+		try(RandomAccessFile raf = new RandomAccessFile(c.m_file, "r"); FileChannel fc = raf.getChannel()) {
+			long size = fc.size();
+			long len = Math.min(size - c.m_start, MAX_MAPPED);
+			if(len <= 0)
+				return res;
+			MappedByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, c.m_start, len);
+			int end = (int) (c.m_end - c.m_start);				// Records must start before this
+			int pos = c.m_start == 0 ? 0 : findRecordStart(bb, end);
+			if(pos < 0)
+				return res;
+			while(pos < end && pos + 8 <= bb.limit()) {
+				long magic = bb.getLong(pos);
+				if(magic == 0)
+					break;								// Unused end of a log segment
+				if(magic != MAGIC)
+					throw new IOException(c.m_file + ": invalid/missing record start marker at file offset " + (c.m_start + pos));
+				bb.position(pos + 8);
+				try {
+					res.add(ReplayRecord.decode(bb));
+				} catch(BufferUnderflowException | EofException x) {
+					break;								// Truncated last record
+				}
+				pos = bb.position();
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Find the first record start before the chunk end: a start marker that is followed by a record
+	 * that decodes, which itself is followed by another marker, unused space or the end of the file.
+	 */
+	static private int findRecordStart(@NonNull ByteBuffer bb, int end) {
+		int limit = Math.min(end, bb.limit() - 7);
+		for(int pos = 0; pos < limit; pos++) {
+			if(bb.getLong(pos) != MAGIC)
+				continue;
+			try {
+				bb.position(pos + 8);
+				ReplayRecord.decode(bb);
+				int next = bb.position();
+				if(next + 8 > bb.limit())
+					return pos;
+				long magic = bb.getLong(next);
+				if(magic == MAGIC || magic == 0)
+					return pos;
+			} catch(Exception x) {
+				//-- Not a real record start; continue scanning.
+			}
+		}
+		return -1;
+	}
+}
@@ -1,11 +1,13 @@
 package to.etc.dbreplay;
 
 import org.eclipse.jdt.annotation.NonNull;
-import to.etc.dbpool.ConnectionPool;
+import org.eclipse.jdt.annotation.Nullable;
 import to.etc.dbpool.StatementProxy;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.Timestamp;
@@ -17,16 +19,14 @@ import java.sql.Timestamp;
  * Created on Aug 31, 2011
  */
 class ReplayRecord {
-	static public ReplayRecord readRecord(@NonNull DbReplay r) throws Exception {
-		try {
-			long magic = r.readLong();
-			if(magic != ConnectionPool.STMT_START_MAGIC)
-				throw new IOException("Invalid/missing record start marker");
-		} catch(EofException x) {
-			return null;
-		}
+	/**
+	 * Decode the record that starts at the buffer's position, just after its start marker. The buffer's
+	 * position is moved past the record.
+	 */
+	@NonNull
+	static ReplayRecord decode(@NonNull ByteBuffer bb) throws Exception {
 		ReplayRecord rr = new ReplayRecord();
-		rr.load(r);
+		rr.load(bb);
 		return rr;
 	}
 
@@ -48,15 +48,13 @@ class ReplayRecord {
 
 	/**
 	 * Load the entire record.
-	 * @param bis
-	 * @throws Exception
 	 */
-	private void load(@NonNull DbReplay r) throws Exception {
+	private void load(@NonNull ByteBuffer r) throws Exception {
 		//-- Read the fixed header.
-		int type = r.readByte(); // The record/statement type.
+		int type = r.get() & 0xff; // The record/statement type.
 		m_type = type;
-		m_statementTime = r.readLong();
-		m_connectionId = r.readInt();
+		m_statementTime = r.getLong();
+		m_connectionId = r.getInt();
 
 		//-- Short frame?
 		switch(m_type){
@@ -67,14 +65,14 @@ class ReplayRecord {
 		}
 
 		//-- Long frame containing a statement. Get it,
-		m_sql = r.readString();
-		m_paramCount = r.readInt();
+		m_sql = readString(r);
+		m_paramCount = r.getInt();
 		if(m_paramCount < 0) // bugfix: log format sometimes contained -1 as param count.
 			m_paramCount = 0;
 		m_parameterAr = new Object[m_paramCount];
 		m_parameterType = new int[m_paramCount];
 		for(int i = 0; i < m_parameterAr.length; i++) {
-			int ptype = r.readByte();
+			int ptype = r.get() & 0xff;
 			m_parameterAr[i] = readParameter(r, ptype);
 			m_parameterType[i] = ptype;
 		}
@@ -83,35 +81,47 @@ class ReplayRecord {
 			m_unexecutable = true;
 	}
 
-	private Object readParameter(DbReplay r, int type) throws Exception {
+	private Object readParameter(ByteBuffer r, int type) throws Exception {
 		switch(type){
 			default:
 				throw new IOException("Input: unexpected parameter type: " + type + " (" + (char) type + ")");
 			case '0':
 				return null;
 			case 'i':
-				return Integer.valueOf(r.readInt());
+				return Integer.valueOf(r.getInt());
 			case 'l':
-				return Long.valueOf(r.readLong());
+				return Long.valueOf(r.getLong());
 			case 'B':
-				return new BigDecimal(r.readString());
+				return new BigDecimal(readString(r));
 			case 'd':
-				return Double.valueOf(r.readString());
+				return Double.valueOf(readString(r));
 			case 'f':
-				return Float.valueOf(r.readString());
+				return Float.valueOf(readString(r));
 			case '$':
-				return r.readString();
+				return readString(r);
 			case 'T':
-				long ts = r.readLong();
+				long ts = r.getLong();
 				return new Timestamp(ts);
 			case '?':
-				String name = r.readString();
+				String name = readString(r);
 				System.out.println("Unknown parameter type " + name + " in statement - marked as unexecutable");
 				m_unexecutable = true;
 				return null;
 		}
 	}
 
+	@Nullable
+	static private String readString(@NonNull ByteBuffer r) throws IOException {
+		int len = r.getInt();
+		if(len < 0)
+			return null;
+		if(len > r.remaining())
+			throw new EofException();
+		byte[] data = new byte[len];
+		r.get(data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+
 	public void assignParameter(PreparedStatement ps, int index) throws Exception {
 		Object v = m_parameterAr[index];
 		switch(m_parameterType[index]){
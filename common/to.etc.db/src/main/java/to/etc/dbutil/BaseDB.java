@@ -26,6 +26,7 @@ package to.etc.dbutil;
 
 import java.io.*;
 import java.sql.*;
+import java.util.List;
 
 
 abstract public class BaseDB {
@@ -330,6 +331,19 @@ abstract public class BaseDB {
 		return false;
 	}
 
+	/**
+	 * Rewrite a select statement so that the database itself skips the first "start" rows and returns
+	 * at most "limit" rows after them. A start of 0 or a limit &lt;= 0 means "no offset" and "no limit".
+	 * This returns null if this database has no known syntax for it; the caller must then skip and
+	 * limit the rows while reading the result.
+	 * <p>The columns are the names of the result columns of the statement, or null when these are not
+	 * known (for instance for function results). Databases that must wrap the statement in another
+	 * select use them so that the result has exactly the columns of the original statement.</p>
+	 */
+	public String getLimitedSQL(String sql, List<String> columns, int start, int limit) {
+		return null;
+	}
+
 	protected void setBlob(Connection dbc, String table, String column, String where, byte[][] data) throws SQLException {
 		InputStream is = null;
 		int len = 0;
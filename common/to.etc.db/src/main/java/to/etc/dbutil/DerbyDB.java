@@ -0,0 +1,52 @@
+/*
+ * DomUI Java User Interface - shared code
+ * Copyright (c) 2010 by Frits Jalvingh, Itris B.V.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * See the "sponsors" file for a list of supporters.
+ *
+ * The latest version of DomUI and related code, support and documentation
+ * can be found at http://www.domui.org/
+ * The contact for the project is Frits Jalvingh <jal@etc.to>.
+ */
+package to.etc.dbutil;
+
+import java.util.List;
+
+/**
+ * Apache Derby. Only the parts that differ from the generic implementation are defined here.
+ */
+public class DerbyDB extends UnknownDB {
+	public DerbyDB() {
+		super("derby");
+	}
+
+	@Override
+	protected String getCheckString() {
+		return "values 1";
+	}
+
+	@Override
+	public String getLimitedSQL(String sql, List<String> columns, int start, int limit) {
+		StringBuilder sb = new StringBuilder(sql.length() + 48);
+		sb.append(sql);
+		if(start > 0)
+			sb.append(" offset ").append(start).append(" rows");
+		if(limit > 0)
+			sb.append(" fetch next ").append(limit).append(" rows only");
+		return sb.toString();
+	}
+}
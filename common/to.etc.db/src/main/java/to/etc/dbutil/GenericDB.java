@@ -65,6 +65,8 @@ public class GenericDB {
 
 	static public final BaseDB dbtypePOSTGRESQL = new PostgresDB();
 
+	static public final BaseDB dbtypeDERBY = new DerbyDB();
+
 	//	private static BaseDB[]	DATABASES;
 
 	/*
@@ -107,6 +109,8 @@ public class GenericDB {
 			return GenericDB.dbtypePOSTGRESQL;
 		else if(dn.indexOf("orac") != -1)
 			return GenericDB.dbtypeORACLE;
+		else if(dn.indexOf("derby") != -1)
+			return GenericDB.dbtypeDERBY;
 		return GenericDB.dbtypeUNKNOWN;
 	}
 
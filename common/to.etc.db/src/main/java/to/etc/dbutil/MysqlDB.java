@@ -26,6 +26,7 @@ package to.etc.dbutil;
 
 import java.io.*;
 import java.sql.*;
+import java.util.List;
 
 public class MysqlDB extends BaseDB {
 	public MysqlDB() {
@@ -41,6 +42,19 @@ public class MysqlDB extends BaseDB {
 		return "select 1";
 	}
 
+	@Override
+	public String getLimitedSQL(String sql, List<String> columns, int start, int limit) {
+		StringBuilder sb = new StringBuilder(sql.length() + 40);
+		sb.append(sql).append(" limit ");
+		if(start > 0)
+			sb.append(start).append(", ");
+		if(limit > 0)
+			sb.append(limit);
+		else
+			sb.append("18446744073709551615");				// MySQL has no offset without a limit: use the max
+		return sb.toString();
+	}
+
 
 	/**
 	 * Uses mysql specific code to create a sequence number from a sequence
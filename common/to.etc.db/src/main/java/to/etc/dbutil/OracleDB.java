@@ -67,6 +67,40 @@ public class OracleDB extends BaseDB {
 		return "select 1 from dual";
 	}
 
+	/**
+	 * Uses the rownum construct, as "offset .. fetch" is only available from Oracle 12. Skipping rows
+	 * needs the row number as an extra column in a subquery; the outer select then lists the original
+	 * columns so that the row number is not part of the result. If the column names are not known, or
+	 * are not unique, this returns null and the rows are skipped while reading.
+	 */
+	@Override
+	public String getLimitedSQL(String sql, List<String> columns, int start, int limit) {
+		StringBuilder sb = new StringBuilder(sql.length() + 100);
+		if(start <= 0) {
+			if(limit <= 0)
+				return sql;
+			sb.append("select * from (").append(sql).append(") where rownum <= ").append(limit);
+			return sb.toString();
+		}
+		if(null == columns || columns.isEmpty())
+			return null;
+		Set<String> names = new HashSet<>();
+		sb.append("select ");
+		for(int i = 0; i < columns.size(); i++) {
+			String name = columns.get(i);
+			if(!names.add(name.toLowerCase()))
+				return null;
+			if(i > 0)
+				sb.append(",");
+			sb.append(name);
+		}
+		sb.append(" from (select q_.*, rownum rnum_ from (").append(sql).append(") q_");
+		if(limit > 0)
+			sb.append(" where rownum <= ").append(start + limit);
+		sb.append(") where rnum_ > ").append(start);
+		return sb.toString();
+	}
+
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Sequences.											*/
 	/*--------------------------------------------------------------*/
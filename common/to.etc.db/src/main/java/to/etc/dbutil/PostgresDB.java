@@ -26,6 +26,7 @@ package to.etc.dbutil;
 
 import java.io.*;
 import java.sql.*;
+import java.util.List;
 
 import to.etc.dbpool.*;
 
@@ -43,6 +44,17 @@ public class PostgresDB extends BaseDB {
 		return "select 1";
 	}
 
+	@Override
+	public String getLimitedSQL(String sql, List<String> columns, int start, int limit) {
+		StringBuilder sb = new StringBuilder(sql.length() + 32);
+		sb.append(sql);
+		if(limit > 0)
+			sb.append(" limit ").append(limit);
+		if(start > 0)
+			sb.append(" offset ").append(start);
+		return sb.toString();
+	}
+
 
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Sequences.											*/
@@ -32,6 +32,10 @@ public class UnknownDB extends BaseDB {
 		super("unknown");
 	}
 
+	protected UnknownDB(String name) {
+		super(name);
+	}
+
 	/**
 	 * Returns a SQL statement that is the cheapest way to check the validity of a connection.
 	 * @return
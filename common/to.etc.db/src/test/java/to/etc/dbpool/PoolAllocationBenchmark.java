@@ -0,0 +1,66 @@
+package to.etc.dbpool;
+
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the throughput of the locked and the lock-free allocation mode of the pool for
+ * an increasing #of threads, using the fake driver from {@link TestPoolAllocation}. Each
+ * thread allocates and closes a connection in a tight loop, so this measures the pool's
+ * own overhead only. Run from the IDE; it is not a unit test.
+ */
+public class PoolAllocationBenchmark {
+	static private final int MAX_CONNS = 16;
+
+	static private final long RUN_MILLIS = 3000;
+
+	public static void main(String[] args) throws Exception {
+		ConnectionPool locked = TestPoolAllocation.createPool("bench-locked", false, MAX_CONNS);
+		ConnectionPool lockFree = TestPoolAllocation.createPool("bench-lockfree", true, MAX_CONNS);
+
+		//-- Warm up both
+		run(locked, 8);
+		run(lockFree, 8);
+
+		for(int threads : new int[]{8, 16, 32, 64}) {
+			double l = run(locked, threads);
+			double f = run(lockFree, threads);
+			System.out.println(String.format("threads=%2d: locked %,12.0f allocs/s, lock-free %,12.0f allocs/s (%.2fx)", threads, l, f, f / l));
+		}
+		System.exit(0);
+	}
+
+	static private double run(ConnectionPool pool, int threads) throws Exception {
+		long[] counts = new long[threads];
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		long end[] = new long[1];
+		for(int t = 0; t < threads; t++) {
+			int index = t;
+			new Thread(() -> {
+				try {
+					start.await();
+					long n = 0;
+					while(System.currentTimeMillis() < end[0]) {
+						Connection dbc = pool.getPooledDataSource().getConnection();
+						dbc.close();
+						n++;
+					}
+					counts[index] = n;
+				} catch(Exception x) {
+					x.printStackTrace();
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		long ts = System.currentTimeMillis();
+		end[0] = ts + RUN_MILLIS;
+		start.countDown();
+		done.await();
+		long total = 0;
+		for(long n : counts)
+			total += n;
+		return total * 1000.0 / (System.currentTimeMillis() - ts);
+	}
+}
@@ -0,0 +1,229 @@
+package to.etc.dbpool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Runs many threads against a pool backed by a fake driver, in both the locked and the lock-free
+ * allocation mode, and checks that no more connections are used than allowed and that all counts
+ * balance afterwards.
+ */
+public class TestPoolAllocation {
+	static private final int MAX_CONNS = 4;
+
+	@Test
+	public void testLockedAllocation() throws Exception {
+		runAllocations("test-locked", false);
+	}
+
+	@Test
+	public void testLockFreeAllocation() throws Exception {
+		runAllocations("test-lockfree", true);
+	}
+
+	private void runAllocations(String id, boolean lockFree) throws Exception {
+		ConnectionPool pool = createPool(id, lockFree, MAX_CONNS);
+		AtomicInteger inUse = new AtomicInteger();
+		AtomicInteger maxInUse = new AtomicInteger();
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		int threads = 16;
+		CountDownLatch done = new CountDownLatch(threads);
+		for(int t = 0; t < threads; t++) {
+			new Thread(() -> {
+				try {
+					for(int i = 0; i < 500; i++) {
+						Connection dbc = pool.getPooledDataSource().getConnection();
+						try {
+							int now = inUse.incrementAndGet();
+							maxInUse.accumulateAndGet(now, Math::max);
+							if((i & 7) == 0)
+								Thread.yield();
+							inUse.decrementAndGet();
+						} finally {
+							dbc.close();
+						}
+					}
+				} catch(Throwable x) {
+					error.compareAndSet(null, x);
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+		Throwable x = error.get();
+		if(null != x)
+			throw new AssertionError("Allocation failed: " + x, x);
+
+		PoolStats ps = pool.getPoolStatistics();
+		Assert.assertTrue("Too many connections in use: " + maxInUse.get(), maxInUse.get() <= MAX_CONNS);
+		Assert.assertEquals("Used count must be 0 after all connections were closed", 0, ps.getPooledUsed());
+		Assert.assertTrue("Too many connections allocated: " + ps.getPooledAllocated(), ps.getPooledAllocated() <= MAX_CONNS);
+		Assert.assertEquals(0, ps.getPoolFailureCount());
+		Assert.assertEquals(0, pool.getUsedConnections().size());
+		Assert.assertEquals(threads * 500, ps.getTotalAllocations());
+	}
+
+	static ConnectionPool createPool(String id, boolean lockFree, int maxConns) throws Exception {
+		PoolConfig.Template t = createTemplate(id, maxConns);
+		t.setLockFreeAllocation(lockFree);
+		ConnectionPool pool = PoolManager.getInstance().definePool(id, new PoolConfig(t));
+		pool.initialize();
+		return pool;
+	}
+
+	static PoolConfig.Template createTemplate(String id, int maxConns) {
+		PoolConfig.Template t = new PoolConfig.Template();
+		t.setDriverClassName(FakeDriver.class.getName());
+		t.setUrl("jdbc:fake:" + id);
+		t.setUid("user");
+		t.setPw("pw");
+		t.setMinConns(1);
+		t.setMaxConns(maxConns);
+		return t;
+	}
+
+	/**
+	 * A driver whose connections do nothing. It counts the statements it prepares and closes.
+	 */
+	public static class FakeDriver implements Driver {
+		static final AtomicInteger PREPARED = new AtomicInteger();
+
+		static final AtomicInteger CLOSED = new AtomicInteger();
+
+		@Override
+		public Connection connect(String url, Properties info) throws SQLException {
+			InvocationHandler mdh = (proxy, method, args) -> {
+				if(method.getReturnType() == String.class)
+					return "fake";
+				return defaultValue(method.getReturnType());
+			};
+			DatabaseMetaData md = (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DatabaseMetaData.class}, mdh);
+			InvocationHandler ch = (proxy, method, args) -> {
+				switch(method.getName()) {
+					case "getMetaData":
+						return md;
+					case "prepareStatement":
+						PREPARED.incrementAndGet();
+						return createStatement();
+					case "hashCode":
+						return Integer.valueOf(System.identityHashCode(proxy));
+					case "equals":
+						return Boolean.valueOf(proxy == args[0]);
+					case "toString":
+						return "FakeConnection@" + System.identityHashCode(proxy);
+				}
+				return defaultValue(method.getReturnType());
+			};
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, ch);
+		}
+
+		/**
+		 * A statement that counts its batched rows, and that has an open result set after executeQuery.
+		 */
+		private PreparedStatement createStatement() {
+			int[] batched = new int[1];
+			ResultSet[] open = new ResultSet[1];
+			InvocationHandler sh = (proxy, method, args) -> {
+				switch(method.getName()) {
+					case "close":
+						CLOSED.incrementAndGet();
+						return null;
+					case "addBatch":
+						batched[0]++;
+						return null;
+					case "clearBatch":
+						batched[0] = 0;
+						return null;
+					case "executeBatch":
+						int[] res = new int[batched[0]];
+						batched[0] = 0;
+						return res;
+					case "executeQuery":
+						open[0] = createResultSet(open);
+						return open[0];
+					case "getResultSet":
+						return open[0];
+					case "hashCode":
+						return Integer.valueOf(System.identityHashCode(proxy));
+					case "equals":
+						return Boolean.valueOf(proxy == args[0]);
+				}
+				return defaultValue(method.getReturnType());
+			};
+			return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, sh);
+		}
+
+		private ResultSet createResultSet(ResultSet[] open) {
+			InvocationHandler rh = (proxy, method, args) -> {
+				switch(method.getName()) {
+					case "close":
+						open[0] = null;
+						return null;
+					case "hashCode":
+						return Integer.valueOf(System.identityHashCode(proxy));
+					case "equals":
+						return Boolean.valueOf(proxy == args[0]);
+				}
+				return defaultValue(method.getReturnType());
+			};
+			return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class}, rh);
+		}
+
+		static private Object defaultValue(Class<?> type) {
+			if(type == boolean.class)
+				return Boolean.FALSE;
+			if(type == int.class)
+				return Integer.valueOf(0);
+			if(type == long.class)
+				return Long.valueOf(0);
+			return null;
+		}
+
+		@Override
+		public boolean acceptsURL(String url) throws SQLException {
+			return url.startsWith("jdbc:fake:");
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package to.etc.dbpool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+/**
+ * Logs statements to a segmented binary log from several threads, and checks that every record
+ * ends up in the segments in the stream log's format.
+ */
+public class TestSegmentedStatementLog {
+	@Test
+	public void testSegmentedLog() throws Exception {
+		File dir = Files.createTempDirectory("dblog").toFile();
+		File base = new File(dir, "statements.log");
+		PoolConfig.Template t = TestPoolAllocation.createTemplate("test-seglog", 8);
+		t.setBinaryLogFile(base);
+		t.setBinaryLogSegmentSize(1);
+		ConnectionPool pool = PoolManager.getInstance().definePool("test-seglog", new PoolConfig(t));
+		pool.initialize();
+
+		int threads = 4;
+		int count = 5000;
+		Thread[] ar = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			int tn = i;
+			ar[i] = new Thread(() -> {
+				try {
+					for(int j = 0; j < count; j++) {
+						try(Connection dbc = pool.getPooledDataSource().getConnection(); PreparedStatement ps = dbc.prepareStatement("update x set a=? where b=? -- €" + tn)) {
+							ps.setString(1, "value " + j);
+							ps.setLong(2, j);
+							ps.executeUpdate();
+						}
+					}
+				} catch(Exception x) {
+					throw new RuntimeException(x);
+				}
+			});
+			ar[i].start();
+		}
+		for(Thread th : ar)
+			th.join();
+		long dropped = pool.getStatementLogDropCount();
+		PoolManager.getInstance().destroyPool("test-seglog");
+
+		int updates = 0;
+		int closes = 0;
+		int segments = 0;
+		for(int nr = 1; MappedStatementLog.getSegmentFile(base, nr).exists(); nr++) {
+			segments++;
+			try(DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(MappedStatementLog.getSegmentFile(base, nr))))) {
+				for(;;) {
+					long magic;
+					try {
+						magic = is.readLong();
+					} catch(EOFException x) {
+						break;
+					}
+					Assert.assertEquals(ConnectionPool.STMT_START_MAGIC, magic);
+					int type = is.readByte();
+					is.readLong();
+					is.readInt();
+					if(type == StatementProxy.ST_CLOSE) {
+						closes++;
+						continue;
+					}
+					Assert.assertEquals(StatementProxy.ST_UPDATE, type);
+					String sql = readString(is);
+					Assert.assertTrue(sql, sql.startsWith("update x set a=? where b=? -- €"));
+					Assert.assertEquals(2, is.readInt());
+					Assert.assertEquals('$', is.readByte());
+					Assert.assertTrue(readString(is).startsWith("value "));
+					Assert.assertEquals('l', is.readByte());
+					is.readLong();
+					updates++;
+				}
+			}
+		}
+		Assert.assertTrue("Expected the log to be rotated", segments > 1);
+		Assert.assertTrue("Closed segments are truncated to their used size", MappedStatementLog.getSegmentFile(base, 1).length() < 1024 * 1024);
+		Assert.assertEquals("Every update and close must be logged or counted as dropped", 2L * threads * count, updates + closes + dropped);
+		Assert.assertTrue(updates > 0);
+
+		for(File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	/**
+	 * A terminated log must not stay registered as shutdown hook, or every pool restart would leak one.
+	 */
+	@Test
+	public void testTerminateRemovesShutdownHook() throws Exception {
+		File dir = Files.createTempDirectory("dblog").toFile();
+		MappedStatementLog log = new MappedStatementLog("test-hook", new File(dir, "statements.log"), 1024 * 1024, 0);
+		Thread hook = log.getShutdownHook();
+		log.terminate();
+		Assert.assertFalse("The shutdown hook is still registered", Runtime.getRuntime().removeShutdownHook(hook));
+		log.terminate();										// Terminating twice is harmless
+		dir.delete();
+	}
+
+	static private String readString(DataInputStream is) throws Exception {
+		byte[] data = new byte[is.readInt()];
+		is.readFully(data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+}
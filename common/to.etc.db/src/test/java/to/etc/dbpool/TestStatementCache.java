@@ -0,0 +1,79 @@
+package to.etc.dbpool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+/**
+ * Checks that prepared statements are reused per connection, and that the least recently used
+ * statements are closed when the cache is full.
+ */
+public class TestStatementCache {
+	@Test
+	public void testReuseAndEviction() throws Exception {
+		PoolConfig.Template t = TestPoolAllocation.createTemplate("test-stmtcache", 1);
+		t.setStatementCacheSize(2);
+		ConnectionPool pool = PoolManager.getInstance().definePool("test-stmtcache", new PoolConfig(t));
+		pool.initialize();
+
+		int prepared = TestPoolAllocation.FakeDriver.PREPARED.get();
+		int closed = TestPoolAllocation.FakeDriver.CLOSED.get();
+		for(int i = 0; i < 3; i++) {
+			try(Connection dbc = pool.getPooledDataSource().getConnection()) {
+				try(PreparedStatement ps = dbc.prepareStatement("select a from b")) {
+					ps.setString(1, "x");
+				}
+			}
+		}
+		PoolStats ps = pool.getPoolStatistics();
+		Assert.assertEquals("The statement must be prepared once", 1, TestPoolAllocation.FakeDriver.PREPARED.get() - prepared);
+		Assert.assertEquals(2, ps.getStatementCacheHits());
+		Assert.assertEquals(1, ps.getStatementCacheMisses());
+		Assert.assertEquals("A cached statement must not be closed", closed, TestPoolAllocation.FakeDriver.CLOSED.get());
+
+		try(Connection dbc = pool.getPooledDataSource().getConnection()) {
+			dbc.prepareStatement("select c from d").close();
+			dbc.prepareStatement("select e from f").close();
+		}
+		ps = pool.getPoolStatistics();
+		Assert.assertEquals(1, ps.getStatementCacheEvictions());
+		Assert.assertEquals("The least recently used statement must be closed", closed + 1, TestPoolAllocation.FakeDriver.CLOSED.get());
+	}
+
+	/**
+	 * Rows batched but never executed by one user must not be executed by the next user of the
+	 * cached statement, and a result set left open must be closed before the statement is reused.
+	 */
+	@Test
+	public void testResetBatchAndResultSet() throws Exception {
+		PoolConfig.Template t = TestPoolAllocation.createTemplate("test-stmtcache-reset", 1);
+		t.setStatementCacheSize(2);
+		ConnectionPool pool = PoolManager.getInstance().definePool("test-stmtcache-reset", new PoolConfig(t));
+		pool.initialize();
+
+		try(Connection dbc = pool.getPooledDataSource().getConnection()) {
+			try(PreparedStatement ps = dbc.prepareStatement("insert into a values(?)")) {
+				ps.setInt(1, 1);
+				ps.addBatch();
+				ps.setInt(1, 2);
+				ps.addBatch();
+			}
+			try(PreparedStatement ps = dbc.prepareStatement("insert into a values(?)")) {
+				ps.setInt(1, 3);
+				ps.addBatch();
+				int[] res = ps.executeBatch();
+				Assert.assertEquals("Only the new row may be executed", 1, res.length);
+			}
+
+			PreparedStatement real;
+			try(PreparedStatement ps = dbc.prepareStatement("select a from b")) {
+				ps.executeQuery();
+				real = ((PreparedStatementProxy) ps).getRealPreparedStatement();
+			}
+			Assert.assertNull("The open result set must be closed", real.getResultSet());
+		}
+		Assert.assertEquals(2, pool.getPoolStatistics().getStatementCacheMisses());
+	}
+}
@@ -0,0 +1,71 @@
+package to.etc.dbpool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks tracepoint sampling, tracepoints without a stack and the depth limit.
+ */
+public class TestTracepoint {
+	@Test
+	public void testModes() {
+		for(int i = 0; i < 1000; i++) {
+			Assert.assertTrue(TracepointMode.FULL.isTracingConnection(100));
+			Assert.assertFalse(TracepointMode.OFF.isTracingConnection(100));
+			Assert.assertTrue("A sample rate of 1 traces everything", TracepointMode.SAMPLED.isTracingConnection(1));
+		}
+	}
+
+	@Test
+	public void testSampleRate() {
+		int count = 100_000;
+		int traced = 0;
+		for(int i = 0; i < count; i++) {
+			if(TracepointMode.SAMPLED.isTracingConnection(10))
+				traced++;
+		}
+
+		//-- Expect 10.000; the standard deviation is about 95 so this leaves plenty of room.
+		Assert.assertTrue("Traced " + traced + " of " + count, traced > 9000 && traced < 11000);
+	}
+
+	@Test
+	public void testWithoutStack() {
+		Tracepoint tp = Tracepoint.create("select 1", false, 64);
+		Assert.assertFalse(tp.hasStack());
+		Assert.assertNull(tp.getException());
+		Assert.assertEquals(0, tp.getElements().length);
+		Assert.assertEquals("select 1", tp.getSql());
+		Assert.assertTrue(tp.getTimestamp() > 0);
+
+		StringBuilder sb = new StringBuilder();
+		DbPoolUtil.strTracepointStack(sb, tp);
+		Assert.assertTrue(sb.toString(), sb.toString().contains("no stack recorded"));
+	}
+
+	static private Tracepoint createDeep(int depth, int maxDepth) {
+		if(depth > 0)
+			return createDeep(depth - 1, maxDepth);
+		return Tracepoint.create(null, true, maxDepth);
+	}
+
+	@Test
+	public void testDepthLimit() {
+		Tracepoint tp = createDeep(50, 5);
+		Assert.assertTrue(tp.hasStack());
+		RuntimeException x = tp.getException();
+		Assert.assertNotNull(x);
+		Assert.assertTrue("The capture itself records the full stack", x.getStackTrace().length > 50);
+
+		StackTraceElement[] elements = tp.getElements();
+		Assert.assertEquals(5, elements.length);
+		Assert.assertSame("Elements are materialized once", elements, tp.getElements());
+		Assert.assertEquals(Tracepoint.class.getName(), elements[0].getClassName());
+
+		StringBuilder sb = new StringBuilder();
+		DbPoolUtil.strTracepointStack(sb, tp);
+		String[] lines = sb.toString().split("\n");
+		Assert.assertTrue(sb.toString(), lines.length >= 1 && lines.length <= 5);
+		Assert.assertFalse(sb.toString(), sb.toString().contains("no stack recorded"));
+	}
+}
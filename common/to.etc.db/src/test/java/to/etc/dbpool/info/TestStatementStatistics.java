@@ -0,0 +1,86 @@
+package to.etc.dbpool.info;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks statement fingerprints, the precision of the latency histograms and their lock-free merging.
+ */
+public class TestStatementStatistics {
+	@Test
+	public void testFingerprint() {
+		Assert.assertEquals("select * from t1 where id = ? and name = ?", SqlFingerprint.fingerprint("SELECT *\n  FROM T1   WHERE id = 12 AND name = 'it''s'"));
+		Assert.assertEquals("select a from t where id in (?+) and x = ?", SqlFingerprint.fingerprint("select a from t where id in (1, 2,3) and x = ? -- comment"));
+		Assert.assertEquals(SqlFingerprint.fingerprint("select a from t where id in (?,?)"), SqlFingerprint.fingerprint("select a /* hint */ from t where id in (?, ?, ?, ?)"));
+		Assert.assertEquals(SqlFingerprint.fingerprint("select a from t where id in (7,8)"), SqlFingerprint.fingerprint("select a from t where id IN (7)"));
+		Assert.assertEquals("select a from t where id in(?+) and upper(?) = x and (?) = y", SqlFingerprint.fingerprint("select a from t where id in(?) and upper(?) = x and (?) = y"));
+		Assert.assertEquals("select \"MixedCase\" from t where v = ?", SqlFingerprint.fingerprint("select \"MixedCase\" from T where v = 0.5e3"));
+	}
+
+	@Test
+	public void testHistogram() {
+		for(long v = 0; v < 1_000_000_000L; v = v * 3 / 2 + 1) {
+			int b = LatencyHistogram.bucket(v);
+			long high = LatencyHistogram.bucketHigh(b);
+			Assert.assertTrue(v + " above " + high, v <= high);
+			if(b > 0)
+				Assert.assertTrue(v + " should be in a lower bucket", v > LatencyHistogram.bucketHigh(b - 1));
+			Assert.assertTrue("bucket too wide at " + v, high - v <= v / 32 + 1);
+		}
+
+		LatencyHistogram h = new LatencyHistogram();
+		for(int i = 1; i <= 1000; i++)
+			h.add(i);
+		Assert.assertEquals(1000, h.getCount());
+		Assert.assertEquals(1000, h.getMax());
+		long p50 = h.getPercentile(0.5);
+		Assert.assertTrue("p50=" + p50, p50 >= 500 && p50 <= 516);
+		long p99 = h.getPercentile(0.99);
+		Assert.assertTrue("p99=" + p99, p99 >= 990 && p99 <= 1000);
+
+		LatencyHistogram other = new LatencyHistogram();
+		other.add(5_000_000L);
+		h.add(other);
+		Assert.assertEquals(1001, h.getCount());
+		Assert.assertEquals(5_000_000L, h.getPercentile(1.0));
+	}
+
+	@Test
+	public void testConcurrentMerge() throws Exception {
+		ConcurrentLatencyHistogram ch = new ConcurrentLatencyHistogram();
+		Thread[] ar = new Thread[8];
+		for(int t = 0; t < ar.length; t++) {
+			ar[t] = new Thread(() -> {
+				for(int round = 0; round < 100; round++) {
+					LatencyHistogram h = new LatencyHistogram();
+					for(int i = 1; i <= 100; i++)
+						h.add(i * 1000L);
+					ch.add(h);
+				}
+			});
+			ar[t].start();
+		}
+		for(Thread t : ar)
+			t.join();
+		LatencyHistogram s = ch.snapshot();
+		Assert.assertEquals(8 * 100 * 100, s.getCount());
+		Assert.assertEquals(100_000L, s.getMax());
+		Assert.assertEquals(8L * 100 * 5050 * 1000, s.getTotal());
+		long p95 = s.getPercentile(0.95);
+		Assert.assertTrue("p95=" + p95, p95 >= 95_000 && p95 <= 98_000);
+	}
+
+	@Test
+	public void testMetricsText() throws Exception {
+		LatencyStatistics ls = new LatencyStatistics();
+		StatisticsCollector sc = new StatisticsCollector("/page.jsp", null, false);
+		ls.merge(sc, 2_000_000_000L);
+		StringBuilder sb = new StringBuilder();
+		ls.writeMetrics(sb);
+		String text = sb.toString();
+		Assert.assertTrue(text, text.contains("dbpool_request_duration_seconds{url=\"/page.jsp\",quantile=\"0.99\"} 2.0"));
+		Assert.assertTrue(text, text.contains("dbpool_request_duration_seconds_count{url=\"/page.jsp\"} 1"));
+		Assert.assertTrue(text, text.contains("# TYPE dbpool_request_duration_seconds_max gauge\ndbpool_request_duration_seconds_max{url=\"/page.jsp\"} 2.0\n"));
+		Assert.assertTrue(text, text.contains("# HELP dbpool_request_duration_seconds_max "));
+	}
+}
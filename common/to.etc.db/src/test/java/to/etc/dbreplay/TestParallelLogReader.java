@@ -0,0 +1,90 @@
+package to.etc.dbreplay;
+
+import org.junit.Assert;
+import org.junit.Test;
+import to.etc.dbpool.ConnectionPool;
+import to.etc.dbpool.StatementProxy;
+import to.etc.dbpool.info.SqlFingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Writes a statement log and reads it back with small chunks, so that most records cross a chunk
+ * boundary, and checks that all records are returned exactly once and in order.
+ */
+public class TestParallelLogReader {
+	static private final int COUNT = 20000;
+
+	@Test
+	public void testReadInOrder() throws Exception {
+		File f = File.createTempFile("stmtlog", ".log");
+		try {
+			writeLog(f);
+			for(long chunk : new long[]{97, 1000, 65536, 64L * 1024 * 1024}) {
+				try(ParallelLogReader r = new ParallelLogReader(Collections.singletonList(f), 4, chunk)) {
+					int nr = 0;
+					for(;;) {
+						ReplayRecord rr = r.next();
+						if(null == rr)
+							break;
+						Assert.assertEquals("chunk size " + chunk, nr, rr.getStatementTime());
+						if(nr % 10 == 9) {
+							Assert.assertEquals(StatementProxy.ST_COMMIT, rr.getType());
+						} else {
+							Assert.assertEquals("select * from t where id=" + nr + " and name='x€'", rr.getSql());
+							Assert.assertEquals(Long.valueOf(nr), rr.getParameterAr()[0]);
+						}
+						nr++;
+					}
+					Assert.assertEquals("chunk size " + chunk, COUNT, nr);
+				}
+			}
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testAnalyzer() throws Exception {
+		File f = File.createTempFile("stmtlog", ".log");
+		try {
+			writeLog(f);
+			LogAnalyzer la = new LogAnalyzer(10);
+			try(ParallelLogReader r = new ParallelLogReader(Collections.singletonList(f), 2, 4096)) {
+				for(ReplayRecord rr = r.next(); rr != null; rr = r.next())
+					la.add(rr);
+			}
+			Assert.assertEquals(COUNT / 10 * 9, la.getCount(SqlFingerprint.fingerprint("select * from t where id=1 and name='y'")));
+		} finally {
+			f.delete();
+		}
+	}
+
+	static private void writeLog(File f) throws Exception {
+		try(DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+			for(int i = 0; i < COUNT; i++) {
+				os.writeLong(ConnectionPool.STMT_START_MAGIC);
+				if(i % 10 == 9) {
+					os.writeByte(StatementProxy.ST_COMMIT);
+					os.writeLong(i);
+					os.writeInt(i % 7);
+					continue;
+				}
+				os.writeByte(StatementProxy.ST_QUERY);
+				os.writeLong(i);
+				os.writeInt(i % 7);
+				byte[] sql = ("select * from t where id=" + i + " and name='x€'").getBytes(StandardCharsets.UTF_8);
+				os.writeInt(sql.length);
+				os.write(sql);
+				os.writeInt(1);
+				os.writeByte('l');
+				os.writeLong(i);
+			}
+		}
+	}
+}
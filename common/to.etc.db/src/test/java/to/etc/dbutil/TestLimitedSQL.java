@@ -0,0 +1,59 @@
+package to.etc.dbutil;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks the offset/limit SQL generated for each database type.
+ */
+public class TestLimitedSQL {
+	static private final String SQL = "select this_.id,this_.name from person this_ order by this_.name asc";
+
+	static private final List<String> COLUMNS = Arrays.asList("id", "name");
+
+	@Test
+	public void testPostgres() {
+		BaseDB db = GenericDB.dbtypePOSTGRESQL;
+		Assert.assertEquals(SQL + " limit 10", db.getLimitedSQL(SQL, COLUMNS, 0, 10));
+		Assert.assertEquals(SQL + " limit 10 offset 20", db.getLimitedSQL(SQL, COLUMNS, 20, 10));
+		Assert.assertEquals(SQL + " offset 20", db.getLimitedSQL(SQL, null, 20, 0));
+	}
+
+	@Test
+	public void testMysql() {
+		BaseDB db = GenericDB.dbtypeMYSQL;
+		Assert.assertEquals(SQL + " limit 10", db.getLimitedSQL(SQL, COLUMNS, 0, 10));
+		Assert.assertEquals(SQL + " limit 20, 10", db.getLimitedSQL(SQL, COLUMNS, 20, 10));
+		Assert.assertEquals(SQL + " limit 20, 18446744073709551615", db.getLimitedSQL(SQL, null, 20, 0));
+	}
+
+	@Test
+	public void testDerby() {
+		BaseDB db = GenericDB.dbtypeDERBY;
+		Assert.assertEquals(SQL + " fetch next 10 rows only", db.getLimitedSQL(SQL, COLUMNS, 0, 10));
+		Assert.assertEquals(SQL + " offset 20 rows fetch next 10 rows only", db.getLimitedSQL(SQL, COLUMNS, 20, 10));
+		Assert.assertEquals(SQL + " offset 20 rows", db.getLimitedSQL(SQL, null, 20, 0));
+	}
+
+	@Test
+	public void testOracle() {
+		BaseDB db = GenericDB.dbtypeORACLE;
+		Assert.assertEquals("select * from (" + SQL + ") where rownum <= 10", db.getLimitedSQL(SQL, COLUMNS, 0, 10));
+
+		//-- With an offset the outer select must only return the original columns, not the row number.
+		Assert.assertEquals("select id,name from (select q_.*, rownum rnum_ from (" + SQL + ") q_ where rownum <= 30) where rnum_ > 20", db.getLimitedSQL(SQL, COLUMNS, 20, 10));
+		Assert.assertEquals("select id,name from (select q_.*, rownum rnum_ from (" + SQL + ") q_) where rnum_ > 20", db.getLimitedSQL(SQL, COLUMNS, 20, 0));
+
+		//-- Without (unique) column names the offset cannot be done in SQL.
+		Assert.assertNull(db.getLimitedSQL(SQL, null, 20, 10));
+		Assert.assertNull(db.getLimitedSQL(SQL, Arrays.asList("id", "ID"), 20, 10));
+	}
+
+	@Test
+	public void testUnknown() {
+		Assert.assertNull(GenericDB.dbtypeUNKNOWN.getLimitedSQL(SQL, COLUMNS, 20, 10));
+	}
+}
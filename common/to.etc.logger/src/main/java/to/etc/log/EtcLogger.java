@@ -18,8 +18,9 @@ public class EtcLogger implements Logger {
 	@NonNull
 	private final String	m_key;
 
+	/** Volatile so that the level checks done on every log call do not need a lock. */
 	@Nullable
-	private Level			m_level;
+	private volatile Level	m_level;
 
 	private EtcLogger(@NonNull String key, @Nullable Level level) {
 		m_key = key;
@@ -36,8 +37,9 @@ public class EtcLogger implements Logger {
 		EtcLoggerFactory.getSingleton().notifyHandlers(event);
 	}
 
-	private synchronized boolean checkEnabled(@NonNull Level level) {
-		return m_level != null && m_level.includes(level);
+	private boolean checkEnabled(@NonNull Level level) {
+		Level current = m_level;
+		return current != null && current.includes(level);
 	}
 
 	private boolean checkEnabled(@NonNull Level level, @NonNull Marker marker) {
@@ -411,11 +413,11 @@ public class EtcLogger implements Logger {
 		execute(Level.WARN, arg0, arg1, arg2, arg3);
 	}
 
-	synchronized boolean isDisabled() {
+	boolean isDisabled() {
 		return m_level == null;
 	}
 
-	public synchronized void setLevel(@Nullable Level level) {
+	public void setLevel(@Nullable Level level) {
 		m_level = level;
 	}
 }
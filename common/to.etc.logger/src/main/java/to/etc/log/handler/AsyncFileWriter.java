@@ -0,0 +1,307 @@
+package to.etc.log.handler;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import to.etc.log.EtcLoggerFactory;
+import to.etc.log.Level;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log lines for a single output file from a background thread. Logging threads only
+ * format their line and put it into a lock-free ring buffer; the writer thread takes lines
+ * from that buffer in batches and writes each batch with a single write on an open
+ * {@link FileChannel}. The file is rotated when its (dated) name changes and, optionally,
+ * when it grows beyond a maximum size.
+ * <p>There is one writer per output file, shared by all handlers writing to that file.</p>
+ */
+final class AsyncFileWriter implements Runnable {
+	static final int DEFAULT_QUEUE_SIZE = 8192;
+
+	/** The max time a line stays in the queue before it is written, in ms. */
+	static private final long FLUSH_INTERVAL = 250;
+
+	/** The max #of lines written in one batch. */
+	static private final int MAX_BATCH = 1024;
+
+	static private final byte[] EOL = System.getProperty("line.separator", "\n").getBytes(StandardCharsets.UTF_8);
+
+	@NonNull
+	static private final Map<String, AsyncFileWriter> m_writerMap = new HashMap<>();
+
+	@NonNull
+	private final File m_logRoot;
+
+	@NonNull
+	private final String m_out;
+
+	@NonNull
+	private final LogRingBuffer<String> m_queue;
+
+	@NonNull
+	private final LogOverflowPolicy m_overflowPolicy;
+
+	/** When > 0, the file is rotated when it would become bigger than this. */
+	private final long m_maxFileSize;
+
+	/** The #of rotated size-limited files to keep. */
+	private final int m_maxBackups;
+
+	/** Above this #of queued lines DEBUG and TRACE lines are dropped with {@link LogOverflowPolicy#DROP_DEBUG_FIRST}. */
+	private final int m_debugDropThreshold;
+
+	@NonNull
+	private final Thread m_thread;
+
+	/** Set by the writer thread just before it parks, so that producers know they need to wake it. */
+	private volatile boolean m_sleeping;
+
+	private volatile boolean m_terminated;
+
+	@NonNull
+	private final AtomicLong m_droppedCount = new AtomicLong();
+
+	@NonNull
+	private final AtomicLong m_failureCount = new AtomicLong();
+
+	/*--- Writer thread state ---*/
+	@Nullable
+	private FileChannel m_channel;
+
+	@Nullable
+	private String m_currentFileName;
+
+	@NonNull
+	private ByteBuffer m_buffer = ByteBuffer.allocate(64 * 1024);
+
+	AsyncFileWriter(@NonNull File logRoot, @NonNull String out, int queueSize, @NonNull LogOverflowPolicy overflowPolicy, long maxFileSize, int maxBackups) {
+		m_logRoot = logRoot;
+		m_out = out;
+		m_queue = new LogRingBuffer<>(queueSize);
+		m_overflowPolicy = overflowPolicy;
+		m_maxFileSize = maxFileSize;
+		m_maxBackups = maxBackups;
+		m_debugDropThreshold = m_queue.capacity() * 3 / 4;
+		Thread t = m_thread = new Thread(this, "log-writer " + out);
+		t.setDaemon(true);
+	}
+
+	/**
+	 * Get the writer for the specified output file. If a writer for that file already exists it
+	 * is returned with its original configuration.
+	 */
+	@NonNull
+	static synchronized AsyncFileWriter getWriter(@NonNull File logRoot, @NonNull String out, int queueSize, @NonNull LogOverflowPolicy overflowPolicy, long maxFileSize, int maxBackups) {
+		String key = logRoot.getAbsolutePath() + File.pathSeparator + out;
+		AsyncFileWriter w = m_writerMap.get(key);
+		if(null == w) {
+			if(m_writerMap.isEmpty())
+				Runtime.getRuntime().addShutdownHook(new Thread(AsyncFileWriter::shutdownAll, "log-writer shutdown"));
+			w = new AsyncFileWriter(logRoot, out, queueSize, overflowPolicy, maxFileSize, maxBackups);
+			m_writerMap.put(key, w);
+			w.start();
+		}
+		return w;
+	}
+
+	void start() {
+		m_thread.start();
+	}
+
+	static private void shutdownAll() {
+		AsyncFileWriter[] ar;
+		synchronized(AsyncFileWriter.class) {
+			ar = m_writerMap.values().toArray(new AsyncFileWriter[0]);
+		}
+		for(AsyncFileWriter w : ar)
+			w.terminate();
+	}
+
+	/**
+	 * Queue a line for writing, applying the overflow policy when the queue is full.
+	 */
+	void write(@NonNull Level level, @NonNull String line) {
+		boolean debug = level.getCode() <= Level.DEBUG.getCode();
+		if(debug && m_overflowPolicy == LogOverflowPolicy.DROP_DEBUG_FIRST && m_queue.size() >= m_debugDropThreshold) {
+			m_droppedCount.incrementAndGet();
+			return;
+		}
+
+		while(! m_queue.offer(line)) {
+			if(m_overflowPolicy == LogOverflowPolicy.DROP || m_terminated) {
+				m_droppedCount.incrementAndGet();
+				return;
+			}
+			LockSupport.unpark(m_thread);
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+		if(m_sleeping)
+			LockSupport.unpark(m_thread);
+	}
+
+	/**
+	 * The #of lines that were discarded because the queue was full.
+	 */
+	long getDroppedCount() {
+		return m_droppedCount.get();
+	}
+
+	/**
+	 * The #of batches that could not be written because of an error. The lines in those batches are lost.
+	 */
+	long getFailureCount() {
+		return m_failureCount.get();
+	}
+
+	/**
+	 * Write everything that is still queued, then stop the writer thread.
+	 */
+	void terminate() {
+		m_terminated = true;
+		LockSupport.unpark(m_thread);
+		try {
+			m_thread.join(5000);
+		} catch(InterruptedException x) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		long lastDropReport = 0;
+		for(;;) {
+			String line = m_queue.poll();
+			if(null == line) {
+				if(m_terminated)
+					break;
+				m_sleeping = true;
+				if(m_queue.size() == 0)							// Recheck after announcing we sleep, to not miss a wakeup
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL));
+				m_sleeping = false;
+				continue;
+			}
+
+			try {
+				writeBatch(line);
+			} catch(Exception x) {
+				m_failureCount.incrementAndGet();
+				System.err.println("etc logger: failed to write to " + m_out + ": " + x);
+				closeChannel();
+			}
+
+			long dropped = m_droppedCount.get();
+			if(dropped != lastDropReport) {
+				lastDropReport = dropped;
+				System.err.println("etc logger: " + dropped + " log lines dropped for " + m_out + " because its queue was full");
+			}
+		}
+		closeChannel();
+	}
+
+	/**
+	 * Collect the line and as many queued lines as will fit, and write them in one go.
+	 */
+	private void writeBatch(@NonNull String first) throws IOException {
+		ByteBuffer bb = m_buffer;
+		bb.clear();
+		String line = first;
+		int count = 0;
+		for(;;) {
+			byte[] data = line.getBytes(StandardCharsets.UTF_8);
+			int needed = data.length + EOL.length;
+			if(needed > bb.remaining()) {
+				if(bb.position() > 0) {
+					flushBuffer(bb);
+					bb.clear();
+				}
+				if(needed > bb.capacity()) {
+					bb = m_buffer = ByteBuffer.allocate(needed + 1024);
+				}
+			}
+			bb.put(data);
+			bb.put(EOL);
+			if(++count >= MAX_BATCH)
+				break;
+			String next = m_queue.poll();
+			if(null == next)
+				break;
+			line = next;
+		}
+		flushBuffer(bb);
+	}
+
+	private void flushBuffer(@NonNull ByteBuffer bb) throws IOException {
+		bb.flip();
+		FileChannel fc = getChannel(bb.remaining());
+		while(bb.hasRemaining())
+			fc.write(bb);
+	}
+
+	/**
+	 * Return the channel to write to, rotating the file when the date part of its name
+	 * changed or when the data would make it too big.
+	 */
+	@NonNull
+	private FileChannel getChannel(int bytesToWrite) throws IOException {
+		String fileName = EtcLoggerFactory.getSingleton().composeFullLogFileName(m_logRoot.getAbsolutePath(), m_out);
+		FileChannel fc = m_channel;
+		if(fc != null && ! fileName.equals(m_currentFileName)) {
+			closeChannel();
+			fc = null;
+		}
+		if(fc != null && m_maxFileSize > 0 && fc.size() > 0 && fc.size() + bytesToWrite > m_maxFileSize) {
+			closeChannel();
+			rotate(fileName);
+			fc = null;
+		}
+		if(null == fc) {
+			File outFile = new File(fileName);
+			File parent = outFile.getParentFile();
+			if(null != parent)
+				parent.mkdirs();
+			fc = m_channel = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			m_currentFileName = fileName;
+		}
+		return fc;
+	}
+
+	/**
+	 * Shift name.1 .. name.n-1 one up, and rename the full file to name.1.
+	 */
+	private void rotate(@NonNull String fileName) {
+		if(m_maxBackups <= 0) {
+			new File(fileName).delete();
+			return;
+		}
+		new File(fileName + "." + m_maxBackups).delete();
+		for(int i = m_maxBackups - 1; i >= 1; i--) {
+			File f = new File(fileName + "." + i);
+			if(f.exists())
+				f.renameTo(new File(fileName + "." + (i + 1)));
+		}
+		new File(fileName).renameTo(new File(fileName + ".1"));
+	}
+
+	private void closeChannel() {
+		FileChannel fc = m_channel;
+		m_channel = null;
+		m_currentFileName = null;
+		if(null != fc) {
+			try {
+				fc.close();
+			} catch(Exception x) {
+				// Ignore
+			}
+		}
+	}
+}
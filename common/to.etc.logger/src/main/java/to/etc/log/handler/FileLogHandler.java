@@ -18,9 +18,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 class FileLogHandler implements ILogHandler {
 	/**
@@ -48,7 +48,7 @@ class FileLogHandler implements ILogHandler {
 	 * Keeps list of loggers that are marked as handled by handler.
 	 */
 	@NonNull
-	private final Map<EtcLogger, Boolean[]>	m_loggers	= new HashMap<EtcLogger, Boolean[]>();
+	private final Map<EtcLogger, Boolean[]>	m_loggers	= new ConcurrentHashMap<EtcLogger, Boolean[]>();
 
 	@NonNull
 	private final Object					m_writeLock	= new Object();
@@ -56,6 +56,24 @@ class FileLogHandler implements ILogHandler {
 	@Nullable
 	private EtcLogFormat					m_format	= null;
 
+	/**
+	 * When set, lines are written by a background writer thread instead of by the logging thread.
+	 */
+	private boolean							m_async;
+
+	private int								m_queueSize	= AsyncFileWriter.DEFAULT_QUEUE_SIZE;
+
+	@NonNull
+	private LogOverflowPolicy				m_overflowPolicy = LogOverflowPolicy.BLOCK;
+
+	/** When > 0, async files are rotated when they become bigger than this #of bytes. */
+	private long							m_maxFileSize;
+
+	private int								m_maxBackups = 5;
+
+	@Nullable
+	private volatile AsyncFileWriter		m_asyncWriter;
+
 	public FileLogHandler(@NonNull File logRoot, @Nullable String out) {
 		m_logRoot = logRoot;
 		m_out = out;
@@ -102,6 +120,10 @@ class FileLogHandler implements ILogHandler {
 
 	private void log(@NonNull EtcLogEvent event) {
 		String line = EtcLogFormatter.format(event, m_format != null ? m_format.getFormat() : EtcLogFormat.DEFAULT, getLogPartFromFilters());
+		if(m_async && m_out != null) {
+			getAsyncWriter().write(event.getLevel(), line);
+			return;
+		}
 
 		synchronized(m_writeLock) {
 			if(m_out == null) {
@@ -135,6 +157,19 @@ class FileLogHandler implements ILogHandler {
 		}
 	}
 
+	@NonNull
+	private AsyncFileWriter getAsyncWriter() {
+		AsyncFileWriter w = m_asyncWriter;
+		if(null == w) {
+			File logRoot = m_logRoot;
+			String out = m_out;
+			if(null == logRoot || null == out)
+				throw new IllegalStateException("Async logging needs an output file");
+			m_asyncWriter = w = AsyncFileWriter.getWriter(logRoot, out, m_queueSize, m_overflowPolicy, m_maxFileSize, m_maxBackups);
+		}
+		return w;
+	}
+
 	@Nullable
 	private String getLogPartFromFilters() {
 		if(m_filters.isEmpty()) {
@@ -198,10 +233,55 @@ class FileLogHandler implements ILogHandler {
 			throw new EtcLoggerFactory.LoggerConfigException("Missing file attribute inside file type handler.");
 		}
 		FileLogHandler res = new FileLogHandler(logRoot, file.getNodeValue());
+		res.loadAsyncConfig(handlerNode);
 		res.load(handlerNode);
 		return res;
 	}
 
+	/**
+	 * Reads the optional async="true", queueSize, overflow, maxFileSize and maxBackups attributes of a file handler.
+	 */
+	private void loadAsyncConfig(@NonNull Node handlerNode) throws LoggerConfigException {
+		String async = getAttribute(handlerNode, "async");
+		m_async = "true".equalsIgnoreCase(async);
+		String s = getAttribute(handlerNode, "queueSize");
+		if(s != null)
+			m_queueSize = parseNumber("queueSize", s);
+		s = getAttribute(handlerNode, "overflow");
+		if(s != null) {
+			LogOverflowPolicy policy = LogOverflowPolicy.fromCode(s);
+			if(null == policy)
+				throw new EtcLoggerFactory.LoggerConfigException("Unknown overflow policy '" + s + "' inside file type handler.");
+			m_overflowPolicy = policy;
+		}
+		s = getAttribute(handlerNode, "maxFileSize");
+		if(s != null)
+			m_maxFileSize = parseNumber("maxFileSize", s);
+		s = getAttribute(handlerNode, "maxBackups");
+		if(s != null)
+			m_maxBackups = parseNumber("maxBackups", s);
+	}
+
+	@Nullable
+	static private String getAttribute(@NonNull Node node, @NonNull String name) {
+		Node attr = node.getAttributes().getNamedItem(name);
+		if(null == attr)
+			return null;
+		String value = attr.getNodeValue();
+		if(null == value)
+			return null;
+		value = value.trim();
+		return value.length() == 0 ? null : value;
+	}
+
+	static private int parseNumber(@NonNull String name, @NonNull String value) throws LoggerConfigException {
+		try {
+			return Integer.parseInt(value);
+		} catch(NumberFormatException x) {
+			throw new EtcLoggerFactory.LoggerConfigException("Invalid " + name + " '" + value + "' inside file type handler.");
+		}
+	}
+
 	void load(@NonNull Node handlerNode) throws LoggerConfigException {
 		NodeList nodes = handlerNode.getChildNodes();
 		for(int i = 0; i < nodes.getLength(); i++) {
@@ -236,6 +316,15 @@ class FileLogHandler implements ILogHandler {
 		handlerNode.setAttribute("type", m_out == null ? "stdout" : "file");
 		if(m_out != null) {
 			handlerNode.setAttribute("file", m_out);
+			if(m_async) {
+				handlerNode.setAttribute("async", "true");
+				handlerNode.setAttribute("queueSize", Integer.toString(m_queueSize));
+				handlerNode.setAttribute("overflow", m_overflowPolicy.getCode());
+				if(m_maxFileSize > 0) {
+					handlerNode.setAttribute("maxFileSize", Long.toString(m_maxFileSize));
+					handlerNode.setAttribute("maxBackups", Integer.toString(m_maxBackups));
+				}
+			}
 		}
 		if(m_format != null) {
 			Element formatNode = doc.createElement("format");
@@ -0,0 +1,42 @@
+package to.etc.log.handler;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Defines what an asynchronous file handler does when its queue is full.
+ */
+public enum LogOverflowPolicy {
+	/** The logging thread waits until there is room in the queue. Nothing is lost. */
+	BLOCK("block"),
+
+	/** The log line is discarded. */
+	DROP("drop"),
+
+	/**
+	 * DEBUG and TRACE lines are discarded as soon as the queue gets nearly full, so that room is
+	 * left for the more important lines; those block when the queue is completely full.
+	 */
+	DROP_DEBUG_FIRST("drop-debug-first");
+
+	@NonNull
+	private final String m_code;
+
+	LogOverflowPolicy(@NonNull String code) {
+		m_code = code;
+	}
+
+	@NonNull
+	public String getCode() {
+		return m_code;
+	}
+
+	@Nullable
+	static public LogOverflowPolicy fromCode(@NonNull String code) {
+		for(LogOverflowPolicy p : values()) {
+			if(p.m_code.equalsIgnoreCase(code) || p.name().equalsIgnoreCase(code))
+				return p;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,92 @@
+package to.etc.log.handler;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free multi-producer single-consumer queue. Every slot has a sequence
+ * number which tells producers and the consumer whether the slot is free or filled for
+ * a given lap around the ring, so producers only contend on a single CAS of the enqueue
+ * position and never block each other.
+ */
+final class LogRingBuffer<T> {
+	private final int m_mask;
+
+	@NonNull
+	private final AtomicReferenceArray<T> m_items;
+
+	@NonNull
+	private final AtomicLongArray m_sequence;
+
+	@NonNull
+	private final AtomicLong m_enqueuePos = new AtomicLong();
+
+	/** Only changed by the single consumer. */
+	private volatile long m_dequeuePos;
+
+	LogRingBuffer(int minCapacity) {
+		int capacity = 2;
+		while(capacity < minCapacity)
+			capacity <<= 1;
+		m_mask = capacity - 1;
+		m_items = new AtomicReferenceArray<>(capacity);
+		m_sequence = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; i++)
+			m_sequence.set(i, i);
+	}
+
+	int capacity() {
+		return m_mask + 1;
+	}
+
+	/**
+	 * Approximate #of items in the queue.
+	 */
+	int size() {
+		long size = m_enqueuePos.get() - m_dequeuePos;
+		return size < 0 ? 0 : (int) size;
+	}
+
+	/**
+	 * Add an item; returns false if the queue is full.
+	 */
+	boolean offer(@NonNull T item) {
+		long pos = m_enqueuePos.get();
+		for(;;) {
+			int ix = (int) (pos & m_mask);
+			long dif = m_sequence.get(ix) - pos;
+			if(dif == 0) {
+				if(m_enqueuePos.compareAndSet(pos, pos + 1)) {
+					m_items.set(ix, item);
+					m_sequence.set(ix, pos + 1);					// Publish: the slot is filled for this lap
+					return true;
+				}
+				pos = m_enqueuePos.get();
+			} else if(dif < 0) {
+				return false;									// The slot still holds last lap's item: full
+			} else {
+				pos = m_enqueuePos.get();						// Another producer took this slot
+			}
+		}
+	}
+
+	/**
+	 * Remove the oldest item, or return null if the queue is empty. Must only be called by the consumer thread.
+	 */
+	@Nullable
+	T poll() {
+		long pos = m_dequeuePos;
+		int ix = (int) (pos & m_mask);
+		if(m_sequence.get(ix) != pos + 1)
+			return null;
+		T item = m_items.get(ix);
+		m_items.set(ix, null);
+		m_sequence.set(ix, pos + m_mask + 1);					// Free the slot for the next lap
+		m_dequeuePos = pos + 1;
+		return item;
+	}
+}
@@ -0,0 +1,172 @@
+package to.etc.log.handler;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import to.etc.log.EtcLoggerFactory;
+import to.etc.log.Level;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks the overflow policies, error handling, rotation and final flush of the asynchronous file writer.
+ */
+public class TestAsyncFileWriter {
+	private File m_root;
+
+	@Before
+	public void setUp() throws Exception {
+		m_root = Files.createTempDirectory("asynclog").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		delete(m_root);
+	}
+
+	static private void delete(File f) {
+		File[] ar = f.listFiles();
+		if(null != ar) {
+			for(File c : ar)
+				delete(c);
+		}
+		f.delete();
+	}
+
+	private File logFile(File root, String out) {
+		return new File(EtcLoggerFactory.getSingleton().composeFullLogFileName(root.getAbsolutePath(), out));
+	}
+
+	static private List<String> read(File f) throws Exception {
+		if(! f.exists())
+			return new ArrayList<>();
+		return Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+	}
+
+	static private List<String> lines(String prefix, int from, int to) {
+		List<String> res = new ArrayList<>();
+		for(int i = from; i < to; i++)
+			res.add(prefix + i);
+		return res;
+	}
+
+	static private void waitFor(String what, long timeout, Check check) throws Exception {
+		long ets = System.currentTimeMillis() + timeout;
+		while(! check.isTrue()) {
+			if(System.currentTimeMillis() > ets)
+				Assert.fail("Timeout waiting for " + what);
+			Thread.sleep(10);
+		}
+	}
+
+	private interface Check {
+		boolean isTrue() throws Exception;
+	}
+
+	@Test
+	public void testDropPolicy() throws Exception {
+		//-- The writer is not started, so nothing leaves the queue until it is.
+		AsyncFileWriter w = new AsyncFileWriter(m_root, "drop", 4, LogOverflowPolicy.DROP, 0, 0);
+		for(int i = 0; i < 10; i++)
+			w.write(Level.ERROR, "l" + i);
+		Assert.assertEquals(6, w.getDroppedCount());
+		w.start();
+		w.terminate();
+		Assert.assertEquals(lines("l", 0, 4), read(logFile(m_root, "drop")));
+	}
+
+	@Test
+	public void testBlockPolicy() throws Exception {
+		AsyncFileWriter w = new AsyncFileWriter(m_root, "block", 4, LogOverflowPolicy.BLOCK, 0, 0);
+		AtomicBoolean done = new AtomicBoolean();
+		Thread producer = new Thread(() -> {
+			for(int i = 0; i < 100; i++)
+				w.write(Level.INFO, "l" + i);
+			done.set(true);
+		});
+		producer.start();
+		Thread.sleep(200);
+		Assert.assertFalse("The producer was not blocked by the full queue", done.get());
+		w.start();
+		producer.join(10000);
+		Assert.assertTrue(done.get());
+		w.terminate();
+		Assert.assertEquals(0, w.getDroppedCount());
+		Assert.assertEquals(lines("l", 0, 100), read(logFile(m_root, "block")));
+	}
+
+	@Test
+	public void testDropDebugFirstPolicy() throws Exception {
+		//-- With 8 slots debug lines are dropped from 6 queued lines on; the other lines can use the rest.
+		AsyncFileWriter w = new AsyncFileWriter(m_root, "ddf", 8, LogOverflowPolicy.DROP_DEBUG_FIRST, 0, 0);
+		for(int i = 0; i < 10; i++)
+			w.write(Level.DEBUG, "d" + i);
+		Assert.assertEquals(4, w.getDroppedCount());
+		w.write(Level.TRACE, "t");
+		Assert.assertEquals(5, w.getDroppedCount());
+		w.write(Level.INFO, "i0");
+		w.write(Level.ERROR, "i1");
+		Assert.assertEquals(5, w.getDroppedCount());
+		w.start();
+		w.terminate();
+		List<String> expected = lines("d", 0, 6);
+		expected.add("i0");
+		expected.add("i1");
+		Assert.assertEquals(expected, read(logFile(m_root, "ddf")));
+	}
+
+	@Test
+	public void testWriterFailure() throws Exception {
+		//-- A file where the log directory should be makes opening the log fail,
+		File blocker = new File(m_root, "blocked");
+		Files.write(blocker.toPath(), new byte[]{1});
+		File root = new File(blocker, "logs");
+		AsyncFileWriter w = new AsyncFileWriter(root, "fail", 16, LogOverflowPolicy.BLOCK, 0, 0);
+		w.start();
+		w.write(Level.ERROR, "lost");
+		waitFor("the write failure", 5000, () -> w.getFailureCount() == 1);
+
+		//-- but the writer keeps going, and writes again once the problem is gone.
+		blocker.delete();
+		w.write(Level.ERROR, "kept");
+		w.terminate();
+		Assert.assertEquals(1, w.getFailureCount());
+		List<String> expected = new ArrayList<>();
+		expected.add("kept");
+		Assert.assertEquals(expected, read(logFile(root, "fail")));
+	}
+
+	@Test
+	public void testRotation() throws Exception {
+		AsyncFileWriter w = new AsyncFileWriter(m_root, "rot", 16, LogOverflowPolicy.BLOCK, 100, 2);
+		w.start();
+		File f = logFile(m_root, "rot");
+		String pad = "..................................................";	// Every line is more than half the max size
+		for(int i = 0; i < 4; i++) {
+			String line = "l" + i + pad;
+			w.write(Level.INFO, line);
+			waitFor("line " + i, 5000, () -> read(f).contains(line));
+		}
+		w.terminate();
+		Assert.assertEquals("l3" + pad, read(f).get(0));
+		Assert.assertEquals("l2" + pad, read(new File(f + ".1")).get(0));
+		Assert.assertEquals("l1" + pad, read(new File(f + ".2")).get(0));
+		Assert.assertFalse("More backups than configured", new File(f + ".3").exists());
+	}
+
+	@Test
+	public void testFlushOnTerminate() throws Exception {
+		AsyncFileWriter w = new AsyncFileWriter(m_root, "flush", 8192, LogOverflowPolicy.BLOCK, 0, 0);
+		w.start();
+		for(int i = 0; i < 5000; i++)
+			w.write(Level.INFO, "l" + i);
+		w.terminate();
+		Assert.assertEquals(lines("l", 0, 5000), read(logFile(m_root, "flush")));
+	}
+}
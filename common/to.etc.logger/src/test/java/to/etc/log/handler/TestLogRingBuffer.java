@@ -0,0 +1,68 @@
+package to.etc.log.handler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks ordering, overflow and wrap-around of the log ring buffer, also with concurrent producers.
+ */
+public class TestLogRingBuffer {
+	@Test
+	public void testOverflow() {
+		LogRingBuffer<String> rb = new LogRingBuffer<>(3);
+		Assert.assertEquals(4, rb.capacity());
+		for(int i = 0; i < 4; i++)
+			Assert.assertTrue(rb.offer("l" + i));
+		Assert.assertFalse("A full buffer accepted an item", rb.offer("l4"));
+		Assert.assertEquals(4, rb.size());
+
+		//-- Taking one item makes room for exactly one more.
+		Assert.assertEquals("l0", rb.poll());
+		Assert.assertTrue(rb.offer("l4"));
+		Assert.assertFalse(rb.offer("l5"));
+		for(int i = 1; i <= 4; i++)
+			Assert.assertEquals("l" + i, rb.poll());
+		Assert.assertNull(rb.poll());
+		Assert.assertEquals(0, rb.size());
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		LogRingBuffer<String> rb = new LogRingBuffer<>(64);
+		int producers = 4;
+		int count = 20000;
+		List<Thread> threads = new ArrayList<>();
+		for(int p = 0; p < producers; p++) {
+			String prefix = p + ":";
+			Thread t = new Thread(() -> {
+				for(int i = 0; i < count; i++) {
+					while(! rb.offer(prefix + i))
+						Thread.yield();
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+
+		//-- Every item arrives once, and the items of one producer stay in order.
+		int[] next = new int[producers];
+		int total = 0;
+		while(total < producers * count) {
+			String s = rb.poll();
+			if(null == s) {
+				Thread.yield();
+				continue;
+			}
+			int pos = s.indexOf(':');
+			int p = Integer.parseInt(s.substring(0, pos));
+			Assert.assertEquals(next[p]++, Integer.parseInt(s.substring(pos + 1)));
+			total++;
+		}
+		for(Thread t : threads)
+			t.join();
+		Assert.assertNull(rb.poll());
+	}
+}
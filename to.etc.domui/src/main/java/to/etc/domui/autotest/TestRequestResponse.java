@@ -241,6 +241,17 @@ public class TestRequestResponse implements IRequestResponse {
 	@Override
 	public void addHeader(@NonNull String name, @NonNull String value) {}
 
+	@Override
+	@Nullable
+	public String getRequestHeader(@NonNull String name) {
+		return null;
+	}
+
+	@Override
+	public void setStatus(int httpStatusCode) {
+		m_errorCode = httpStatusCode;
+	}
+
 	@NonNull
 	public TestResponseType getResponseType() {
 		return m_responseType;
@@ -0,0 +1,392 @@
+package to.etc.domui.caches.lists;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.etc.domui.server.DomApplication;
+import to.etc.domui.util.ICachedListMaker;
+import to.etc.webapp.eventmanager.ListenerType;
+import to.etc.webapp.eventmanager.VpEventManager;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The cache for lists created by {@link ICachedListMaker}s, mostly code tables. Every list is
+ * stored as an unmodifiable list that is shared by all users.
+ *
+ * <ul>
+ *	<li>A list expires after its timeout: the maker's own timeout, or else the default timeout
+ *		of the cache. When a list is used after the refresh-ahead part of its timeout has passed,
+ *		it is reloaded in the background while the old one is still returned, so that users do not
+ *		wait for the reload.</li>
+ *	<li>The total #of items in all lists is limited; when that is exceeded the least recently
+ *		used lists are dropped.</li>
+ *	<li>Only one thread loads a list; other threads that need the same list wait for it.</li>
+ *	<li>When the cache listens to the {@link VpEventManager} an invalidation done through
+ *		{@link #invalidateEverywhere(Connection, String)} is sent to all servers in the cluster.</li>
+ * </ul>
+ */
+final public class ListCache {
+	static private final Logger LOG = LoggerFactory.getLogger(ListCache.class);
+
+	@NonNull
+	private final DomApplication m_application;
+
+	/** All lists, in least-recently-used order. */
+	private final LinkedHashMap<String, Entry<?>> m_map = new LinkedHashMap<>(64, 0.75f, true);
+
+	/** The time a list stays valid when its maker does not specify it, in milliseconds; 0 means forever. */
+	private long m_defaultTimeout;
+
+	/** The part of the timeout after which a used list gets reloaded in the background, in percent. */
+	private int m_refreshAhead = 80;
+
+	/** The max #of items in all lists together; 0 means no limit. */
+	private int m_maxItems = 200_000;
+
+	private int m_itemCount;
+
+	@Nullable
+	private VpEventManager m_eventManager;
+
+	private long m_hits;
+
+	private long m_misses;
+
+	private long m_loads;
+
+	private long m_loadFailures;
+
+	private long m_loadNanos;
+
+	private long m_maxLoadNanos;
+
+	private long m_refreshes;
+
+	private long m_expirations;
+
+	private long m_evictions;
+
+	private long m_invalidations;
+
+	static private final class Entry<T> {
+		@NonNull
+		final String m_key;
+
+		@NonNull
+		final ICachedListMaker<T> m_maker;
+
+		/** The timeout in milliseconds, 0 for never. */
+		final long m_timeout;
+
+		@Nullable
+		List<T> m_list;
+
+		long m_loadedAt;
+
+		boolean m_refreshing;
+
+		Entry(@NonNull String key, @NonNull ICachedListMaker<T> maker, long timeout) {
+			m_key = key;
+			m_maker = maker;
+			m_timeout = timeout;
+		}
+
+		boolean isExpired(long now) {
+			return m_timeout > 0 && now - m_loadedAt >= m_timeout;
+		}
+
+		int size() {
+			List<T> list = m_list;
+			return list == null ? 0 : list.size();
+		}
+	}
+
+	public ListCache(@NonNull DomApplication application) {
+		m_application = application;
+	}
+
+	/**
+	 * Get the list for the maker, loading it if it is not cached or expired. The list cannot be changed.
+	 */
+	@NonNull
+	public <T> List<T> getList(@NonNull ICachedListMaker<T> maker) throws Exception {
+		String key = maker.getCacheKey();
+		Entry<T> e;
+		List<T> list;
+		synchronized(this) {
+			e = (Entry<T>) m_map.get(key);
+			if(null == e) {
+				long timeout = maker.getCacheTimeout();
+				e = new Entry<>(key, maker, timeout < 0 ? m_defaultTimeout : timeout);
+				m_map.put(key, e);
+			}
+			list = e.m_list;
+			long now = System.currentTimeMillis();
+			if(null != list && e.isExpired(now)) {
+				m_expirations++;
+				list = null;
+			}
+			if(null != list) {
+				m_hits++;
+				if(e.m_refreshing || e.m_timeout <= 0 || now - e.m_loadedAt < e.m_timeout * m_refreshAhead / 100)
+					return list;
+				e.m_refreshing = true;
+			} else {
+				m_misses++;
+			}
+		}
+
+		if(null != list) {
+			scheduleRefresh(e);
+			return list;
+		}
+		return load(e);
+	}
+
+	/**
+	 * Load the list for an entry. The entry lock makes sure that only one thread loads it; the
+	 * others wait and then use its result.
+	 */
+	@NonNull
+	private <T> List<T> load(@NonNull Entry<T> e) throws Exception {
+		synchronized(e) {
+			synchronized(this) {
+				List<T> list = e.m_list;
+				if(null != list && !e.isExpired(System.currentTimeMillis()))
+					return list;
+			}
+			return store(e, createList(e));
+		}
+	}
+
+	@NonNull
+	private <T> List<T> createList(@NonNull Entry<T> e) throws Exception {
+		long ts = System.nanoTime();
+		try {
+			List<T> list = Collections.unmodifiableList(new ArrayList<>(e.m_maker.createList(m_application)));
+			ts = System.nanoTime() - ts;
+			synchronized(this) {
+				m_loads++;
+				m_loadNanos += ts;
+				if(ts > m_maxLoadNanos)
+					m_maxLoadNanos = ts;
+			}
+			return list;
+		} catch(Exception x) {
+			synchronized(this) {
+				m_loadFailures++;
+			}
+			throw x;
+		}
+	}
+
+	/**
+	 * Store a newly loaded list, unless the entry was invalidated while loading, and evict lists when over budget.
+	 */
+	@NonNull
+	private synchronized <T> List<T> store(@NonNull Entry<T> e, @NonNull List<T> list) {
+		e.m_refreshing = false;
+		if(m_map.get(e.m_key) != e)					// Invalidated while loading: use but do not keep
+			return list;
+		m_itemCount += list.size() - e.size();
+		e.m_list = list;
+		e.m_loadedAt = System.currentTimeMillis();
+		evict(e);
+		return list;
+	}
+
+	private void evict(@Nullable Entry<?> keep) {
+		if(m_maxItems <= 0)
+			return;
+		for(Iterator<Entry<?>> it = m_map.values().iterator(); m_itemCount > m_maxItems && it.hasNext(); ) {
+			Entry<?> e = it.next();
+			if(e == keep)
+				continue;
+			it.remove();
+			m_itemCount -= e.size();
+			m_evictions++;
+		}
+	}
+
+	private <T> void scheduleRefresh(@NonNull Entry<T> e) {
+		try {
+			m_application.getAsyncExecutor().submit(null, 0, () -> {
+				try {
+					synchronized(e) {
+						store(e, createList(e));
+					}
+					synchronized(this) {
+						m_refreshes++;
+					}
+				} catch(Exception x) {
+					LOG.error("Reloading cached list " + e.m_key + " failed, the old one is used until it expires", x);
+					synchronized(this) {
+						e.m_refreshing = false;
+					}
+				}
+			});
+		} catch(IllegalStateException x) {
+			synchronized(this) {								// Executor terminated: shutting down.
+				e.m_refreshing = false;
+			}
+		}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Invalidation.										*/
+	/*--------------------------------------------------------------*/
+	/**
+	 * Drop a list from this server's cache, or all lists when the key is null.
+	 */
+	public synchronized void invalidate(@Nullable String key) {
+		if(null == key) {
+			m_map.clear();
+			m_itemCount = 0;
+		} else {
+			Entry<?> e = m_map.remove(key);
+			if(null == e)
+				return;
+			m_itemCount -= e.size();
+		}
+		m_invalidations++;
+	}
+
+	/**
+	 * Drop a list, or all lists when the key is null, on all servers in the cluster. This posts a
+	 * {@link ListCacheInvalidatedEvent} which <b>commits the connection</b>; so call this after the
+	 * changes to the list's data are saved in that same connection, or have been committed. When the
+	 * cache is not connected to the event manager only this server's cache is invalidated.
+	 */
+	public void invalidateEverywhere(@NonNull Connection dbc, @Nullable String key) throws Exception {
+		VpEventManager em;
+		synchronized(this) {
+			em = m_eventManager;
+		}
+		if(null == em) {
+			invalidate(key);
+			return;
+		}
+		em.postEvent(dbc, new ListCacheInvalidatedEvent(key));		// Calls our listener immediately, and the other servers' when they see it
+	}
+
+	/**
+	 * Listen to invalidations sent by other servers, and send our own invalidations to them. The
+	 * application's event marshaller must be able to handle {@link ListCacheInvalidatedEvent}.
+	 */
+	public void listenForInvalidations(@NonNull VpEventManager em) {
+		synchronized(this) {
+			if(m_eventManager == em)
+				return;
+			m_eventManager = em;
+		}
+		em.addListener(ListCacheInvalidatedEvent.class, ListenerType.IMMEDIATELY, ev -> invalidate(ev.getKey()));
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Configuration and metrics.							*/
+	/*--------------------------------------------------------------*/
+
+	public synchronized long getDefaultTimeout() {
+		return m_defaultTimeout;
+	}
+
+	/**
+	 * Set the time a list stays valid when its maker does not specify it, in milliseconds. 0 means forever.
+	 * Only applies to lists that are loaded after this call.
+	 */
+	public synchronized void setDefaultTimeout(long defaultTimeout) {
+		m_defaultTimeout = defaultTimeout;
+	}
+
+	public synchronized int getRefreshAhead() {
+		return m_refreshAhead;
+	}
+
+	/**
+	 * Set the percentage of the timeout after which a list that is used is reloaded in the background. 100 disables refresh-ahead.
+	 */
+	public synchronized void setRefreshAhead(int percentage) {
+		if(percentage < 1 || percentage > 100)
+			throw new IllegalArgumentException("The refresh-ahead percentage must be between 1 and 100");
+		m_refreshAhead = percentage;
+	}
+
+	public synchronized int getMaxItems() {
+		return m_maxItems;
+	}
+
+	/**
+	 * Set the max #of items in all lists together, 0 for no limit.
+	 */
+	public synchronized void setMaxItems(int maxItems) {
+		m_maxItems = maxItems;
+		evict(null);
+	}
+
+	/** The #of lists in the cache. */
+	public synchronized int getListCount() {
+		return m_map.size();
+	}
+
+	/** The #of items in all cached lists. */
+	public synchronized int getItemCount() {
+		return m_itemCount;
+	}
+
+	public synchronized long getHits() {
+		return m_hits;
+	}
+
+	public synchronized long getMisses() {
+		return m_misses;
+	}
+
+	public synchronized long getLoads() {
+		return m_loads;
+	}
+
+	public synchronized long getLoadFailures() {
+		return m_loadFailures;
+	}
+
+	/** The total time spent loading lists, in nanoseconds. */
+	public synchronized long getTotalLoadTime() {
+		return m_loadNanos;
+	}
+
+	/** The longest time a list load took, in nanoseconds. */
+	public synchronized long getMaxLoadTime() {
+		return m_maxLoadNanos;
+	}
+
+	/** The #of lists reloaded in the background. */
+	public synchronized long getRefreshes() {
+		return m_refreshes;
+	}
+
+	public synchronized long getExpirations() {
+		return m_expirations;
+	}
+
+	public synchronized long getEvictions() {
+		return m_evictions;
+	}
+
+	public synchronized long getInvalidations() {
+		return m_invalidations;
+	}
+
+	@NonNull
+	@Override
+	public synchronized String toString() {
+		return "ListCache lists=" + m_map.size() + " items=" + m_itemCount + "/" + m_maxItems + " hits=" + m_hits + " misses=" + m_misses + " loads=" + m_loads
+			+ " failures=" + m_loadFailures + " evictions=" + m_evictions;
+	}
+}
@@ -0,0 +1,35 @@
+package to.etc.domui.caches.lists;
+
+import org.eclipse.jdt.annotation.Nullable;
+import to.etc.webapp.eventmanager.AppEventBase;
+
+/**
+ * Notification sent to all servers in the cluster when a cached list has changed, so that
+ * every server drops its copy.
+ */
+public class ListCacheInvalidatedEvent extends AppEventBase {
+	/** The cache key of the list, or null when all lists are invalidated. */
+	@Nullable
+	private String m_key;
+
+	public ListCacheInvalidatedEvent() {
+	}
+
+	public ListCacheInvalidatedEvent(@Nullable String key) {
+		m_key = key;
+	}
+
+	@Nullable
+	public String getKey() {
+		return m_key;
+	}
+
+	public void setKey(@Nullable String key) {
+		m_key = key;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + " key=" + m_key;
+	}
+}
@@ -6,6 +6,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import to.etc.domui.component.meta.MetaManager;
 import to.etc.domui.component.meta.PropertyMetaModel;
 import to.etc.domui.component.meta.YesNoType;
+import to.etc.domui.databinding.model.IObservableModel;
 import to.etc.domui.dom.errors.UIMessage;
 import to.etc.domui.dom.html.NodeBase;
 import to.etc.domui.util.IReadOnlyModel;
@@ -120,6 +121,30 @@ abstract class AbstractComponentPropertyBinding<C extends NodeBase, CV, M, MV> i
 		return m_instanceProperty;
 	}
 
+	/**
+	 * If this binds a direct property of an {@link IObservableModel} return that model, so that
+	 * the binding only needs to be updated when the model reports a change. Returns null for
+	 * property paths (like "a.b") because changes in the objects along the path are not observed.
+	 */
+	@Nullable
+	IObservableModel getObservedModel() {
+		M instance = m_instance;
+		if(m_getter != null || !(instance instanceof IObservableModel))
+			return null;
+		String name = getObservedPropertyName();
+		if(null == name || name.indexOf('.') >= 0)
+			return null;
+		return (IObservableModel) instance;
+	}
+
+	@Nullable
+	String getObservedPropertyName() {
+		IValueAccessor<MV> instanceProperty = m_instanceProperty;
+		if(instanceProperty instanceof PropertyMetaModel)
+			return ((PropertyMetaModel<MV>) instanceProperty).getName();
+		return null;
+	}
+
 
 	@Nullable
 	protected MV getValueFromModel() throws Exception {
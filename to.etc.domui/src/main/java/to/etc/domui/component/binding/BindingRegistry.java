@@ -0,0 +1,260 @@
+package to.etc.domui.component.binding;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import to.etc.domui.databinding.model.IModelChangeListener;
+import to.etc.domui.databinding.model.IObservableModel;
+import to.etc.domui.databinding.model.ModelChangeEvent;
+import to.etc.domui.dom.html.NodeBase;
+import to.etc.domui.dom.html.Page;
+import to.etc.domui.util.DomUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps all nodes of a page that have bindings, in DOM order, so that moving data between
+ * the model and the controls does not need to walk the whole page tree on every request. The
+ * order is only recalculated after a node with bindings was added to or removed from the page,
+ * or after bindings were added or removed on an attached node.
+ * <p>Bindings to a direct property of an {@link IObservableModel} are only moved to their control
+ * after that model reported a change; all other bindings are always checked. This differs from
+ * walking the tree in one way: a value that changes in such a model <i>without</i> an event (a
+ * field assignment, or a property calculated from other properties) does not reach its control.
+ * A control whose value was changed by code keeps that value until the next controlToModel moves
+ * it to the model, exactly as before, because a binding only updates its control when the model
+ * value differs from the last value it saw.</p>
+ * <p>The registry only registers a weak listener on the observed models, so a model that lives
+ * longer than the page (a session object, for instance) does not keep the page in memory. The
+ * listeners are removed explicitly when the page is destroyed, or when a model is no longer bound.</p>
+ */
+@NonNullByDefault
+final public class BindingRegistry {
+	static private final NodeBase[] NONE = new NodeBase[0];
+
+	private final Page m_page;
+
+	/** Incremented every time the set of bound nodes changes. */
+	private int m_version;
+
+	private int m_orderVersion = -1;
+
+	/** The nodes with bindings, parents before children. */
+	private NodeBase[] m_preOrder = NONE;
+
+	/** The nodes with bindings, children before parents. */
+	private NodeBase[] m_postOrder = NONE;
+
+	/** All bindings on observable models, by model. */
+	private final Map<IObservableModel, List<AbstractComponentPropertyBinding<?, ?, ?, ?>>> m_observedMap = new IdentityHashMap<>();
+
+	/** Observed bindings whose control has the current model value. */
+	private final Set<IBinding> m_cleanSet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private final IModelChangeListener m_modelListener = new ModelListener(this);
+
+	/**
+	 * Only weakly refers to its registry, so that an observed model does not pin the page. Once
+	 * the registry is gone the listener removes itself from the next model that fires.
+	 */
+	static private final class ModelListener implements IModelChangeListener {
+		private final WeakReference<BindingRegistry> m_registry;
+
+		public ModelListener(BindingRegistry registry) {
+			m_registry = new WeakReference<>(registry);
+		}
+
+		@Override
+		public void handleChange(@NonNull ModelChangeEvent event) throws Exception {
+			BindingRegistry registry = m_registry.get();
+			if(null == registry)
+				((IObservableModel) event.getSource()).removeChangeListener(this);
+			else
+				registry.modelChanged(event);
+		}
+	}
+
+	public BindingRegistry(Page page) {
+		m_page = page;
+	}
+
+	/**
+	 * Called when a node with bindings gets added or removed, or when the bindings of an attached node change.
+	 */
+	public void invalidate() {
+		m_version++;
+	}
+
+	/**
+	 * Move all changed control values to the model, deepest nodes first. Only the bindings
+	 * on root and its children are moved.
+	 */
+	public void controlToModel(NodeBase root) throws Exception {
+		List<BindingValuePair<?>> pairs = new ArrayList<>();
+		for(NodeBase n : getPostOrder()) {
+			if(!isInside(n, root))
+				continue;
+			List<IBinding> list = n.getBindingList();
+			if(null == list)
+				continue;
+			for(IBinding sb : list) {
+				BindingValuePair<?> pair = sb.getBindingDifference();
+				if(null != pair)
+					pairs.add(pair);
+				if(pair != null || sb.getBindError() != null)
+					m_cleanSet.remove(sb);						// Make sure the control gets the model's value again.
+			}
+		}
+
+		for(BindingValuePair<?> pair : pairs) {
+			pair.moveControlToModel();
+		}
+	}
+
+	/**
+	 * Move all model values to the controls on root and its children, parents first. If this
+	 * changes the set of bound nodes (because a control builds new bound content) the new order
+	 * is walked again.
+	 */
+	public void modelToControl(NodeBase root) throws Exception {
+		for(int pass = 0; pass < 10; pass++) {
+			NodeBase[] nodes = getPreOrder();
+			int version = m_version;
+			for(NodeBase n : nodes) {
+				if(!n.isAttached() || !isInside(n, root))
+					continue;
+				List<IBinding> list = n.getBindingList();
+				if(null == list)
+					continue;
+				for(IBinding sb : list.toArray(new IBinding[list.size()])) {
+					if(m_cleanSet.contains(sb))
+						continue;
+					sb.moveModelToControl();
+					if(sb instanceof AbstractComponentPropertyBinding && ((AbstractComponentPropertyBinding<?, ?, ?, ?>) sb).getObservedModel() != null)
+						m_cleanSet.add(sb);
+				}
+			}
+			if(version == m_version)
+				return;
+		}
+	}
+
+	/**
+	 * Stop listening to all models; called when the page is destroyed.
+	 */
+	public void clear() {
+		for(IObservableModel model : m_observedMap.keySet())
+			model.removeChangeListener(m_modelListener);
+		m_observedMap.clear();
+		m_cleanSet.clear();
+		m_preOrder = NONE;
+		m_postOrder = NONE;
+		m_orderVersion = -1;
+	}
+
+	/**
+	 * T if the node is the root or one of its children.
+	 */
+	private boolean isInside(NodeBase n, NodeBase root) {
+		if(root == m_page.getBody())
+			return true;
+		NodeBase c = n;
+		for(;;) {
+			if(c == root)
+				return true;
+			NodeBase parent = c.internalGetParent();
+			if(null == parent)
+				return false;
+			c = parent;
+		}
+	}
+
+	private NodeBase[] getPreOrder() throws Exception {
+		if(m_orderVersion != m_version)
+			rebuild();
+		return m_preOrder;
+	}
+
+	private NodeBase[] getPostOrder() throws Exception {
+		if(m_orderVersion != m_version)
+			rebuild();
+		return m_postOrder;
+	}
+
+	/**
+	 * Walk the page once to collect the bound nodes in both orders, and update the model listeners.
+	 */
+	private void rebuild() throws Exception {
+		List<NodeBase> pre = new ArrayList<>();
+		List<NodeBase> post = new ArrayList<>();
+		DomUtil.walkTreeUndelegated(m_page.getBody(), new DomUtil.IPerNode() {
+			@Override
+			@Nullable
+			public Object before(NodeBase n) throws Exception {
+				List<IBinding> list = n.getBindingList();
+				if(null != list && list.size() > 0)
+					pre.add(n);
+				return null;
+			}
+
+			@Override
+			@Nullable
+			public Object after(NodeBase n) throws Exception {
+				List<IBinding> list = n.getBindingList();
+				if(null != list && list.size() > 0)
+					post.add(n);
+				return null;
+			}
+		});
+		m_preOrder = pre.toArray(new NodeBase[pre.size()]);
+		m_postOrder = post.toArray(new NodeBase[post.size()]);
+		m_orderVersion = m_version;
+
+		//-- Recalculate the observed models.
+		Map<IObservableModel, List<AbstractComponentPropertyBinding<?, ?, ?, ?>>> newMap = new IdentityHashMap<>();
+		Set<IBinding> present = Collections.newSetFromMap(new IdentityHashMap<>());
+		for(NodeBase n : pre) {
+			List<IBinding> list = n.getBindingList();
+			if(null == list)
+				continue;
+			for(IBinding sb : list) {
+				if(sb instanceof AbstractComponentPropertyBinding) {
+					AbstractComponentPropertyBinding<?, ?, ?, ?> b = (AbstractComponentPropertyBinding<?, ?, ?, ?>) sb;
+					IObservableModel model = b.getObservedModel();
+					if(null != model) {
+						newMap.computeIfAbsent(model, a -> new ArrayList<>()).add(b);
+						present.add(b);
+					}
+				}
+			}
+		}
+		for(IObservableModel model : m_observedMap.keySet()) {
+			if(!newMap.containsKey(model))
+				model.removeChangeListener(m_modelListener);
+		}
+		for(IObservableModel model : newMap.keySet()) {
+			if(!m_observedMap.containsKey(model))
+				model.addChangeListener(m_modelListener);
+		}
+		m_observedMap.clear();
+		m_observedMap.putAll(newMap);
+		m_cleanSet.retainAll(present);
+	}
+
+	private void modelChanged(@NonNull ModelChangeEvent event) {
+		List<AbstractComponentPropertyBinding<?, ?, ?, ?>> list = m_observedMap.get(event.getSource());
+		if(null == list)
+			return;
+		String name = event.getPropertyName();
+		for(AbstractComponentPropertyBinding<?, ?, ?, ?> b : list) {
+			if(name == null || name.equals(b.getObservedPropertyName()))
+				m_cleanSet.remove(b);
+		}
+	}
+}
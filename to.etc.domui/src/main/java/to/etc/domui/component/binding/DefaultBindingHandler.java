@@ -35,6 +35,11 @@ public class DefaultBindingHandler implements IBindingHandler {
 	 */
 	@Override
 	public void controlToModel() throws Exception {
+		BindingRegistry registry = getPageRegistry();
+		if(null != registry) {
+			registry.controlToModel(m_rootNode);
+			return;
+		}
 		List<BindingValuePair<?>> pairs = collectChangedBindings();
 		if(pairs.size() == 0)
 			return;
@@ -90,6 +95,11 @@ public class DefaultBindingHandler implements IBindingHandler {
 	 */
 	@Override
 	public void modelToControl() throws Exception {
+		BindingRegistry registry = getPageRegistry();
+		if(null != registry) {
+			registry.modelToControl(m_rootNode);
+			return;
+		}
 		DomUtil.walkTreeUndelegated(m_rootNode, new DomUtil.IPerNode() {
 			@Override
 			@Nullable
@@ -109,4 +119,16 @@ public class DefaultBindingHandler implements IBindingHandler {
 			}
 		});
 	}
+
+	/**
+	 * When the root is part of a page use the page's binding registry, so that the tree need not
+	 * be walked, and so that subtrees and the whole page see the same model change state. Only
+	 * nodes that are not attached to a page walk the tree.
+	 */
+	@Nullable
+	private BindingRegistry getPageRegistry() {
+		if(!m_rootNode.isAttached())
+			return null;
+		return m_rootNode.getPage().internalGetBindingRegistry();
+	}
 }
@@ -59,6 +59,9 @@ final public class AsyncContainer extends Div {
 	 */
 	private String m_busyMarkerSrc = "THEME/asy-container-busy.gif";
 
+	/** The priority on the application's {@link AsyncExecutor}: higher priorities start first. */
+	private int m_priority;
+
 	public AsyncContainer(@NonNull IAsyncRunnable arunnable) {
 		this(arunnable, null);
 	}
@@ -208,6 +211,18 @@ final public class AsyncContainer extends Div {
 		m_abortable = abortable;
 	}
 
+	public int getPriority() {
+		return m_priority;
+	}
+
+	/**
+	 * Set the priority with which the activity is started by the application's {@link AsyncExecutor}
+	 * when not all activities can run at the same time. Higher priorities start first; the default is 0.
+	 */
+	public void setPriority(int priority) {
+		m_priority = priority;
+	}
+
 	public String getBusyMarkerSrc() {
 		return m_busyMarkerSrc;
 	}
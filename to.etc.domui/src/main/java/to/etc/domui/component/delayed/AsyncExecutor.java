@@ -0,0 +1,334 @@
+package to.etc.domui.component.delayed;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application-wide executor for asynchronous work like {@link AsyncContainer} activities and
+ * {@link AsyncWorker} jobs. It limits the #of tasks running at the same time, both in total and per
+ * session, and starts waiting tasks in order of priority (highest first) and then submission order.
+ * A session that has reached its limit does not block tasks of other sessions.
+ *
+ * <p>When the JVM supports virtual threads and they are enabled, every task runs in its own virtual
+ * thread; otherwise an unbounded pool of platform daemon threads is used. In both cases the limits
+ * of this class determine how many tasks actually run.</p>
+ */
+@NonNullByDefault
+final public class AsyncExecutor {
+	static private final Logger LOG = LoggerFactory.getLogger(AsyncExecutor.class);
+
+	/** The key used for tasks that do not belong to a session. */
+	static private final Object NO_SESSION = new Object();
+
+	private int m_maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	private int m_maxPerSession = 2;
+
+	private boolean m_useVirtualThreads;
+
+	/** Waiting tasks, in the order they are to be started. */
+	private final TreeSet<Task> m_queue = new TreeSet<>((a, b) -> {
+		int res = Integer.compare(b.m_priority, a.m_priority);
+		return res != 0 ? res : Long.compare(a.m_sequence, b.m_sequence);
+	});
+
+	private final Map<Object, Integer> m_runningPerSession = new HashMap<>();
+
+	@Nullable
+	private Executor m_executor;
+
+	private int m_running;
+
+	private long m_nextSequence;
+
+	private boolean m_terminated;
+
+	private long m_submittedCount;
+
+	private long m_completedCount;
+
+	private long m_failedCount;
+
+	private long m_totalRunNanos;
+
+	private long m_maxRunNanos;
+
+	private long m_totalWaitNanos;
+
+	private int m_maxQueueDepth;
+
+	private final class Task implements Runnable {
+		final Object m_sessionKey;
+
+		final int m_priority;
+
+		final long m_sequence;
+
+		final Runnable m_runnable;
+
+		final long m_submitTs = System.nanoTime();
+
+		Task(Object sessionKey, int priority, long sequence, Runnable runnable) {
+			m_sessionKey = sessionKey;
+			m_priority = priority;
+			m_sequence = sequence;
+			m_runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			boolean failed = true;
+			try {
+				m_runnable.run();
+				failed = false;
+			} catch(Throwable x) {
+				LOG.error("Uncaught exception in asynchronous task " + m_runnable, x);
+			} finally {
+				taskFinished(this, start, failed);
+			}
+		}
+	}
+
+	/**
+	 * Set the limits. The thread type can only be changed before the first task is submitted.
+	 */
+	public synchronized void configure(int maxThreads, int maxPerSession, boolean useVirtualThreads) {
+		if(maxThreads < 1 || maxPerSession < 1)
+			throw new IllegalArgumentException("The thread limits must be at least 1");
+		m_maxThreads = maxThreads;
+		m_maxPerSession = maxPerSession;
+		if(m_executor == null)
+			m_useVirtualThreads = useVirtualThreads;
+		dispatch();
+	}
+
+	/**
+	 * Queue a task for execution.
+	 *
+	 * @param sessionKey	The session the task belongs to, for the per-session limit, or null if it is not limited per session.
+	 * @param priority		Tasks with a higher priority are started first.
+	 */
+	public synchronized void submit(@Nullable Object sessionKey, int priority, Runnable runnable) {
+		if(m_terminated)
+			throw new IllegalStateException("The executor has been terminated - system shutdown in progress");
+		m_queue.add(new Task(sessionKey == null ? NO_SESSION : sessionKey, priority, m_nextSequence++, runnable));
+		m_submittedCount++;
+		if(m_queue.size() > m_maxQueueDepth)
+			m_maxQueueDepth = m_queue.size();
+		dispatch();
+	}
+
+	/**
+	 * Remove a task that has not yet started. Returns false if the task is not waiting.
+	 */
+	public synchronized boolean remove(Runnable runnable) {
+		for(Iterator<Task> it = m_queue.iterator(); it.hasNext(); ) {
+			if(it.next().m_runnable == runnable) {
+				it.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return the #of tasks that will start before the specified one, or -1 if it is not waiting.
+	 */
+	public synchronized int getQueuePosition(Runnable runnable) {
+		int index = 0;
+		for(Task t : m_queue) {
+			if(t.m_runnable == runnable)
+				return index;
+			index++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Start as many waiting tasks as the limits allow.
+	 */
+	private void dispatch() {
+		if(m_terminated)
+			return;
+		Iterator<Task> it = m_queue.iterator();
+		while(m_running < m_maxThreads && it.hasNext()) {
+			Task t = it.next();
+			int sessionCount = getSessionCount(t.m_sessionKey);
+			if(t.m_sessionKey != NO_SESSION && sessionCount >= m_maxPerSession)
+				continue;
+			it.remove();
+			m_running++;
+			m_runningPerSession.put(t.m_sessionKey, Integer.valueOf(sessionCount + 1));
+			m_totalWaitNanos += System.nanoTime() - t.m_submitTs;
+			try {
+				getExecutor().execute(t);
+			} catch(RuntimeException x) {
+				m_running--;
+				decrementSession(t.m_sessionKey);
+				throw x;
+			}
+		}
+	}
+
+	private int getSessionCount(Object key) {
+		Integer count = m_runningPerSession.get(key);
+		return count == null ? 0 : count.intValue();
+	}
+
+	private void decrementSession(Object key) {
+		int count = getSessionCount(key) - 1;
+		if(count <= 0)
+			m_runningPerSession.remove(key);
+		else
+			m_runningPerSession.put(key, Integer.valueOf(count));
+	}
+
+	private synchronized void taskFinished(Task t, long start, boolean failed) {
+		long runtime = System.nanoTime() - start;
+		m_running--;
+		decrementSession(t.m_sessionKey);
+		m_completedCount++;
+		if(failed)
+			m_failedCount++;
+		m_totalRunNanos += runtime;
+		if(runtime > m_maxRunNanos)
+			m_maxRunNanos = runtime;
+		dispatch();
+	}
+
+	private Executor getExecutor() {
+		Executor executor = m_executor;
+		if(null == executor) {
+			ThreadFactory vf = m_useVirtualThreads ? getVirtualThreadFactory() : null;
+			if(null != vf) {
+				ThreadFactory f = vf;
+				executor = r -> f.newThread(r).start();
+			} else {
+				ThreadFactory factory = r -> {
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					t.setName("async");
+					t.setPriority(Thread.MIN_PRIORITY);
+					return t;
+				};
+				executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), factory);
+			}
+			m_executor = executor;
+		}
+		return executor;
+	}
+
+	/**
+	 * Get a factory for virtual threads through reflection, as they do not exist in the Java version
+	 * we compile for. Returns null if the JVM does not support them.
+	 */
+	@Nullable
+	static private ThreadFactory getVirtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "async-", Long.valueOf(0));
+			Method factory = builderClass.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch(Exception x) {
+			LOG.info("Virtual threads are not available, using platform threads for asynchronous tasks");
+			return null;
+		}
+	}
+
+	/**
+	 * Discard all waiting tasks and refuse new ones. Running tasks are interrupted if they run in the platform thread pool.
+	 */
+	public void terminate() {
+		Executor executor;
+		synchronized(this) {
+			if(m_terminated)
+				return;
+			m_terminated = true;
+			m_queue.clear();
+			executor = m_executor;
+		}
+		if(executor instanceof ThreadPoolExecutor)
+			((ThreadPoolExecutor) executor).shutdownNow();
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Metrics.											*/
+	/*--------------------------------------------------------------*/
+
+	public synchronized int getMaxThreads() {
+		return m_maxThreads;
+	}
+
+	public synchronized int getMaxPerSession() {
+		return m_maxPerSession;
+	}
+
+	public synchronized boolean isUsingVirtualThreads() {
+		return m_executor != null && !(m_executor instanceof ThreadPoolExecutor);
+	}
+
+	/** The #of tasks waiting to be started. */
+	public synchronized int getQueueDepth() {
+		return m_queue.size();
+	}
+
+	/** The highest #of waiting tasks seen. */
+	public synchronized int getMaxQueueDepth() {
+		return m_maxQueueDepth;
+	}
+
+	/** The #of tasks currently running. */
+	public synchronized int getRunningCount() {
+		return m_running;
+	}
+
+	public synchronized long getSubmittedCount() {
+		return m_submittedCount;
+	}
+
+	public synchronized long getCompletedCount() {
+		return m_completedCount;
+	}
+
+	/** The #of tasks that ended with an uncaught exception. */
+	public synchronized long getFailedCount() {
+		return m_failedCount;
+	}
+
+	/** The total time all completed tasks ran, in nanoseconds. */
+	public synchronized long getTotalRunTime() {
+		return m_totalRunNanos;
+	}
+
+	/** The longest time a task ran, in nanoseconds. */
+	public synchronized long getMaxRunTime() {
+		return m_maxRunNanos;
+	}
+
+	/** The total time all started tasks waited in the queue, in nanoseconds. */
+	public synchronized long getTotalWaitTime() {
+		return m_totalWaitNanos;
+	}
+
+	@NonNull
+	@Override
+	public synchronized String toString() {
+		return "AsyncExecutor running=" + m_running + "/" + m_maxThreads + " queued=" + m_queue.size() + " completed=" + m_completedCount + " failed=" + m_failedCount;
+	}
+}
@@ -12,11 +12,6 @@ import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A worker implementation that can be used to run async tasks
@@ -36,7 +31,10 @@ public class AsyncWorker {
 	private boolean m_terminated;
 
 	@Nullable
-	private ThreadPoolExecutor m_executor;
+	private AsyncExecutor m_executor;
+
+	/** T if the executor was created by this worker, and so must be terminated by it. */
+	private boolean m_ownExecutor;
 
 	final private Map<String, Reference<Job>> m_jobMap = new HashMap<>();
 
@@ -44,36 +42,41 @@ public class AsyncWorker {
 		return m_instance;
 	}
 
+	/**
+	 * Initialize with a private executor running at most maxThreads jobs at the same time.
+	 */
 	public synchronized void initialize(int maxThreads) {
 		if(m_initialized)
 			return;
-		ThreadFactory factory = r -> {
-			Thread t = new Thread(r);
-			t.setDaemon(true);
-			t.setName("asyncWorker");
-			return t;
-		};
-
-		PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>(256, (a, b) -> {
-			int pa = (a instanceof Job) ? ((Job) a).getPriority() : 0;
-			int pb = (b instanceof Job) ? ((Job) b).getPriority() : 0;
-			return - Integer.compare(pa, pb);
-		});
-		//BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(8192, true);
-		m_executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, queue, factory);
+		AsyncExecutor executor = new AsyncExecutor();
+		executor.configure(maxThreads, maxThreads, false);
+		m_executor = executor;
+		m_ownExecutor = true;
+		m_initialized = true;
+	}
+
+	/**
+	 * Initialize to run the jobs on a shared executor, usually the application's {@link to.etc.domui.server.DomApplication#getAsyncExecutor()}.
+	 */
+	public synchronized void initialize(AsyncExecutor executor) {
+		if(m_initialized)
+			return;
+		m_executor = executor;
 		m_initialized = true;
 	}
 
 	public void terminate() {
-		ThreadPoolExecutor executor;
+		AsyncExecutor executor;
 		synchronized(this) {
 			if(! m_initialized || m_terminated)
 				return;
 			m_terminated = true;
 			executor = m_executor;
+			if(! m_ownExecutor)
+				return;
 		}
 		if(null != executor)
-			executor.shutdownNow();
+			executor.terminate();
 	}
 
 	private synchronized String nextID() {
@@ -91,10 +94,10 @@ public class AsyncWorker {
 			throw new IllegalStateException("The executor has been terminated - system shutdown in progress");
 		String id = nextID();
 		Job job = new Job(this, id, runnable, onComplete, name, priority);
-		ThreadPoolExecutor executor = m_executor;
+		AsyncExecutor executor = m_executor;
 		if(null == executor)
 			throw new IllegalStateException();
-		executor.execute(job);
+		executor.submit(null, priority, job);
 		m_jobMap.put(id, new WeakReference<>(job));
 		if(m_idCount % 5 == 0)
 			pruneJobs();
@@ -102,19 +105,13 @@ public class AsyncWorker {
 	}
 
 	private int queueIndex(Job job) {
-		ThreadPoolExecutor executor = m_executor;
+		AsyncExecutor executor;
+		synchronized(this) {
+			executor = m_executor;
+		}
 		if(null == executor)
 			return -1;
-		ArrayBlockingQueue<Runnable> aq = (ArrayBlockingQueue<Runnable>) executor.getQueue();
-
-		//-- For some reason the assholes that made the above joke have no indexOf.
-		int assholes = 0;
-		for(Runnable runnable : aq) {
-			if(runnable == job)
-				return assholes;
-			assholes++;
-		}
-		return -1;
+		return executor.getQueuePosition(job);
 	}
 
 	private synchronized void pruneJobs() {
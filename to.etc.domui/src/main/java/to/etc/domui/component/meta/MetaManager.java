@@ -96,7 +96,7 @@ final public class MetaManager {
 	}
 
 	@NonNull
-	static private synchronized List<IClassMetaModelFactory> getList() {
+	static private List<IClassMetaModelFactory> getList() {
 		return MetaInitializer.getList();
 	}
 
@@ -884,12 +884,13 @@ final public class MetaManager {
 	}
 
 	/**
-	 * EXPENSIVE - Use with care - try to find a ClassMetaModel that represents the specified table name.
+	 * EXPENSIVE - Use with care - try to find a ClassMetaModel that represents the specified table name. This
+	 * only looks at metamodels that have already been initialized, and does not lock.
 	 * @param tableName
 	 * @return
 	 */
 	@Nullable
-	static synchronized public ClassMetaModel findClassByTable(@NonNull String tableName) {
+	static public ClassMetaModel findClassByTable(@NonNull String tableName) {
 		for(ClassMetaModel cmm : MetaInitializer.getAllMetaClasses()) {
 			if(tableName.equalsIgnoreCase(cmm.getTableName()))
 				return cmm;
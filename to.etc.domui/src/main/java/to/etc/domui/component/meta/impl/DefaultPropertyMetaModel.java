@@ -36,6 +36,7 @@ import to.etc.domui.component.meta.YesNoType;
 import to.etc.domui.util.IComboDataSet;
 import to.etc.domui.util.ILabelStringRenderer;
 import to.etc.domui.util.IRenderInto;
+import to.etc.util.MethodAccessors;
 import to.etc.util.PropertyInfo;
 import to.etc.webapp.nls.BundleRef;
 import to.etc.webapp.nls.NlsContext;
@@ -48,6 +49,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public class DefaultPropertyMetaModel<T> extends BasicPropertyMetaModel<T> implements PropertyMetaModel<T> {
 	@NonNull
@@ -58,6 +61,21 @@ public class DefaultPropertyMetaModel<T> extends BasicPropertyMetaModel<T> imple
 
 	private final PropertyInfo m_descriptor;
 
+	/** The generated getter function, or null if it could not be generated and reflection must be used. */
+	@Nullable
+	private final Function<Object, Object> m_getterFunction;
+
+	/** The generated setter function, or null if there is no setter or reflection must be used. */
+	@Nullable
+	private final BiConsumer<Object, Object> m_setterFunction;
+
+	/** The (boxed) type of the setter's parameter, to check values before they are passed to the generated setter. */
+	@Nullable
+	private final Class<?> m_setterValueType;
+
+	/** T if the setter's parameter is a primitive, so that null cannot be passed to the generated setter. */
+	private final boolean m_setterPrimitive;
+
 	private int m_length = -1;
 
 	private boolean m_primaryKey;
@@ -127,8 +145,18 @@ public class DefaultPropertyMetaModel<T> extends BasicPropertyMetaModel<T> imple
 		m_valueModel = valueModel;
 		m_classModel = classModel;
 		m_descriptor = descriptor;
-		if(descriptor.getSetter() == null) {
+		m_getterFunction = MethodAccessors.createGetter(descriptor.getGetter());
+		Method setter = descriptor.getSetter();
+		if(setter == null) {
 			setReadOnly(YesNoType.YES);
+			m_setterFunction = null;
+			m_setterValueType = null;
+			m_setterPrimitive = false;
+		} else {
+			Class<?> type = setter.getParameterTypes()[0];
+			m_setterFunction = MethodAccessors.createSetter(setter);
+			m_setterValueType = MethodAccessors.box(type);
+			m_setterPrimitive = type.isPrimitive();
 		}
 	}
 
@@ -168,6 +196,15 @@ public class DefaultPropertyMetaModel<T> extends BasicPropertyMetaModel<T> imple
 		Method setter = m_descriptor.getSetter();
 		if(setter == null)
 			throw new IllegalAccessException("The property " + this + " is read-only.");
+
+		//-- Use the generated setter when the call cannot fail on the arguments, so that reflection reports those errors like before.
+		BiConsumer<Object, Object> setterFunction = m_setterFunction;
+		Class<?> valueType = m_setterValueType;
+		if(null != setterFunction && null != valueType && setter.getDeclaringClass().isInstance(target)
+			&& (value == null ? !m_setterPrimitive : valueType.isInstance(value))) {
+			setterFunction.accept(target, value);
+			return;
+		}
 		try {
 			setter.setAccessible(true);
 			setter.invoke(target, value);
@@ -202,6 +239,9 @@ public class DefaultPropertyMetaModel<T> extends BasicPropertyMetaModel<T> imple
 	public T getValue(Object in) throws Exception {
 		if(in == null)
 			throw new IllegalStateException("The 'input' object is null (getter method=" + m_descriptor.getGetter() + ")");
+		Function<Object, Object> getterFunction = m_getterFunction;
+		if(null != getterFunction && m_descriptor.getGetter().getDeclaringClass().isInstance(in))
+			return (T) getterFunction.apply(in);
 		try {
 			m_descriptor.getGetter().setAccessible(true);
 			return (T) m_descriptor.getGetter().invoke(in);
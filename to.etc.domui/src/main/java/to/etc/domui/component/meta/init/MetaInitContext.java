@@ -24,6 +24,9 @@ final public class MetaInitContext {
 	/** The list of class objects under construction. */
 	private Map<Object, ClassInfo> m_constructionMap = new HashMap<>();
 
+	/** Models that are complete, but that are only published in the class map when the whole initialization is done. */
+	private final Map<Object, ClassMetaModel> m_completedMap = new HashMap<>();
+
 	/** The list of classes that need their metadata constructed. */
 	private List<ClassAction> m_todoProviderClassList = new ArrayList<>();
 
@@ -142,6 +145,9 @@ final public class MetaInitContext {
 	public ClassMetaModel getModel(Object type) {
 		//-- Already known?
 		ClassMetaModel cmm = m_classMap.get(type);
+		if(null != cmm)
+			return cmm;
+		cmm = m_completedMap.get(type);
 		if(null != cmm)
 			return cmm;
 
@@ -213,11 +219,23 @@ final public class MetaInitContext {
 				//-- All actions completed -> register class.
 				m_todoProviderClassList.remove(ci);			// Nothing to be done anymore
 				m_constructionMap.remove(ci.getType());		// No longer under construction.
-				m_classMap.put(ci.getType(), ci.getModel());// Store in final classmap
+				m_completedMap.put(ci.getType(), ci.getModel());
 			}
 		}
 	}
 
+	/**
+	 * Store all models in the final class map. This is only done when the initialization loop has
+	 * completed, because a completed model can refer to models that were still being initialized
+	 * (through {@link PropertyMetaModel#getValueModel()}), and lookups in the class map do not lock.
+	 */
+	void publish() {
+		if(m_todoProviderClassList.size() > 0)
+			throw new IllegalStateException("Metadata initialization has not completed");
+		m_classMap.putAll(m_completedMap);
+		m_completedMap.clear();
+	}
+
 	private boolean handleClassProvider(IClassMetaProvider<ClassMetaModel> provider, ClassInfo ci) throws Exception {
 		try {
 			if(provider.getModelClass().isAssignableFrom(ci.getModel().getClass())) {
@@ -14,10 +14,10 @@ import to.etc.util.WrappedException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -25,12 +25,17 @@ import java.util.function.Supplier;
  * Created on 2-10-17.
  */
 public final class MetaInitializer {
-	static private List<IClassMetaModelFactory> m_modelList = new ArrayList<IClassMetaModelFactory>();
+	/** Copy-on-write list of model factories, replaced while holding the lock on this class. */
+	static private volatile List<IClassMetaModelFactory> m_modelList = Collections.emptyList();
 
 	/**
-	 * Map indexed by Class<?> or IMetaClass returning the {@link ClassMetaModel} for that instance.
+	 * Map indexed by Class<?> or IMetaClass returning the {@link ClassMetaModel} for that instance. It only
+	 * contains completely initialized models, so that lookups need no lock. Models are added only while
+	 * holding the lock on {@link MetaManager}.class, which serializes initialization, and only after the
+	 * whole initialization round is done, so that every model reachable from a model in this map through
+	 * {@link PropertyMetaModel#getValueModel()} is complete too.
 	 */
-	static private Map<Object, ClassMetaModel> m_classMap = new HashMap<>();
+	static private final Map<Object, ClassMetaModel> m_classMap = new ConcurrentHashMap<>();
 
 	/** While a metamodel is being initialized this keeps track of recursive init's */
 	final static private Stack<Object> m_initStack = new Stack<Object>();
@@ -77,9 +82,9 @@ public final class MetaInitializer {
 		}
 	}
 
-	static private List<PropertyProviderRef> m_propertyProviderList = Collections.emptyList();
+	static private volatile List<PropertyProviderRef> m_propertyProviderList = Collections.emptyList();
 
-	static private List<ClassProviderRef> m_classProviderList = Collections.emptyList();
+	static private volatile List<ClassProviderRef> m_classProviderList = Collections.emptyList();
 
 	//static public synchronized void register(int order, IPropertyMetaProvider provider) {
 	//	ArrayList<PropertyProviderRef> list = new ArrayList<>(m_propertyProviderList);
@@ -107,14 +112,19 @@ public final class MetaInitializer {
 	static synchronized public void registerModel(@NonNull IClassMetaModelFactory model) {
 		List<IClassMetaModelFactory> mm = new ArrayList<IClassMetaModelFactory>(m_modelList);
 		mm.add(model);
-		m_modelList = mm;
+		m_modelList = Collections.unmodifiableList(mm);
 	}
 
 	@NonNull
-	static public synchronized List<IClassMetaModelFactory> getList() {
-		if(m_modelList.size() == 0)
-			registerModel(new DefaultJavaClassMetaModelFactory());
-		return m_modelList;
+	static public List<IClassMetaModelFactory> getList() {
+		List<IClassMetaModelFactory> list = m_modelList;
+		if(list.size() > 0)
+			return list;
+		synchronized(MetaInitializer.class) {
+			if(m_modelList.size() == 0)
+				registerModel(new DefaultJavaClassMetaModelFactory());
+			return m_modelList;
+		}
 	}
 
 	/**
@@ -122,12 +132,26 @@ public final class MetaInitializer {
 	 * hence only ever called while developing never in
 	 * production. <b>INTERNAL USE ONLY, DO NOT USE</b>
 	 */
-	public synchronized static void internalClear() {
-		m_classMap.clear();
+	public static void internalClear() {
+		synchronized(MetaManager.class) {
+			m_classMap.clear();
+		}
 	}
 
+	/**
+	 * Return the metamodel for a class or IMetaClass. Models that are already initialized are returned
+	 * without locking; only initialization takes the global lock. The returned model is complete, and so
+	 * are the models reached through its properties' {@link PropertyMetaModel#getValueModel()}, even while
+	 * another thread is initializing other models: models only become visible when the initialization
+	 * round that created them has completed. Models obtained from a {@link MetaInitContext} during
+	 * initialization are the exception: they may still be incomplete.
+	 */
 	@NonNull
 	static public ClassMetaModel findAndInitialize(@NonNull Object mc) {
+		ClassMetaModel known = m_classMap.get(mc);
+		if(known != null)
+			return known;
+
 		//-- We need some factory to create it.
 		synchronized(MetaManager.class) {
 			ClassMetaModel cmm = m_classMap.get(mc);
@@ -148,6 +172,7 @@ public final class MetaInitializer {
 		try {
 			context.getModel(mc);
 			context.initializationLoop();
+			context.publish();
 			//
 			////checkInitStack(mc, "primary initialization");      	// Signal any ordering problems
 			//IClassMetaModelFactory best = findModelFactory(mc);
@@ -260,15 +285,15 @@ public final class MetaInitializer {
 	 *
 	 * @return
 	 */
-	public static synchronized List<ClassMetaModel> getAllMetaClasses() {
+	public static List<ClassMetaModel> getAllMetaClasses() {
 		return new ArrayList<>(m_classMap.values());
 	}
 
-	public static synchronized List<PropertyProviderRef> getPropertyProviderList() {
+	public static List<PropertyProviderRef> getPropertyProviderList() {
 		return m_propertyProviderList;
 	}
 
-	public static synchronized List<ClassProviderRef> getClassProviderList() {
+	public static List<ClassProviderRef> getClassProviderList() {
 		return m_classProviderList;
 	}
 
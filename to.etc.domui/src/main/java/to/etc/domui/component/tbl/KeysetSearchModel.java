@@ -0,0 +1,638 @@
+package to.etc.domui.component.tbl;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import to.etc.domui.component.meta.ClassMetaModel;
+import to.etc.domui.component.meta.MetaManager;
+import to.etc.domui.component.meta.PropertyMetaModel;
+import to.etc.domui.dom.html.NodeBase;
+import to.etc.domui.util.DomUtil;
+import to.etc.util.StringTool;
+import to.etc.webapp.query.QCriteria;
+import to.etc.webapp.query.QDataContext;
+import to.etc.webapp.query.QDataContextFactory;
+import to.etc.webapp.query.QFetchStrategy;
+import to.etc.webapp.query.QOperatorNode;
+import to.etc.webapp.query.QOrder;
+import to.etc.webapp.query.QRestrictorImpl;
+import to.etc.webapp.query.QSelection;
+import to.etc.webapp.query.QSortOrderDirection;
+
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table model for large query results that only loads the rows that are actually shown. Instead of
+ * loading up to {@link ITableModel#DEFAULT_MAX_SIZE} rows and paging through them in memory like
+ * {@link SimpleSearchModel}, this fetches the result in blocks. A block is located using keyset (seek)
+ * pagination: the query is ordered on the sort properties plus the primary key, and the next block is
+ * found by selecting the rows that sort after the last row of the previous block. This keeps the query
+ * cheap for every page instead of making the database skip all earlier rows like an OFFSET does.
+ * <p>Only when a block is requested whose predecessor was never loaded (like when jumping to the last
+ * page) an offset query is used; after that paging continues with seeks from there.</p>
+ * <p>The total #of rows is determined with a separate count query, whose result is cached until the
+ * model is refreshed or resorted, or until the count cache time expires. With {@link #setExactCount(boolean)}
+ * set to false no count is done at all, and the row count grows as more of the result is seen.</p>
+ * <p>Every query also reads the block after the requested one, so that moving to the next page
+ * does not need another query.</p>
+ * <p>Sort properties that can be null need to know where the database puts nulls, because rows with
+ * a null key must still be found by the seek. This is read from the JDBC metadata, and can be set
+ * with {@link #setNullOrder(NullOrder)}. When it is not known, sorting on a nullable property pages
+ * with offsets.</p>
+ */
+public class KeysetSearchModel<T> extends TableModelBase<T> implements ITruncateableDataModel, ISortableTableModel {
+	private static final Logger LOG = LoggerFactory.getLogger(KeysetSearchModel.class);
+
+	static private final int DEFAULT_BLOCK_SIZE = 50;
+
+	static private final int DEFAULT_MAX_CACHED_BLOCKS = 16;
+
+	@Nullable
+	final private QDataContextFactory m_sessionSource;
+
+	@Nullable
+	final private NodeBase m_contextSourceNode;
+
+	@NonNull
+	private QCriteria<T> m_query;
+
+	@NonNull
+	final private Class<T> m_rootClass;
+
+	@NonNull
+	final private PropertyMetaModel<?> m_primaryKey;
+
+	/** If we sort on property name this is the property name to sort on. */
+	@Nullable
+	private String m_sort;
+
+	private boolean m_desc;
+
+	private int m_blockSize = DEFAULT_BLOCK_SIZE;
+
+	private int m_maxCachedBlocks = DEFAULT_MAX_CACHED_BLOCKS;
+
+	private boolean m_exactCount = true;
+
+	/** How long a counted #of rows stays valid, in ms; 0 means until the model is refreshed. */
+	private long m_countCacheTime;
+
+	/**
+	 * Where the database sorts NULL values, as reported by {@link DatabaseMetaData}.
+	 */
+	public enum NullOrder {
+		/** Null is higher than any value: last when ascending, first when descending (PostgreSQL, Oracle). */
+		HIGH,
+
+		/** Null is lower than any value: first when ascending, last when descending (SQL Server, MySQL). */
+		LOW,
+
+		/** Null always sorts first. */
+		FIRST,
+
+		/** Null always sorts last. */
+		LAST,
+
+		/** Not known; a sort on a nullable property then uses offsets. */
+		UNKNOWN
+	}
+
+	/** Where the database puts nulls, or null when not yet determined. */
+	@Nullable
+	private NullOrder m_nullOrder;
+
+	/*--- Result state, discarded by clear() ---*/
+
+	/** The order currently used, always ending with the primary key. */
+	@Nullable
+	private List<QOrder> m_effectiveOrder;
+
+	/** Loaded blocks by block number, least recently used first. */
+	@NonNull
+	private Map<Integer, List<T>> m_blockCache = createBlockCache();
+
+	/** For every block whose first row is known to follow some row: the sort key values of that row. */
+	@NonNull
+	private final Map<Integer, Object[]> m_anchorMap = new HashMap<>();
+
+	private int m_rowCount = -1;
+
+	private long m_rowCountTime;
+
+	/** For the non-exact count: the #of rows seen so far, and whether the end was seen. */
+	private int m_knownRows;
+
+	private boolean m_endSeen;
+
+	public KeysetSearchModel(@NonNull NodeBase contextSourceNode, @NonNull QCriteria<T> qc) {
+		m_contextSourceNode = contextSourceNode;
+		m_sessionSource = null;
+		m_query = qc;
+		m_rootClass = getRootClass(qc);
+		m_primaryKey = getPrimaryKey(m_rootClass);
+	}
+
+	public KeysetSearchModel(@NonNull QDataContextFactory ss, @NonNull QCriteria<T> qc) {
+		m_sessionSource = ss;
+		m_contextSourceNode = null;
+		m_query = qc;
+		m_rootClass = getRootClass(qc);
+		m_primaryKey = getPrimaryKey(m_rootClass);
+	}
+
+	@NonNull
+	static private <T> Class<T> getRootClass(@NonNull QCriteria<T> qc) {
+		Class<T> clz = qc.getBaseClass();
+		if(null == clz)
+			throw new IllegalStateException("Keyset pagination needs a query on a persistent class, not on a metatable");
+		return clz;
+	}
+
+	@NonNull
+	static private PropertyMetaModel<?> getPrimaryKey(@NonNull Class<?> clz) {
+		ClassMetaModel cmm = MetaManager.findClassMeta(clz);
+		PropertyMetaModel<?> pk = cmm.getPrimaryKey();
+		if(null == pk)
+			throw new IllegalStateException(clz.getName() + " has no primary key, it cannot be used for keyset pagination");
+		return pk;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Simple getters and setters.							*/
+	/*--------------------------------------------------------------*/
+	public int getBlockSize() {
+		return m_blockSize;
+	}
+
+	/**
+	 * Set the #of rows read by a single query. This should be the page size of the table using this model.
+	 */
+	public void setBlockSize(int blockSize) {
+		if(blockSize <= 0)
+			throw new IllegalArgumentException("Block size must be > 0");
+		if(blockSize == m_blockSize)
+			return;
+		m_blockSize = blockSize;
+		clear();
+	}
+
+	public int getMaxCachedBlocks() {
+		return m_maxCachedBlocks;
+	}
+
+	/**
+	 * Set the max #of blocks kept in memory.
+	 */
+	public void setMaxCachedBlocks(int maxCachedBlocks) {
+		m_maxCachedBlocks = maxCachedBlocks < 2 ? 2 : maxCachedBlocks;
+	}
+
+	public boolean isExactCount() {
+		return m_exactCount;
+	}
+
+	/**
+	 * When false no count query is done; the #of rows then is the #of rows seen so far, plus a
+	 * block as long as the end of the result has not been reached.
+	 */
+	public void setExactCount(boolean exactCount) {
+		m_exactCount = exactCount;
+	}
+
+	public long getCountCacheTime() {
+		return m_countCacheTime;
+	}
+
+	/**
+	 * Set how long, in milliseconds, the result of the count query is used before it is done again. When 0
+	 * the count is only done again after a refresh, a sort or a new query.
+	 */
+	public void setCountCacheTime(long countCacheTime) {
+		m_countCacheTime = countCacheTime;
+	}
+
+	@Nullable
+	public NullOrder getNullOrder() {
+		return m_nullOrder;
+	}
+
+	/**
+	 * Set where the database sorts nulls. By default this is read from the metadata of the first
+	 * connection used; set it when that is wrong, for instance when the persistence layer adds its
+	 * own "nulls first" or "nulls last" to the order.
+	 */
+	public void setNullOrder(@Nullable NullOrder nullOrder) {
+		m_nullOrder = nullOrder;
+	}
+
+	@NonNull
+	public QCriteria<T> getQuery() {
+		return m_query;
+	}
+
+	/**
+	 * Replace the query, causing the model to reload.
+	 */
+	public void setQuery(@NonNull QCriteria<T> query) throws Exception {
+		if(getRootClass(query) != m_rootClass)
+			throw new IllegalArgumentException("The query must be on " + m_rootClass.getName());
+		m_query = query;
+		m_sort = null;
+		clear();
+		fireModelChanged();
+	}
+
+	@NonNull
+	private QDataContext getQueryContext() throws Exception {
+		QDataContextFactory sessionSource = m_sessionSource;
+		if(sessionSource != null)
+			return sessionSource.getDataContext();
+		NodeBase contextSourceNode = m_contextSourceNode;
+		if(contextSourceNode != null)
+			return contextSourceNode.getSharedContext();
+		throw new IllegalStateException("No sessionSource and no contextSourceNode present - I do not know how to allocate a QDataContext");
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	ITableModel implementation.							*/
+	/*--------------------------------------------------------------*/
+	@NonNull
+	@Override
+	public List<T> getItems(int start, int end) throws Exception {
+		if(start < 0)
+			start = 0;
+		if(end <= start)
+			return Collections.emptyList();
+		int bs = m_blockSize;
+		List<T> res = new ArrayList<>(end - start);
+		for(int block = start / bs; block * bs < end; block++) {
+			List<T> rows = getBlock(block);
+			int bstart = block * bs;
+			int from = Math.max(start, bstart) - bstart;
+			int to = Math.min(end, bstart + rows.size()) - bstart;
+			if(from < to)
+				res.addAll(rows.subList(from, to));
+			if(rows.size() < bs)									// Last block reached
+				break;
+		}
+		return res;
+	}
+
+	@Override
+	protected T getItem(int ix) throws Exception {
+		List<T> items = getItems(ix, ix + 1);
+		if(items.size() == 0)
+			throw new IndexOutOfBoundsException("Row " + ix + " does not exist");
+		return items.get(0);
+	}
+
+	@Override
+	public int getRows() throws Exception {
+		if(!m_exactCount) {
+			if(m_knownRows == 0 && !m_endSeen)
+				getBlock(0);
+			return m_endSeen ? m_knownRows : m_knownRows + m_blockSize;
+		}
+
+		int rowCount = m_rowCount;
+		if(rowCount >= 0 && (m_countCacheTime <= 0 || System.currentTimeMillis() - m_rowCountTime < m_countCacheTime))
+			return rowCount;
+		m_rowCount = rowCount = executeCount();
+		m_rowCountTime = System.currentTimeMillis();
+		return rowCount;
+	}
+
+	/**
+	 * This model never truncates; it can page through the complete result.
+	 */
+	@Override
+	public boolean isTruncated() {
+		return false;
+	}
+
+	/**
+	 * Discard all loaded data, so that everything is queried again.
+	 */
+	@Override
+	public void refresh() {
+		clear();
+	}
+
+	public void clear() {
+		m_blockCache = createBlockCache();
+		m_anchorMap.clear();
+		m_effectiveOrder = null;
+		m_rowCount = -1;
+		m_knownRows = 0;
+		m_endSeen = false;
+	}
+
+	@NonNull
+	private Map<Integer, List<T>> createBlockCache() {
+		return new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+				return size() > m_maxCachedBlocks;
+			}
+		};
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Querying.											*/
+	/*--------------------------------------------------------------*/
+	/**
+	 * Get the rows for a block, loading it and the block after it if needed.
+	 */
+	@NonNull
+	private List<T> getBlock(int block) throws Exception {
+		List<T> rows = m_blockCache.get(Integer.valueOf(block));
+		if(null != rows)
+			return rows;
+
+		long ts = System.nanoTime();
+		int bs = m_blockSize;
+		QCriteria<T> q = createQuery();
+		Object[] anchor = block == 0 ? null : m_anchorMap.get(Integer.valueOf(block));
+		boolean seek = false;
+
+		List<T> result;
+		QDataContext dc = getQueryContext();
+		try {
+			if(anchor != null) {
+				NullOrder nullOrder = getNullOrder(dc, anchor);
+				if(nullOrder != NullOrder.UNKNOWN) {
+					addSeekRestriction(q, anchor, nullOrder);
+					seek = true;
+				}
+			}
+			if(!seek && block > 0)
+				q.start(block * bs);								// Nothing usable known about the previous block: must use an offset
+			q.limit(2 * bs);										// Read ahead the next block too
+			result = dc.query(q);
+		} finally {
+			try {
+				dc.close();
+			} catch(Exception x) {}
+		}
+
+		//-- Split into blocks, and register the anchors for the block(s) that follow.
+		List<T> first = new ArrayList<>(result.subList(0, Math.min(bs, result.size())));
+		storeBlock(block, first);
+		if(result.size() > bs) {
+			storeBlock(block + 1, new ArrayList<>(result.subList(bs, result.size())));
+		}
+
+		if(LOG.isDebugEnabled()) {
+			ts = System.nanoTime() - ts;
+			LOG.debug("keyset: block " + block + (seek ? " (seek)" : " (offset)") + " loaded " + result.size() + " rows in " + StringTool.strNanoTime(ts));
+		}
+		return first;
+	}
+
+	private void storeBlock(int block, @NonNull List<T> rows) throws Exception {
+		m_blockCache.put(Integer.valueOf(block), rows);
+		int end = block * m_blockSize + rows.size();
+		if(rows.size() == m_blockSize) {
+			m_anchorMap.put(Integer.valueOf(block + 1), getKeyValues(rows.get(rows.size() - 1)));
+		} else {
+			m_endSeen = true;
+		}
+		if(end > m_knownRows)
+			m_knownRows = end;
+	}
+
+	/**
+	 * Create the query for a block: the base query's restrictions, ordered on the current sort plus the primary key.
+	 */
+	@NonNull
+	private QCriteria<T> createQuery() {
+		QCriteria<T> base = m_query;
+		QCriteria<T> q = QCriteria.create(m_rootClass);
+		QOperatorNode restrictions = base.getRestrictions();
+		if(null != restrictions)
+			q.setRestrictions(restrictions.dup());
+		for(Map.Entry<String, QFetchStrategy> me : base.getFetchStrategies().entrySet())
+			q.fetch(me.getKey(), me.getValue());
+		if(base.getTimeout() > 0)
+			q.setTimeout(base.getTimeout());
+		for(QOrder o : getEffectiveOrder())
+			q.add(o);
+		return q;
+	}
+
+	/**
+	 * Returns the sort order: either the sort property or the base query's order, always followed by
+	 * the primary key so that the order is total.
+	 */
+	@NonNull
+	private List<QOrder> getEffectiveOrder() {
+		List<QOrder> order = m_effectiveOrder;
+		if(null == order) {
+			order = new ArrayList<>();
+			String sort = m_sort;
+			if(sort != null) {
+				order.add(m_desc ? QOrder.descending(sort) : QOrder.ascending(sort));
+			} else {
+				for(QOrder o : m_query.getOrder())
+					order.add(o.dup());
+			}
+			String pkName = m_primaryKey.getName();
+			boolean hasPk = false;
+			for(QOrder o : order) {
+				if(pkName.equals(o.getProperty()))
+					hasPk = true;
+			}
+			if(!hasPk)
+				order.add(QOrder.ascending(pkName));
+			m_effectiveOrder = order;
+		}
+		return order;
+	}
+
+	/**
+	 * Get the values of all order properties of the row.
+	 */
+	@NonNull
+	private Object[] getKeyValues(@NonNull T row) throws Exception {
+		List<QOrder> order = getEffectiveOrder();
+		Object[] values = new Object[order.size()];
+		for(int i = 0; i < values.length; i++) {
+			PropertyMetaModel<?> pmm = MetaManager.getPropertyMeta(m_rootClass, order.get(i).getProperty());
+			values[i] = pmm.getValue(row);
+		}
+		return values;
+	}
+
+	/**
+	 * T if the sort property can contain nulls. Primary keys, primitives and required properties cannot.
+	 */
+	private boolean isNullable(@NonNull QOrder o) {
+		PropertyMetaModel<?> pmm = MetaManager.getPropertyMeta(m_rootClass, o.getProperty());
+		return !(pmm.isPrimaryKey() || pmm.isRequired() || pmm.getActualType().isPrimitive());
+	}
+
+	/**
+	 * Return where the database sorts nulls. If none of the sort properties can be null this does not
+	 * matter, and HIGH is returned without asking the database.
+	 */
+	@NonNull
+	private NullOrder getNullOrder(@NonNull QDataContext dc, @NonNull Object[] anchor) {
+		List<QOrder> order = getEffectiveOrder();
+		boolean nullable = false;
+		for(int i = 0; i < order.size(); i++) {
+			if(anchor[i] == null || isNullable(order.get(i)))
+				nullable = true;
+		}
+		if(!nullable)
+			return NullOrder.HIGH;
+
+		NullOrder nullOrder = m_nullOrder;
+		if(null == nullOrder) {
+			try {
+				DatabaseMetaData md = dc.getConnection().getMetaData();
+				if(md.nullsAreSortedHigh())
+					nullOrder = NullOrder.HIGH;
+				else if(md.nullsAreSortedLow())
+					nullOrder = NullOrder.LOW;
+				else if(md.nullsAreSortedAtStart())
+					nullOrder = NullOrder.FIRST;
+				else if(md.nullsAreSortedAtEnd())
+					nullOrder = NullOrder.LAST;
+				else
+					nullOrder = NullOrder.UNKNOWN;
+			} catch(Exception x) {
+				LOG.debug("keyset: cannot get the null ordering from the database, using offsets for nullable sort properties: " + x);
+				nullOrder = NullOrder.UNKNOWN;
+			}
+			m_nullOrder = nullOrder;
+		}
+		return nullOrder;
+	}
+
+	/**
+	 * T if nulls come after all values for this order.
+	 */
+	static private boolean isNullLast(@NonNull QOrder o, @NonNull NullOrder nullOrder) {
+		boolean desc = o.getDirection() == QSortOrderDirection.DESC;
+		switch(nullOrder) {
+			default:
+				throw new IllegalStateException("Unexpected null order " + nullOrder);
+			case HIGH:
+				return !desc;
+			case LOW:
+				return desc;
+			case FIRST:
+				return false;
+			case LAST:
+				return true;
+		}
+	}
+
+	/**
+	 * Add "(k1 > v1) or (k1 = v1 and k2 > v2) or ..." using &lt; for descending properties. For a property
+	 * that can be null the rows with a null key are included where the database sorts them: when nulls
+	 * sort last "k > v" becomes "(k > v or k is null)"; when the anchor itself is null "k = v" becomes
+	 * "k is null", and "k > v" becomes "k is not null" if nulls sort first or is left out if they sort last.
+	 */
+	private void addSeekRestriction(@NonNull QCriteria<T> q, @NonNull Object[] anchor, @NonNull NullOrder nullOrder) {
+		List<QOrder> order = getEffectiveOrder();
+		QRestrictorImpl<T> or = q.or();
+		for(int i = 0; i < order.size(); i++) {
+			QOrder o = order.get(i);
+			Object value = anchor[i];
+			boolean nullLast = (value == null || isNullable(o)) && isNullLast(o, nullOrder);
+			if(value == null && nullLast)
+				continue;											// Nothing sorts after a null here
+			QRestrictorImpl<T> and = or.and();
+			for(int j = 0; j < i; j++) {
+				Object prev = anchor[j];
+				if(prev == null)
+					and.isnull(order.get(j).getProperty());
+				else
+					and.eq(order.get(j).getProperty(), prev);
+			}
+			if(value == null) {
+				and.isnotnull(o.getProperty());					// Nulls sort first, so every value follows
+			} else if(nullLast) {
+				QRestrictorImpl<T> after = and.or();
+				addAfter(after, o, value);
+				after.isnull(o.getProperty());
+			} else {
+				addAfter(and, o, value);
+			}
+		}
+	}
+
+	static private <T> void addAfter(@NonNull QRestrictorImpl<T> r, @NonNull QOrder o, @NonNull Object value) {
+		if(o.getDirection() == QSortOrderDirection.DESC)
+			r.lt(o.getProperty(), value);
+		else
+			r.gt(o.getProperty(), value);
+	}
+
+	/**
+	 * Count the #of rows in the result.
+	 */
+	private int executeCount() throws Exception {
+		long ts = System.nanoTime();
+		QSelection<T> sel = QSelection.create(m_rootClass);
+		QOperatorNode restrictions = m_query.getRestrictions();
+		if(null != restrictions)
+			sel.setRestrictions(restrictions.dup());
+		sel.count(m_primaryKey.getName());
+
+		Object[] res;
+		QDataContext dc = getQueryContext();
+		try {
+			res = dc.queryOne(sel);
+		} finally {
+			try {
+				dc.close();
+			} catch(Exception x) {}
+		}
+		int count = res == null || res.length == 0 || !(res[0] instanceof Number) ? 0 : ((Number) res[0]).intValue();
+		if(LOG.isDebugEnabled()) {
+			ts = System.nanoTime() - ts;
+			LOG.debug("keyset: count " + count + " took " + StringTool.strNanoTime(ts));
+		}
+		return count;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*	CODING:	SortableTableModel implementation.					*/
+	/*--------------------------------------------------------------*/
+	/**
+	 * Sort on the specified property, reloading the data.
+	 */
+	@Override
+	public void sortOn(String key, boolean descending) throws Exception {
+		if(DomUtil.isEqual(key, m_sort) && descending == m_desc)
+			return;
+		m_sort = key;
+		m_desc = descending;
+		int rowCount = m_rowCount;
+		long rowCountTime = m_rowCountTime;
+		clear();
+		m_rowCount = rowCount;										// Sorting does not change the #of rows
+		m_rowCountTime = rowCountTime;
+		fireModelChanged();
+	}
+
+	@Override
+	@Nullable
+	public String getSortKey() {
+		return m_sort;
+	}
+
+	@Override
+	public boolean isSortDescending() {
+		return m_desc;
+	}
+}
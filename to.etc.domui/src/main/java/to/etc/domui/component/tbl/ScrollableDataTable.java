@@ -3,6 +3,7 @@ package to.etc.domui.component.tbl;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import to.etc.domui.component.meta.MetaManager;
+import to.etc.domui.dom.css.DisplayType;
 import to.etc.domui.dom.css.Overflow;
 import to.etc.domui.dom.html.Checkbox;
 import to.etc.domui.dom.html.ClickInfo;
@@ -25,6 +26,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * A table that loads more rows when it is scrolled. By default all rows that were scrolled into view stay
+ * in the page. In virtual mode (see {@link #setVirtual(boolean)}) only a window of rows around the visible
+ * part is kept, and spacer rows above and below it keep the scrollbar the size of the whole result. When the
+ * user scrolls near the edge of the window the browser sends the first visible row and the #of rows that fit
+ * in the viewport, and the window is moved to span a viewport above and below the visible rows: rows that
+ * stay inside the window are kept as they are, only the rows that enter it are rendered. This keeps the
+ * page and the size of every delta constant, regardless of the size of the model. Virtual mode needs rows of
+ * a fixed height.
+ *
  * @deprecated since there is an issue with table with calculation on various browsers.<br>
  *     Redundant horizontal scrollbars may appear randomly. A workaround for the issue is fixing each column width.
  *
@@ -46,7 +56,7 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 	/** When the query has 0 results this is set to the div displaying that message. */
 	private Div m_errorDiv;
 
-	/** The items that are currently on-screen, to prevent a reload from the model when reused. */
+	/** The items that are currently on-screen, to prevent a reload from the model when reused. The first one has model index m_windowStart. */
 	final private List<T> m_visibleItemList = new ArrayList<T>();
 
 	/** When set, the table is in "multiselect" mode and shows checkboxes before all rows. */
@@ -62,6 +72,26 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 
 	private boolean m_allRendered;
 
+	/** When set only a window of rows is kept in the table, see {@link #setVirtual(boolean)}. */
+	private boolean m_virtual;
+
+	/** The model index of the first rendered row; always 0 when not virtual. */
+	private int m_windowStart;
+
+	/** The height of a row in pixels, used to size the spacers. Updated with the height measured by the browser. */
+	private int m_rowHeight = 24;
+
+	/** The #of rows that fit in the browser's viewport, as last reported by it; 0 while unknown. */
+	private int m_viewportRows;
+
+	/** In virtual mode, the row taking the place of all rows before the window. */
+	@Nullable
+	private TR m_topSpacer;
+
+	/** In virtual mode, the row taking the place of all rows after the window. */
+	@Nullable
+	private TR m_bottomSpacer;
+
 	@NonNull
 	final private IClicked<TH> m_headerSelectClickHandler = new IClicked<TH>() {
 		@Override
@@ -105,9 +135,12 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		m_dataBody = null;
 		m_errorDiv = null;
 		m_allRendered = false;
+		m_topSpacer = null;
+		m_bottomSpacer = null;
 		addCssClass("ui-dt");
 		setOverflow(Overflow.AUTO);
 		m_nextIndexToLoad = 0;
+		m_windowStart = 0;
 
 		//-- Do we need to render multiselect checkboxes?
 		ISelectionModel<T> sm = getSelectionModel();
@@ -130,7 +163,10 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		}
 
 		setResults();
-		loadMoreData();
+		if(m_virtual)
+			resetWindow();
+		else
+			loadMoreData();
 		if(isDisableClipboardSelection())
 			appendCreateJS(JavascriptUtil.disableSelection(this)); // Needed to prevent ctrl+click in IE doing clipboard-select, because preventDefault does not work there of course.
 		if(m_redrawn) {
@@ -192,13 +228,224 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		if(! isBuilt() || m_dataBody == null)
 			return;
 		m_nextIndexToLoad = 0;
+		m_windowStart = 0;
 		m_dataBody.removeAllChildren();
 		m_allRendered = false;
 		m_visibleItemList.clear();
-		loadMoreData();
+		if(m_virtual)
+			resetWindow();
+		else
+			loadMoreData();
 		appendJavascript("WebUI.scrollableTableReset('" + getActualID() + "','" + tbl().getActualID() + "');");
 	}
 
+	/*--------------------------------------------------------------*/
+	/*	CODING:	Virtual mode: the row window.						*/
+	/*--------------------------------------------------------------*/
+	/**
+	 * Empty the body and render the window at the start of the model.
+	 */
+	private void resetWindow() throws Exception {
+		TBody dataBody = m_dataBody;
+		if(null == dataBody)
+			throw new IllegalStateException("No data body?");
+		dataBody.removeAllChildren();
+		m_visibleItemList.clear();
+		TR top = m_topSpacer = createSpacer();
+		TR bottom = m_bottomSpacer = createSpacer();
+		dataBody.add(top);
+		dataBody.add(bottom);
+		m_windowStart = m_nextIndexToLoad = 0;
+		moveWindow(0);
+	}
+
+	@NonNull
+	private TR createSpacer() {
+		TR tr = new TR();
+		tr.setCssClass("ui-dt-vspacer");
+		TD td = new TD();
+		tr.add(td);
+		td.setPadding("0");
+		return tr;
+	}
+
+	/**
+	 * Move the window of rendered rows so that it starts at the specified model index (or as close
+	 * as possible). The rows in both the old and the new window keep their TR; rows leaving the window
+	 * are removed and only rows entering it are loaded and rendered.
+	 */
+	private void moveWindow(int start) throws Exception {
+		TBody dataBody = m_dataBody;
+		if(null == dataBody)
+			throw new IllegalStateException("No data body?");
+		int rows = getModel().getRows();
+		int size = getWindowSize();
+		if(start > rows - size)
+			start = rows - size;
+		if(start < 0)
+			start = 0;
+		int end = start + size;
+		if(end > rows)
+			end = rows;
+
+		//-- Drop the rows that left the window, at the top and then at the bottom.
+		while(m_windowStart < m_nextIndexToLoad && m_windowStart < start) {
+			dataBody.removeChild(1);
+			m_visibleItemList.remove(0);
+			m_windowStart++;
+		}
+		while(m_nextIndexToLoad > m_windowStart && m_nextIndexToLoad > end) {
+			m_nextIndexToLoad--;
+			m_visibleItemList.remove(m_visibleItemList.size() - 1);
+			dataBody.removeChild(m_visibleItemList.size() + 1);
+		}
+		if(m_windowStart >= m_nextIndexToLoad)				// Nothing left: start an empty window at the new location
+			m_windowStart = m_nextIndexToLoad = start;
+
+		//-- Render the rows that entered the window.
+		ColumnContainer<T> cc = new ColumnContainer<T>(this);
+		if(start < m_windowStart) {
+			List<T> list = getModel().getItems(start, m_windowStart);
+			int ix = start;
+			for(T o : list) {
+				TR tr = new TR();
+				dataBody.add(ix - start + 1, tr);
+				m_visibleItemList.add(ix - start, o);
+				renderWindowRow(tr, cc, ix, o);
+				ix++;
+			}
+			m_windowStart = start;
+		}
+		if(end > m_nextIndexToLoad) {
+			List<T> list = getModel().getItems(m_nextIndexToLoad, end);
+			int ix = m_nextIndexToLoad;
+			for(T o : list) {
+				TR tr = new TR();
+				dataBody.add(m_visibleItemList.size() + 1, tr);
+				m_visibleItemList.add(o);
+				renderWindowRow(tr, cc, ix, o);
+				ix++;
+			}
+			m_nextIndexToLoad = end;
+		}
+		updateSpacers();
+		if(DEBUG)
+			System.out.println("dd: window " + m_windowStart + ".." + m_nextIndexToLoad + " of " + rows);
+	}
+
+	private void renderWindowRow(@NonNull TR tr, @NonNull ColumnContainer<T> cc, int index, @NonNull T value) throws Exception {
+		tr.setTestRepeatID("r" + index);
+		cc.setParent(tr);
+		renderRow(tr, cc, index, value);
+	}
+
+	/**
+	 * Size the spacers for the rows outside the window, and tell the browser where the window is.
+	 */
+	private void updateSpacers() throws Exception {
+		TR top = m_topSpacer;
+		TR bottom = m_bottomSpacer;
+		if(null == top || null == bottom)
+			return;
+		int rows = getModel().getRows();
+		int columns = getColumnCount();
+		sizeSpacer(top, m_windowStart, columns);
+		sizeSpacer(bottom, rows - m_nextIndexToLoad, columns);
+
+		Table table = tbl();
+		table.setSpecialAttribute("vstart", Integer.toString(m_windowStart));
+		table.setSpecialAttribute("vend", Integer.toString(m_nextIndexToLoad));
+		table.setSpecialAttribute("vrows", Integer.toString(rows));
+	}
+
+	private void sizeSpacer(@NonNull TR spacer, int rowCount, int columns) {
+		TD td = (TD) spacer.getChild(0);
+		td.setColspan(columns);
+		td.setHeight((rowCount * m_rowHeight) + "px");
+		spacer.setDisplay(rowCount <= 0 ? DisplayType.NONE : null);
+	}
+
+	/**
+	 * The #of columns, taken from the header or else from the first data row.
+	 */
+	private int getColumnCount() {
+		THead head = tbl().getHead();
+		if(null != head && head.getChildCount() > 0)
+			return ((TR) head.getChild(0)).getChildCount();
+		if(m_visibleItemList.size() > 0)
+			return getDataRow(0).getChildCount();
+		return 1;
+	}
+
+	/**
+	 * The #of rows kept in the table in virtual mode: the visible rows plus a viewport above and below
+	 * them. Until the browser has reported its viewport this is two batches.
+	 */
+	int getWindowSize() {
+		int viewportRows = m_viewportRows;
+		return viewportRows > 0 ? 3 * viewportRows : 2 * m_batchSize;
+	}
+
+	/**
+	 * The model index of the first row in the table. Always 0 when not virtual.
+	 */
+	int getWindowStart() {
+		return m_windowStart;
+	}
+
+	/**
+	 * The model index after the last row in the table.
+	 */
+	int getWindowEnd() {
+		return m_nextIndexToLoad;
+	}
+
+	/**
+	 * Get the TR for the specified index in m_visibleItemList, skipping the top spacer in virtual mode.
+	 */
+	@NonNull
+	private TR getDataRow(int lrow) {
+		return (TR) m_dataBody.getChild(m_topSpacer == null ? lrow : lrow + 1);
+	}
+
+	/**
+	 * Called when the browser scrolled near the edge of the current window. The browser is always told
+	 * that the request was handled, so that it can ask again if the visible part moved in the meantime.
+	 */
+	private void handleVirtualScroll(@NonNull RequestContextImpl ctx) throws Exception {
+		int first = parseInt(ctx.getParameter("first"), -1);
+		if(first >= 0)
+			scrollTo(first, parseInt(ctx.getParameter("rowh"), -1), parseInt(ctx.getParameter("rows"), -1));
+		if(m_dataTable != null)
+			appendJavascript("WebUI.scrollableTableMoved('" + getActualID() + "','" + tbl().getActualID() + "');");
+	}
+
+	/**
+	 * Move the window so that the visible rows, starting at model index first, have a viewport of rows
+	 * above and below them. The row height and viewport row count are the values measured by the browser,
+	 * or -1 when not known.
+	 */
+	void scrollTo(int first, int rowHeight, int viewportRows) throws Exception {
+		if(!m_virtual || m_topSpacer == null)
+			return;
+		if(rowHeight > 0)
+			m_rowHeight = rowHeight;
+		if(viewportRows > 0)
+			m_viewportRows = viewportRows;
+		int above = m_viewportRows > 0 ? m_viewportRows : m_batchSize / 2;
+		moveWindow(first - above);
+	}
+
+	static private int parseInt(@Nullable String s, int dflt) {
+		if(null == s)
+			return dflt;
+		try {
+			return Integer.parseInt(s.trim());
+		} catch(NumberFormatException x) {
+			return dflt;
+		}
+	}
+
 	private void renderFinalRow() {
 		TBody dataBody = m_dataBody;
 		if(null == dataBody)
@@ -271,6 +518,10 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 	 */
 	private void setNoResults() {
 		m_visibleItemList.clear();
+		m_topSpacer = null;
+		m_bottomSpacer = null;
+		m_windowStart = 0;
+		m_nextIndexToLoad = 0;
 		if(m_errorDiv != null)
 			return;
 
@@ -426,6 +677,7 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		}
 		if(itemindex == -1) 						// Ignore when thingy not found
 			return;
+		itemindex += m_windowStart;					// Model index
 
 		//-- Is a previous location set? If not: just toggle the current and retain the location.
 		if(m_lastSelectionLocation == -1) {
@@ -452,7 +704,7 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 				ex = el;
 
 			List<T> sub = getModel().getItems(i, ex);
-			i += ex;
+			i = ex;
 
 			for(T item : sub) {
 				if(item == null)
@@ -476,7 +728,7 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		ISelectionModel<T> sm = getSelectionModel();
 		if(sm == null)
 			throw new IllegalStateException("No selection model!?");
-		TR row = (TR) m_dataBody.getChild(lrow);
+		TR row = getDataRow(lrow);
 		THead head = tbl().getHead();
 		if(null == head)
 			throw new IllegalStateException("I've lost my head!?");
@@ -518,7 +770,7 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 	/**
 	 * Make the multiselect UI for all visible rows and the header.
 	 */
-	private void createMultiselectUI(TR headerrow) {
+	private void createMultiselectUI(TR headerrow) throws Exception {
 		if(m_multiSelectMode)
 			return;
 		m_multiSelectMode = true;
@@ -533,9 +785,9 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		th.setCssClass("ui-clickable");
 
 		//-- 2. Insert a checkbox in all rows.
-		for(int i = 0; i < m_dataBody.getChildCount(); i++) {
+		for(int i = 0; i < m_visibleItemList.size(); i++) {
 			final T instance = m_visibleItemList.get(i);
-			TR tr = (TR) m_dataBody.getChild(i);
+			TR tr = getDataRow(i);
 			TD td = new TD();
 			tr.add(0, td);
 
@@ -546,6 +798,7 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 			td.add(cb);
 			cb.setChecked(false);
 		}
+		updateSpacers();
 
 		fireSelectionUIChanged();
 	}
@@ -594,6 +847,10 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		calcIndices(); 								// Calculate visible nodes
 		if(DEBUG)
 			System.out.println("dd: add@ "+index+", eix="+ m_nextIndexToLoad);
+		if(m_virtual) {
+			virtualRowsChanged(index);
+			return;
+		}
 		if(index < 0 || (index >= m_nextIndexToLoad && m_nextIndexToLoad >= m_batchSize)) { 			// Outside visible bounds & no need to load more
 			firePageChanged();
 			return;
@@ -643,6 +900,15 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 		//-- We need the indices of the OLD data, so DO NOT RECALCULATE - the model size has changed.
 		if(DEBUG)
 			System.out.println("dd: delete index="+index+", eix="+ m_nextIndexToLoad);
+		if(m_virtual) {
+			if(getModel().getRows() == 0) {
+				setNoResults();
+				firePageChanged();
+				return;
+			}
+			virtualRowsChanged(index);
+			return;
+		}
 		if(index < 0 || index >= m_nextIndexToLoad) { 			// Outside visible bounds
 			calcIndices(); 							// Calculate visible nodes
 			firePageChanged();
@@ -689,10 +955,38 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 
 	private void calcIndices() {}
 
+	/**
+	 * A row was added or deleted in virtual mode. If it is after a full window only the bottom spacer
+	 * changes, and a window that is not full just grows; otherwise the window is reloaded at the same
+	 * location, which costs at most one window.
+	 */
+	private void virtualRowsChanged(int index) throws Exception {
+		if(m_topSpacer == null) {
+			if(getModel().getRows() > 0) {					// First row(s) after "no results"
+				setResults();
+				resetWindow();
+			}
+		} else if(index >= m_nextIndexToLoad && m_nextIndexToLoad - m_windowStart >= getWindowSize()) {
+			updateSpacers();
+		} else if(index >= m_nextIndexToLoad) {
+			moveWindow(m_windowStart);
+		} else {
+			TBody dataBody = m_dataBody;
+			int start = m_windowStart;
+			while(m_visibleItemList.size() > 0) {
+				m_visibleItemList.remove(m_visibleItemList.size() - 1);
+				dataBody.removeChild(m_visibleItemList.size() + 1);
+			}
+			m_windowStart = m_nextIndexToLoad = start;
+			moveWindow(start);
+		}
+		firePageChanged();
+	}
+
 	private void handleOddEven(int index) {
-		for(int ix = index; ix < m_dataBody.getChildCount(); ix++) {
-			TR tr = (TR) m_dataBody.getChild(ix);
-			if((ix & 0x1) == 0) {
+		for(int ix = index; ix < m_visibleItemList.size(); ix++) {
+			TR tr = getDataRow(ix);
+			if(((ix + m_windowStart) & 0x1) == 0) {
 				//-- Even
 				tr.removeCssClass("ui-odd");
 				tr.addCssClass("ui-even");
@@ -712,10 +1006,10 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 	public void rowModified(@NonNull ITableModel<T> model, int index, @NonNull T value) throws Exception {
 		if(!isBuilt())
 			return;
-		if(index < 0 || index >= m_nextIndexToLoad) 	// Outside visible bounds
+		if(index < m_windowStart || index >= m_nextIndexToLoad) 	// Outside visible bounds
 			return;
-		int rrow = index; 								// This is the location within the child array
-		TR tr = (TR) m_dataBody.getChild(rrow); 		// The visible row there
+		int rrow = index - m_windowStart; 				// This is the location within the visible list
+		TR tr = getDataRow(rrow); 						// The visible row there
 		tr.removeAllChildren(); 						// Discard current contents.
 		m_visibleItemList.set(rrow, value);
 
@@ -810,7 +1104,12 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 
 	@Override public void componentHandleWebAction(@NonNull RequestContextImpl ctx, @NonNull String action) throws Exception {
 		if("LOADMORE".equals(action)) {
-			loadMoreData();
+			if(!m_virtual)
+				loadMoreData();
+			return;
+		}
+		if("VSCROLL".equals(action)) {
+			handleVirtualScroll(ctx);
 			return;
 		}
 
@@ -828,4 +1127,32 @@ final public class ScrollableDataTable<T> extends SelectableTabularComponent<T>
 	public void setBatchSize(int batchSize) {
 		m_batchSize = batchSize;
 	}
+
+	public boolean isVirtual() {
+		return m_virtual;
+	}
+
+	/**
+	 * When set the table keeps only a window of two batches of rows around the visible part, and replaces
+	 * the other rows with spacers, so that huge models can be scrolled through without growing the page.
+	 * All rows must have the same height for the scrollbar to be accurate.
+	 */
+	public void setVirtual(boolean virtual) {
+		if(m_virtual == virtual)
+			return;
+		m_virtual = virtual;
+		forceRebuild();
+	}
+
+	public int getRowHeight() {
+		return m_rowHeight;
+	}
+
+	/**
+	 * The initial estimate of the row height in pixels, used to size the spacers in virtual mode until the
+	 * browser has measured the real height.
+	 */
+	public void setRowHeight(int rowHeight) {
+		m_rowHeight = rowHeight;
+	}
 }
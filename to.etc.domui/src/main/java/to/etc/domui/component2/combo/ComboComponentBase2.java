@@ -32,6 +32,7 @@ import to.etc.domui.component.input.CriteriaComboDataSet;
 import to.etc.domui.component.meta.ClassMetaModel;
 import to.etc.domui.component.meta.MetaManager;
 import to.etc.domui.component.meta.PropertyMetaModel;
+import to.etc.domui.dom.css.DisplayType;
 import to.etc.domui.dom.errors.UIMessage;
 import to.etc.domui.dom.html.IClicked;
 import to.etc.domui.dom.html.IControl;
@@ -42,8 +43,10 @@ import to.etc.domui.dom.html.NodeContainer;
 import to.etc.domui.dom.html.Select;
 import to.etc.domui.dom.html.SelectOption;
 import to.etc.domui.server.DomApplication;
+import to.etc.domui.state.UIContext;
 import to.etc.domui.trouble.ValidationException;
 import to.etc.domui.util.DomUtil;
+import to.etc.domui.util.ICachedListMaker;
 import to.etc.domui.util.IComboDataSet;
 import to.etc.domui.util.IListMaker;
 import to.etc.domui.util.IRenderInto;
@@ -75,6 +78,19 @@ public class ComboComponentBase2<T, V> extends AbstractDivControl<V> implements
 		protected boolean internalOnUserInput(int oldindex, int nindex) {
 			return ComboComponentBase2.this.internalOnUserInput(oldindex, nindex);
 		}
+
+		@Override
+		protected int findOptionIndex(@NonNull String value) {
+			//-- Shared options are created in the browser with the list index as value, after the empty option.
+			if(m_sharedList != null && value.startsWith("$")) {
+				try {
+					return Integer.parseInt(value.substring(1)) + 1;
+				} catch(NumberFormatException x) {
+					return -1;
+				}
+			}
+			return super.findOptionIndex(value);
+		}
 	};
 
 	/**
@@ -108,6 +124,19 @@ public class ComboComponentBase2<T, V> extends AbstractDivControl<V> implements
 
 	private List<SmallImgButton> m_buttonList = Collections.EMPTY_LIST;
 
+	/** When set, and the data comes from an {@link ICachedListMaker}, the options are created in the browser from a shared list. */
+	private boolean m_sharedOptions;
+
+	/** Identifies what a custom content renderer renders, so that its labels can be shared; see {@link #setSharedRendererKey(String)}. */
+	@Nullable
+	private String m_sharedRendererKey;
+
+	/** The list the browser creates the options from, when rendered with shared options. */
+	@Nullable
+	private SharedOptionList m_sharedList;
+
+	private boolean m_sharedScriptAdded;
+
 	public ComboComponentBase2() {}
 
 	public ComboComponentBase2(@NonNull IListMaker<T> maker) {
@@ -186,10 +215,13 @@ public class ComboComponentBase2<T, V> extends AbstractDivControl<V> implements
 		setCssClass("ui-cbb2 xxui-cbb2-rw ui-control");
 		add(m_select);
 		m_select.addCssClass("ui-input");
+		m_sharedList = null;
 
 		//-- Append stuff to the combo
 		List<T> list = getData();
 		V raw = internalGetCurrentValue();
+		if(m_sharedOptions && m_listMaker instanceof ICachedListMaker && list.size() > 0 && renderSharedOptions((ICachedListMaker<T>) m_listMaker, list))
+			return;
 
 		//-- First loop over all values to find out if current value is part of value domain.
 		boolean isvalidselection = false;
@@ -232,6 +264,64 @@ public class ComboComponentBase2<T, V> extends AbstractDivControl<V> implements
 		}
 	}
 
+	/**
+	 * Render the select with only the "unselected" option; the browser adds the options from the shared
+	 * list, with the list index as their value. The index of the selected item is kept in the
+	 * data-sel attribute of the select. Returns false when the labels cannot be shared, because
+	 * a custom renderer is used without a {@link #setSharedRendererKey(String) renderer key}.
+	 */
+	private boolean renderSharedOptions(@NonNull ICachedListMaker<T> maker, @NonNull List<T> list) throws Exception {
+		StringBuilder key = new StringBuilder();
+		key.append(maker.getCacheKey()).append('|');
+		String rendererKey = m_sharedRendererKey;
+		if(null != rendererKey) {
+			key.append(rendererKey);
+		} else if(m_contentRenderer == null && m_contentRendererClass == null) {
+			//-- The default renderer only depends on the metadata of the item and the property.
+			key.append("default:").append(list.get(0).getClass().getName());
+			PropertyMetaModel<?> pmm = m_propertyMetaModel;
+			if(null != pmm)
+				key.append('|').append(pmm.getClassModel().getActualClass().getName()).append('.').append(pmm.getName());
+		} else
+			return false;
+
+		IRenderInto<T> renderer = m_actualContentRenderer;
+		if(null == renderer)
+			renderer = m_actualContentRenderer = calculateContentRenderer(list.get(0));
+		SharedOptionList sol = m_sharedList = SharedOptionList.get(key.toString(), list, renderer);
+
+		SelectOption o = new SelectOption();
+		if(getEmptyText() != null)
+			o.setText(getEmptyText());
+		m_select.add(o);
+		setEmptyOption(o);
+		m_select.setSpecialAttribute("data-options", UIContext.getRequestContext().getRelativePath(sol.getURL()));
+		updateSharedSelection(findListIndexForValue(internalGetCurrentValue()));
+		if(!m_sharedScriptAdded) {
+			appendCreateJS("WebUI.initSharedOptions('" + m_select.getActualID() + "');");
+			m_sharedScriptAdded = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Tell the browser which list item is selected; the "unselected" option is only visible when the
+	 * combo is optional or has no valid value.
+	 */
+	private void updateSharedSelection(int index) {
+		SelectOption empty = getEmptyOption();
+		if(null == empty)
+			return;
+		m_select.internalSetSelectedIndex(index + 1);
+		empty.setSelected(index < 0);
+		empty.setDisplay(isMandatory() && index >= 0 ? DisplayType.NONE : null);
+		String value = Integer.toString(index);
+		if(!value.equals(m_select.getSpecialAttribute("data-sel"))) {
+			m_select.setSpecialAttribute("data-sel", value);
+			m_select.appendJavascript("WebUI.initSharedOptions('" + m_select.getActualID() + "');");
+		}
+	}
+
 	@Nullable
 	@Override
 	protected String getFocusID() {
@@ -307,6 +397,10 @@ public class ComboComponentBase2<T, V> extends AbstractDivControl<V> implements
 
 		//-- If the value is NULL we MUST have an unselected option: add it if needed and select that one.
 		int ix = findListIndexForValue(v);
+		if(m_sharedList != null) {
+			updateSharedSelection(ix);
+			return;
+		}
 		if(null == v || ix < 0) { // Also create "unselected" if the value is not part of the domain.
 			if(getEmptyOption() == null) {
 				//-- No empty option yet!! Create one;
@@ -358,6 +452,8 @@ public class ComboComponentBase2<T, V> extends AbstractDivControl<V> implements
 
 		clearMessage();
 		m_currentValue = newval;
+		if(m_sharedList != null)
+			updateSharedSelection(findListIndexForValue(newval));
 		return true;
 	}
 
@@ -574,6 +670,43 @@ public class ComboComponentBase2<T, V> extends AbstractDivControl<V> implements
 		return m_emptyText;
 	}
 
+	public boolean isSharedOptions() {
+		return m_sharedOptions;
+	}
+
+	/**
+	 * When set, and the data comes from an {@link ICachedListMaker}, the options are not rendered as nodes
+	 * for this combo. Instead all combos using the same cached list get their options in the browser from
+	 * a single JSON list, which the browser caches, and this combo only tracks its selected value. This makes
+	 * many combos with large code tables on a page cheap. Options can only contain text in this mode.
+	 * A combo with a custom content renderer only shares its labels when it has a
+	 * {@link #setSharedRendererKey(String) renderer key}; otherwise it renders its options as usual.
+	 */
+	public void setSharedOptions(boolean sharedOptions) {
+		if(m_sharedOptions == sharedOptions)
+			return;
+		m_sharedOptions = sharedOptions;
+		forceRebuild();
+	}
+
+	@Nullable
+	public String getSharedRendererKey() {
+		return m_sharedRendererKey;
+	}
+
+	/**
+	 * With shared options, combos only share the labels of a list when they render them the same way. For
+	 * the default renderer that is known; a custom renderer can hold state (a format, a property to show ...)
+	 * that is not visible from the outside. Set a key here that is the same for all renderers that render
+	 * the same labels for the same item, to allow sharing with a custom renderer.
+	 */
+	public void setSharedRendererKey(@Nullable String sharedRendererKey) {
+		if(DomUtil.isEqual(m_sharedRendererKey, sharedRendererKey))
+			return;
+		m_sharedRendererKey = sharedRendererKey;
+		forceRebuild();
+	}
+
 	public void setEmptyText(String emptyText) {
 		m_emptyText = emptyText;
 	}
@@ -0,0 +1,180 @@
+package to.etc.domui.component2.combo;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import to.etc.domui.dom.html.NodeBase;
+import to.etc.domui.dom.html.NodeContainer;
+import to.etc.domui.dom.html.SelectOption;
+import to.etc.domui.dom.html.TextNode;
+import to.etc.domui.util.IRenderInto;
+import to.etc.util.StringTool;
+import to.etc.webapp.nls.NlsContext;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The option labels of a cached code table list, rendered once per locale and shared by all
+ * combos that show that list with the same renderer. The labels are sent to the browser as a JSON
+ * array by {@link SharedOptionListPart}; the browser creates the options from that, so the
+ * server only keeps the combo's selected value.
+ *
+ * <p>The ID of a list is the hash of its JSON, so the URL of a list never changes while its
+ * content stays the same, and the browser can cache it forever. A list stays available as
+ * long as a combo uses it, or as long as it is the latest list for its key.</p>
+ */
+final public class SharedOptionList {
+	/** The latest list for every cache key, renderer and locale. */
+	static private final Map<String, SharedOptionList> m_byKey = new HashMap<>();
+
+	/** All lists that are still in use, by ID. */
+	static private final Map<String, WeakReference<SharedOptionList>> m_byId = new HashMap<>();
+
+	@NonNull
+	private final List<?> m_source;
+
+	@NonNull
+	private final String m_id;
+
+	@NonNull
+	private final byte[] m_json;
+
+	private final int m_size;
+
+	private SharedOptionList(@NonNull List<?> source, @NonNull String id, @NonNull byte[] json) {
+		m_source = source;
+		m_id = id;
+		m_json = json;
+		m_size = source.size();
+	}
+
+	/**
+	 * Get the shared labels for a list. The list must be the unmodifiable, cached instance returned
+	 * by DomApplication.getCachedList(); the labels are only rendered again when that instance
+	 * changes. The renderer must render a label that only depends on the item and the current
+	 * locale; the locale is added to the key here.
+	 *
+	 * @param listKey		The list's cache key, extended with anything that identifies what the renderer renders.
+	 */
+	@NonNull
+	static public <T> SharedOptionList get(@NonNull String listKey, @NonNull List<T> list, @NonNull IRenderInto<T> renderer) throws Exception {
+		String key = listKey + '|' + NlsContext.getLocale();
+		synchronized(SharedOptionList.class) {
+			SharedOptionList sol = m_byKey.get(key);
+			if(null != sol && sol.m_source == list)
+				return sol;
+		}
+
+		//-- Render outside the lock, the worst that can happen is that two threads render the same list.
+		StringBuilder sb = new StringBuilder(list.size() * 16);
+		sb.append('[');
+		SelectOption o = new SelectOption();
+		for(T item : list) {
+			if(sb.length() > 1)
+				sb.append(',');
+			o.removeAllChildren();
+			renderer.render(o, item);
+			appendJsonString(sb, getText(o));
+		}
+		sb.append(']');
+		byte[] json = sb.toString().getBytes(StandardCharsets.UTF_8);
+		String id = StringTool.toHex(MessageDigest.getInstance("MD5").digest(json));
+
+		synchronized(SharedOptionList.class) {
+			SharedOptionList sol = m_byKey.get(key);
+			if(null != sol && sol.m_source == list)
+				return sol;
+			sol = new SharedOptionList(list, id, json);
+			m_byKey.put(key, sol);
+			for(Iterator<WeakReference<SharedOptionList>> it = m_byId.values().iterator(); it.hasNext(); ) {
+				if(it.next().get() == null)
+					it.remove();
+			}
+			m_byId.put(id, new WeakReference<>(sol));
+			return sol;
+		}
+	}
+
+	/**
+	 * Find a list by its ID, or return null if no one uses it anymore.
+	 */
+	@Nullable
+	static public SharedOptionList findById(@NonNull String id) {
+		synchronized(SharedOptionList.class) {
+			WeakReference<SharedOptionList> ref = m_byId.get(id);
+			return ref == null ? null : ref.get();
+		}
+	}
+
+	/**
+	 * Drop all lists, for when the list caches are cleared. Lists still used by a combo remain available by ID.
+	 */
+	static public void clear() {
+		synchronized(SharedOptionList.class) {
+			m_byKey.clear();
+		}
+	}
+
+	@NonNull
+	public String getId() {
+		return m_id;
+	}
+
+	/**
+	 * The URL of the JSON, relative to the application root.
+	 */
+	@NonNull
+	public String getURL() {
+		return SharedOptionListPart.class.getName() + ".part/" + m_id;
+	}
+
+	@NonNull
+	public byte[] getJson() {
+		return m_json;
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	/**
+	 * Collect the text inside a rendered label.
+	 */
+	@NonNull
+	static private String getText(@NonNull NodeContainer nc) {
+		String s = nc.getTextContents();
+		if(null != s)
+			return s;
+		StringBuilder sb = new StringBuilder();
+		appendText(sb, nc);
+		return sb.toString();
+	}
+
+	static private void appendText(@NonNull StringBuilder sb, @NonNull NodeContainer nc) {
+		for(NodeBase nb : nc) {
+			if(nb instanceof TextNode)
+				sb.append(((TextNode) nb).getText());
+			else if(nb instanceof NodeContainer)
+				appendText(sb, (NodeContainer) nb);
+		}
+	}
+
+	static private void appendJsonString(@NonNull StringBuilder sb, @NonNull String s) {
+		sb.append('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if(c < 32 || c == 0x2028 || c == 0x2029) {
+				sb.append("\\u").append(StringTool.intToStr(c, 16, 4));
+			} else
+				sb.append(c);
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,30 @@
+package to.etc.domui.component2.combo;
+
+import org.eclipse.jdt.annotation.NonNull;
+import to.etc.domui.server.DomApplication;
+import to.etc.domui.server.RequestContextImpl;
+import to.etc.domui.server.parts.IUnbufferedPartFactory;
+import to.etc.domui.trouble.ThingyNotFoundException;
+
+import java.io.OutputStream;
+
+/**
+ * Sends the labels of a {@link SharedOptionList} as a JSON array. The URL contains the
+ * hash of the content, so the browser may cache the response for as long as it likes.
+ */
+final public class SharedOptionListPart implements IUnbufferedPartFactory {
+	@Override
+	public void generate(@NonNull DomApplication app, @NonNull String rurl, @NonNull RequestContextImpl param) throws Exception {
+		SharedOptionList sol = SharedOptionList.findById(rurl);
+		if(null == sol)
+			throw new ThingyNotFoundException("The option list '" + rurl + "' is not known");
+		byte[] json = sol.getJson();
+		param.getRequestResponse().setExpiry(365 * 24 * 60 * 60);
+		OutputStream os = param.getRequestResponse().getOutputStream("application/json", "utf-8", json.length);
+		try {
+			os.write(json);
+		} finally {
+			os.close();
+		}
+	}
+}
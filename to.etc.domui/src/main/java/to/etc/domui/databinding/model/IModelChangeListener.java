@@ -0,0 +1,9 @@
+package to.etc.domui.databinding.model;
+
+import to.etc.domui.databinding.IChangeListener;
+
+/**
+ * Listener for changes to an {@link IObservableModel}.
+ */
+public interface IModelChangeListener extends IChangeListener<Object, ModelChangeEvent, IModelChangeListener> {
+}
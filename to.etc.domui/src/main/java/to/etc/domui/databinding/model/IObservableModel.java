@@ -0,0 +1,16 @@
+package to.etc.domui.databinding.model;
+
+import to.etc.domui.databinding.IObservable;
+
+/**
+ * A model object that tells its listeners when one of its properties changed. Bindings
+ * to such an object only need to move its values to their control after it reported
+ * a change, instead of checking it on every request.
+ * <p>Implementations must fire a {@link ModelChangeEvent} for <b>every</b> change of a
+ * property that can be bound; a missed event means a control will not be updated. This
+ * includes properties that are calculated from other properties: fire an event for them
+ * too, or fire one with a null property name to mark all properties as changed. The
+ * {@link to.etc.domui.databinding.ListenerList} class can be used to manage the listeners.</p>
+ */
+public interface IObservableModel extends IObservable<Object, ModelChangeEvent, IModelChangeListener> {
+}
@@ -0,0 +1,30 @@
+package to.etc.domui.databinding.model;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import to.etc.domui.databinding.ObservableEvent;
+
+/**
+ * Sent by an {@link IObservableModel} when one of its properties changed.
+ */
+public class ModelChangeEvent extends ObservableEvent<Object, ModelChangeEvent, IModelChangeListener> {
+	@Nullable
+	final private String m_propertyName;
+
+	/**
+	 * Create an event for the specified property. A null property name means that any
+	 * property of the model may have changed.
+	 */
+	public ModelChangeEvent(@NonNull IObservableModel source, @Nullable String propertyName) {
+		super(source);
+		m_propertyName = propertyName;
+	}
+
+	/**
+	 * The name of the property that changed, or null if all properties must be considered changed.
+	 */
+	@Nullable
+	public String getPropertyName() {
+		return m_propertyName;
+	}
+}
@@ -26,6 +26,9 @@ package to.etc.domui.dom;
 
 import java.io.*;
 
+/**
+ * Non-indenting output renderer, writing compact markup. This is used for production output.
+ */
 public class FastXmlOutputWriter extends XmlOutputWriterBase implements IBrowserOutput {
 	public FastXmlOutputWriter(Writer w) {
 		super(w);
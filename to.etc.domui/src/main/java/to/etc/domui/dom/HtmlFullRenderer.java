@@ -420,9 +420,9 @@ public class HtmlFullRenderer extends NodeVisitorBase implements IContributorRen
 		/*
 		 * We need polling if we have any of the keep alive options on, or when there is an async request.
 		 */
-		int pollinterval = application.calculatePollInterval(page.getConversation().isPollCallbackRequired());
-		if(pollinterval > 0) {
-			o().writeRaw("WebUI.startPolling(" + pollinterval + ");");
+		boolean pollCallbackRequired = page.getConversation().isPollCallbackRequired();
+		if(application.calculatePollInterval(pollCallbackRequired) > 0) {
+			o().writeRaw(application.getPollScript(pollCallbackRequired));
 		}
 		int autorefresh = application.getAutoRefreshPollInterval();
 		if(autorefresh > 0) {
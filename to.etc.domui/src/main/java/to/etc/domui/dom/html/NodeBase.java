@@ -1939,6 +1939,8 @@ abstract public class NodeBase extends CssBase implements INodeErrorDelegate {
 		if(list == null)
 			list = m_bindingList = new ArrayList<>(1);
 		list.add(binding);
+		if(isAttached())
+			getPage().internalGetBindingRegistry().invalidate();
 	}
 
 	void finishBinding(@NonNull IBinding binding) {
@@ -1950,8 +1952,8 @@ abstract public class NodeBase extends CssBase implements INodeErrorDelegate {
 
 	final public void removeBinding(@NonNull IBinding binding) {
 		List<IBinding> list = m_bindingList;
-		if(null != list)
-			list.remove(binding);
+		if(null != list && list.remove(binding) && isAttached())
+			getPage().internalGetBindingRegistry().invalidate();
 	}
 
 	/**
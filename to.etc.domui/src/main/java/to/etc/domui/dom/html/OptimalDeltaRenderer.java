@@ -191,15 +191,8 @@ public class OptimalDeltaRenderer implements IContributorRenderer {
 		m_page.internalSetPhase(PagePhase.DELTARENDER);
 		if(DEBUG) {
 			DumpDirtyStateRenderer.dump(m_page.getBody());
-			System.out.println("--- BEFORE node map: ----");
-			Map<String, NodeBase> beforeMap = m_page.getBeforeMap();
-			if(beforeMap == null) {
-				System.out.println("No before map - no tree changes");
-			} else {
-				for(String k : beforeMap.keySet()) {
-					System.out.println(k + ": " + beforeMap.get(k));
-				}
-			}
+			System.out.println("--- Tree change journal: ----");
+			System.out.println(m_page.internalGetChangeJournal());
 		}
 
 		o().writeRaw("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
@@ -254,12 +247,7 @@ public class OptimalDeltaRenderer implements IContributorRenderer {
 		}
 
 		//-- Handle delayed stuff...
-		int pollinterval = DomApplication.get().calculatePollInterval(m_page.getConversation().isPollCallbackRequired());
-		if(pollinterval > 0) {
-			o().writeRaw("WebUI.startPolling(" + pollinterval + ");");
-		} else {
-			o().writeRaw("WebUI.cancelPolling();");
-		}
+		o().writeRaw(DomApplication.get().getPollScript(m_page.getConversation().isPollCallbackRequired()));
 
 		o().closetag("eval");
 		o().closetag("delta");
@@ -561,12 +549,10 @@ public class OptimalDeltaRenderer implements IContributorRenderer {
 			 * There is a tree delta; this is valid ONLY if this node existed earlier. If the node did not exist
 			 * earlier we have a logic error: the "upper" node should have seen this node as NEW, so abort.
 			 */
-			Map<String, NodeBase> beforeMap = m_page.getBeforeMap();
-			if(null == beforeMap)
-				throw new IllegalStateException("Before map is null inside delta?");
-			if(!beforeMap.containsKey(n.getActualID())) {
-				for(String s : beforeMap.keySet())
-					System.out.println("before key=" + s);
+			if(!m_page.hasTreeChanges())
+				throw new IllegalStateException("No tree change journal inside delta?");
+			if(!m_page.wasPresentBeforeChange(n.getActualID())) {
+				System.out.println("tree changes: " + m_page.internalGetChangeJournal());
 				throw new IllegalStateException("Rotary device exception: delta exists on NEW node, and we're trying to render the new node as a delta!? Node=" + n.getActualID());
 			}
 
@@ -661,16 +647,15 @@ public class OptimalDeltaRenderer implements IContributorRenderer {
 		 * Primary deletes are known: all nodes that moved to another tree OR that were removed
 		 * are gone. What's left are moves and adds. Handle all ADDS now.
 		 */
+		if(!m_page.hasTreeChanges())
+			throw new IllegalStateException("No tree change journal inside delta??");
 		List<NodeBase> nl = new ArrayList<NodeBase>(newl.size());
 		for(int i = 0; i < newl.size(); i++) {
 			NodeBase nn = newl.get(i);
 			nn.m_origNewIndex = i; // The actual index for the new node.
 
 			//-- Is this an addition from somewhere else? If so handle it here && remove from the working list
-			Map<String, NodeBase> beforeMap = m_page.getBeforeMap();
-			if(null == beforeMap)
-				throw new IllegalStateException("Before map is null inside delta??");
-			if(nn.internalGetOldParent() == null || nn.internalGetOldParent() != nc || !beforeMap.containsKey(nn.getActualID())) {
+			if(nn.internalGetOldParent() == null || nn.internalGetOldParent() != nc || !m_page.wasPresentBeforeChange(nn.getActualID())) {
 				//-- Came from somewhere else or is new -> render.
 				/*
 				 * This node is NEW in this tree. We're pretty sure we need to ADD it then. This has
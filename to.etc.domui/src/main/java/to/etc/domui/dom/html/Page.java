@@ -27,6 +27,7 @@ package to.etc.domui.dom.html;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import to.etc.domui.component.binding.BindingRegistry;
 import to.etc.domui.component.binding.OldBindingHandler;
 import to.etc.domui.component.layout.FloatingDiv;
 import to.etc.domui.component.misc.WindowParameters;
@@ -88,8 +89,20 @@ final public class Page implements IQContextContainer {
 	@NonNull
 	private final Map<String, NodeBase> m_nodeMap = new HashMap<String, NodeBase>(127);
 
+	/**
+	 * The change journal: when not null the tree has changed in this request. It then contains the IDs of
+	 * the nodes that were added to the page since the first change and that were not present before it.
+	 */
+	@Nullable
+	private Set<String> m_addedSinceChange;
+
+	/** The IDs of the nodes that were present before the first tree change and that have been removed since. */
 	@Nullable
-	private Map<String, NodeBase> m_beforeMap;
+	private Set<String> m_removedSinceChange;
+
+	/** All nodes with bindings, in DOM order. */
+	@NonNull
+	private final BindingRegistry m_bindingRegistry = new BindingRegistry(this);
 
 	/**
 	 * Contains the header contributors in the order that they were added.
@@ -383,6 +396,9 @@ final public class Page implements IQContextContainer {
 		}
 		if(null != m_nodeMap.put(id, n))
 			throw new IllegalStateException("Duplicate node ID '" + id + "'!?!?");
+		journalAdded(id);
+		if(n.getBindingList() != null)
+			m_bindingRegistry.invalidate();
 		n.setPage(this);
 		n.onHeaderContributors(this);					// Ask the node for it's header contributors.
 		n.internalOnAddedToPage(this);
@@ -413,8 +429,12 @@ final public class Page implements IQContextContainer {
 			m_theCurrentNode = n.getParent();
 		n.internalOnRemoveFromPage(this);
 		n.setPage(null);
-		if(m_nodeMap.remove(n.getActualID()) == null)
-			throw new IllegalStateException("The node with ID=" + n.getActualID() + " was not found!?");
+		String id = n.getActualID();
+		if(m_nodeMap.remove(id) == null)
+			throw new IllegalStateException("The node with ID=" + id + " was not found!?");
+		journalRemoved(id);
+		if(n.getBindingList() != null)
+			m_bindingRegistry.invalidate();
 		m_pendingBuildSet.remove(n); // ?? Needed?
 	}
 
@@ -431,29 +451,78 @@ final public class Page implements IQContextContainer {
 	 * 		tree render time only the changed attributes are sent as a change list.
 	 * 2.	The tree structure changes because components are moved, added or deleted.
 	 *
-	 * This code handles case 2. To prevent us from always having to create a before
-	 * image all calls that change the tree (removeComponent, addComponent) call
-	 * a signal function here. Only when that function gets called (the 1st time) will
-	 * a copy of the before-tree be made. This copy only encapsulates the structure;
-	 * the components themselves are not copied.
-	 * The existence of the before-structure will indicate that a full tree delta is
-	 * to be done at response time.
+	 * This code handles case 2. To prevent us from always having to track the structure, all
+	 * calls that change the tree (removeComponent, addComponent) call a signal function here.
+	 * Only when that function gets called (the 1st time) is a change journal started. From then
+	 * on every node registration and removal records its ID in the journal, so that the delta
+	 * renderer can still ask whether a node existed before the first change. This keeps the
+	 * cost of a change proportional to the size of the change instead of the size of the page.
+	 * The existence of the journal will indicate that a full tree delta is to be done at
+	 * response time.
 	 */
 
 	/**
 	 * Called by all methods that change this tree. As soon as this gets called
-	 * it checks to see if a before-image is present. If not then it gets created
-	 * so that the structure before the changes is maintained.
+	 * it checks to see if a change journal is present. If not then it gets started
+	 * so that the structure before the changes can be determined.
 	 */
-	final protected void copyIdMap() {
-		if(m_beforeMap != null)
+	final protected void startChangeJournal() {
+		if(m_addedSinceChange != null)
 			return;
-		m_beforeMap = new HashMap<String, NodeBase>(m_nodeMap);
+		m_addedSinceChange = new HashSet<String>();
+		m_removedSinceChange = new HashSet<String>();
 	}
 
-	@Nullable
-	final public Map<String, NodeBase> getBeforeMap() {
-		return m_beforeMap;
+	/**
+	 * Returns T if the tree has changed in this request, meaning a tree delta needs to be rendered.
+	 */
+	final public boolean hasTreeChanges() {
+		return m_addedSinceChange != null;
+	}
+
+	/**
+	 * Returns T if a node with the specified ID was present in the page before the first tree change
+	 * in this request. Must only be called when {@link #hasTreeChanges()} is true.
+	 */
+	final public boolean wasPresentBeforeChange(@NonNull String id) {
+		Set<String> added = m_addedSinceChange;
+		Set<String> removed = m_removedSinceChange;
+		if(null == added || null == removed)
+			throw new IllegalStateException("No tree changes have been recorded");
+		if(added.contains(id))
+			return false;
+		if(removed.contains(id))
+			return true;
+		return m_nodeMap.containsKey(id);
+	}
+
+	private void journalAdded(@NonNull String id) {
+		Set<String> added = m_addedSinceChange;
+		Set<String> removed = m_removedSinceChange;
+		if(null == added || null == removed)
+			return;
+		if(!removed.remove(id))							// Re-adding something that was there before is no change
+			added.add(id);
+	}
+
+	private void journalRemoved(@NonNull String id) {
+		Set<String> added = m_addedSinceChange;
+		Set<String> removed = m_removedSinceChange;
+		if(null == added || null == removed)
+			return;
+		if(!added.remove(id))							// Removing something that was added in this request leaves no trace
+			removed.add(id);
+	}
+
+	/**
+	 * For debugging: the IDs added and removed since the first tree change.
+	 */
+	@NonNull
+	public String internalGetChangeJournal() {
+		Set<String> added = m_addedSinceChange;
+		if(null == added)
+			return "No tree changes";
+		return "added=" + added + ", removed=" + m_removedSinceChange;
 	}
 
 	public void internalClearDeltaFully() {
@@ -463,7 +532,8 @@ final public class Page implements IQContextContainer {
 		m_removeAfterRenderList.clear();
 
 		getBody().internalClearDeltaFully();
-		m_beforeMap = null;
+		m_addedSinceChange = null;
+		m_removedSinceChange = null;
 		m_sb = null;
 	}
 
@@ -589,6 +659,11 @@ final public class Page implements IQContextContainer {
 		}
 	}
 
+	@NonNull
+	public BindingRegistry internalGetBindingRegistry() {
+		return m_bindingRegistry;
+	}
+
 	/*--------------------------------------------------------------*/
 	/*	CODING:	Handle the floating window stack.					*/
 	/*--------------------------------------------------------------*/
@@ -161,9 +161,7 @@ public class Select extends InputNodeContainer implements INativeChangeListener,
 		if(isDisabled()) {                                // Never accept data from request in disabled control.
 			return false;
 		}
-		String in = values[0];
-		SelectOption selo = (SelectOption) getPage().findNodeByID(in);
-		int nindex = selo == null ? -1 : findChildIndex(selo);
+		int nindex = findOptionIndex(values[0]);
 		int oldindex = m_selectedIndex;
 		setSelectedIndex(nindex);
 		if(!internalOnUserInput(oldindex, nindex))
@@ -172,6 +170,15 @@ public class Select extends InputNodeContainer implements INativeChangeListener,
 		return true;
 	}
 
+	/**
+	 * Return the index of the option with the specified value as sent by the browser, or -1 if there is no
+	 * such option. The value of a rendered option is its node ID; override when options are created in the browser.
+	 */
+	protected int findOptionIndex(@NonNull String value) {
+		SelectOption selo = (SelectOption) getPage().findNodeByID(value);
+		return selo == null ? -1 : findChildIndex(selo);
+	}
+
 	/**
 	 * Called when user input has changed the selected index.
 	 * @param oldindex
@@ -36,7 +36,6 @@ import to.etc.domui.component.misc.MessageFlare;
 import to.etc.domui.component.misc.MsgBox;
 import to.etc.domui.dom.HtmlFullRenderer;
 import to.etc.domui.dom.IBrowserOutput;
-import to.etc.domui.dom.PrettyXmlOutputWriter;
 import to.etc.domui.dom.errors.IExceptionListener;
 import to.etc.domui.dom.errors.UIMessage;
 import to.etc.domui.dom.html.ClickInfo;
@@ -55,6 +54,7 @@ import to.etc.domui.state.AppSession;
 import to.etc.domui.state.CidPair;
 import to.etc.domui.state.ConversationContext;
 import to.etc.domui.state.ConversationDestroyedException;
+import to.etc.domui.state.DelayedActivitiesManager;
 import to.etc.domui.state.IGotoAction;
 import to.etc.domui.state.INotReloadablePage;
 import to.etc.domui.state.PageParameters;
@@ -287,6 +287,13 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 			return; // Obituaries get a zero response.
 		}
 
+		//-- A push request first waits, without locking the session, until the conversation has results to send. It then continues as a normal poll.
+		if(Constants.ACMD_ASYPOLL.equals(action) && cida != null && ctx.getParameter(Constants.PARAM_ASYWAIT) != null) {
+			DelayedActivitiesManager dm = ctx.internalGetSessionUnlocked().internalFindDelayedActivitiesManager(cida.getWindowId() + "." + cida.getConversationId());
+			if(null != dm)
+				m_application.internalWaitForAsyncChanges(dm);
+		}
+
 		// ORDERED!!! Must be kept BELOW the OBITUARY check
 		WindowSession windowSession = null;
 		if(cida != null) {
@@ -590,7 +597,7 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 			} else {
 				w = ctx.getOutputWriter("text/html; charset=UTF-8", "utf-8");
 			}
-			IBrowserOutput out = new PrettyXmlOutputWriter(w);
+			IBrowserOutput out = m_application.createBrowserOutput(w);
 
 			HtmlFullRenderer hr = m_application.findRendererFor(ctx.getBrowserVersion(), out);
 			hr.render(ctx, page);
@@ -985,7 +992,7 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 	 */
 	static public void generateHttpRedirect(RequestContextImpl ctx, String to, String rsn) throws Exception {
 		to = appendPersistedParameters(to, ctx);
-		IBrowserOutput out = new PrettyXmlOutputWriter(ctx.getOutputWriter("text/html; charset=UTF-8", "utf-8"));
+		IBrowserOutput out = ctx.getApplication().createBrowserOutput(ctx.getOutputWriter("text/html; charset=UTF-8", "utf-8"));
 		out.writeRaw("<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">\n" + "<html><head><script language=\"javascript\"><!--\n"
 			+ "location.replace(" + StringTool.strToJavascriptString(to, true) + ");\n" + "--></script>\n" + "</head><body>" + rsn + "</body></html>\n");
 	}
@@ -998,7 +1005,7 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 			LOG.info("redirecting to " + url);
 		url = appendPersistedParameters(url, ctx);
 
-		IBrowserOutput out = new PrettyXmlOutputWriter(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
+		IBrowserOutput out = ctx.getApplication().createBrowserOutput(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
 		out.tag("redirect");
 		out.attr("url", url);
 		out.endAndCloseXmltag();
@@ -1032,7 +1039,7 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 	 */
 	private void generateExpired(final RequestContextImpl ctx, final String message) throws Exception {
 		//-- We stay on the same page. Render tree delta as response
-		IBrowserOutput out = new PrettyXmlOutputWriter(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
+		IBrowserOutput out = ctx.getApplication().createBrowserOutput(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
 		out.tag("expired");
 		out.endtag();
 
@@ -1045,7 +1052,7 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 
 	private void generateEmptyDelta(final RequestContextImpl ctx) throws Exception {
 		//-- We stay on the same page. Render tree delta as response
-		IBrowserOutput out = new PrettyXmlOutputWriter(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
+		IBrowserOutput out = ctx.getApplication().createBrowserOutput(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
 		out.tag("delta");
 		out.endtag();
 		out.closetag("delta");
@@ -1057,7 +1064,7 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 	 */
 	private void generateExpiredPollasy(final RequestContextImpl ctx) throws Exception {
 		//-- We stay on the same page. Render tree delta as response
-		IBrowserOutput out = new PrettyXmlOutputWriter(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
+		IBrowserOutput out = ctx.getApplication().createBrowserOutput(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
 		out.tag("expiredOnPollasy");
 		out.endtag();
 		out.closetag("expiredOnPollasy");
@@ -1279,7 +1286,7 @@ public class ApplicationRequestHandler implements IFilterRequestHandler {
 		page.internalDeltaBuild();
 		// /ORDERED
 
-		IBrowserOutput out = new PrettyXmlOutputWriter(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
+		IBrowserOutput out = ctx.getApplication().createBrowserOutput(ctx.getOutputWriter("text/xml; charset=UTF-8", "utf-8"));
 
 		long ts = System.nanoTime();
 		//		String	usag = ctx.getUserAgent();
@@ -29,22 +29,27 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import to.etc.domui.ajax.AjaxRequestHandler;
+import to.etc.domui.caches.lists.ListCache;
 import to.etc.domui.component.binding.DefaultBindingHandler;
 import to.etc.domui.component.binding.IBindingHandler;
 import to.etc.domui.component.binding.IBindingHandlerFactory;
 import to.etc.domui.component.controlfactory.ControlBuilder;
 import to.etc.domui.component.controlfactory.ControlFactoryMoney;
 import to.etc.domui.component.controlfactory.PropertyControlFactory;
+import to.etc.domui.component.delayed.AsyncExecutor;
 import to.etc.domui.component.delayed.IAsyncListener;
 import to.etc.domui.component.layout.ErrorPanel;
 import to.etc.domui.component.layout.title.AppPageTitleBar;
 import to.etc.domui.component.layout.title.BasePageTitleBar;
+import to.etc.domui.component2.combo.SharedOptionList;
 import to.etc.domui.component2.controlfactory.ControlCreatorRegistry;
+import to.etc.domui.dom.FastXmlOutputWriter;
 import to.etc.domui.dom.HtmlFullRenderer;
 import to.etc.domui.dom.HtmlTagRenderer;
 import to.etc.domui.dom.IBrowserOutput;
 import to.etc.domui.dom.IHtmlRenderFactory;
 import to.etc.domui.dom.MsCrapwareRenderFactory;
+import to.etc.domui.dom.PrettyXmlOutputWriter;
 import to.etc.domui.dom.StandardHtmlFullRenderer;
 import to.etc.domui.dom.StandardHtmlTagRenderer;
 import to.etc.domui.dom.errors.IExceptionListener;
@@ -75,6 +80,7 @@ import to.etc.domui.state.DelayedActivitiesManager;
 import to.etc.domui.state.PageParameters;
 import to.etc.domui.state.UIGoto;
 import to.etc.domui.state.WindowSession;
+import to.etc.domui.themes.CleanThemeVariant;
 import to.etc.domui.themes.DefaultThemeVariant;
 import to.etc.domui.themes.ITheme;
 import to.etc.domui.themes.IThemeFactory;
@@ -117,8 +123,10 @@ import to.etc.webapp.query.QNotFoundException;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.File;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -129,6 +137,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -207,6 +216,15 @@ public abstract class DomApplication {
 	/** The default poll interval time for pages containing Async objects (see {@link DelayedActivitiesManager}). */
 	private int m_defaultPollInterval = 2500;
 
+	/** The max #of push requests that may wait for asynchronous results at the same time. When 0 push is disabled and the browser polls. */
+	private int m_maxPushWaiters = 100;
+
+	/** The max time, in milliseconds, that a push request waits before it returns without results. */
+	private int m_pushTimeout = 25 * 1000;
+
+	/** The #of push requests currently waiting. */
+	private final AtomicInteger m_pushWaiters = new AtomicInteger();
+
 	/** When set, problem reports have a "mail" button and send mail here, */
 	private String m_problemMailAddress;
 
@@ -220,6 +238,9 @@ public abstract class DomApplication {
 
 	private final boolean m_logOutput = DeveloperOptions.getBool("domui.log", false);
 
+	/** When T, rendered pages and deltas are indented for readability. Only on by default in development mode. */
+	private boolean m_prettyOutput;
+
 	@NonNull
 	private List<IRequestInterceptor> m_interceptorList = new ArrayList<IRequestInterceptor>();
 
@@ -235,6 +256,9 @@ public abstract class DomApplication {
 	/** Timeout for a window session, in minutes. */
 	private int m_windowSessionTimeout = 15;
 
+	/** When T requests lock only the WindowSession they are for instead of the whole AppSession. */
+	private volatile boolean m_windowLocking;
+
 	/** The default expiry time for resources, in seconds. */
 	private int m_defaultExpiryTime = 1 * 24 * 60 * 60;
 
@@ -307,6 +331,10 @@ public abstract class DomApplication {
 	@NonNull
 	private List<IAsyncListener<?>> m_asyncListenerList = Collections.emptyList();
 
+	/** Runs the asynchronous activities of all sessions. */
+	@NonNull
+	private final AsyncExecutor m_asyncExecutor = new AsyncExecutor();
+
 	@NonNull
 	private final WebActionRegistry m_webActionRegistry = new WebActionRegistry();
 
@@ -607,6 +635,7 @@ public abstract class DomApplication {
 		} catch(Throwable x) {
 			AppFilter.LOG.error("Exception when destroying Application", x);
 		}
+		m_asyncExecutor.terminate();
 	}
 
 	/**
@@ -645,7 +674,12 @@ public abstract class DomApplication {
 			m_urlExtension = ext;
 		}
 
+		configureAsyncExecutor(pp);
+		configureListCache(pp);
+		m_partService.setCacheSize(getIntParameter(pp, "partcache-size", m_partService.getCacheSize()));
+
 		m_developmentMode = development;
+		m_prettyOutput = development && DeveloperOptions.getBool("domui.prettyxml", true);
 		if(m_developmentMode && DeveloperOptions.getBool("domui.traceallocations", true))
 			NodeBase.internalSetLogAllocations(true);
 		String haso = DeveloperOptions.getString("domui.testui");
@@ -664,6 +698,7 @@ public abstract class DomApplication {
 		}
 
 		initialize(pp);
+		startThemePrecompile(pp);
 
 		/*
 		 * If we're running in development mode then we auto-reload changed pages when the developer changes
@@ -680,6 +715,74 @@ public abstract class DomApplication {
 		}
 	}
 
+	/**
+	 * Configure the executor for asynchronous activities from the parameters async-threads (the max #of
+	 * activities running at the same time), async-session-threads (the max #of those for a single session)
+	 * and async-virtual-threads (use virtual threads if the JVM has them).
+	 */
+	private void configureAsyncExecutor(@NonNull ConfigParameters pp) {
+		int threads = getIntParameter(pp, "async-threads", m_asyncExecutor.getMaxThreads());
+		int sessionThreads = getIntParameter(pp, "async-session-threads", m_asyncExecutor.getMaxPerSession());
+		boolean virtual = "true".equalsIgnoreCase(pp.getString("async-virtual-threads"));
+		m_asyncExecutor.configure(threads, sessionThreads, virtual);
+		setMaxPushWaiters(getIntParameter(pp, "async-push-waiters", getMaxPushWaiters()));
+	}
+
+	/**
+	 * Configure the list cache from the parameters listcache-timeout (the default time a list stays valid, in
+	 * seconds; 0 for forever) and listcache-max-items (the max #of items in all cached lists).
+	 */
+	private void configureListCache(@NonNull ConfigParameters pp) {
+		m_listCache.setDefaultTimeout(getIntParameter(pp, "listcache-timeout", (int) (m_listCache.getDefaultTimeout() / 1000)) * 1000L);
+		m_listCache.setMaxItems(getIntParameter(pp, "listcache-max-items", m_listCache.getMaxItems()));
+	}
+
+	/**
+	 * When the parameter theme-precompile is set, build the themes in the background so that the first
+	 * user does not wait for them. The parameter is a comma separated list of theme names, or "default"
+	 * for the application's default theme. The variants to build are in theme-precompile-variants, as
+	 * a comma separated list of "default" and "clean"; the default is both.
+	 */
+	private void startThemePrecompile(@NonNull ConfigParameters pp) {
+		String names = pp.getString("theme-precompile");
+		if(null == names || names.trim().length() == 0)
+			return;
+		List<String> themeNames = new ArrayList<>();
+		for(String name : names.split(",")) {
+			name = name.trim();
+			if(name.equalsIgnoreCase("default") || name.equalsIgnoreCase("true"))
+				themeNames.add(getDefaultThemeName());
+			else if(name.length() > 0)
+				themeNames.add(name);
+		}
+
+		List<IThemeVariant> variants = new ArrayList<>();
+		String vnames = pp.getString("theme-precompile-variants");
+		if(null == vnames || vnames.trim().length() == 0)
+			vnames = DefaultThemeVariant.INSTANCE.getVariantName() + "," + CleanThemeVariant.INSTANCE.getVariantName();
+		for(String name : vnames.split(",")) {
+			name = name.trim();
+			if(name.equalsIgnoreCase(DefaultThemeVariant.INSTANCE.getVariantName()))
+				variants.add(DefaultThemeVariant.INSTANCE);
+			else if(name.equalsIgnoreCase(CleanThemeVariant.INSTANCE.getVariantName()))
+				variants.add(CleanThemeVariant.INSTANCE);
+			else if(name.length() > 0)
+				throw new IllegalArgumentException("Unknown theme variant '" + name + "' in theme-precompile-variants");
+		}
+		m_asyncExecutor.submit(null, 0, () -> m_themeManager.precompileThemes(themeNames, variants));
+	}
+
+	static private int getIntParameter(@NonNull ConfigParameters pp, @NonNull String name, int dflt) {
+		String s = pp.getString(name);
+		if(null == s || s.trim().length() == 0)
+			return dflt;
+		try {
+			return Integer.parseInt(s.trim());
+		} catch(NumberFormatException x) {
+			throw new IllegalArgumentException("The parameter " + name + " must be a number, not '" + s + "'");
+		}
+	}
+
 	/**
 	 * Overrides the application URL with a fixed version. Usually the URL gets dynamically calculated
 	 * from the input URL as this allows zero config and allows a single application to be present
@@ -911,6 +1014,61 @@ public abstract class DomApplication {
 		return pollinterval;
 	}
 
+	/**
+	 * The max #of push requests that may wait for asynchronous results at the same time, defaulting to 100. Every
+	 * waiting request occupies a server thread, so when this limit is reached browsers fall back to polling. Set
+	 * to 0 to disable push altogether. Can be set with the web.xml parameter "async-push-waiters".
+	 */
+	public synchronized int getMaxPushWaiters() {
+		return m_maxPushWaiters;
+	}
+
+	public synchronized void setMaxPushWaiters(int maxPushWaiters) {
+		m_maxPushWaiters = maxPushWaiters;
+	}
+
+	/**
+	 * The max time, in milliseconds, that a push request waits before it returns without results. It
+	 * should be well below any proxy timeout; it defaults to 25 seconds.
+	 */
+	public synchronized int getPushTimeout() {
+		return m_pushTimeout;
+	}
+
+	public synchronized void setPushTimeout(int pushTimeout) {
+		m_pushTimeout = pushTimeout;
+	}
+
+	/**
+	 * Return the Javascript that makes the browser come back for the results of asynchronous activities, or
+	 * for keepalive and autorefresh. When the page has asynchronous work and push is available the browser
+	 * sends a push request that waits on the server until there are results; otherwise it polls.
+	 */
+	@NonNull
+	public String getPollScript(boolean pollCallbackRequired) {
+		int pollinterval = calculatePollInterval(pollCallbackRequired);
+		if(pollinterval <= 0)
+			return "WebUI.cancelPolling();";
+		if(pollCallbackRequired && m_pushWaiters.get() < getMaxPushWaiters())
+			return "WebUI.startPush(" + pollinterval + ");";
+		return "WebUI.startPolling(" + pollinterval + ");";
+	}
+
+	/**
+	 * Push support: wait, without locking anything, until the conversation has results to send to the
+	 * browser, or until the push timeout expires. Returns immediately when too many requests are waiting
+	 * already, after which the response will tell the browser to poll instead.
+	 */
+	void internalWaitForAsyncChanges(@NonNull DelayedActivitiesManager manager) throws InterruptedException {
+		try {
+			if(m_pushWaiters.incrementAndGet() > getMaxPushWaiters())
+				return;
+			manager.waitForChanges(getPushTimeout(), getDefaultPollInterval());
+		} finally {
+			m_pushWaiters.decrementAndGet();
+		}
+	}
+
 	/**
 	 * The #of minutes that a WindowSession remains valid; defaults to 15 minutes.
 	 *
@@ -928,6 +1086,26 @@ public abstract class DomApplication {
 		m_windowSessionTimeout = windowSessionTimeout;
 	}
 
+	/**
+	 * When T, requests for a specific browser window (those having a $cid) only lock that
+	 * window's {@link WindowSession}, so that requests for other windows of the same user
+	 * are not blocked. Requests without a window id still lock the whole {@link AppSession}.
+	 * Defaults to false, which serializes all requests of a session.
+	 * @return
+	 */
+	public boolean isWindowLocking() {
+		return m_windowLocking;
+	}
+
+	/**
+	 * Switch per-window request locking on or off; see {@link #isWindowLocking()}. Only code
+	 * that does not share unsynchronized state between the windows of a session should use this.
+	 * @param windowLocking
+	 */
+	public void setWindowLocking(boolean windowLocking) {
+		m_windowLocking = windowLocking;
+	}
+
 	/**
 	 * Returns the default browser cache resource expiry time in seconds. When
 	 * running in production mode all "static" resources are sent to the browser
@@ -1415,30 +1593,20 @@ public abstract class DomApplication {
 	/*	CODING:	Code table cache.									*/
 	/*--------------------------------------------------------------*/
 
-	private final Map<String, ListRef<?>> m_listCacheMap = new HashMap<String, ListRef<?>>();
-
-	static private final class ListRef<T> {
-		private List<T> m_list;
-
-		private final ICachedListMaker<T> m_maker;
-
-		public ListRef(final ICachedListMaker<T> maker) {
-			m_maker = maker;
-		}
+	@NonNull
+	private final ListCache m_listCache = new ListCache(this);
 
-		public synchronized List<T> initialize() throws Exception {
-			if(m_list == null)
-				m_list = m_maker.createList(DomApplication.get());
-			return m_list;
-		}
+	/**
+	 * The cache for lists made by {@link ICachedListMaker}s.
+	 */
+	@NonNull
+	public ListCache getListCache() {
+		return m_listCache;
 	}
 
 	/**
-	 *
-	 * @param <T>
-	 * @param key
-	 * @param maker
-	 * @return
+	 * Get the list made by the maker. When the maker is an {@link ICachedListMaker} the list comes from
+	 * the list cache, and is shared by all users: it cannot be changed. Otherwise a new list is made.
 	 */
 	@NonNull
 	public <T> List<T> getCachedList(final IListMaker<T> maker) throws Exception {
@@ -1446,41 +1614,63 @@ public abstract class DomApplication {
 			//-- Just make on the fly.
 			return maker.createList(this);
 		}
-
-		ICachedListMaker<T> cm = (ICachedListMaker<T>) maker;
-		ListRef<T> ref;
-		String key = cm.getCacheKey();
-		synchronized(m_listCacheMap) {
-			ref = (ListRef<T>) m_listCacheMap.get(key);
-			if(ref == null) {
-				ref = new ListRef<T>(cm);
-				m_listCacheMap.put(key, ref);
-			}
-		}
-		return new ArrayList<T>(ref.initialize());
+		return m_listCache.getList((ICachedListMaker<T>) maker);
 	}
 
 	/**
-	 * Discard all cached stuff in the list cache.
+	 * Discard all cached stuff in the list cache of this server.
 	 */
 	public void clearListCaches() {
-		synchronized(m_listCacheMap) {
-			m_listCacheMap.clear();
-		}
-		// FIXME URGENT Clear all other server's caches too by sending an event.
+		m_listCache.invalidate(null);
+		SharedOptionList.clear();
+	}
+
+	/**
+	 * Discard all cached lists on all servers in the cluster. This <b>commits</b> the connection, see
+	 * {@link ListCache#invalidateEverywhere(Connection, String)}.
+	 */
+	public void clearListCaches(@NonNull Connection dbc) throws Exception {
+		m_listCache.invalidateEverywhere(dbc, null);
+		SharedOptionList.clear();
 	}
 
 	public void clearListCache(final ICachedListMaker<?> maker) {
-		synchronized(m_listCacheMap) {
-			m_listCacheMap.remove(maker.getCacheKey());
-		}
-		// FIXME URGENT Clear all other server's caches too by sending an event.
+		m_listCache.invalidate(maker.getCacheKey());
+	}
+
+	/**
+	 * Discard the maker's list on all servers in the cluster. This <b>commits</b> the connection, see
+	 * {@link ListCache#invalidateEverywhere(Connection, String)}.
+	 */
+	public void clearListCache(@NonNull Connection dbc, final ICachedListMaker<?> maker) throws Exception {
+		m_listCache.invalidateEverywhere(dbc, maker.getCacheKey());
 	}
 
 	public boolean logOutput() {
 		return m_logOutput;
 	}
 
+	/**
+	 * Create the output renderer used to render full pages and deltas to the browser. In development
+	 * mode this pretty prints the output; in production it writes compact, unindented markup.
+	 */
+	@NonNull
+	public IBrowserOutput createBrowserOutput(@NonNull Writer w) {
+		return isPrettyOutput() ? new PrettyXmlOutputWriter(w) : new FastXmlOutputWriter(w);
+	}
+
+	public synchronized boolean isPrettyOutput() {
+		return m_prettyOutput;
+	}
+
+	/**
+	 * Force pretty printing of the output on or off. Pretty printing is slower and produces larger
+	 * responses, so it should only be used for debugging.
+	 */
+	public synchronized void setPrettyOutput(boolean prettyOutput) {
+		m_prettyOutput = prettyOutput;
+	}
+
 	public synchronized void addInterceptor(final IRequestInterceptor r) {
 		List<IRequestInterceptor> l = new ArrayList<IRequestInterceptor>(m_interceptorList);
 		l.add(r);
@@ -1621,6 +1811,14 @@ public abstract class DomApplication {
 		m_asyncListenerList.remove(l);
 	}
 
+	/**
+	 * The executor that runs asynchronous activities, like those of {@link to.etc.domui.component.delayed.AsyncContainer}.
+	 */
+	@NonNull
+	public AsyncExecutor getAsyncExecutor() {
+		return m_asyncExecutor;
+	}
+
 	@NonNull
 	public synchronized List<IAsyncListener<?>> getAsyncListenerList() {
 		return m_asyncListenerList;
@@ -110,6 +110,17 @@ public class HttpServerRequestResponse implements IRequestResponse {
 		return m_request.getHeader("user-agent");
 	}
 
+	@Override
+	@Nullable
+	public String getRequestHeader(@NonNull String name) {
+		return m_request.getHeader(name);
+	}
+
+	@Override
+	public void setStatus(int httpStatusCode) {
+		m_response.setStatus(httpStatusCode);
+	}
+
 	@Override
 	@NonNull
 	public String getApplicationURL() {
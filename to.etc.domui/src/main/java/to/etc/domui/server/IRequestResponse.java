@@ -33,6 +33,11 @@ public interface IRequestResponse {
 
 	@NonNull String getUserAgent();
 
+	/**
+	 * Return the value of the specified request header, or null if the request does not have it.
+	 */
+	@Nullable String getRequestHeader(@NonNull String name);
+
 	/**
 	 * The "remote" user ID from a server request, if present. This does <b>not</b> need to represent the
 	 * real logged-in user; it will however be filled if JSDK declarative security is used. This field is
@@ -79,6 +84,11 @@ public interface IRequestResponse {
 
 	void addHeader(@NonNull String name, @NonNull String value);
 
+	/**
+	 * Set the HTTP status code for a response that has no content, like 304 Not Modified.
+	 */
+	void setStatus(int httpStatusCode);
+
 	@NonNull Writer getOutputWriter(@NonNull String contentType, @Nullable String encoding) throws Exception;
 
 	@NonNull OutputStream getOutputStream(@NonNull String contentType, @Nullable String encoding, int contentLength) throws Exception;
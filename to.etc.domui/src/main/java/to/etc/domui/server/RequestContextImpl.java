@@ -42,6 +42,7 @@ import to.etc.util.WrappedException;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Collections;
@@ -61,8 +62,14 @@ public class RequestContextImpl implements IRequestContext, IAttributeContainer
 
 	private WindowSession m_windowSession;
 
+	/** Buffered output when the encoding is not UTF-8. */
+	@Nullable
 	private StringWriter m_sw;
 
+	/** Buffered output when the output is UTF-8, which it usually is. */
+	@Nullable
+	private Utf8BufferWriter m_bw;
+
 	private Writer m_outWriter;
 
 	private BrowserVersion m_browserVersion;
@@ -77,6 +84,10 @@ public class RequestContextImpl implements IRequestContext, IAttributeContainer
 
 	private boolean m_amLockingSession;
 
+	/** When per-window locking is used and this request locked only its window, this is the ID of that window. */
+	@Nullable
+	private String m_lockedWindowId;
+
 	private String m_outputContentType;
 
 	private String m_outputEncoding;
@@ -168,13 +179,41 @@ public class RequestContextImpl implements IRequestContext, IAttributeContainer
 	 */
 	@Override
 	final public @NonNull AppSession getSession() {
-		m_session.internalLockSession(); 						// Someone uses session -> lock it for use by CURRENT-THREAD.
-		if(!m_amLockingSession)
+		if(!m_amLockingSession) {
+			String windowId = m_application.isWindowLocking() ? getRequestWindowId() : null;
+			if(null != windowId) {
+				m_session.internalLockWindow(windowId);			// Only lock the window this request is for
+				m_lockedWindowId = windowId;
+			} else {
+				m_session.internalLockSession(); 				// Someone uses session -> lock it for use by CURRENT-THREAD.
+			}
 			m_session.internalCheckExpiredWindowSessions();
-		m_amLockingSession = true;
+			m_amLockingSession = true;
+		}
 		return m_session;
 	}
 
+	/**
+	 * Return the session without locking it, for the few thread-safe operations that must be
+	 * done before the request locks it, like a push request waiting for asynchronous results.
+	 */
+	@NonNull
+	AppSession internalGetSessionUnlocked() {
+		return m_session;
+	}
+
+	/**
+	 * Return the window ID from the $cid parameter, if present.
+	 */
+	@Nullable
+	private String getRequestWindowId() {
+		String cid = getParameter(Constants.PARAM_CONVERSATION_ID);
+		if(null == cid)
+			return null;
+		CidPair cida = CidPair.decodeLax(cid);
+		return cida == null ? null : cida.getWindowId();
+	}
+
 	@Override
 	@NonNull
 	public IRequestResponse getRequestResponse() {
@@ -215,7 +254,12 @@ public class RequestContextImpl implements IRequestContext, IAttributeContainer
 
 	void internalUnlockSession() {
 		if(m_amLockingSession) {
-			m_session.internalUnlockSession();
+			String windowId = m_lockedWindowId;
+			if(null != windowId) {
+				m_session.internalUnlockWindow(windowId);
+				m_lockedWindowId = null;
+			} else
+				m_session.internalUnlockSession();
 			m_amLockingSession = false;
 		}
 	}
@@ -325,36 +369,48 @@ public class RequestContextImpl implements IRequestContext, IAttributeContainer
 	}
 
 	public void flush() throws Exception {
-		if(m_sw != null) {
-			if(getApplication().logOutput()) {
-				String res = m_sw.getBuffer().toString();
-				File tgt = new File("/tmp/last-domui-output.xml");
-				try {
-					FileTool.writeFileFromString(tgt, res, "utf-8");
-				} catch(Exception x) {}
-
-				System.out.println("---- rendered output:");
-				System.out.println(res);
-				System.out.println("---- end");
-			}
-			String outputContentType = m_outputContentType;
-			if(null == outputContentType)
-				throw new IllegalStateException("The content type for buffered output is not set.");
+		Utf8BufferWriter bw = m_bw;
+		StringWriter sw = m_sw;
+		if(bw == null && sw == null)
+			return;
+		if(getApplication().logOutput()) {
+			String res = bw != null ? bw.toString() : String.valueOf(sw);
+			File tgt = new File("/tmp/last-domui-output.xml");
+			try {
+				FileTool.writeFileFromString(tgt, res, "utf-8");
+			} catch(Exception x) {}
+
+			System.out.println("---- rendered output:");
+			System.out.println(res);
+			System.out.println("---- end");
+		}
+		String outputContentType = m_outputContentType;
+		if(null == outputContentType)
+			throw new IllegalStateException("The content type for buffered output is not set.");
+		if(bw != null) {
+			OutputStream os = getRequestResponse().getOutputStream(outputContentType, m_outputEncoding, bw.size());
+			bw.writeTo(os);
+			bw.release();
+			m_bw = null;
+		} else if(sw != null) {
 			Writer ow = getRequestResponse().getOutputWriter(outputContentType, m_outputEncoding);
-			ow.append(m_sw.getBuffer());
+			ow.append(sw.getBuffer());
 			m_sw = null;
 		}
 	}
 
 
 	public void discard() throws IOException {
-	//		if(m_sw != null) {
-	//			String res = m_sw.getBuffer().toString();
-	//			System.out.println("---- rendered output:");
-	//			System.out.println(res);
-	//			System.out.println("---- end");
-	//			getResponse().getWriter().append(res);
-	//		}
+		releaseOutputBuffer();
+	}
+
+	private void releaseOutputBuffer() {
+		Utf8BufferWriter bw = m_bw;
+		if(null != bw) {
+			bw.release();
+			m_bw = null;
+		}
+		m_sw = null;
 	}
 
 	/**
@@ -376,17 +432,21 @@ public class RequestContextImpl implements IRequestContext, IAttributeContainer
 	@Override
 	@NonNull
 	public Writer getOutputWriter(@NonNull String contentType, @Nullable String encoding) throws IOException {
+		Utf8BufferWriter bw = m_bw;
 		StringWriter sw = m_sw;
-		if(null != sw) {
-			if(sw.getBuffer().length() > PAGE_HEADER_BUFFER_LENGTH) {
-				System.out.println("domui warning: outputwriter reallocated after writing " + sw.getBuffer().length() + " characters of data already");
-			}
+		int size = bw != null ? bw.size() : sw != null ? sw.getBuffer().length() : 0;
+		if(size > PAGE_HEADER_BUFFER_LENGTH) {
+			System.out.println("domui warning: outputwriter reallocated after writing " + size + " characters of data already");
 		}
+		m_bw = null;											// Not released: someone could still be holding it
+		m_sw = null;
 
 		m_outputContentType = contentType;
 		m_outputEncoding = encoding;
-		m_sw = new StringWriter(8192);
-		m_outWriter = m_sw;
+		if("utf-8".equalsIgnoreCase(encoding))
+			m_outWriter = m_bw = new Utf8BufferWriter();
+		else
+			m_outWriter = m_sw = new StringWriter(8192);
 		return m_outWriter;
 	}
 
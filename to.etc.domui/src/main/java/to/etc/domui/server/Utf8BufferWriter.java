@@ -0,0 +1,198 @@
+package to.etc.domui.server;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Writer that encodes everything written to it as UTF-8, directly into a byte buffer. This
+ * is used to buffer the rendered output of a request (full pages and deltas) so that it can
+ * be sent in one go, with a content length, without first collecting it as a String and then
+ * having the servlet container encode it again.
+ * <p>The byte buffers are recycled through a small global pool, so that the (often large) delta
+ * responses do not allocate a new buffer for every request. The buffer must be returned
+ * by calling {@link #release()} after its content has been sent.</p>
+ */
+final public class Utf8BufferWriter extends Writer {
+	static private final int INITIAL_SIZE = 16 * 1024;
+
+	/** Buffers that have grown larger than this are not pooled but left to the GC. */
+	static private final int MAX_POOLED_SIZE = 2 * 1024 * 1024;
+
+	/** The max #of buffers kept in the pool. */
+	static private final int MAX_POOLED = 64;
+
+	static private final ConcurrentLinkedQueue<byte[]> m_pool = new ConcurrentLinkedQueue<>();
+
+	static private final AtomicInteger m_poolSize = new AtomicInteger();
+
+	private byte[] m_buf;
+
+	private int m_len;
+
+	/** When a high surrogate was the last char of a write this holds it until its low part is written. */
+	private char m_highSurrogate;
+
+	public Utf8BufferWriter() {
+		byte[] buf = m_pool.poll();
+		if(null == buf)
+			buf = new byte[INITIAL_SIZE];
+		else
+			m_poolSize.decrementAndGet();
+		m_buf = buf;
+	}
+
+	/**
+	 * The #of bytes currently in the buffer.
+	 */
+	public int size() {
+		return m_len;
+	}
+
+	private void ensure(int extra) {
+		int req = m_len + extra;
+		byte[] buf = m_buf;
+		if(req <= buf.length)
+			return;
+		int nsz = buf.length * 2;
+		if(nsz < req)
+			nsz = req;
+		byte[] nbuf = new byte[nsz];
+		System.arraycopy(buf, 0, nbuf, 0, m_len);
+		m_buf = nbuf;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		ensure(4);
+		put((char) c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensure(len * 3 + 1);							// Max 3 bytes per char; surrogate pairs take 4 bytes for 2 chars
+		int end = off + len;
+		byte[] buf = m_buf;
+		int ix = m_len;
+		while(off < end) {
+			char c = cbuf[off];
+			if(c >= 0x80 || m_highSurrogate != 0)
+				break;
+			buf[ix++] = (byte) c;
+			off++;
+		}
+		m_len = ix;
+		while(off < end)
+			put(cbuf[off++]);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensure(len * 3 + 1);
+		int end = off + len;
+		byte[] buf = m_buf;
+		int ix = m_len;
+		while(off < end) {
+			char c = str.charAt(off);
+			if(c >= 0x80 || m_highSurrogate != 0)
+				break;
+			buf[ix++] = (byte) c;
+			off++;
+		}
+		m_len = ix;
+		while(off < end)
+			put(str.charAt(off++));
+	}
+
+	/**
+	 * Encode a single char; the caller must have made sure there is space for it.
+	 */
+	private void put(char c) {
+		byte[] buf = m_buf;
+		int ix = m_len;
+		char hs = m_highSurrogate;
+		if(hs != 0) {
+			m_highSurrogate = 0;
+			if(Character.isLowSurrogate(c)) {
+				int cp = Character.toCodePoint(hs, c);
+				buf[ix++] = (byte) (0xf0 | (cp >> 18));
+				buf[ix++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				buf[ix++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				buf[ix++] = (byte) (0x80 | (cp & 0x3f));
+				m_len = ix;
+				return;
+			}
+			buf[ix++] = (byte) '?';						// Unpaired high surrogate
+		}
+
+		if(c < 0x80) {
+			buf[ix++] = (byte) c;
+		} else if(c < 0x800) {
+			buf[ix++] = (byte) (0xc0 | (c >> 6));
+			buf[ix++] = (byte) (0x80 | (c & 0x3f));
+		} else if(Character.isHighSurrogate(c)) {
+			m_highSurrogate = c;
+		} else if(Character.isLowSurrogate(c)) {
+			buf[ix++] = (byte) '?';						// Unpaired low surrogate
+		} else {
+			buf[ix++] = (byte) (0xe0 | (c >> 12));
+			buf[ix++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			buf[ix++] = (byte) (0x80 | (c & 0x3f));
+		}
+		m_len = ix;
+	}
+
+	@Override
+	public void flush() throws IOException {
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	/**
+	 * Write the encoded content to the stream.
+	 */
+	public void writeTo(@NonNull OutputStream os) throws IOException {
+		if(m_highSurrogate != 0) {
+			ensure(1);
+			m_buf[m_len++] = (byte) '?';
+			m_highSurrogate = 0;
+		}
+		os.write(m_buf, 0, m_len);
+	}
+
+	/**
+	 * Return the buffer to the pool. The writer cannot be used after this.
+	 */
+	public void release() {
+		byte[] buf = m_buf;
+		if(null == buf)
+			return;
+		m_buf = null;
+		m_len = 0;
+		if(buf.length > MAX_POOLED_SIZE)
+			return;
+		if(m_poolSize.incrementAndGet() > MAX_POOLED) {
+			m_poolSize.decrementAndGet();
+			return;
+		}
+		m_pool.add(buf);
+	}
+
+	/**
+	 * Decodes the buffer back to a string; only used for debugging and logging.
+	 */
+	@Override
+	public String toString() {
+		byte[] buf = m_buf;
+		if(null == buf)
+			return "";
+		return new String(buf, 0, m_len, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,82 @@
+package to.etc.domui.server.parts;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * A snapshot of the statistics of the buffered parts cache in {@link PartService}.
+ */
+@NonNullByDefault
+final public class PartCacheStatistics {
+	private final long m_hits;
+
+	private final long m_misses;
+
+	private final long m_coalesced;
+
+	private final long m_evictions;
+
+	private final int m_entries;
+
+	private final int m_size;
+
+	private final int m_maxSize;
+
+	public PartCacheStatistics(long hits, long misses, long coalesced, long evictions, int entries, int size, int maxSize) {
+		m_hits = hits;
+		m_misses = misses;
+		m_coalesced = coalesced;
+		m_evictions = evictions;
+		m_entries = entries;
+		m_size = size;
+		m_maxSize = maxSize;
+	}
+
+	/**
+	 * The #of requests that were served from the cache.
+	 */
+	public long getHits() {
+		return m_hits;
+	}
+
+	/**
+	 * The #of requests that caused the part to be generated.
+	 */
+	public long getMisses() {
+		return m_misses;
+	}
+
+	/**
+	 * The #of requests that found the part being generated by another thread, and waited for that result.
+	 */
+	public long getCoalesced() {
+		return m_coalesced;
+	}
+
+	/**
+	 * The #of parts removed from the cache because it became full.
+	 */
+	public long getEvictions() {
+		return m_evictions;
+	}
+
+	public int getEntries() {
+		return m_entries;
+	}
+
+	/**
+	 * The current size of the cached data, in bytes.
+	 */
+	public int getSize() {
+		return m_size;
+	}
+
+	public int getMaxSize() {
+		return m_maxSize;
+	}
+
+	@Override
+	public String toString() {
+		return "parts cache: hits=" + m_hits + ", misses=" + m_misses + ", coalesced=" + m_coalesced + ", evictions=" + m_evictions
+			+ ", entries=" + m_entries + ", size=" + m_size + "/" + m_maxSize;
+	}
+}
@@ -27,6 +27,9 @@ package to.etc.domui.server.parts;
 import to.etc.domui.util.resources.*;
 import to.etc.util.*;
 
+import java.io.*;
+import java.util.zip.*;
+
 /**
  * Contains a cached instance of some part rendering as created by
  * a buffered part.
@@ -51,6 +54,12 @@ final public class PartData {
 	/** The content hash, or null if as yet uncalculated. */
 	private byte[] m_hash;
 
+	/** The gzip-compressed content, or null if this content is not compressible. */
+	final private byte[] m_gzipData;
+
+	/** Content smaller than this is never compressed: the gain is not worth the trouble. */
+	static private final int MIN_COMPRESS_SIZE = 512;
+
 	public PartData(byte[][] data, int size, int cacheTime, String contentType, ResourceDependencies dependencies, Object extra) {
 		m_data = data;
 		m_size = size;
@@ -58,6 +67,7 @@ final public class PartData {
 		m_contentType = contentType;
 		m_dependencies = dependencies;
 		m_extra = extra;
+		m_gzipData = createGzipData();
 	}
 
 	public byte[][] getData() {
@@ -95,4 +105,79 @@ final public class PartData {
 		}
 		return hash;
 	}
+
+	/**
+	 * Return the strong entity tag for this content, derived from the content hash. The gzip
+	 * variant is a different representation and so gets a different tag.
+	 */
+	public String getETag(boolean gzip) {
+		return "\"" + StringTool.toHex(getHash()) + (gzip ? "-gz\"" : "\"");
+	}
+
+	/**
+	 * Return the gzip compressed version of the content, or null if the content was not compressed
+	 * because it is not a compressible type, too small, or would not get smaller.
+	 */
+	public byte[] getGzipData() {
+		return m_gzipData;
+	}
+
+	/**
+	 * The total #of bytes cached for this part, including its compressed variant.
+	 */
+	public int getCachedSize() {
+		byte[] gzipData = m_gzipData;
+		return gzipData == null ? m_size : m_size + gzipData.length;
+	}
+
+	private byte[] createGzipData() {
+		if(m_size < MIN_COMPRESS_SIZE || ! isCompressible(m_contentType))
+			return null;
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(m_size / 3 + 64);
+			try(GZIPOutputStream gos = new GZIPOutputStream(bos, 8192) {
+				{
+					def.setLevel(Deflater.BEST_COMPRESSION);		// We compress only once, so take the time
+				}
+			}) {
+				for(byte[] data : m_data)
+					gos.write(data);
+			}
+			if(bos.size() >= m_size)
+				return null;
+			return bos.toByteArray();
+		} catch(IOException x) {
+			throw WrappedException.wrap(x);					// Cannot happen with in-memory streams
+		}
+	}
+
+	/**
+	 * Returns T for the mime types that are worth compressing: text and the like. Images, fonts
+	 * and archives are usually compressed already.
+	 */
+	static public boolean isCompressible(String contentType) {
+		if(contentType == null)
+			return false;
+		String ct = contentType.toLowerCase();
+		int pos = ct.indexOf(';');
+		if(pos >= 0)
+			ct = ct.substring(0, pos).trim();
+		if(ct.startsWith("text/"))
+			return true;
+		switch(ct) {
+			default:
+				return ct.endsWith("+xml") || ct.endsWith("+json");
+
+			case "application/javascript":
+			case "application/x-javascript":
+			case "application/json":
+			case "application/xml":
+			case "image/svg+xml":
+			case "image/x-icon":
+			case "application/vnd.ms-fontobject":
+			case "font/ttf":
+			case "application/x-font-ttf":
+				return true;
+		}
+	}
 }
@@ -7,6 +7,7 @@ import to.etc.domui.parts.ParameterInfoProxy;
 import to.etc.domui.server.DomApplication;
 import to.etc.domui.server.IExtendedParameterInfo;
 import to.etc.domui.server.IParameterInfo;
+import to.etc.domui.server.IRequestResponse;
 import to.etc.domui.server.RequestContextImpl;
 import to.etc.domui.trouble.ThingyNotFoundException;
 import to.etc.domui.util.DomUtil;
@@ -14,12 +15,15 @@ import to.etc.domui.util.LRUHashMap;
 import to.etc.domui.util.resources.ResourceDependencyList;
 import to.etc.util.ByteBufferOutputStream;
 import to.etc.util.DeveloperOptions;
+import to.etc.util.FutureImpl;
 
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author <a href="mailto:jal@etc.to">Frits Jalvingh</a>
@@ -34,9 +38,21 @@ public class PartService {
 
 	private final boolean m_allowExpires;
 
+	/** The default max size of the parts cache, in bytes. */
+	static public final int DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+
 	@NonNull
 	private final LRUHashMap<Object, PartData> m_cache;
 
+	/** Parts that are currently being generated, so that other requests for the same part can wait for that result. Locked by m_cache. */
+	private final Map<Object, FutureImpl<PartData>> m_pendingMap = new HashMap<>();
+
+	private final AtomicLong m_hitCount = new AtomicLong();
+
+	private final AtomicLong m_missCount = new AtomicLong();
+
+	private final AtomicLong m_coalescedCount = new AtomicLong();
+
 	/**
 	 * Registers URL matchers connected to parts.
 	 */
@@ -83,10 +99,49 @@ public class PartService {
 	public PartService(DomApplication application) {
 		m_application = application;
 
-		m_cache = new LRUHashMap<>(item -> item == null ? 4 : item.getSize() + 32, 16 * 1024 * 1024); 			// Accept 16MB of resources FIXME Must be parameterized
+		m_cache = new LRUHashMap<>(item -> item == null ? 4 : item.getCachedSize() + 32, DEFAULT_CACHE_SIZE);
 		m_allowExpires = DeveloperOptions.getBool("domui.expires", true);
 	}
 
+	/**
+	 * The max size of the cache for buffered parts, in bytes.
+	 */
+	public int getCacheSize() {
+		synchronized(m_cache) {
+			return m_cache.getMaxSize();
+		}
+	}
+
+	/**
+	 * Set the max size of the cache for buffered parts, in bytes. It defaults to {@link #DEFAULT_CACHE_SIZE},
+	 * and can be configured with the partcache-size parameter in web.xml.
+	 */
+	public void setCacheSize(int maxBytes) {
+		if(maxBytes < 0)
+			throw new IllegalArgumentException("Cache size cannot be negative");
+		synchronized(m_cache) {
+			m_cache.setMaxSize(maxBytes);
+		}
+	}
+
+	/**
+	 * Return a snapshot of the part cache's usage statistics.
+	 */
+	public PartCacheStatistics getCacheStatistics() {
+		synchronized(m_cache) {
+			return new PartCacheStatistics(m_hitCount.get(), m_missCount.get(), m_coalescedCount.get(), m_cache.getEvictionCount(), m_cache.size(), m_cache.getObjectSize(), m_cache.getMaxSize());
+		}
+	}
+
+	/**
+	 * Remove all generated parts from the cache.
+	 */
+	public void clearCache() {
+		synchronized(m_cache) {
+			m_cache.clear();
+		}
+	}
+
 	/**
 	 * Register a part which gets called when the specified matcher matches.
 	 * @param matcher
@@ -247,16 +302,43 @@ public class PartService {
 	 */
 	private <K> void generate(IBufferedPartFactory<K> pf, RequestContextImpl ctx, IExtendedParameterInfo parameters) throws Exception {
 		PartData cp = getCachedInstance2(pf, parameters);
+		sendPart(cp, ctx.getRequestResponse());
+	}
 
-		//-- Generate the part
-		OutputStream os = null;
+	/**
+	 * Send a cached part: the gzip variant when the browser accepts it, or just a 304 when the
+	 * browser already has the variant it would get.
+	 */
+	void sendPart(@NonNull PartData cp, @NonNull IRequestResponse rr) throws Exception {
+		//-- Decide which variant to send, and check whether the browser already has it.
+		byte[] gzipData = cp.getGzipData();
+		if(null != gzipData) {
+			rr.addHeader("Vary", "Accept-Encoding");
+			if(! acceptsGzip(rr.getRequestHeader("Accept-Encoding")))
+				gzipData = null;
+		}
+		String etag = cp.getETag(gzipData != null);
+		rr.addHeader("ETag", etag);
 		if(cp.getCacheTime() > 0 && m_allowExpires) {
-			ctx.getRequestResponse().setExpiry(cp.getCacheTime());
+			rr.setExpiry(cp.getCacheTime());
 		}
+		if(matchesETag(rr.getRequestHeader("If-None-Match"), etag)) {
+			rr.setStatus(304);								// Not modified
+			return;
+		}
+
+		//-- Generate the part
+		OutputStream os = null;
 		try {
-			os = ctx.getRequestResponse().getOutputStream(cp.getContentType(), null, cp.getSize());
-			for(byte[] data : cp.getData())
-				os.write(data);
+			if(null != gzipData) {
+				rr.addHeader("Content-Encoding", "gzip");
+				os = rr.getOutputStream(cp.getContentType(), null, gzipData.length);
+				os.write(gzipData);
+			} else {
+				os = rr.getOutputStream(cp.getContentType(), null, cp.getSize());
+				for(byte[] data : cp.getData())
+					os.write(data);
+			}
 		} finally {
 			try {
 				if(os != null)
@@ -265,6 +347,47 @@ public class PartService {
 		}
 	}
 
+	/**
+	 * Returns T if the Accept-Encoding header allows gzip. This honours an explicit q=0 exclusion.
+	 */
+	static private boolean acceptsGzip(@Nullable String acceptEncoding) {
+		if(null == acceptEncoding)
+			return false;
+		for(String item : acceptEncoding.split(",")) {
+			String[] parts = item.trim().split(";");
+			String coding = parts[0].trim();
+			if(! coding.equalsIgnoreCase("gzip") && ! coding.equals("*"))
+				continue;
+			for(int i = 1; i < parts.length; i++) {
+				String p = parts[i].trim();
+				if(p.startsWith("q=")) {
+					try {
+						if(Double.parseDouble(p.substring(2).trim()) <= 0.0)
+							return false;
+					} catch(NumberFormatException x) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether the If-None-Match header contains the specified entity tag.
+	 */
+	static private boolean matchesETag(@Nullable String ifNoneMatch, String etag) {
+		if(null == ifNoneMatch)
+			return false;
+		for(String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if(tag.equals("*") || tag.equals(etag))
+				return true;
+		}
+		return false;
+	}
+
 	private <K> PartData getCachedInstance2(final IBufferedPartFactory<K> pf, final IExtendedParameterInfo parameters) throws Exception {
 		//-- Convert the data to a key object, then lookup;
 		K key = pf.decodeKey(m_application, parameters);
@@ -274,13 +397,6 @@ public class PartService {
 	}
 
 	public <K> PartData getCachedInstance(final IBufferedPartFactory<K> pf, K key) throws Exception {
-		/*
-		 * Lookup. This part *is* thread-safe but it has a race condition: it may cause multiple
-		 * instances of the SAME resource to be generated at the same time and inserted at the
-		 * same time. In time we must replace this with the MAKER pattern, but for now this
-		 * small problem will be accepted; it will not cause problems since only the last instance
-		 * will be kept and stored.
-		 */
 		PartData cp;
 		synchronized(m_cache) {
 			cp = m_cache.get(key); // Already exists here?
@@ -292,18 +408,87 @@ public class PartService {
 		 * in development only OR also in production. This should fix VP call 27223: menu colors do not change when
 		 * VP colors are changed.
 		 */
+		PartData stale = null;
 		if(cp != null /* && m_application.inDevelopmentMode() */) {
 			if(cp.getDependencies() != null) {
 				if(cp.getDependencies().isModified()) {
 					System.out.println("parts: part " + key + " has changed. Reloading..");
+					stale = cp;
 					cp = null;
 				}
 			}
 		}
-		if(cp != null)
+		if(cp != null) {
+			m_hitCount.incrementAndGet();
 			return cp;
+		}
 
-		//-- We're going to (re)create the part
+		/*
+		 * The part must be (re)created. Only one thread generates a given part; all other
+		 * threads asking for the same key while it is being made wait for that result.
+		 */
+		FutureImpl<PartData> future;
+		boolean maker = false;
+		synchronized(m_cache) {
+			cp = m_cache.get(key);
+			if(cp != null && cp != stale) {						// Someone else regenerated it in the meantime
+				m_hitCount.incrementAndGet();
+				return cp;
+			}
+			future = m_pendingMap.get(key);
+			if(null == future) {
+				future = new FutureImpl<>();
+				m_pendingMap.put(key, future);
+				maker = true;
+			}
+		}
+		if(! maker) {
+			m_coalescedCount.incrementAndGet();
+			return waitForPart(future);
+		}
+
+		m_missCount.incrementAndGet();
+		try {
+			cp = generatePart(pf, key);
+			synchronized(m_cache) {
+				m_cache.put(key, cp);
+				m_pendingMap.remove(key);
+			}
+			future.set(cp);
+			return cp;
+		} catch(Exception x) {
+			synchronized(m_cache) {
+				m_pendingMap.remove(key);
+			}
+			future.set(x);
+			throw x;
+		} catch(Error x) {
+			synchronized(m_cache) {
+				m_pendingMap.remove(key);
+			}
+			future.set(new RuntimeException("Part generation failed: " + x, x));
+			throw x;
+		}
+	}
+
+	/**
+	 * Wait for a part that is being generated by another thread.
+	 */
+	static private PartData waitForPart(FutureImpl<PartData> future) throws Exception {
+		try {
+			PartData data = future.get();
+			if(null == data)
+				throw new IllegalStateException("Part generation returned null");
+			return data;
+		} catch(ExecutionException x) {
+			Throwable cause = x.getCause();
+			if(cause instanceof Exception)
+				throw (Exception) cause;
+			throw x;
+		}
+	}
+
+	private <K> PartData generatePart(IBufferedPartFactory<K> pf, K key) throws Exception {
 		ResourceDependencyList rdl = new ResourceDependencyList();	// Fix bug# 852: allow resource change checking in production also.
 		ByteBufferOutputStream os = new ByteBufferOutputStream();
 		PartResponse pr = new PartResponse(os);
@@ -314,14 +499,9 @@ public class PartService {
 			mime = "application/octet-stream";
 		}
 		os.close();
-		cp = new PartData(os.getBuffers(), os.getSize(), pr.getCacheTime(), mime, rdl.createDependencies(), pr.getExtra());
-		synchronized(m_cache) {
-			m_cache.put(key, cp); 								// Store (may be done multiple times due to race condition)
-		}
-		return cp;
+		return new PartData(os.getBuffers(), os.getSize(), pr.getCacheTime(), mime, rdl.createDependencies(), pr.getExtra());
 	}
 
-
 	private DomApplication getApplication() {
 		return m_application;
 	}
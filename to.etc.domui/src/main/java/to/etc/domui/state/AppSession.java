@@ -56,6 +56,11 @@ import java.util.Map;
  * is free the current request will claim it using a lock in the session object. When a
  * request terminates it is the responsibility of the toplevel request handler to always
  * unlock the request.</p>
+ * <p>When the application uses per-window locking (see {@link DomApplication#isWindowLocking()})
+ * requests that address a specific browser window (have a $cid) only lock that window, so that
+ * requests for other windows of the same user can run in parallel. Requests without a window
+ * still lock the entire session, and these exclude all window locks. The session monitor
+ * itself is then only held for the short operations that change the window map.</p>
  *
  * @author <a href="mailto:jal@etc.to">Frits Jalvingh</a>
  * Created on May 22, 2008
@@ -76,6 +81,16 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 	@Nullable
 	private Thread m_lockingThread;
 
+	/**
+	 * When per-window locking is used this maps the ID of every window that is locked by a
+	 * request to the thread that owns that lock.
+	 */
+	@NonNull
+	final private Map<String, Thread> m_windowLockMap = new HashMap<>();
+
+	/** The #of threads waiting to obtain the full session lock; while > 0 no new window locks are granted. */
+	private int m_sessionLockWaiters;
+
 	private int m_exceptionRetryCount;
 
 	@NonNull
@@ -84,6 +99,10 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 	@NonNull
 	private Map<String, Object> m_attributeMap = Collections.EMPTY_MAP;
 
+	/** The conversations that have asynchronous activities, by full conversation ID, for push requests which must find them without locking the session. */
+	@NonNull
+	final private Map<String, DelayedActivitiesManager> m_delayManagerMap = new HashMap<>();
+
 	public AppSession(@NonNull DomApplication da) {
 		m_application = da;
 	}
@@ -131,11 +150,11 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 		internalDestroy();
 	}
 
-	Object findCachedObject(final String classname) {
+	synchronized Object findCachedObject(final String classname) {
 		return m_objCache.get(classname);
 	}
 
-	void putCachedObject(final String classname, final Object o) {
+	synchronized void putCachedObject(final String classname, final Object o) {
 		m_objCache.put(classname, o);
 	}
 
@@ -153,20 +172,21 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 		Thread t = Thread.currentThread();
 
 		synchronized(this) {
-			for(;;) {
-				if(m_lockingThread == null) { // Not claimed at this point?
-					m_lockingThread = t; // Claimed by me.
-					return;
-				}
-				if(m_lockingThread == t) // Already claimed by me?
-					return; // Useless call, then
-
-				//-- Someone else has locked me. Wait until I'm released.
-				try {
-					wait();
-				} catch(InterruptedException ix) {
-					throw new RuntimeException("Waiting for session lock was interrupted.", ix);
+			if(m_lockingThread == t)							// Already claimed by me?
+				return;											// Useless call, then
+			m_sessionLockWaiters++;
+			try {
+				for(;;) {
+					if(m_lockingThread == null && !isWindowLockedByOther(t)) { // Not claimed at this point?
+						m_lockingThread = t;					// Claimed by me.
+						return;
+					}
+
+					//-- Someone else has locked me. Wait until I'm released.
+					waitForRelease();
 				}
+			} finally {
+				m_sessionLockWaiters--;
 			}
 		}
 	}
@@ -183,7 +203,63 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 			if(m_lockingThread != t)
 				throw new IllegalStateException("Trying to unlock an AppSession while it's not being owned BY YOU");
 			m_lockingThread = null;
-			notify();
+			notifyAll();										// Both session and window lockers can be waiting
+		}
+	}
+
+	/**
+	 * INTERNAL USE ONLY.
+	 * Lock only the window with the specified ID for the current thread, used when per-window
+	 * locking is active. This blocks while another request uses the same window, or while some
+	 * request holds the full session lock. Like {@link #internalLockSession()} this does not nest.
+	 */
+	public void internalLockWindow(@NonNull String windowId) {
+		Thread t = Thread.currentThread();
+
+		synchronized(this) {
+			for(;;) {
+				Thread owner = m_windowLockMap.get(windowId);
+				if(owner == t)									// Already claimed by me?
+					return;
+				if(owner == null && m_lockingThread == null && m_sessionLockWaiters == 0) {
+					m_windowLockMap.put(windowId, t);
+					return;
+				}
+				waitForRelease();
+			}
+		}
+	}
+
+	/**
+	 * INTERNAL USE ONLY.
+	 * Release a window lock obtained with {@link #internalLockWindow(String)}.
+	 */
+	public void internalUnlockWindow(@NonNull String windowId) {
+		Thread t = Thread.currentThread();
+		synchronized(this) {
+			Thread owner = m_windowLockMap.get(windowId);
+			if(owner == null)
+				throw new IllegalStateException("Trying to unlock window " + windowId + " while it's not being owned..");
+			if(owner != t)
+				throw new IllegalStateException("Trying to unlock window " + windowId + " while it's not being owned BY YOU");
+			m_windowLockMap.remove(windowId);
+			notifyAll();
+		}
+	}
+
+	private boolean isWindowLockedByOther(@NonNull Thread t) {
+		for(Thread owner : m_windowLockMap.values()) {
+			if(owner != t)
+				return true;
+		}
+		return false;
+	}
+
+	private void waitForRelease() {
+		try {
+			wait();
+		} catch(InterruptedException ix) {
+			throw new RuntimeException("Waiting for session lock was interrupted.", ix);
 		}
 	}
 
@@ -216,7 +292,7 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 		long ets = System.currentTimeMillis() - (long) m_application.getWindowSessionTimeout() * 1000 * 60l;
 		synchronized(this) {
 			for(WindowSession cm : m_windowMap.values()) {
-				if(cm.getLastUsed() < ets) {
+				if(cm.getLastUsed() < ets && !m_windowLockMap.containsKey(cm.getWindowID())) {
 					if(droplist == null)
 						droplist = new ArrayList<WindowSession>(10);
 					droplist.add(cm);
@@ -351,6 +427,23 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 		logUser(cid, "Obituary kill timer " + timer + " set to kill window=" + cm.getWindowID());
 	}
 
+	synchronized void internalAddDelayedActivitiesManager(@NonNull String fullConversationId, @NonNull DelayedActivitiesManager manager) {
+		m_delayManagerMap.put(fullConversationId, manager);
+	}
+
+	synchronized void internalRemoveDelayedActivitiesManager(@NonNull String fullConversationId) {
+		m_delayManagerMap.remove(fullConversationId);
+	}
+
+	/**
+	 * Find the activity manager of a conversation. This does not need the session to be locked, as it is
+	 * used by push requests waiting for asynchronous results before they lock.
+	 */
+	@Nullable
+	public synchronized DelayedActivitiesManager internalFindDelayedActivitiesManager(@NonNull String fullConversationId) {
+		return m_delayManagerMap.get(fullConversationId);
+	}
+
 	/**
 	 * Internal timeout handler for a WindowSession whose Obituary timer has fired. This deletes
 	 * the expired WindowSession from the known window map, then destroys all conversations therein.
@@ -390,12 +483,12 @@ public class AppSession implements HttpSessionBindingListener, IAttributeContain
 	 */
 	@Override
 	@Nullable
-	public Object getAttribute(@NonNull String name) {
+	public synchronized Object getAttribute(@NonNull String name) {
 		return m_attributeMap.get(name);
 	}
 
 	@Override
-	public void setAttribute(@NonNull String name, @Nullable Object value) {
+	public synchronized void setAttribute(@NonNull String name, @Nullable Object value) {
 		if(m_attributeMap == Collections.EMPTY_MAP)
 			m_attributeMap = new HashMap<String, Object>();
 		if(value == null) {
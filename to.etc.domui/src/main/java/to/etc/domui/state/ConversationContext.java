@@ -323,11 +323,14 @@ public class ConversationContext implements IQContextContainer {
 					x.printStackTrace();
 				}
 			}
+			pg.internalGetBindingRegistry().clear();
 		}
 		m_pageMap.clear();
 
-		if(m_delayManager != null) {
-			m_delayManager.terminate();
+		DelayedActivitiesManager delayManager = m_delayManager;
+		if(delayManager != null) {
+			getWindowSession().getAppSession().internalRemoveDelayedActivitiesManager(getFullId());
+			delayManager.terminate();
 			m_delayManager = null;
 		}
 
@@ -397,6 +400,7 @@ public class ConversationContext implements IQContextContainer {
 			System.err.println("Exception in page " + pg.getBody() + "'s onDestroy handler: " + x);
 			x.printStackTrace();
 		}
+		pg.internalGetBindingRegistry().clear();
 		m_pageMap.remove(pg.getBody().getClass().getName());
 	}
 
@@ -454,9 +458,13 @@ public class ConversationContext implements IQContextContainer {
 	 * @return
 	 */
 	synchronized DelayedActivitiesManager getDelayedActivitiesManager() {
-		if(m_delayManager == null)
-			m_delayManager = new DelayedActivitiesManager();
-		return m_delayManager;
+		DelayedActivitiesManager delayManager = m_delayManager;
+		if(delayManager == null) {
+			WindowSession ws = getWindowSession();
+			delayManager = m_delayManager = new DelayedActivitiesManager(ws.getApplication().getAsyncExecutor(), ws.getAppSession());
+			ws.getAppSession().internalAddDelayedActivitiesManager(getFullId(), delayManager);
+		}
+		return delayManager;
 	}
 
 	/**
@@ -506,6 +514,16 @@ public class ConversationContext implements IQContextContainer {
 		getDelayedActivitiesManager().unregisterPoller(nc);
 	}
 
+	/**
+	 * Ask for the browser to be updated as soon as possible. This can be called from any thread, and
+	 * releases a waiting push request; see {@link DelayedActivitiesManager#requestUpdate()}.
+	 */
+	public void requestAsyncUpdate() {
+		DelayedActivitiesManager delayManager = m_delayManager;
+		if(delayManager != null)
+			delayManager.requestUpdate();
+	}
+
 	//	/**
 	//	 * Forces the activity manager to enable continuous polling by the client system, at least every interval millis.
 	//	 */
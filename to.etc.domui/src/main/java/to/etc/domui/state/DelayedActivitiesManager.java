@@ -29,6 +29,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import to.etc.domui.component.delayed.AsyncContainer;
+import to.etc.domui.component.delayed.AsyncExecutor;
 import to.etc.domui.component.delayed.IActivity;
 import to.etc.domui.component.delayed.IAsyncRunnable;
 import to.etc.domui.dom.html.NodeBase;
@@ -36,6 +37,7 @@ import to.etc.domui.dom.html.NodeContainer;
 import to.etc.domui.dom.html.Page;
 import to.etc.domui.state.DelayedActivityInfo.State;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -43,8 +45,8 @@ import java.util.Set;
 
 /**
  * This helper class does all of the handling for delayed activities for
- * a conversation. It contains all activity queues plus all handling of
- * the executor thread.
+ * a conversation. It contains all activity queues, and runs the activities
+ * one by one on the application's {@link AsyncExecutor}.
  *
  * @author <a href="mailto:jal@etc.to">Frits Jalvingh</a>
  * Created on Oct 7, 2008
@@ -52,9 +54,21 @@ import java.util.Set;
 final public class DelayedActivitiesManager implements Runnable {
 	private static final Logger LOG = LoggerFactory.getLogger(DelayedActivitiesManager.class);
 
+	@NonNull
+	final private AsyncExecutor m_executor;
+
+	/** The session this conversation belongs to, for the executor's per-session limit. */
+	@NonNull
+	final private Object m_sessionKey;
+
+	/** The thread running the current activity, if any. */
+	@Nullable
 	private Thread m_executorThread;
 
-	private List<DelayedActivityInfo> m_pendingQueue = new ArrayList<DelayedActivityInfo>();
+	/** T if this manager has been submitted to the executor, and has not yet finished running its next activity. */
+	private boolean m_submitted;
+
+	private ArrayDeque<DelayedActivityInfo> m_pendingQueue = new ArrayDeque<DelayedActivityInfo>();
 
 	private List<DelayedActivityInfo> m_completionQueue = new ArrayList<DelayedActivityInfo>();
 
@@ -64,12 +78,17 @@ final public class DelayedActivitiesManager implements Runnable {
 	/** When set this forces termination of any handling thread for the asynchronous actions. */
 	private boolean m_terminated;
 
+	/** Set by {@link #requestUpdate()} to release a waiting push request even though no activity has completed. */
+	private boolean m_updateRequested;
+
 	/**
 	 * The set of nodes that need a callback for changes to the UI every polltime seconds.
 	 */
 	private Set<NodeContainer> m_pollSet = new HashSet<NodeContainer>();
 
-	protected DelayedActivitiesManager() {
+	protected DelayedActivitiesManager(@NonNull AsyncExecutor executor, @NonNull Object sessionKey) {
+		m_executor = executor;
+		m_sessionKey = sessionKey;
 	}
 
 	/**
@@ -115,8 +134,6 @@ final public class DelayedActivitiesManager implements Runnable {
 	 * executing we try to cancel the executor.
 	 */
 	public boolean cancelActivity(@NonNull DelayedActivityInfo dai) {
-		Thread tr;
-
 		synchronized(this) {
 			if(m_pendingQueue.remove(dai)) {
 				dai.getContainer().confirmCancelled();
@@ -128,15 +145,60 @@ final public class DelayedActivitiesManager implements Runnable {
 			if(runningActivity != dai || runningActivity == null)
 				return false;
 
-			//-- The activity is currently running. Try to abort the task && thread.
-			tr = m_executorThread;
+			//-- The activity is currently running. Try to abort the task && thread; interrupt while locked so that the interrupt cannot hit a next task on the same thread.
 			runningActivity.getMonitor().cancel();				// Force cancel indication.
+			Thread tr = m_executorThread;
+			if(null != tr)
+				tr.interrupt();
 		}
-		tr.interrupt();
 		return true;
 	}
 
-	private void wakeupListeners(int lingertime) {}
+	/**
+	 * Wake up any push request waiting in {@link #waitForChanges(long, long)}. Must be called with this locked.
+	 */
+	private void wakeupListeners() {
+		notifyAll();
+	}
+
+	/**
+	 * Ask for the browser to be updated as soon as possible, for instance because a node registered
+	 * with {@link #registerPoller(NodeContainer)} knows that it has changes. This releases a waiting push
+	 * request, after which the pending results and the poll nodes are handled as usual. It can be called
+	 * from any thread.
+	 */
+	public void requestUpdate() {
+		synchronized(this) {
+			m_updateRequested = true;
+			wakeupListeners();
+		}
+	}
+
+	/**
+	 * Push support: wait until there is something to send to the browser. This is called by a push request
+	 * before it locks the session, so that the browser gets the results of an activity as soon as it completes
+	 * instead of at the next poll. It returns immediately when results are waiting, when an update was
+	 * requested or when this manager is terminated. While an activity runs, or when there are nodes that
+	 * need polling, it waits at most the poll interval so that progress keeps being reported; otherwise it
+	 * waits at most maxWait milliseconds.
+	 */
+	public void waitForChanges(long maxWait, long pollInterval) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		synchronized(this) {
+			for(;;) {
+				if(m_terminated || m_updateRequested || m_completionQueue.size() > 0)
+					break;
+				long end = start + maxWait;
+				if(m_runningActivity != null || m_pollSet.size() > 0)
+					end = Math.min(end, start + pollInterval);
+				long left = end - System.currentTimeMillis();
+				if(left <= 0)
+					break;
+				wait(left);
+			}
+			m_updateRequested = false;
+		}
+	}
 
 	/**
 	 * Retrieves the current activity state. This creates Progress records for
@@ -162,30 +224,26 @@ final public class DelayedActivitiesManager implements Runnable {
 	}
 
 	/*--------------------------------------------------------------*/
-	/*	CODING:	Executor thread control.							*/
+	/*	CODING:	Executor control.									*/
 	/*--------------------------------------------------------------*/
 	/**
 	 * Initiate background processing, if needed. Returns T if background processing is active, or
 	 * when data is present in the completion queue.
 	 */
 	public boolean start() {
-		Thread t;
+		int priority;
 		synchronized(this) {
-			if(m_executorThread != null) // Active thread?
-				return true; // Begone.
-
-			//-- Must a thread be started?
-			if(m_pendingQueue.size() == 0) // Pending requests?
-				return false; // Nope -> begone
-
-			//-- Prepare to start the executor.
-			m_executorThread = new Thread(this);
-			m_executorThread.setName("xc");
-			m_executorThread.setDaemon(true);
-			m_executorThread.setPriority(Thread.MIN_PRIORITY);
-			t = m_executorThread; // Prevent naked access to m_ variable even though it is untouched by other code.
+			if(m_submitted)							// Already queued or running?
+				return true;						// Begone.
+
+			//-- Must a task be started?
+			DelayedActivityInfo next = m_pendingQueue.peekFirst();
+			if(next == null || m_terminated)		// Pending requests?
+				return false;						// Nope -> begone
+			m_submitted = true;
+			priority = next.getPriority();
 		}
-		t.start();
+		m_executor.submit(m_sessionKey, priority, this);
 		return true;
 	}
 
@@ -214,26 +272,24 @@ final public class DelayedActivitiesManager implements Runnable {
 	 * trying to fondle a dead body and throw (up).
 	 */
 	public void terminate() {
-		Thread killme = null;
 		DelayedActivityInfo pendingcorpse = null;
 
 		synchronized(this) {
 			if(m_terminated)
 				return;
 			m_terminated = true;
-			if(m_executorThread != null) {
-				killme = m_executorThread;
-				m_executorThread = null;
-			}
 			pendingcorpse = m_runningActivity;
 			m_runningActivity = null;
 
 			m_completionQueue.clear();
 			m_pendingQueue.forEach(a -> a.setState(State.DONE));
 			m_pendingQueue.clear();
-			wakeupListeners(100);				// Wake up anything that's listening quickly
+			wakeupListeners();					// Wake up anything that's listening quickly
 		}
 
+		//-- If we are still waiting for the executor just leave the queue.
+		m_executor.remove(this);
+
 		//-- Do our utmost to kill the task, not gently.
 		try {
 			if(pendingcorpse != null)
@@ -243,60 +299,63 @@ final public class DelayedActivitiesManager implements Runnable {
 		}
 
 		//-- Signal the thread
-		try {
-			if(killme != null) {
+		synchronized(this) {
+			Thread killme = m_executorThread;
+			if(killme != null)
 				killme.interrupt();
-			}
-		} catch(Exception x) {
-			x.printStackTrace();
 		}
 	}
 
 	/*--------------------------------------------------------------*/
-	/*	CODING:	Executor thread.									*/
+	/*	CODING:	Executor task.										*/
 	/*--------------------------------------------------------------*/
 	/**
-	 * Main action runnert. This is the thread's executor function. While the manager is
-	 * active this will execute activities in the PENDING queue one by one until the queue
-	 * is empty. If that happens it will commit suicide. This suicidal act will not invalidate
-	 * the manager; at any time can new actions be posted and a new thread be started.
+	 * Main action runner, called by the executor. This executes the first activity in the PENDING
+	 * queue and then submits itself again if more activities are pending, so that the activities of
+	 * a conversation run one by one, in order, while other conversations get their turn.
 	 */
 	@Override
 	public void run() {
-		try {
-			for(;;) {
-				//-- Are we attempting to die?
-				DelayedActivityInfo dai;
-				synchronized(this) {
-					if(m_terminated) 				// Manager is deadish?
-						return; 					// Just quit immediately (nothing is currently running)
-
-					//-- Anything to do?
-					if(m_pendingQueue.size() == 0) {	// Something queued still?
-						//-- Nope. We can stop properly.
-						return;
-					}
-
-					//-- Schedule for a new execute.
-					dai = m_pendingQueue.remove(0); 	// Get and remove from pending queue
-					m_runningActivity = dai; 			// Make this the running dude
-				}
-				execute(dai);
+		DelayedActivityInfo dai;
+		synchronized(this) {
+			dai = m_pendingQueue.pollFirst();		// Get and remove from pending queue
+			if(m_terminated || dai == null) {		// Manager is deadish, or nothing to do?
+				m_submitted = false;
+				return;
 			}
+			m_runningActivity = dai; 				// Make this the running dude
+			m_executorThread = Thread.currentThread();
+			wakeupListeners();						// Waiting push requests must now report progress
+		}
+
+		int priority = 0;
+		boolean resubmit = false;
+		try {
+			execute(dai);
 		} catch(Exception x) {
 			//-- Do not report trouble if the manager is in the process of dying
 			if(!isTerminated()) {
-				System.err.println("FATAL Exception in DelayedActivitiesManager.run()!??!?!?!?\nAsy tasks WILL NOT COMPLETE anymore.");
-				x.printStackTrace();
+				LOG.error("Exception in DelayedActivitiesManager.run()", x);
 			}
 		} finally {
 			/*
-			 * Be very, very certain that we handle state @ thread termination properly.
+			 * Be very, very certain that we handle state @ task termination properly, and that a cancel
+			 * interrupt does not leak into the next task of this (pooled) thread.
 			 */
 			synchronized(this) {
-				m_executorThread = null; // I'm gone...
+				m_executorThread = null;
+				Thread.interrupted();
+				DelayedActivityInfo next = m_pendingQueue.peekFirst();
+				if(m_terminated || next == null)
+					m_submitted = false;
+				else {
+					priority = next.getPriority();
+					resubmit = true;
+				}
 			}
 		}
+		if(resubmit)
+			m_executor.submit(m_sessionKey, priority, this);
 	}
 
 	/**
@@ -329,7 +388,7 @@ final public class DelayedActivitiesManager implements Runnable {
 
 			//-- We're still alive; post the result in the done queue and awake listeners quickly.
 			m_completionQueue.add(dai);		// Append to completion queue for access by whatever.
-			wakeupListeners(1000);
+			wakeupListeners();
 		}
 	}
 
@@ -355,7 +414,11 @@ final public class DelayedActivitiesManager implements Runnable {
 			applyToTree(list);
 
 		//-- Handle PollThingy callbacks.
-		for(NodeContainer nc : new HashSet<>(m_pollSet)) {
+		Set<NodeContainer> pollSet;
+		synchronized(this) {
+			pollSet = new HashSet<>(m_pollSet);
+		}
+		for(NodeContainer nc : pollSet) {
 			if(nc.isAttached()) {
 				((IPolledForUpdate) nc).checkForChanges();
 			}
@@ -375,7 +438,9 @@ final public class DelayedActivitiesManager implements Runnable {
 	 * @param nc
 	 */
 	public <T extends NodeContainer & IPolledForUpdate> void registerPoller(T nc) {
-		m_pollSet.add(nc);
+		synchronized(this) {
+			m_pollSet.add(nc);
+		}
 	}
 
 	/**
@@ -384,7 +449,9 @@ final public class DelayedActivitiesManager implements Runnable {
 	 * @param nc
 	 */
 	public <T extends NodeBase & IPolledForUpdate> void unregisterPoller(T nc) {
-		m_pollSet.remove(nc);
+		synchronized(this) {
+			m_pollSet.remove(nc);
+		}
 	}
 
 	//	/**
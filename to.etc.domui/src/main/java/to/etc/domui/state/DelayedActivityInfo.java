@@ -48,6 +48,8 @@ final public class DelayedActivityInfo {
 
 	final private IAsyncRunnable m_activity;
 
+	final private int m_priority;
+
 	final private Progress m_monitor = new Progress("");
 
 	private Exception m_exception;
@@ -61,6 +63,14 @@ final public class DelayedActivityInfo {
 		m_activity = activity;
 		m_manager = manager;
 		m_container = ac;
+		m_priority = ac.getPriority();
+	}
+
+	/**
+	 * The priority for the executor; activities with a higher priority are started first.
+	 */
+	public int getPriority() {
+		return m_priority;
 	}
 
 	public IAsyncRunnable getActivity() {
@@ -141,6 +141,11 @@ final public class WindowSession {
 		return m_appSession.getApplication();
 	}
 
+	@NonNull
+	AppSession getAppSession() {
+		return m_appSession;
+	}
+
 	@NonNull
 	final public String getWindowID() {
 		return m_windowID;
@@ -26,26 +26,31 @@ package to.etc.domui.themes;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import to.etc.domui.server.BrowserVersion;
 import to.etc.domui.server.DomApplication;
 import to.etc.domui.server.IRequestContext;
 import to.etc.domui.trouble.ThingyNotFoundException;
 import to.etc.domui.util.js.IScriptScope;
-import to.etc.domui.util.js.RhinoTemplateCompiler;
+import to.etc.domui.util.js.RhinoTemplate;
+import to.etc.domui.util.js.RhinoTemplateCache;
 import to.etc.domui.util.resources.IIsModified;
 import to.etc.domui.util.resources.IResourceDependencyList;
 import to.etc.domui.util.resources.IResourceRef;
 import to.etc.domui.util.resources.ResourceDependencies;
+import to.etc.util.FileTool;
 import to.etc.util.StringTool;
 import to.etc.util.WrappedException;
 
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This is used by DomApplication to manage themes. It exists to reduce the code in DomApplication; it
@@ -55,46 +60,64 @@ import java.util.Map;
  * Created on Apr 27, 2011
  */
 final public class ThemeManager {
+	static private final Logger LOG = LoggerFactory.getLogger(ThemeManager.class);
+
 	static private final long OLD_THEME_TIME = 5 * 60 * 1000;
 
+	static private final int MAX_TEMPLATES = 500;
+
 	final private DomApplication m_application;
 
 	/** Map of themes by theme name, as implemented by the current engine. */
-	private final Map<String, ThemeRef> m_themeMap = new HashMap<>();
+	private final Map<String, ThemeRef> m_themeMap = new ConcurrentHashMap<>();
 
-	private int m_themeReapCount;
+	/** The time after which an unused theme is removed, in milliseconds. */
+	private volatile long m_idleTime = OLD_THEME_TIME;
 
-	private long m_themeNextReapTS;
+	private volatile long m_themeNextReapTS;
 
-	static private class ThemeRef {
-		final private ITheme m_theme;
+	private final AtomicLong m_builds = new AtomicLong();
 
-		private long m_lastuse;
+	private final AtomicLong m_buildNanos = new AtomicLong();
 
-		final private IIsModified m_rdl;
+	private final AtomicLong m_evictions = new AtomicLong();
 
-		public ThemeRef(ITheme theme, IIsModified rdl) {
-			m_theme = theme;
-			m_rdl = rdl;
-		}
+	private final RhinoTemplateCache m_templateCache = new RhinoTemplateCache(MAX_TEMPLATES);
 
-		public ITheme getTheme() {
-			return m_theme;
-		}
+	/**
+	 * A theme together with the dependencies it was built from; replaced as a whole when the theme is rebuilt.
+	 */
+	static private final class BuiltTheme {
+		@NonNull
+		final ITheme m_theme;
 
-		public long getLastuse() {
-			return m_lastuse;
-		}
+		@Nullable
+		final IIsModified m_dependencies;
 
-		public void setLastuse(long lastuse) {
-			m_lastuse = lastuse;
-		}
+		/** The sealed scope that theme templates run in, created on first use. */
+		@Nullable
+		volatile IScriptScope m_templateScope;
 
-		public IIsModified getDependencies() {
-			return m_rdl;
+		BuiltTheme(@NonNull ITheme theme, @Nullable IIsModified dependencies) {
+			m_theme = theme;
+			m_dependencies = dependencies;
 		}
 	}
 
+	/**
+	 * The cache slot for a theme name. Its lock is only taken to build the theme the first time,
+	 * so that only one thread builds it while the others wait for the result.
+	 */
+	static private final class ThemeRef {
+		@Nullable
+		private volatile BuiltTheme m_built;
+
+		private volatile long m_lastuse;
+
+		/** Set while a thread rebuilds the theme because its dependencies changed. */
+		private final AtomicBoolean m_rebuilding = new AtomicBoolean();
+	}
+
 	public ThemeManager(DomApplication application) {
 		m_application = application;
 	}
@@ -113,71 +136,160 @@ final public class ThemeManager {
 		return getTheme(factory.appendThemeVariant(themeName, variant), rdl);
 	}
 
+	/**
+	 * Get a theme, building it if it is not yet known. Only the first build of a theme makes
+	 * callers wait, and only callers for that same theme. When the dependencies of a theme have
+	 * changed (development mode) the first caller rebuilds it while the others keep using the
+	 * old one until the new one is ready.
+	 */
+	@NonNull
 	public ITheme getTheme(String key, @Nullable IResourceDependencyList rdl) {
-		IThemeFactory factory = DomApplication.getFactoryFromThemeName(key);
+		return getBuiltTheme(key, rdl).m_theme;
+	}
 
-		synchronized(this) {
-			if(m_themeReapCount++ > 1000) {
-				m_themeReapCount = 0;
-				checkReapThemes();
+	@NonNull
+	private BuiltTheme getBuiltTheme(@NonNull String key, @Nullable IResourceDependencyList rdl) {
+		checkReapThemes();
+
+		ThemeRef tr = m_themeMap.computeIfAbsent(key, k -> new ThemeRef());
+		tr.m_lastuse = System.currentTimeMillis();
+		BuiltTheme bt = tr.m_built;
+		if(null == bt) {
+			synchronized(tr) {
+				bt = tr.m_built;
+				if(null == bt) {
+					try {
+						bt = buildTheme(tr, key);
+					} catch(RuntimeException | Error x) {
+						//-- Do not keep a slot for a theme that does not exist: names come from request URLs.
+						m_themeMap.remove(key, tr);
+						throw x;
+					}
+				}
 			}
-
-			ThemeRef tr = m_themeMap.get(key);
-			if(tr != null) {
-				//-- Developer mode: is the theme still valid?
-				if(tr.getDependencies() == null || !tr.getDependencies().isModified()) {
-					if(rdl != null && tr.getDependencies() != null)
-						rdl.add(tr.getDependencies());
-					tr.setLastuse(System.currentTimeMillis());
-					return tr.getTheme();
+		} else {
+			//-- Developer mode: is the theme still valid?
+			IIsModified deps = bt.m_dependencies;
+			if(deps != null && deps.isModified() && tr.m_rebuilding.compareAndSet(false, true)) {
+				try {
+					bt = buildTheme(tr, key);
+				} finally {
+					tr.m_rebuilding.set(false);
 				}
 			}
+		}
 
-			//-- No such cached theme yet, or the theme has changed. (Re)load it.
-			ITheme theme;
-			try {
-				theme = factory.getTheme(m_application, key);
-			} catch(Exception x) {
-				throw WrappedException.wrap(x);
-			}
-			if(null == theme)
-				throw new IllegalStateException("Theme factory returned null!?");
-			ResourceDependencies deps = null;
-			if(m_application.inDevelopmentMode()) {
-				ThemeModifiableResource tmr = new ThemeModifiableResource(theme.getDependencies(), 3000);
-				deps = new ResourceDependencies(new IIsModified[]{tmr});
-			}
-			tr = new ThemeRef(theme, deps);
-			if(rdl != null && deps != null)
-				rdl.add(deps);
-			m_themeMap.put(key, tr);
-			return theme;
+		IIsModified deps = bt.m_dependencies;
+		if(rdl != null && deps != null)
+			rdl.add(deps);
+		return bt;
+	}
+
+	@NonNull
+	private BuiltTheme buildTheme(@NonNull ThemeRef tr, @NonNull String key) {
+		IThemeFactory factory = DomApplication.getFactoryFromThemeName(key);
+		long ts = System.nanoTime();
+		ITheme theme;
+		try {
+			theme = factory.getTheme(m_application, key);
+		} catch(Exception x) {
+			throw WrappedException.wrap(x);
+		}
+		if(null == theme)
+			throw new IllegalStateException("Theme factory returned null!?");
+		ResourceDependencies deps = null;
+		if(m_application.inDevelopmentMode()) {
+			ThemeModifiableResource tmr = new ThemeModifiableResource(theme.getDependencies(), 3000);
+			deps = new ResourceDependencies(new IIsModified[]{tmr});
 		}
+		BuiltTheme bt = new BuiltTheme(theme, deps);
+		tr.m_built = bt;
+		ts = System.nanoTime() - ts;
+		m_builds.incrementAndGet();
+		m_buildNanos.addAndGet(ts);
+		LOG.info("Theme " + key + " built in " + StringTool.strNanoTime(ts));
+		return bt;
 	}
 
 	/**
-	 * Check to see if there are "old" themes (not used for > 5 minutes)
+	 * Check to see if there are "old" themes (not used for the idle time, default 5 minutes)
 	 * that we can reap. We will always retain the most recently used theme.
 	 */
-	private synchronized void checkReapThemes() {
+	private void checkReapThemes() {
 		long ts = System.currentTimeMillis();
 		if(ts < m_themeNextReapTS)
 			return;
+		synchronized(this) {
+			if(ts < m_themeNextReapTS)
+				return;
+			m_themeNextReapTS = ts + m_idleTime;
+		}
 
-		//-- Get a list of all themes and sort in ascending time order.
-		List<ThemeRef> list = new ArrayList<>(m_themeMap.values());
-		list.sort((a, b) -> {
-			long d = a.getLastuse() - b.getLastuse();
-			return d == 0 ? 0 : d > 0 ? 1 : -1;
-		});
-
-		long abstime = ts - OLD_THEME_TIME;
-		for(int i = list.size()-1; --i >= 0;) {
-			ThemeRef tr = list.get(i);
-			if(tr.getLastuse() < abstime)
-				list.remove(i);
+		ThemeRef newest = null;
+		for(ThemeRef tr : m_themeMap.values()) {
+			if(newest == null || tr.m_lastuse > newest.m_lastuse)
+				newest = tr;
+		}
+
+		long abstime = ts - m_idleTime;
+		for(Map.Entry<String, ThemeRef> me : m_themeMap.entrySet()) {
+			ThemeRef tr = me.getValue();
+			if(tr != newest && tr.m_built != null && tr.m_lastuse < abstime && m_themeMap.remove(me.getKey(), tr))
+				m_evictions.incrementAndGet();
 		}
-		m_themeNextReapTS = ts + OLD_THEME_TIME;
+	}
+
+	/**
+	 * Build the specified themes with all specified variants, so that the first request that needs
+	 * them does not have to wait for it. Themes that fail to build are logged and skipped.
+	 *
+	 * @return	the #of themes that were built without errors.
+	 */
+	public int precompileThemes(@NonNull List<String> themeNames, @NonNull List<IThemeVariant> variants) {
+		int count = 0;
+		for(String themeName : themeNames) {
+			for(IThemeVariant variant : variants) {
+				try {
+					getTheme(themeName, variant, null);
+					count++;
+				} catch(Exception x) {
+					LOG.error("Precompiling theme " + themeName + " variant " + variant.getVariantName() + " failed", x);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Set the time after which a theme that is not used is removed, in milliseconds. The most recently used theme is always kept.
+	 */
+	public void setIdleTime(long idleTime) {
+		m_idleTime = idleTime;
+		m_themeNextReapTS = 0;
+	}
+
+	public long getIdleTime() {
+		return m_idleTime;
+	}
+
+	/** The #of themes in the cache. */
+	public int getThemeCount() {
+		return m_themeMap.size();
+	}
+
+	/** The #of times a theme was built. */
+	public long getBuildCount() {
+		return m_builds.get();
+	}
+
+	/** The total time spent building themes, in nanoseconds. */
+	public long getTotalBuildTime() {
+		return m_buildNanos.get();
+	}
+
+	/** The #of themes removed because they were not used. */
+	public long getEvictionCount() {
+		return m_evictions.get();
 	}
 
 	public String getThemeReplacedString(@NonNull IResourceDependencyList rdl, String rurl) throws Exception {
@@ -202,33 +314,21 @@ final public class ThemeManager {
 		}
 
 		String[] spl = ThemeResourceFactory.splitThemeResourceURL(resourceURL);
-		ITheme theme = getTheme(spl[0], null);					// Dependencies already added by get-resource call.
-		IScriptScope ss = theme.getPropertyScope();
-		ss = ss.newScope();
-
+		BuiltTheme bt = getBuiltTheme(spl[0], null);			// Dependencies already added by get-resource call.
+		IScriptScope ss = getTemplateScope(bt).newScope();		// For "out" and the browser
 		if(bv != null) {
 			ss.put("browser", bv);
 		}
-		m_application.augmentThemeMap(ss); // Provide a hook to let user code add stuff to the theme map
 
-		//-- 2. Get a reader.
+		//-- 2. Read the template.
 		InputStream is = ires.getInputStream();
 		if(is == null) {
 			System.out.println(">>>> RESOURCE ERROR: " + resourceURL + ", ref=" + ires);
 			throw new ThingyNotFoundException("Unexpected: cannot get input stream for IResourceRef rurl=" + resourceURL + ", ref=" + ires);
 		}
+		String source;
 		try {
-			Reader r = new InputStreamReader(is, "utf-8");
-			StringBuilder sb = new StringBuilder(65536);
-
-			RhinoTemplateCompiler rtc = new RhinoTemplateCompiler();
-			rtc.execute(sb, r, resourceURL, ss);
-			ts = System.nanoTime() - ts;
-			if(bv != null)
-				System.out.println("theme-replace: " + resourceURL + " for " + bv.getBrowserName() + ":" + bv.getMajorVersion() + " took " + StringTool.strNanoTime(ts));
-			else
-				System.out.println("theme-replace: " + resourceURL + " for all browsers took " + StringTool.strNanoTime(ts));
-			return sb.toString();
+			source = FileTool.readStreamAsString(is, "utf-8");
 		} finally {
 			try {
 				is.close();
@@ -236,6 +336,43 @@ final public class ThemeManager {
 				// Ignore close exception.
 			}
 		}
+
+		RhinoTemplate tmpl = m_templateCache.getTemplate(source, resourceURL);
+		StringBuilder sb = new StringBuilder(source.length() + 1024);
+		tmpl.execute(sb, ss);
+		if(LOG.isDebugEnabled()) {
+			ts = System.nanoTime() - ts;
+			LOG.debug("theme-replace: " + resourceURL + " for " + (bv == null ? "all browsers" : bv.getBrowserName() + ":" + bv.getMajorVersion()) + " took " + StringTool.strNanoTime(ts));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Get the scope that templates for a theme run in: the theme's properties with the
+	 * additions from {@link DomApplication#augmentThemeMap(IScriptScope)}. It is made once
+	 * per theme instance and sealed, because it is shared by all templates; every template
+	 * execution uses its own scope on top of it.
+	 */
+	@NonNull
+	private IScriptScope getTemplateScope(@NonNull BuiltTheme bt) throws Exception {
+		IScriptScope ss = bt.m_templateScope;
+		if(null == ss) {
+			ss = bt.m_theme.getPropertyScope().newScope();
+			m_application.augmentThemeMap(ss);			// Provide a hook to let user code add stuff to the theme map
+			Scriptable so = ss.getAdapter(Scriptable.class);
+			if(so instanceof ScriptableObject)
+				((ScriptableObject) so).sealObject();
+			bt.m_templateScope = ss;					// Harmless race: at worst two threads create the scope
+		}
+		return ss;
+	}
+
+	/**
+	 * The cache of compiled theme templates.
+	 */
+	@NonNull
+	public RhinoTemplateCache getTemplateCache() {
+		return m_templateCache;
 	}
 
 	/**
@@ -45,6 +45,9 @@ public class Constants {
 
 	static public final String ACMD_ASYPOLL = "pollasy";
 
+	/** When present on an ACMD_ASYPOLL request it is a push request, which waits on the server until there are asynchronous results. */
+	static public final String PARAM_ASYWAIT = "$wait";
+
 	static public final String ACMD_OBITUARY = "OBITUARY";
 
 	static public final String ACMD_PAGEDATA = "$pagedata";
@@ -26,4 +26,12 @@ package to.etc.domui.util;
 
 public interface ICachedListMaker<T> extends IListMaker<T> {
 	String getCacheKey();
+
+	/**
+	 * The time the list stays valid in the cache, in milliseconds. 0 means forever, and -1 (the default)
+	 * uses the default timeout of the application's list cache.
+	 */
+	default long getCacheTimeout() {
+		return -1;
+	}
 }
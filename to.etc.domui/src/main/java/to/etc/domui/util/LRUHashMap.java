@@ -62,6 +62,9 @@ public class LRUHashMap<K, V> implements Map<K, V> {
 	/** The max. "size" in the cache. */
 	private transient int m_maxSize;
 
+	/** The #of entries that were removed because the cache became too big. */
+	private transient long m_evictionCount;
+
 	/**
 	 * The next size value at which to resize (capacity * load factor).
 	 * @serial
@@ -193,6 +196,22 @@ public class LRUHashMap<K, V> implements Map<K, V> {
 		return m_maxSize;
 	}
 
+	/**
+	 * Change the max "size" of the map. If the map is bigger than the new size the least recently
+	 * used entries are removed.
+	 */
+	public void setMaxSize(int maxSize) {
+		m_maxSize = maxSize;
+		evictToSize();
+	}
+
+	/**
+	 * The #of entries that were removed from the map because it was full.
+	 */
+	public long getEvictionCount() {
+		return m_evictionCount;
+	}
+
 	/**
 	 * Return the size of all stored objects.
 	 * @return
@@ -215,6 +234,8 @@ public class LRUHashMap<K, V> implements Map<K, V> {
 		Entry<K, V>[] tab = m_buckets;
 		for(int i = 0; i < tab.length; i++)
 			tab[i] = null;
+		m_lruFirst = null;
+		m_lruLast = null;
 		m_currentSize = 0;
 		m_objectSize = 0;
 	}
@@ -338,15 +359,21 @@ public class LRUHashMap<K, V> implements Map<K, V> {
 		link(e);
 		m_objectSize += m_sizeCalculator.getObjectSize(value);
 
-		//-- If the map has become too big then release the LRU item from it.
-		while(m_objectSize > m_maxSize) {
-			e = m_lruLast;
-			removeEntry(e);
-			m_objectSize -= m_sizeCalculator.getObjectSize(e.m_value);
-		}
+		evictToSize();
 		return null;
 	}
 
+	/**
+	 * If the map has become too big then release the LRU items from it. Removing the
+	 * entry already adjusts the object size.
+	 */
+	private void evictToSize() {
+		while(m_objectSize > m_maxSize && m_lruLast != null) {
+			removeEntry(m_lruLast);
+			m_evictionCount++;
+		}
+	}
+
 	/**
 	 * Rehash the table when it has overflown.
 	 */
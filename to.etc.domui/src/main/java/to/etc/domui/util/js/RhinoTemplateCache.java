@@ -0,0 +1,76 @@
+package to.etc.domui.util.js;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps compiled templates, keyed by their source text. Compiling a template with Rhino is expensive
+ * while the number of different templates is small, and the same template source is often used for
+ * many themes, variants and browser versions. Keying on the text means a changed template is always
+ * compiled again, whatever resource it came from. A compiled template can be executed by multiple
+ * threads at the same time, as long as each uses its own scope.
+ */
+final public class RhinoTemplateCache {
+	/** All templates by source, in least-recently-used order. */
+	private final LinkedHashMap<String, RhinoTemplate> m_map = new LinkedHashMap<>(64, 0.75f, true);
+
+	private final int m_maxTemplates;
+
+	private long m_hits;
+
+	private long m_misses;
+
+	public RhinoTemplateCache(int maxTemplates) {
+		m_maxTemplates = maxTemplates;
+	}
+
+	/**
+	 * Get the compiled template for the source, compiling it if it was not seen before.
+	 *
+	 * @param sourceName	The name used in error messages.
+	 */
+	@NonNull
+	public RhinoTemplate getTemplate(@NonNull String source, @NonNull String sourceName) throws Exception {
+		synchronized(this) {
+			RhinoTemplate tmpl = m_map.get(source);
+			if(null != tmpl) {
+				m_hits++;
+				return tmpl;
+			}
+			m_misses++;
+		}
+
+		//-- Compile outside the lock; if two threads compile the same template the first one is kept.
+		RhinoTemplate tmpl = new RhinoTemplateCompiler().compile(new StringReader(source), sourceName);
+		synchronized(this) {
+			RhinoTemplate old = m_map.get(source);
+			if(null != old)
+				return old;
+			m_map.put(source, tmpl);
+			for(Iterator<RhinoTemplate> it = m_map.values().iterator(); m_map.size() > m_maxTemplates && it.hasNext(); ) {
+				it.next();
+				it.remove();
+			}
+			return tmpl;
+		}
+	}
+
+	public synchronized void clear() {
+		m_map.clear();
+	}
+
+	public synchronized int size() {
+		return m_map.size();
+	}
+
+	public synchronized long getHits() {
+		return m_hits;
+	}
+
+	public synchronized long getMisses() {
+		return m_misses;
+	}
+}
@@ -333,20 +333,49 @@ var WebUI;
         _pollActive = false;
     }
     WebUI.cancelPolling = cancelPolling;
-    function poll() {
+    var _pushActive = false;
+    var _pushFailed = false;
+    function startPush(interval) {
+        if (_pushFailed) {
+            startPolling(interval);
+            return;
+        }
+        _pollInterval = interval;
+        if (_pushActive)
+            return;
+        cancelPolling();
+        _pollActive = true;
+        _pollTimer = setTimeout("WebUI.poll(true)", 10);
+    }
+    WebUI.startPush = startPush;
+    function poll(wait) {
         cancelPolling();
         var fields = {};
         fields["webuia"] = "pollasy";
         fields["$pt"] = window.DomUIpageTag;
         fields["$cid"] = window.DomUICID;
+        if (wait) {
+            fields["$wait"] = "1";
+            _pushActive = true;
+        }
         $.ajax({
             url: window.location.href,
             dataType: "*",
             data: fields,
             cache: false,
             global: false,
-            success: handleResponse,
-            error: handleErrorAsy
+            success: function (data, state) {
+                if (wait)
+                    _pushActive = false;
+                handleResponse(data, state);
+            },
+            error: function (request, status, exc) {
+                if (wait) {
+                    _pushActive = false;
+                    _pushFailed = true;
+                }
+                handleErrorAsy(request, status, exc);
+            }
         });
     }
     WebUI.poll = poll;
@@ -1004,6 +1033,8 @@ var WebUI;
         tbl.floatThead('reflow');
         WebUI.doCustomUpdates();
         $.dbg('recreate');
+        container.data("vbusy", false);
+        container.data("vasked", null);
         container.scrollTop(0);
     }
     WebUI.scrollableTableReset = scrollableTableReset;
@@ -1038,6 +1069,10 @@ var WebUI;
             }
         });
         container.scroll(function () {
+            if ($('#' + tblid).attr("vrows")) {
+                scrollVirtualTable(id, tblid);
+                return;
+            }
             var bh = $(container).height();
             var st = $(container).scrollTop();
             var tbl = $('#' + id + " tbody");
@@ -1055,6 +1090,87 @@ var WebUI;
         });
     }
     WebUI.initScrollableTable = initScrollableTable;
+    function scrollVirtualTable(id, tblid) {
+        var container = $('#' + id);
+        var tbl = $('#' + tblid);
+        var vstart = Number(tbl.attr("vstart"));
+        var vend = Number(tbl.attr("vend"));
+        var vrows = Number(tbl.attr("vrows"));
+        var rowh = tbl.find("tbody > tr:not(.ui-dt-vspacer)").first().outerHeight();
+        if (!rowh)
+            return;
+        var hdr = tbl.find("thead");
+        var st = container.scrollTop() - (hdr.length > 0 ? hdr.outerHeight() : 0);
+        var first = Math.max(0, Math.floor(st / rowh));
+        var count = Math.ceil(container.height() / rowh);
+        var margin = Math.ceil(count / 2);
+        if (!((vstart > 0 && first - vstart < margin) || (vend < vrows && vend - (first + count) < margin)))
+            return;
+        if (container.data("vbusy"))
+            return;
+        var question = vstart + ":" + vend + ":" + vrows + ":" + first + ":" + count;
+        if (container.data("vasked") === question)
+            return;
+        container.data("vbusy", true);
+        container.data("vasked", question);
+        WebUI.scall(id, "VSCROLL", { first: first, rowh: Math.round(rowh), rows: count });
+    }
+    function scrollableTableMoved(id, tblid) {
+        $('#' + id).data("vbusy", false);
+        scrollVirtualTable(id, tblid);
+    }
+    WebUI.scrollableTableMoved = scrollableTableMoved;
+    var _sharedOptions = {};
+    function initSharedOptions(id) {
+        var sel = document.getElementById(id);
+        if (!sel)
+            return;
+        var url = sel.getAttribute("data-options");
+        if (!url)
+            return;
+        var entry = _sharedOptions[url];
+        if (entry === undefined) {
+            _sharedOptions[url] = entry = { waiting: [id] };
+            $.ajax({
+                url: url,
+                dataType: "json",
+                cache: true,
+                success: function (labels) {
+                    var waiting = entry.waiting;
+                    entry.labels = labels;
+                    entry.waiting = undefined;
+                    for (var i = 0; i < waiting.length; i++)
+                        initSharedOptions(waiting[i]);
+                },
+                error: function () {
+                    delete _sharedOptions[url];
+                }
+            });
+            return;
+        }
+        if (entry.labels === undefined) {
+            if (entry.waiting.indexOf(id) < 0)
+                entry.waiting.push(id);
+            return;
+        }
+        var labels = entry.labels;
+        if (sel._sharedOptions !== url || sel.options.length != labels.length + 1) {
+            while (sel.options.length > 1)
+                sel.remove(sel.options.length - 1);
+            var frag = document.createDocumentFragment();
+            for (var i = 0; i < labels.length; i++) {
+                var o = document.createElement("option");
+                o.value = "$" + i;
+                o.text = labels[i];
+                frag.appendChild(o);
+            }
+            sel.appendChild(frag);
+            sel._sharedOptions = url;
+        }
+        var ix = Number(sel.getAttribute("data-sel"));
+        sel.selectedIndex = ix >= 0 && ix < labels.length ? ix + 1 : 0;
+    }
+    WebUI.initSharedOptions = initSharedOptions;
     var closeOnClick = (function () {
         function closeOnClick(id) {
             this._id = id;
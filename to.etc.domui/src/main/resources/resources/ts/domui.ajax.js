@@ -327,20 +327,49 @@ var WebUI;
         _pollActive = false;
     }
     WebUI.cancelPolling = cancelPolling;
-    function poll() {
+    var _pushActive = false;
+    var _pushFailed = false;
+    function startPush(interval) {
+        if (_pushFailed) {
+            startPolling(interval);
+            return;
+        }
+        _pollInterval = interval;
+        if (_pushActive)
+            return;
+        cancelPolling();
+        _pollActive = true;
+        _pollTimer = setTimeout("WebUI.poll(true)", 10);
+    }
+    WebUI.startPush = startPush;
+    function poll(wait) {
         cancelPolling();
         var fields = {};
         fields["webuia"] = "pollasy";
         fields["$pt"] = window.DomUIpageTag;
         fields["$cid"] = window.DomUICID;
+        if (wait) {
+            fields["$wait"] = "1";
+            _pushActive = true;
+        }
         $.ajax({
             url: window.location.href,
             dataType: "*",
             data: fields,
             cache: false,
             global: false,
-            success: handleResponse,
-            error: handleErrorAsy
+            success: function (data, state) {
+                if (wait)
+                    _pushActive = false;
+                handleResponse(data, state);
+            },
+            error: function (request, status, exc) {
+                if (wait) {
+                    _pushActive = false;
+                    _pushFailed = true;
+                }
+                handleErrorAsy(request, status, exc);
+            }
         });
     }
     WebUI.poll = poll;
@@ -433,7 +433,35 @@ namespace WebUI {
 		_pollActive = false;
 	}
 
-	export function poll(): void {
+	/**
+	 * T while a push request is waiting on the server, so that only one is sent at a time.
+	 */
+	let _pushActive = false;
+
+	/**
+	 * Set when a push request failed; the page then only polls.
+	 */
+	let _pushFailed = false;
+
+	/**
+	 * Start a push request. This is a poll that waits on the server until the results of asynchronous
+	 * activities are available, so they show immediately. Its response is a normal delta which starts
+	 * the next push request. If push fails we fall back to polling every interval millis.
+	 */
+	export function startPush(interval: number): void {
+		if(_pushFailed) {
+			startPolling(interval);
+			return;
+		}
+		_pollInterval = interval;
+		if(_pushActive)
+			return;
+		cancelPolling();
+		_pollActive = true;
+		_pollTimer = setTimeout("WebUI.poll(true)", 10);
+	}
+
+	export function poll(wait?: boolean): void {
 		cancelPolling();
 
 		/*
@@ -443,6 +471,10 @@ namespace WebUI {
 		fields["webuia"] = "pollasy";
 		fields["$pt"] = (window as any).DomUIpageTag;
 		fields["$cid"] = (window as any).DomUICID;
+		if(wait) {
+			fields["$wait"] = "1";
+			_pushActive = true;
+		}
 
 		$.ajax({
 			url: window.location.href,
@@ -450,8 +482,18 @@ namespace WebUI {
 			data: fields,
 			cache: false,
 			global: false, // jal 20091015 prevent block/unblock on polling call.
-			success: handleResponse,
-			error: handleErrorAsy
+			success: function(data, state) {
+				if(wait)
+					_pushActive = false;
+				handleResponse(data, state);
+			},
+			error: function(request, status, exc) {
+				if(wait) {
+					_pushActive = false;
+					_pushFailed = true;
+				}
+				handleErrorAsy(request, status, exc);
+			}
 		});
 	}
 
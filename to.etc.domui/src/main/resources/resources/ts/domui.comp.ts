@@ -441,6 +441,8 @@ namespace WebUI {
 		WebUI.doCustomUpdates();
 
 		$.dbg('recreate');
+		container.data("vbusy", false);
+		container.data("vasked", null);
 
 		//tbl.floatThead('destroy');
 		//tbl.floatThead({
@@ -483,6 +485,10 @@ namespace WebUI {
 			}
 		});
 		container.scroll(function() {
+			if($('#' + tblid).attr("vrows")) {
+				scrollVirtualTable(id, tblid);
+				return;
+			}
 			let bh = $(container).height();
 			let st = $(container).scrollTop();
 			let tbl = $('#' + id + " tbody");
@@ -505,6 +511,108 @@ namespace WebUI {
 
 	}
 
+	/**
+	 * Virtual ScrollableDataTable: the table only contains the rows vstart..vend, with spacer rows for
+	 * the others. When less than half a viewport of rows is left beyond the visible part ask the server
+	 * to move the window, sending the first visible row and the #of rows in the viewport. Only one request
+	 * is outstanding at a time, and the same question is never asked twice for the same window: when
+	 * the server did not move it, nothing is sent until the user scrolls to another row.
+	 */
+	function scrollVirtualTable(id: string, tblid: string): void {
+		let container = $('#' + id);
+		let tbl = $('#' + tblid);
+		let vstart = Number(tbl.attr("vstart"));
+		let vend = Number(tbl.attr("vend"));
+		let vrows = Number(tbl.attr("vrows"));
+		let rowh = tbl.find("tbody > tr:not(.ui-dt-vspacer)").first().outerHeight();
+		if(!rowh)
+			return;
+		let hdr = tbl.find("thead");
+		let st = container.scrollTop() - (hdr.length > 0 ? hdr.outerHeight() : 0);
+		let first = Math.max(0, Math.floor(st / rowh));
+		let count = Math.ceil(container.height() / rowh);
+		let margin = Math.ceil(count / 2);
+		if(!((vstart > 0 && first - vstart < margin) || (vend < vrows && vend - (first + count) < margin)))
+			return;
+		if(container.data("vbusy"))
+			return;										// scrollableTableMoved checks again when the answer is there
+
+		let question = vstart + ":" + vend + ":" + vrows + ":" + first + ":" + count;
+		if(container.data("vasked") === question)
+			return;
+		container.data("vbusy", true);
+		container.data("vasked", question);
+		WebUI.scall(id, "VSCROLL", {first: first, rowh: Math.round(rowh), rows: count});
+	}
+
+	/**
+	 * Called by the server after it handled a VSCROLL: check whether the window needs to move again,
+	 * as the user may have scrolled on while the request was running.
+	 */
+	export function scrollableTableMoved(id: string, tblid: string): void {
+		$('#' + id).data("vbusy", false);
+		scrollVirtualTable(id, tblid);
+	}
+
+	/** The labels of the shared option lists by URL, or the selects waiting for them while they load. */
+	let _sharedOptions = {};
+
+	/**
+	 * Fill a combo rendered with shared options from the option list at its data-options URL, and select
+	 * the list item in its data-sel attribute. The first option is the "unselected" option from the server,
+	 * the others get their list index as value. Every list is loaded once per page, and cached by the browser.
+	 */
+	export function initSharedOptions(id: string): void {
+		let sel = document.getElementById(id) as HTMLSelectElement;
+		if(!sel)
+			return;
+		let url = sel.getAttribute("data-options");
+		if(!url)
+			return;
+		let entry = _sharedOptions[url];
+		if(entry === undefined) {
+			_sharedOptions[url] = entry = {waiting: [id]};
+			$.ajax({
+				url: url,
+				dataType: "json",
+				cache: true,
+				success: function(labels) {
+					let waiting = entry.waiting;
+					entry.labels = labels;
+					entry.waiting = undefined;
+					for(let i = 0; i < waiting.length; i++)
+						initSharedOptions(waiting[i]);
+				},
+				error: function() {
+					delete _sharedOptions[url];
+				}
+			});
+			return;
+		}
+		if(entry.labels === undefined) {
+			if(entry.waiting.indexOf(id) < 0)
+				entry.waiting.push(id);
+			return;
+		}
+
+		let labels: string[] = entry.labels;
+		if((sel as any)._sharedOptions !== url || sel.options.length != labels.length + 1) {
+			while(sel.options.length > 1)
+				sel.remove(sel.options.length - 1);
+			let frag = document.createDocumentFragment();
+			for(let i = 0; i < labels.length; i++) {
+				let o = document.createElement("option");
+				o.value = "$" + i;
+				o.text = labels[i];
+				frag.appendChild(o);
+			}
+			sel.appendChild(frag);
+			(sel as any)._sharedOptions = url;
+		}
+		let ix = Number(sel.getAttribute("data-sel"));
+		sel.selectedIndex = ix >= 0 && ix < labels.length ? ix + 1 : 0;
+	}
+
 	class closeOnClick {
 		_id: string;
 		private _clickHandler: () => void;
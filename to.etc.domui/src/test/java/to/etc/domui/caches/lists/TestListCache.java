@@ -0,0 +1,175 @@
+package to.etc.domui.caches.lists;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.server.DomApplication;
+import to.etc.domui.util.ICachedListMaker;
+import to.etc.webapp.eventmanager.VpEventManager;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks loading, sharing, expiry, refresh-ahead, eviction and invalidation of the list cache.
+ */
+public class TestListCache {
+	static private DomApplication m_application;
+
+	static private final class Maker implements ICachedListMaker<Integer> {
+		private final String m_key;
+
+		private final int m_size;
+
+		private final long m_timeout;
+
+		private final AtomicInteger m_count = new AtomicInteger();
+
+		Maker(String key, int size, long timeout) {
+			m_key = key;
+			m_size = size;
+			m_timeout = timeout;
+		}
+
+		@Override
+		public String getCacheKey() {
+			return m_key;
+		}
+
+		@Override
+		public long getCacheTimeout() {
+			return m_timeout;
+		}
+
+		@Override
+		public List<Integer> createList(DomApplication a) throws Exception {
+			m_count.incrementAndGet();
+			Thread.sleep(20);
+			List<Integer> list = new ArrayList<>();
+			for(int i = 0; i < m_size; i++)
+				list.add(Integer.valueOf(i));
+			return list;
+		}
+	}
+
+	@BeforeClass
+	static public void setUp() {
+		m_application = new DomApplication() {
+			@Override
+			public Class<? extends UrlPage> getRootPage() {
+				return UrlPage.class;
+			}
+		};
+	}
+
+	@AfterClass
+	static public void tearDown() {
+		m_application.getAsyncExecutor().terminate();
+	}
+
+	@Test
+	public void testSharedAndSingleLoad() throws Exception {
+		ListCache lc = new ListCache(m_application);
+		Maker m = new Maker("a", 10, 0);
+		int threads = 8;
+		CountDownLatch done = new CountDownLatch(threads);
+		List<List<Integer>> results = new ArrayList<>();
+		for(int i = 0; i < threads; i++) {
+			new Thread(() -> {
+				try {
+					List<Integer> l = lc.getList(m);
+					synchronized(results) {
+						results.add(l);
+					}
+				} catch(Exception x) {
+					x.printStackTrace();
+				}
+				done.countDown();
+			}).start();
+		}
+		done.await();
+		Assert.assertEquals(1, m.m_count.get());
+		Assert.assertEquals(threads, results.size());
+		for(List<Integer> l : results)
+			Assert.assertSame(results.get(0), l);
+		try {
+			results.get(0).add(Integer.valueOf(1));
+			Assert.fail("The list can be changed");
+		} catch(UnsupportedOperationException x) {
+			//-- Expected
+		}
+		Assert.assertEquals(1, lc.getLoads());
+		Assert.assertEquals(10, lc.getItemCount());
+	}
+
+	@Test
+	public void testExpiryAndRefreshAhead() throws Exception {
+		ListCache lc = new ListCache(m_application);
+		Maker m = new Maker("b", 5, 300);
+		lc.setRefreshAhead(50);
+		List<Integer> first = lc.getList(m);
+		Assert.assertSame(first, lc.getList(m));
+
+		//-- After half the timeout the old list is returned, and a new one is loaded in the background.
+		Thread.sleep(180);
+		Assert.assertSame(first, lc.getList(m));
+		long ets = System.currentTimeMillis() + 5000;
+		while(lc.getRefreshes() == 0 && System.currentTimeMillis() < ets)
+			Thread.sleep(5);
+		Assert.assertEquals(1, lc.getRefreshes());
+		Assert.assertNotSame(first, lc.getList(m));
+
+		//-- After the full timeout the list is loaded while waiting.
+		Maker expiring = new Maker("c", 5, 50);
+		lc.setRefreshAhead(100);
+		List<Integer> l = lc.getList(expiring);
+		Thread.sleep(80);
+		Assert.assertNotSame(l, lc.getList(expiring));
+		Assert.assertEquals(1, lc.getExpirations());
+		Assert.assertEquals(2, expiring.m_count.get());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		ListCache lc = new ListCache(m_application);
+		lc.setMaxItems(25);
+		Maker a = new Maker("a", 10, 0);
+		Maker b = new Maker("b", 10, 0);
+		Maker c = new Maker("c", 10, 0);
+		lc.getList(a);
+		lc.getList(b);
+		lc.getList(a);						// b is now least recently used
+		lc.getList(c);
+		Assert.assertEquals(2, lc.getListCount());
+		Assert.assertEquals(20, lc.getItemCount());
+		Assert.assertEquals(1, lc.getEvictions());
+		lc.getList(a);
+		Assert.assertEquals(1, a.m_count.get());
+		lc.getList(b);
+		Assert.assertEquals(2, b.m_count.get());
+	}
+
+	@Test
+	public void testInvalidationEvent() throws Exception {
+		VpEventManager.initializeForTest();
+		ListCache lc = new ListCache(m_application);
+		lc.listenForInvalidations(VpEventManager.getInstance());
+		Maker a = new Maker("a", 3, 0);
+		Maker b = new Maker("b", 3, 0);
+		List<Integer> la = lc.getList(a);
+		List<Integer> lb = lc.getList(b);
+		Connection dbc = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> null);
+		lc.invalidateEverywhere(dbc, "a");
+		Assert.assertNotSame(la, lc.getList(a));
+		Assert.assertSame(lb, lc.getList(b));
+		lc.invalidateEverywhere(dbc, null);
+		Assert.assertNotSame(lb, lc.getList(b));
+		Assert.assertEquals(2, lc.getInvalidations());
+	}
+}
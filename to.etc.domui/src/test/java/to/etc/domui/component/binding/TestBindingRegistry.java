@@ -0,0 +1,288 @@
+package to.etc.domui.component.binding;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.databinding.model.IModelChangeListener;
+import to.etc.domui.databinding.model.IObservableModel;
+import to.etc.domui.databinding.model.ModelChangeEvent;
+import to.etc.domui.dom.html.Div;
+import to.etc.domui.dom.html.Page;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.testsupport.TUtilDomUI;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the page's binding registry: the order in which values move, which bindings are
+ * skipped because their observable model did not change, and removal of the model listeners.
+ */
+public class TestBindingRegistry {
+	/** Records the order in which models get their values. */
+	static private final List<String> m_setOrder = new ArrayList<>();
+
+	/**
+	 * A minimal control with a value property.
+	 */
+	static public class ValueDiv extends Div {
+		private String m_value;
+
+		private int m_setCount;
+
+		public String getValue() {
+			return m_value;
+		}
+
+		public void setValue(String value) {
+			m_value = value;
+			m_setCount++;
+		}
+	}
+
+	/**
+	 * A plain model that counts the reads of its property.
+	 */
+	static public class Model {
+		private final String m_id;
+
+		String m_name;
+
+		int m_getCount;
+
+		public Model(String id, String name) {
+			m_id = id;
+			m_name = name;
+		}
+
+		public String getName() {
+			m_getCount++;
+			return m_name;
+		}
+
+		public void setName(String name) {
+			m_setOrder.add(m_id);
+			m_name = name;
+		}
+	}
+
+	static public class ObservedModel extends Model implements IObservableModel {
+		final List<IModelChangeListener> m_listeners = new ArrayList<>();
+
+		public ObservedModel(String id, String name) {
+			super(id, name);
+		}
+
+		@Override
+		public void setName(String name) {
+			super.setName(name);
+			fire();
+		}
+
+		void fire() {
+			ModelChangeEvent event = new ModelChangeEvent(this, "name");
+			for(IModelChangeListener l : new ArrayList<>(m_listeners)) {
+				try {
+					l.handleChange(event);
+				} catch(Exception x) {
+					throw new RuntimeException(x);
+				}
+			}
+		}
+
+		@Override
+		public void addChangeListener(@NonNull IModelChangeListener listener) {
+			if(!m_listeners.contains(listener))
+				m_listeners.add(listener);
+		}
+
+		@Override
+		public void removeChangeListener(@NonNull IModelChangeListener listener) {
+			m_listeners.remove(listener);
+		}
+	}
+
+	@BeforeClass
+	static public void setUp() throws Exception {
+		TUtilDomUI.getApplication();
+	}
+
+	static private ValueDiv bound(Div parent, Model model) throws Exception {
+		ValueDiv vd = new ValueDiv();
+		parent.add(vd);
+		vd.bind().to(model, "name");
+		return vd;
+	}
+
+	static private void modelToControl(Page p) throws Exception {
+		new DefaultBindingHandler(p.getBody()).modelToControl();
+	}
+
+	static private void controlToModel(Page p) throws Exception {
+		new DefaultBindingHandler(p.getBody()).controlToModel();
+	}
+
+	/**
+	 * Changed controls move to the model deepest first, and in DOM order within a level.
+	 */
+	@Test
+	public void testControlToModelOrder() throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		ValueDiv outer = bound(p.getBody(), new Model("outer", "a"));
+		ValueDiv first = bound(outer, new Model("first", "a"));
+		ValueDiv inner = bound(first, new Model("inner", "a"));
+		ValueDiv second = bound(outer, new Model("second", "a"));
+		ValueDiv unchanged = bound(outer, new Model("unchanged", "a"));
+		modelToControl(p);
+
+		for(ValueDiv vd : new ValueDiv[]{second, outer, first, inner})
+			vd.setValue("b");
+		m_setOrder.clear();
+		controlToModel(p);
+		Assert.assertEquals("[inner, first, second, outer]", m_setOrder.toString());
+		Assert.assertEquals("a", unchanged.getValue());
+	}
+
+	/**
+	 * An observable model is only read after it reported a change; a plain model is read every time.
+	 */
+	@Test
+	public void testUnchangedObservableIsSkipped() throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		ObservedModel om = new ObservedModel("om", "a");
+		Model pm = new Model("pm", "a");
+		ValueDiv ovd = bound(p.getBody(), om);
+		ValueDiv pvd = bound(p.getBody(), pm);
+		modelToControl(p);
+		Assert.assertEquals(1, om.m_listeners.size());
+
+		om.m_getCount = 0;
+		pm.m_getCount = 0;
+		modelToControl(p);
+		modelToControl(p);
+		Assert.assertEquals("A clean observable binding must not be read", 0, om.m_getCount);
+		Assert.assertEquals(2, pm.m_getCount);
+
+		//-- A change without an event is not seen (the documented contract),
+		om.m_name = "silent";
+		pm.m_name = "silent";
+		modelToControl(p);
+		Assert.assertEquals("a", ovd.getValue());
+		Assert.assertEquals("silent", pvd.getValue());
+
+		//-- but an event makes the binding move the value again.
+		om.setName("b");
+		modelToControl(p);
+		Assert.assertEquals("b", ovd.getValue());
+		Assert.assertEquals(1, om.m_getCount);
+	}
+
+	/**
+	 * A control changed by code keeps its value until it is moved to the model, just like with a tree walk.
+	 */
+	@Test
+	public void testProgrammaticControlChange() throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		ObservedModel om = new ObservedModel("om", "a");
+		ValueDiv vd = bound(p.getBody(), om);
+		modelToControl(p);
+
+		vd.setValue("code");
+		int count = vd.m_setCount;
+		modelToControl(p);
+		Assert.assertEquals("code", vd.getValue());
+		Assert.assertEquals(count, vd.m_setCount);
+
+		controlToModel(p);
+		Assert.assertEquals("code", om.m_name);
+
+		//-- After the model took the value the control follows the model again.
+		om.setName("model");
+		modelToControl(p);
+		Assert.assertEquals("model", vd.getValue());
+	}
+
+	/**
+	 * A handler for a subtree only moves the bindings inside it, and shares the page's change state.
+	 */
+	@Test
+	public void testSubtree() throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		Div sub = new Div();
+		p.getBody().add(sub);
+		ObservedModel inside = new ObservedModel("inside", "a");
+		ObservedModel outside = new ObservedModel("outside", "a");
+		ValueDiv ivd = bound(sub, inside);
+		ValueDiv ovd = bound(p.getBody(), outside);
+		modelToControl(p);
+
+		inside.setName("b");
+		outside.setName("b");
+		new DefaultBindingHandler(sub).modelToControl();
+		Assert.assertEquals("b", ivd.getValue());
+		Assert.assertEquals("a", ovd.getValue());
+
+		//-- The outside binding is still dirty for the page, the inside one is clean.
+		inside.m_getCount = 0;
+		modelToControl(p);
+		Assert.assertEquals("b", ovd.getValue());
+		Assert.assertEquals(0, inside.m_getCount);
+
+		ivd.setValue("c");
+		ovd.setValue("c");
+		m_setOrder.clear();
+		new DefaultBindingHandler(sub).controlToModel();
+		Assert.assertEquals("[inside]", m_setOrder.toString());
+	}
+
+	/**
+	 * Listeners are removed when a model is no longer bound, and when the page is destroyed.
+	 */
+	@Test
+	public void testListenerCleanup() throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		ObservedModel om1 = new ObservedModel("om1", "a");
+		ObservedModel om2 = new ObservedModel("om2", "a");
+		ValueDiv vd1 = bound(p.getBody(), om1);
+		bound(p.getBody(), om2);
+		modelToControl(p);
+		Assert.assertEquals(1, om1.m_listeners.size());
+		Assert.assertEquals(1, om2.m_listeners.size());
+
+		vd1.remove();
+		modelToControl(p);
+		Assert.assertEquals(0, om1.m_listeners.size());
+		Assert.assertEquals(1, om2.m_listeners.size());
+
+		p.internalGetBindingRegistry().clear();
+		Assert.assertEquals(0, om2.m_listeners.size());
+	}
+
+	/**
+	 * A model that outlives its page does not keep the page in memory.
+	 */
+	@Test
+	public void testModelDoesNotPinPage() throws Exception {
+		ObservedModel om = new ObservedModel("om", "a");
+		WeakReference<Page> ref = createUnreachablePage(om);
+		Assert.assertEquals(1, om.m_listeners.size());
+		for(int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		Assert.assertNull("The observed model keeps the page in memory", ref.get());
+
+		//-- The next event removes the orphaned listener.
+		om.setName("b");
+		Assert.assertEquals(0, om.m_listeners.size());
+	}
+
+	static private WeakReference<Page> createUnreachablePage(ObservedModel om) throws Exception {
+		Page p = new Page(new UrlPage());
+		bound(p.getBody(), om);
+		modelToControl(p);
+		return new WeakReference<>(p);
+	}
+}
@@ -0,0 +1,81 @@
+package to.etc.domui.component.delayed;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the global and per-session limits and the priority order of the async executor.
+ */
+public class TestAsyncExecutor {
+	@Test
+	public void testLimits() throws Exception {
+		AsyncExecutor x = new AsyncExecutor();
+		x.configure(4, 2, false);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		AtomicInteger[] perSession = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+		AtomicInteger maxPerSession = new AtomicInteger();
+		int count = 60;
+		CountDownLatch done = new CountDownLatch(count);
+		for(int i = 0; i < count; i++) {
+			AtomicInteger session = perSession[i % perSession.length];
+			x.submit(session, 0, () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				maxPerSession.accumulateAndGet(session.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(2);
+				} catch(InterruptedException ignored) {
+				}
+				session.decrementAndGet();
+				running.decrementAndGet();
+				done.countDown();
+			});
+		}
+		Assert.assertTrue(done.await(20, TimeUnit.SECONDS));
+		Assert.assertTrue("global limit exceeded: " + maxRunning.get(), maxRunning.get() <= 4);
+		Assert.assertTrue("session limit exceeded: " + maxPerSession.get(), maxPerSession.get() <= 2);
+		waitIdle(x);
+		Assert.assertEquals(count, x.getCompletedCount());
+		Assert.assertEquals(0, x.getQueueDepth());
+		x.terminate();
+	}
+
+	@Test
+	public void testPriority() throws Exception {
+		AsyncExecutor x = new AsyncExecutor();
+		x.configure(1, 1, false);
+		CountDownLatch blocker = new CountDownLatch(1);
+		x.submit(null, 0, () -> {
+			try {
+				blocker.await();
+			} catch(InterruptedException ignored) {
+			}
+		});
+		List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch done = new CountDownLatch(3);
+		for(int prio : new int[]{1, 5, 3}) {
+			x.submit(null, prio, () -> {
+				order.add(Integer.valueOf(prio));
+				done.countDown();
+			});
+		}
+		Assert.assertEquals(3, x.getQueueDepth());
+		blocker.countDown();
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals("[5, 3, 1]", order.toString());
+		x.terminate();
+	}
+
+	static private void waitIdle(AsyncExecutor x) throws InterruptedException {
+		long ets = System.currentTimeMillis() + 10000;
+		while(x.getRunningCount() > 0 && System.currentTimeMillis() < ets)
+			Thread.sleep(5);
+	}
+}
@@ -0,0 +1,146 @@
+package to.etc.domui.component.meta;
+
+import to.etc.util.MethodAccessors;
+
+import java.lang.reflect.Method;
+
+/**
+ * Compares {@link PropertyMetaModel#getValue(Object)}, which uses generated accessors, with the
+ * Method.invoke call it used before. It mimics rendering a 200 row by 20 column table: every
+ * "render" reads 20 different properties of 200 beans, so that both the reflective and the generated
+ * call sites see many targets, like they do in a real table. Run from the IDE; it is not a unit test.
+ */
+public class PropertyAccessBenchmark {
+	static private final int ROWS = 200;
+
+	static private final int COLS = 20;
+
+	static private final int RENDERS = 20000;
+
+	static public class Row {
+		private final int m_id;
+
+		public Row(int id) {
+			m_id = id;
+		}
+
+		public int getP0() {
+			return m_id + 0;
+		}
+
+		public int getP1() {
+			return m_id + 1;
+		}
+
+		public int getP2() {
+			return m_id + 2;
+		}
+
+		public int getP3() {
+			return m_id + 3;
+		}
+
+		public int getP4() {
+			return m_id + 4;
+		}
+
+		public int getP5() {
+			return m_id + 5;
+		}
+
+		public int getP6() {
+			return m_id + 6;
+		}
+
+		public int getP7() {
+			return m_id + 7;
+		}
+
+		public int getP8() {
+			return m_id + 8;
+		}
+
+		public int getP9() {
+			return m_id + 9;
+		}
+
+		public int getP10() {
+			return m_id + 10;
+		}
+
+		public int getP11() {
+			return m_id + 11;
+		}
+
+		public int getP12() {
+			return m_id + 12;
+		}
+
+		public int getP13() {
+			return m_id + 13;
+		}
+
+		public int getP14() {
+			return m_id + 14;
+		}
+
+		public int getP15() {
+			return m_id + 15;
+		}
+
+		public int getP16() {
+			return m_id + 16;
+		}
+
+		public int getP17() {
+			return m_id + 17;
+		}
+
+		public int getP18() {
+			return m_id + 18;
+		}
+
+		public int getP19() {
+			return m_id + 19;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Row[] rows = new Row[ROWS];
+		for(int i = 0; i < ROWS; i++)
+			rows[i] = new Row(i);
+		PropertyMetaModel<?>[] pmms = new PropertyMetaModel<?>[COLS];
+		Method[] getters = new Method[COLS];
+		for(int c = 0; c < COLS; c++) {
+			pmms[c] = MetaManager.getPropertyMeta(Row.class, "p" + c);
+			getters[c] = Row.class.getMethod("getP" + c);
+		}
+		System.out.println("Generated getter available: " + (MethodAccessors.createGetter(getters[0]) != null));
+
+		for(int round = 0; round < 5; round++) {
+			long sum = 0;
+			long tr = System.nanoTime();
+			for(int r = 0; r < RENDERS; r++) {
+				for(Row row : rows) {
+					for(Method m : getters) {
+						m.setAccessible(true);
+						sum += ((Integer) m.invoke(row)).intValue();
+					}
+				}
+			}
+			tr = System.nanoTime() - tr;
+
+			long tg = System.nanoTime();
+			for(int r = 0; r < RENDERS; r++) {
+				for(Row row : rows) {
+					for(PropertyMetaModel<?> pmm : pmms)
+						sum += ((Integer) pmm.getValue(row)).intValue();
+				}
+			}
+			tg = System.nanoTime() - tg;
+			double calls = (double) RENDERS * ROWS * COLS;
+			System.out.println(String.format("round %d: reflection %.2f ns/call, getValue %.2f ns/call (%.2fx faster); per render %.1f vs %.1f us (%d)", round, tr / calls, tg / calls,
+				(double) tr / tg, tr / 1000.0 / RENDERS, tg / 1000.0 / RENDERS, sum));
+		}
+	}
+}
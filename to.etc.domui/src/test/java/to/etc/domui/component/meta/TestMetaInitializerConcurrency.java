@@ -0,0 +1,92 @@
+package to.etc.domui.component.meta;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.junit.Assert;
+import org.junit.Test;
+import to.etc.domui.component.meta.impl.DefaultClassMetaModel;
+import to.etc.domui.component.meta.init.IClassMetaProvider;
+import to.etc.domui.component.meta.init.MetaInitContext;
+import to.etc.domui.component.meta.init.MetaInitializer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up a metamodel while another thread is still initializing a model that it refers to, and checks
+ * that the lookup never returns a model that can reach an incomplete model.
+ */
+public class TestMetaInitializerConcurrency {
+	static public class SlowChild {
+		public String getName() {
+			return null;
+		}
+	}
+
+	static public class Parent {
+		public SlowChild getChild() {
+			return null;
+		}
+	}
+
+	/** Counted down when the initialization of SlowChild is blocked. */
+	static private final CountDownLatch m_childBlocked = new CountDownLatch(1);
+
+	/** Releases the initialization of SlowChild. */
+	static private final CountDownLatch m_releaseChild = new CountDownLatch(1);
+
+	static private volatile boolean m_childComplete;
+
+	/**
+	 * Runs after all other providers, and blocks the initialization of SlowChild until released.
+	 */
+	static private final class BlockingProvider implements IClassMetaProvider<DefaultClassMetaModel> {
+		@Override
+		public void provide(@NonNull MetaInitContext context, @NonNull DefaultClassMetaModel model) throws Exception {
+			if(model.getActualClass() != SlowChild.class)
+				return;
+			m_childBlocked.countDown();
+			m_releaseChild.await(10, TimeUnit.SECONDS);
+			m_childComplete = true;
+		}
+	}
+
+	@Test
+	public void testLookupDuringInitialization() throws Exception {
+		MetaInitializer.register(Integer.MAX_VALUE, new BlockingProvider());
+
+		Throwable[] error = new Throwable[1];
+		Thread initializer = new Thread(() -> {
+			try {
+				MetaManager.findClassMeta(Parent.class);
+			} catch(Throwable x) {
+				error[0] = x;
+			}
+		});
+		initializer.start();
+		Assert.assertTrue("SlowChild's initialization did not start", m_childBlocked.await(10, TimeUnit.SECONDS));
+
+		//-- Parent itself is done now, but SlowChild is not: a lookup must wait for it.
+		boolean[] childCompleteAtLookup = new boolean[1];
+		ClassMetaModel[] found = new ClassMetaModel[1];
+		Thread reader = new Thread(() -> {
+			found[0] = MetaManager.findClassMeta(Parent.class);
+			childCompleteAtLookup[0] = m_childComplete;
+		});
+		reader.start();
+		reader.join(500);
+		m_releaseChild.countDown();
+		reader.join(10_000);
+		initializer.join(10_000);
+		Assert.assertNull(error[0]);
+
+		ClassMetaModel cmm = found[0];
+		Assert.assertNotNull(cmm);
+		Assert.assertTrue("Lookup returned a model referring to a partially initialized model", childCompleteAtLookup[0]);
+		PropertyMetaModel<?> child = cmm.findProperty("child");
+		Assert.assertNotNull(child);
+		ClassMetaModel childModel = child.getValueModel();
+		Assert.assertNotNull(childModel);
+		Assert.assertSame(childModel, MetaManager.findClassMeta(SlowChild.class));
+		Assert.assertNotNull(childModel.findProperty("name"));
+	}
+}
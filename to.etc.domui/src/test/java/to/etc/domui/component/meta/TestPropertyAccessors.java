@@ -0,0 +1,90 @@
+package to.etc.domui.component.meta;
+
+import org.junit.Assert;
+import org.junit.Test;
+import to.etc.domui.component.meta.impl.PropertyValueInvalidException;
+
+/**
+ * Checks that property access through the generated accessors behaves like reflection did,
+ * also for primitives, bad values and exceptions thrown by the accessors.
+ */
+public class TestPropertyAccessors {
+	static public class Bean {
+		private String m_name;
+
+		private int m_count;
+
+		public String getName() {
+			return m_name;
+		}
+
+		public void setName(String name) {
+			m_name = name;
+		}
+
+		public int getCount() {
+			return m_count;
+		}
+
+		public void setCount(int count) {
+			m_count = count;
+		}
+
+		public String getFailing() throws Exception {
+			throw new java.io.IOException("failing");
+		}
+	}
+
+	/** A non-public class, which the accessors must handle too. */
+	static class HiddenBean extends Bean {
+		private long m_size;
+
+		public long getSize() {
+			return m_size;
+		}
+
+		public void setSize(long size) {
+			m_size = size;
+		}
+	}
+
+	static private <T> PropertyMetaModel<T> pmm(Class<?> clz, String name) {
+		return (PropertyMetaModel<T>) MetaManager.getPropertyMeta(clz, name);
+	}
+
+	@Test
+	public void testGetSet() throws Exception {
+		Bean b = new Bean();
+		PropertyMetaModel<String> name = pmm(Bean.class, "name");
+		PropertyMetaModel<Integer> count = pmm(Bean.class, "count");
+		name.setValue(b, "frits");
+		count.setValue(b, Integer.valueOf(12));
+		Assert.assertEquals("frits", name.getValue(b));
+		Assert.assertEquals(Integer.valueOf(12), count.getValue(b));
+		name.setValue(b, null);
+		Assert.assertNull(name.getValue(b));
+
+		HiddenBean hb = new HiddenBean();
+		PropertyMetaModel<Long> size = pmm(HiddenBean.class, "size");
+		size.setValue(hb, Long.valueOf(42));
+		Assert.assertEquals(Long.valueOf(42), size.getValue(hb));
+		Assert.assertEquals(Long.valueOf(42), Long.valueOf(hb.getSize()));
+	}
+
+	@Test(expected = PropertyValueInvalidException.class)
+	public void testNullPrimitive() throws Exception {
+		PropertyMetaModel<Integer> count = pmm(Bean.class, "count");
+		count.setValue(new Bean(), null);
+	}
+
+	@Test(expected = PropertyValueInvalidException.class)
+	public void testWrongType() throws Exception {
+		PropertyMetaModel<Object> name = pmm(Bean.class, "name");
+		name.setValue(new Bean(), Integer.valueOf(1));
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void testGetterException() throws Exception {
+		pmm(Bean.class, "failing").getValue(new Bean());
+	}
+}
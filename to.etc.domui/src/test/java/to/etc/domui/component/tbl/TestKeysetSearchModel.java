@@ -0,0 +1,254 @@
+package to.etc.domui.component.tbl;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.junit.Assert;
+import org.junit.Test;
+import to.etc.domui.component.meta.ClassMetaModel;
+import to.etc.domui.component.meta.MetaManager;
+import to.etc.domui.component.tbl.KeysetSearchModel.NullOrder;
+import to.etc.domui.util.db.CriteriaMatchingVisitor;
+import to.etc.webapp.qsql.QJdbcId;
+import to.etc.webapp.query.QCriteria;
+import to.etc.webapp.query.QDataContext;
+import to.etc.webapp.query.QDataContextFactory;
+import to.etc.webapp.query.QEventListenerSet;
+import to.etc.webapp.query.QOrder;
+import to.etc.webapp.query.QQueryExecutorRegistry;
+import to.etc.webapp.query.QSelection;
+import to.etc.webapp.query.QSortOrderDirection;
+import to.etc.webapp.testsupport.TestDataContextStub;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pages through a result sorted on a property that contains nulls, using an in-memory "database"
+ * that sorts nulls like the configured {@link NullOrder}.
+ */
+public class TestKeysetSearchModel {
+	static public class Row {
+		private final Long m_id;
+
+		private final String m_name;
+
+		public Row(long id, String name) {
+			m_id = Long.valueOf(id);
+			m_name = name;
+		}
+
+		@QJdbcId
+		public Long getId() {
+			return m_id;
+		}
+
+		public String getName() {
+			return m_name;
+		}
+
+		@Override
+		public String toString() {
+			return m_id + ":" + m_name;
+		}
+	}
+
+	/**
+	 * Executes criteria on a list, sorting nulls the way the "database" does.
+	 */
+	static private final class ListDataContext extends TestDataContextStub {
+		private final List<Row> m_rows;
+
+		private final NullOrder m_dbNullOrder;
+
+		int m_offsetQueries;
+
+		int m_seekQueries;
+
+		ListDataContext(List<Row> rows, NullOrder dbNullOrder) {
+			m_rows = rows;
+			m_dbNullOrder = dbNullOrder;
+		}
+
+		@Override
+		public @NonNull <T> List<T> query(@NonNull QCriteria<T> q) throws Exception {
+			ClassMetaModel cmm = MetaManager.findClassMeta(Row.class);
+			List<Row> res = new ArrayList<>();
+			for(Row r : m_rows) {
+				CriteriaMatchingVisitor<Row> v = new CriteriaMatchingVisitor<>(r, cmm);
+				q.visit(v);
+				if(v.isMatching())
+					res.add(r);
+			}
+			res.sort(comparator(q.getOrder(), m_dbNullOrder));
+			if(q.getStart() > 0)
+				m_offsetQueries++;
+			else if(q.getRestrictions() != null)
+				m_seekQueries++;
+			int from = Math.min(q.getStart(), res.size());
+			int to = q.getLimit() > 0 ? Math.min(res.size(), from + q.getLimit()) : res.size();
+			return (List<T>) new ArrayList<>(res.subList(from, to));
+		}
+
+		@Override
+		public Object[] queryOne(@NonNull QSelection<?> sel) throws Exception {
+			return new Object[]{Integer.valueOf(m_rows.size())};
+		}
+
+		@Override
+		public @NonNull Connection getConnection() throws Exception {
+			DatabaseMetaData md = (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DatabaseMetaData.class}, (proxy, method, args) -> {
+				switch(method.getName()) {
+					default:
+						throw new IllegalStateException("Not implemented: " + method);
+					case "nullsAreSortedHigh":
+						return Boolean.valueOf(m_dbNullOrder == NullOrder.HIGH);
+					case "nullsAreSortedLow":
+						return Boolean.valueOf(m_dbNullOrder == NullOrder.LOW);
+					case "nullsAreSortedAtStart":
+						return Boolean.valueOf(m_dbNullOrder == NullOrder.FIRST);
+					case "nullsAreSortedAtEnd":
+						return Boolean.valueOf(m_dbNullOrder == NullOrder.LAST);
+				}
+			});
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+				if(method.getName().equals("getMetaData"))
+					return md;
+				throw new IllegalStateException("Not implemented: " + method);
+			});
+		}
+	}
+
+	static private Comparator<Row> comparator(List<QOrder> order, NullOrder nullOrder) {
+		return (a, b) -> {
+			for(QOrder o : order) {
+				boolean desc = o.getDirection() == QSortOrderDirection.DESC;
+				Comparable<Object> va = (Comparable<Object>) value(a, o.getProperty());
+				Comparable<Object> vb = (Comparable<Object>) value(b, o.getProperty());
+				int res;
+				if(va == null && vb == null)
+					res = 0;
+				else if(va == null || vb == null) {
+					boolean nullHigh = nullOrder == NullOrder.HIGH || nullOrder == NullOrder.LOW
+						? nullOrder == NullOrder.HIGH
+						: (nullOrder == NullOrder.LAST) != desc;
+					res = (va == null) == nullHigh ? 1 : -1;
+				} else
+					res = va.compareTo(vb);
+				if(res != 0)
+					return desc ? -res : res;
+			}
+			return 0;
+		};
+	}
+
+	static private Object value(Row r, String property) {
+		return "id".equals(property) ? r.getId() : r.getName();
+	}
+
+	/**
+	 * 23 rows where every 4th name is null, so the nulls span a page boundary of 5 rows whatever the order.
+	 */
+	static private List<Row> createRows() {
+		List<Row> rows = new ArrayList<>();
+		for(int i = 1; i <= 23; i++)
+			rows.add(new Row(i, i % 4 == 0 ? null : "n" + (i % 5)));
+		return rows;
+	}
+
+	static private KeysetSearchModel<Row> createModel(ListDataContext dc) {
+		QDataContextFactory factory = new QDataContextFactory() {
+			@Override
+			public QDataContext getDataContext() throws Exception {
+				return dc;
+			}
+
+			@Override
+			public QEventListenerSet getEventListeners() {
+				throw new IllegalStateException("Not implemented");
+			}
+
+			@Override
+			public QQueryExecutorRegistry getQueryHandlerList() {
+				throw new IllegalStateException("Not implemented");
+			}
+		};
+		KeysetSearchModel<Row> model = new KeysetSearchModel<>(factory, QCriteria.create(Row.class));
+		model.setBlockSize(5);
+		return model;
+	}
+
+	/**
+	 * Read all pages in order, and check that they contain all rows in database order.
+	 */
+	static private void checkPaging(NullOrder dbNullOrder, boolean descending) throws Exception {
+		List<Row> rows = createRows();
+		ListDataContext dc = new ListDataContext(rows, dbNullOrder);
+		KeysetSearchModel<Row> model = createModel(dc);
+		model.sortOn("name", descending);
+		Assert.assertEquals(23, model.getRows());
+
+		List<Row> expected = new ArrayList<>(rows);
+		List<QOrder> order = new ArrayList<>();
+		order.add(descending ? QOrder.descending("name") : QOrder.ascending("name"));
+		order.add(QOrder.ascending("id"));
+		expected.sort(comparator(order, dbNullOrder));
+
+		List<Row> actual = new ArrayList<>();
+		for(int page = 0; page < 5; page++)
+			actual.addAll(model.getItems(page * 5, page * 5 + 5));
+		String what = dbNullOrder + (descending ? " desc" : " asc");
+		Assert.assertEquals(what, expected.toString(), actual.toString());
+		if(dbNullOrder == NullOrder.UNKNOWN) {
+			Assert.assertEquals(what, 0, dc.m_seekQueries);
+		} else {
+			Assert.assertEquals(what, 0, dc.m_offsetQueries);
+			Assert.assertEquals(what, dbNullOrder, model.getNullOrder());
+		}
+	}
+
+	@Test
+	public void testNullsSortedHigh() throws Exception {
+		checkPaging(NullOrder.HIGH, false);
+		checkPaging(NullOrder.HIGH, true);
+	}
+
+	@Test
+	public void testNullsSortedLow() throws Exception {
+		checkPaging(NullOrder.LOW, false);
+		checkPaging(NullOrder.LOW, true);
+	}
+
+	@Test
+	public void testNullsAtStartOrEnd() throws Exception {
+		checkPaging(NullOrder.FIRST, false);
+		checkPaging(NullOrder.FIRST, true);
+		checkPaging(NullOrder.LAST, false);
+		checkPaging(NullOrder.LAST, true);
+	}
+
+	/**
+	 * When the null order is not known a nullable sort uses offsets.
+	 */
+	@Test
+	public void testUnknownNullOrderUsesOffsets() throws Exception {
+		checkPaging(NullOrder.UNKNOWN, false);
+	}
+
+	/**
+	 * Sorting on the primary key only never needs the database's null order.
+	 */
+	@Test
+	public void testNotNullSortSeeks() throws Exception {
+		ListDataContext dc = new ListDataContext(createRows(), NullOrder.UNKNOWN);
+		KeysetSearchModel<Row> model = createModel(dc);
+		List<Row> all = model.getItems(0, 23);
+		Assert.assertEquals(23, all.size());
+		for(int i = 0; i < 23; i++)
+			Assert.assertEquals(Long.valueOf(i + 1), all.get(i).getId());
+		Assert.assertEquals(0, dc.m_offsetQueries);
+		Assert.assertNull(model.getNullOrder());
+	}
+}
@@ -0,0 +1,196 @@
+package to.etc.domui.component.tbl;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.dom.css.DisplayType;
+import to.etc.domui.dom.html.NodeBase;
+import to.etc.domui.dom.html.Page;
+import to.etc.domui.dom.html.TBody;
+import to.etc.domui.dom.html.TD;
+import to.etc.domui.dom.html.TR;
+import to.etc.domui.dom.html.Table;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.testsupport.TUtilDomUI;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the row window of a virtual {@link ScrollableDataTable}: where it moves, how big it is, the
+ * spacer sizes, and that rows map to the right model index.
+ */
+@SuppressWarnings("deprecation")
+public class TestScrollableDataTable {
+	static private final int ROW_HEIGHT = 20;
+
+	static private final class TextRenderer implements IRowRenderer<String> {
+		@Override
+		public void beforeQuery(@NonNull TableModelTableBase<String> tbl) throws Exception {
+		}
+
+		@Override
+		public void renderRow(@NonNull TableModelTableBase<String> tbl, @NonNull ColumnContainer<String> cc, int index, @NonNull String instance) throws Exception {
+			cc.add(instance);
+		}
+
+		@Override
+		public void renderHeader(@NonNull TableModelTableBase<String> tbl, @NonNull HeaderContainer<String> cc) throws Exception {
+			cc.add("Name");
+		}
+
+		@Override
+		public ICellClicked<String> getRowClicked() {
+			return null;
+		}
+	}
+
+	@BeforeClass
+	static public void setUp() throws Exception {
+		TUtilDomUI.getApplication();
+	}
+
+	static private List<String> createList(int count) {
+		List<String> list = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+			list.add("row " + i);
+		return list;
+	}
+
+	static private ScrollableDataTable<String> createTable(SimpleListModel<String> model) throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		ScrollableDataTable<String> dt = new ScrollableDataTable<>(model, new TextRenderer());
+		dt.setBatchSize(10);
+		dt.setRowHeight(ROW_HEIGHT);
+		dt.setVirtual(true);
+		p.getBody().add(dt);
+		dt.build();
+		return dt;
+	}
+
+	static private TBody body(ScrollableDataTable<String> dt) {
+		return ((Table) dt.getChild(0)).getBody();
+	}
+
+	static private int spacerHeight(TR spacer) {
+		if(spacer.getDisplay() == DisplayType.NONE)
+			return 0;
+		String h = ((TD) spacer.getChild(0)).getHeight();
+		return Integer.parseInt(h.substring(0, h.length() - 2));
+	}
+
+	static private String text(NodeBase row) {
+		return ((TD) ((TR) row).getChild(0)).getTextContents();
+	}
+
+	/**
+	 * Check that the table contains the top spacer, the rows for the window in model order, and the bottom
+	 * spacer, and that the spacers have the height of the rows they replace.
+	 */
+	static private void checkWindow(ScrollableDataTable<String> dt, List<String> list, int start, int end) {
+		Assert.assertEquals("window start", start, dt.getWindowStart());
+		Assert.assertEquals("window end", end, dt.getWindowEnd());
+		TBody b = body(dt);
+		Assert.assertEquals(end - start + 2, b.getChildCount());
+		Assert.assertEquals(start * ROW_HEIGHT, spacerHeight((TR) b.getChild(0)));
+		Assert.assertEquals((list.size() - end) * ROW_HEIGHT, spacerHeight((TR) b.getChild(b.getChildCount() - 1)));
+		for(int i = start; i < end; i++) {
+			Assert.assertEquals("Row for model index " + i, list.get(i), text(b.getChild(i - start + 1)));
+		}
+		Table t = (Table) dt.getChild(0);
+		Assert.assertEquals(Integer.toString(start), t.getSpecialAttribute("vstart"));
+		Assert.assertEquals(Integer.toString(end), t.getSpecialAttribute("vend"));
+		Assert.assertEquals(Integer.toString(list.size()), t.getSpecialAttribute("vrows"));
+	}
+
+	/**
+	 * Before the browser reports its viewport the window is two batches at the start.
+	 */
+	@Test
+	public void testInitialWindow() throws Exception {
+		List<String> list = createList(100);
+		ScrollableDataTable<String> dt = createTable(new SimpleListModel<>(list));
+		checkWindow(dt, list, 0, 20);
+	}
+
+	/**
+	 * The window spans a viewport above and below the visible rows, and is clamped at both ends.
+	 */
+	@Test
+	public void testWindowFollowsViewport() throws Exception {
+		List<String> list = createList(100);
+		ScrollableDataTable<String> dt = createTable(new SimpleListModel<>(list));
+		dt.scrollTo(40, 25, 8);
+		Assert.assertEquals(24, dt.getWindowSize());
+		Assert.assertEquals(25, dt.getRowHeight());
+		dt.setRowHeight(ROW_HEIGHT);
+		dt.scrollTo(40, -1, -1);
+		checkWindow(dt, list, 32, 56);
+
+		//-- Moving a bit keeps the rows that stay inside the window.
+		TR kept = (TR) body(dt).getChild(50 - 32 + 1);
+		dt.scrollTo(44, -1, -1);
+		checkWindow(dt, list, 36, 60);
+		Assert.assertSame(kept, body(dt).getChild(50 - 36 + 1));
+
+		dt.scrollTo(95, -1, -1);
+		checkWindow(dt, list, 76, 100);
+		dt.scrollTo(2, -1, -1);
+		checkWindow(dt, list, 0, 24);
+
+		//-- A bigger viewport makes a bigger window.
+		dt.scrollTo(50, -1, 12);
+		checkWindow(dt, list, 38, 74);
+	}
+
+	/**
+	 * Changes to the model map to the right rows inside the window, and only resize the spacer outside it.
+	 */
+	@Test
+	public void testModelChangesInWindow() throws Exception {
+		List<String> list = createList(100);
+		SimpleListModel<String> model = new SimpleListModel<>(list);
+		ScrollableDataTable<String> dt = createTable(model);
+		dt.scrollTo(40, -1, 8);
+		checkWindow(dt, list, 32, 56);
+
+		model.add(45, "new");
+		checkWindow(dt, list, 32, 56);
+		Assert.assertEquals("new", text(body(dt).getChild(45 - 32 + 1)));
+
+		model.delete(33);
+		checkWindow(dt, list, 32, 56);
+
+		list.set(50, "changed");
+		model.modified(50);
+		Assert.assertEquals("changed", text(body(dt).getChild(50 - 32 + 1)));
+
+		model.add("at the end");
+		checkWindow(dt, list, 32, 56);
+	}
+
+	/**
+	 * Deleting every row shows "no results"; adding rows after that starts a fresh window.
+	 */
+	@Test
+	public void testDeleteAllThenAdd() throws Exception {
+		List<String> list = createList(30);
+		SimpleListModel<String> model = new SimpleListModel<>(list);
+		ScrollableDataTable<String> dt = createTable(model);
+		dt.scrollTo(20, -1, 4);
+		checkWindow(dt, list, 16, 28);
+
+		while(list.size() > 0)
+			model.delete(list.size() - 1);
+		Assert.assertFalse(dt.getChild(0) instanceof Table);
+		Assert.assertEquals(0, dt.getWindowStart());
+		Assert.assertEquals(0, dt.getWindowEnd());
+
+		model.add("first");
+		model.add("second");
+		checkWindow(dt, list, 0, 2);
+		dt.scrollTo(0, -1, 4);
+		checkWindow(dt, list, 0, 2);
+	}
+}
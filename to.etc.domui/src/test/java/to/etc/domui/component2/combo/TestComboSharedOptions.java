@@ -0,0 +1,120 @@
+package to.etc.domui.component2.combo;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.dom.html.NodeBase;
+import to.etc.domui.dom.html.Page;
+import to.etc.domui.dom.html.Select;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.server.DomApplication;
+import to.etc.domui.state.UIContext;
+import to.etc.domui.testsupport.TUtilDomUI;
+import to.etc.domui.testsupport.TestRequestContext;
+import to.etc.domui.util.ICachedListMaker;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks a {@link ComboComponentBase2} with shared options: the select only contains the "unselected"
+ * option, the selection is passed in data-sel, and option values created by the browser map back to
+ * list items.
+ */
+public class TestComboSharedOptions {
+	static private final class Maker implements ICachedListMaker<String> {
+		@Override
+		public String getCacheKey() {
+			return "test-shared-combo";
+		}
+
+		@Override
+		public List<String> createList(DomApplication a) throws Exception {
+			return Arrays.asList("a", "b", "c");
+		}
+	}
+
+	@BeforeClass
+	static public void setUpClass() throws Exception {
+		TUtilDomUI.getApplication();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		UIContext.internalSet(new TestRequestContext());
+	}
+
+	static private ComboComponentBase2<String, String> createCombo() throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		ComboComponentBase2<String, String> combo = new ComboComponentBase2<>(new Maker());
+		combo.setSharedOptions(true);
+		p.getBody().add(combo);
+		return combo;
+	}
+
+	static private Select select(ComboComponentBase2<?, ?> combo) {
+		for(NodeBase nb : combo) {
+			if(nb instanceof Select)
+				return (Select) nb;
+		}
+		throw new IllegalStateException("No select");
+	}
+
+	@Test
+	public void testSelection() throws Exception {
+		ComboComponentBase2<String, String> combo = createCombo();
+		combo.setValue("b");
+		combo.build();
+		Select sel = select(combo);
+		Assert.assertEquals("Only the unselected option is rendered", 1, sel.getChildCount());
+		Assert.assertNotNull(sel.getSpecialAttribute("data-options"));
+		Assert.assertEquals("1", sel.getSpecialAttribute("data-sel"));
+
+		combo.setValue("c");
+		Assert.assertEquals("2", sel.getSpecialAttribute("data-sel"));
+		combo.setValue(null);
+		Assert.assertEquals("-1", sel.getSpecialAttribute("data-sel"));
+	}
+
+	/**
+	 * The browser sends $index for the options it created; the empty option is a normal node.
+	 */
+	@Test
+	public void testUserInput() throws Exception {
+		ComboComponentBase2<String, String> combo = createCombo();
+		combo.build();
+		Select sel = select(combo);
+
+		Assert.assertTrue(sel.acceptRequestParameter(new String[]{"$2"}));
+		Assert.assertEquals("c", combo.getValue());
+		Assert.assertEquals("2", sel.getSpecialAttribute("data-sel"));
+
+		Assert.assertTrue(sel.acceptRequestParameter(new String[]{"$0"}));
+		Assert.assertEquals("a", combo.getValue());
+
+		Assert.assertTrue(sel.acceptRequestParameter(new String[]{sel.getChild(0).getActualID()}));
+		Assert.assertNull(combo.getValue());
+		Assert.assertEquals("-1", sel.getSpecialAttribute("data-sel"));
+
+		Assert.assertFalse("A bad value selects nothing", sel.acceptRequestParameter(new String[]{"$x"}));
+		Assert.assertNull(combo.getValue());
+	}
+
+	/**
+	 * A custom renderer can hold state, so it only shares its labels when it has a renderer key.
+	 */
+	@Test
+	public void testCustomRenderer() throws Exception {
+		ComboComponentBase2<String, String> combo = createCombo();
+		combo.setContentRenderer((node, object) -> node.add("x" + object));
+		combo.build();
+		Assert.assertEquals("Options are rendered as nodes", 4, select(combo).getChildCount());
+
+		ComboComponentBase2<String, String> keyed = createCombo();
+		keyed.setContentRenderer((node, object) -> node.add("x" + object));
+		keyed.setSharedRendererKey("x-prefixed");
+		keyed.build();
+		Assert.assertEquals(1, select(keyed).getChildCount());
+	}
+}
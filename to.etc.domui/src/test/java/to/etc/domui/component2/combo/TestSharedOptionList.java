@@ -0,0 +1,62 @@
+package to.etc.domui.component2.combo;
+
+import org.junit.Assert;
+import org.junit.Test;
+import to.etc.domui.util.IRenderInto;
+import to.etc.webapp.nls.NlsContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks that shared option lists are rendered once per list instance and locale, and identified by their content.
+ */
+public class TestSharedOptionList {
+	static private final IRenderInto<String> RENDERER = (node, object) -> node.add(object);
+
+	@Test
+	public void testJsonAndSharing() throws Exception {
+		List<String> list = Collections.unmodifiableList(Arrays.asList("a", "say \"hi\"", "back\\slash", "tab\t"));
+		SharedOptionList sol = SharedOptionList.get("test1", list, RENDERER);
+		Assert.assertEquals("[\"a\",\"say \\\"hi\\\"\",\"back\\\\slash\",\"tab\\u0009\"]", new String(sol.getJson(), StandardCharsets.UTF_8));
+		Assert.assertEquals(4, sol.size());
+		Assert.assertSame(sol, SharedOptionList.get("test1", list, RENDERER));
+		Assert.assertSame(sol, SharedOptionList.findById(sol.getId()));
+
+		//-- A new list instance with the same content gets a new instance with the same ID.
+		List<String> copy = Collections.unmodifiableList(Arrays.asList("a", "say \"hi\"", "back\\slash", "tab\t"));
+		SharedOptionList sol2 = SharedOptionList.get("test1", copy, RENDERER);
+		Assert.assertNotSame(sol, sol2);
+		Assert.assertEquals(sol.getId(), sol2.getId());
+
+		SharedOptionList other = SharedOptionList.get("test2", Collections.singletonList("b"), RENDERER);
+		Assert.assertNotEquals(sol.getId(), other.getId());
+		Assert.assertTrue(other.getURL().endsWith(".part/" + other.getId()));
+	}
+
+	/**
+	 * Labels are rendered per locale, as the renderer may translate them.
+	 */
+	@Test
+	public void testLocale() throws Exception {
+		IRenderInto<String> translating = (node, object) -> node.add(object + "-" + NlsContext.getLocale().getLanguage());
+		List<String> list = Collections.unmodifiableList(Arrays.asList("a", "b"));
+		Locale old = NlsContext.getLocale();
+		try {
+			NlsContext.setLocale(Locale.ENGLISH);
+			SharedOptionList en = SharedOptionList.get("test-locale", list, translating);
+			NlsContext.setLocale(Locale.GERMAN);
+			SharedOptionList de = SharedOptionList.get("test-locale", list, translating);
+			Assert.assertNotSame(en, de);
+			Assert.assertEquals("[\"a-de\",\"b-de\"]", new String(de.getJson(), StandardCharsets.UTF_8));
+			NlsContext.setLocale(Locale.ENGLISH);
+			Assert.assertSame(en, SharedOptionList.get("test-locale", list, translating));
+			Assert.assertEquals("[\"a-en\",\"b-en\"]", new String(en.getJson(), StandardCharsets.UTF_8));
+		} finally {
+			NlsContext.setLocale(old);
+		}
+	}
+}
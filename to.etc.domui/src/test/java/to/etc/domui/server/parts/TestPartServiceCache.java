@@ -0,0 +1,144 @@
+package to.etc.domui.server.parts;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.server.DomApplication;
+import to.etc.domui.server.IExtendedParameterInfo;
+import to.etc.domui.util.resources.IResourceDependencyList;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that concurrent requests for the same buffered part share one generation, and
+ * that a failed generation is not cached.
+ */
+public class TestPartServiceCache {
+	static private DomApplication m_application;
+
+	static private final class CountingFactory implements IBufferedPartFactory<String> {
+		final AtomicInteger m_count = new AtomicInteger();
+
+		/** The #of generations that must still fail. */
+		final AtomicInteger m_failures = new AtomicInteger();
+
+		@NonNull
+		@Override
+		public String decodeKey(@NonNull DomApplication application, @NonNull IExtendedParameterInfo param) throws Exception {
+			return param.getInputPath();
+		}
+
+		@Override
+		public void generate(@NonNull PartResponse pr, @NonNull DomApplication da, @NonNull String key, @NonNull IResourceDependencyList rdl) throws Exception {
+			m_count.incrementAndGet();
+			Thread.sleep(100);
+			if(m_failures.getAndDecrement() > 0)
+				throw new IllegalStateException("Generation failed");
+			pr.setMime("text/plain");
+			pr.getOutputStream().write(("part " + key).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@BeforeClass
+	static public void setUp() {
+		m_application = new DomApplication() {
+			@Override
+			public Class<? extends UrlPage> getRootPage() {
+				return UrlPage.class;
+			}
+		};
+	}
+
+	@AfterClass
+	static public void tearDown() {
+		m_application.getAsyncExecutor().terminate();
+	}
+
+	/**
+	 * Ask for the same part from several threads at the same time.
+	 */
+	static private List<Object> getConcurrently(PartService ps, CountingFactory pf, String key, int threads) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		List<Object> results = new ArrayList<>();
+		for(int i = 0; i < threads; i++) {
+			new Thread(() -> {
+				Object res;
+				try {
+					start.await();
+					res = ps.getCachedInstance(pf, key);
+				} catch(Exception x) {
+					res = x;
+				}
+				synchronized(results) {
+					results.add(res);
+				}
+				done.countDown();
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		return results;
+	}
+
+	@Test
+	public void testConcurrentCallersShareGeneration() throws Exception {
+		PartService ps = new PartService(m_application);
+		CountingFactory pf = new CountingFactory();
+		List<Object> results = getConcurrently(ps, pf, "a", 8);
+		Assert.assertEquals(1, pf.m_count.get());
+		for(Object o : results) {
+			Assert.assertTrue(String.valueOf(o), o instanceof PartData);
+			Assert.assertSame(results.get(0), o);
+		}
+		PartCacheStatistics st = ps.getCacheStatistics();
+		Assert.assertEquals(1, st.getMisses());
+		Assert.assertEquals(7, st.getCoalesced() + st.getHits());
+		Assert.assertEquals(1, st.getEntries());
+
+		//-- Later requests are plain hits.
+		Assert.assertSame(results.get(0), ps.getCachedInstance(pf, "a"));
+		Assert.assertEquals(1, pf.m_count.get());
+	}
+
+	@Test
+	public void testFailureIsNotCached() throws Exception {
+		PartService ps = new PartService(m_application);
+		CountingFactory pf = new CountingFactory();
+		pf.m_failures.set(1);
+
+		//-- All callers waiting for the failed generation get its exception,
+		List<Object> results = getConcurrently(ps, pf, "b", 4);
+		Assert.assertEquals(1, pf.m_count.get());
+		for(Object o : results)
+			Assert.assertTrue(String.valueOf(o), o instanceof IllegalStateException);
+		Assert.assertEquals(0, ps.getCacheStatistics().getEntries());
+
+		//-- and the next request generates the part again.
+		PartData pd = ps.getCachedInstance(pf, "b");
+		Assert.assertEquals(2, pf.m_count.get());
+		Assert.assertEquals("part b", new String(pd.getData()[0], 0, pd.getSize(), StandardCharsets.UTF_8));
+		Assert.assertSame(pd, ps.getCachedInstance(pf, "b"));
+		Assert.assertEquals(2, pf.m_count.get());
+	}
+
+	@Test
+	public void testCacheSize() throws Exception {
+		PartService ps = new PartService(m_application);
+		Assert.assertEquals(PartService.DEFAULT_CACHE_SIZE, ps.getCacheSize());
+		ps.setCacheSize(50);						// A part here takes 6 bytes + 32 overhead
+		Assert.assertEquals(50, ps.getCacheStatistics().getMaxSize());
+		CountingFactory pf = new CountingFactory();
+		ps.getCachedInstance(pf, "c");
+		ps.getCachedInstance(pf, "d");
+		Assert.assertEquals(1, ps.getCacheStatistics().getEntries());
+		Assert.assertTrue(ps.getCacheStatistics().getEvictions() > 0);
+	}
+}
@@ -0,0 +1,181 @@
+package to.etc.domui.server.parts;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.server.DomApplication;
+import to.etc.domui.server.IRequestResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Checks content negotiation, ETags and 304 responses for cached parts.
+ */
+public class TestPartServiceResponse {
+	static private DomApplication m_application;
+
+	static private PartService m_service;
+
+	static private final String TEXT;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 200; i++)
+			sb.append("body { color: red; }\n");
+		TEXT = sb.toString();
+	}
+
+	/**
+	 * Records what the part service sends.
+	 */
+	static private final class Response {
+		final Map<String, String> m_requestHeaders = new HashMap<>();
+
+		final List<String> m_headers = new ArrayList<>();
+
+		final ByteArrayOutputStream m_output = new ByteArrayOutputStream();
+
+		int m_status = 200;
+
+		boolean m_outputRequested;
+
+		Response request(String name, String value) {
+			m_requestHeaders.put(name.toLowerCase(), value);
+			return this;
+		}
+
+		IRequestResponse proxy() {
+			return (IRequestResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{IRequestResponse.class}, (proxy, method, args) -> {
+				switch(method.getName()) {
+					default:
+						return null;
+					case "getRequestHeader":
+						return m_requestHeaders.get(((String) args[0]).toLowerCase());
+					case "addHeader":
+						m_headers.add(args[0] + ": " + args[1]);
+						return null;
+					case "setStatus":
+						m_status = ((Integer) args[0]).intValue();
+						return null;
+					case "getOutputStream":
+						m_outputRequested = true;
+						return m_output;
+				}
+			});
+		}
+
+		boolean hasHeader(String header) {
+			return m_headers.contains(header);
+		}
+
+		String header(String name) {
+			for(String h : m_headers) {
+				if(h.startsWith(name + ": "))
+					return h.substring(name.length() + 2);
+			}
+			return null;
+		}
+	}
+
+	@BeforeClass
+	static public void setUp() {
+		m_application = new DomApplication() {
+			@Override
+			public Class<? extends UrlPage> getRootPage() {
+				return UrlPage.class;
+			}
+		};
+		m_service = new PartService(m_application);
+	}
+
+	@AfterClass
+	static public void tearDown() {
+		m_application.getAsyncExecutor().terminate();
+	}
+
+	static private PartData part(String text, String contentType) {
+		byte[] data = text.getBytes(StandardCharsets.UTF_8);
+		return new PartData(new byte[][]{data}, data.length, 0, contentType, null, null);
+	}
+
+	@Test
+	public void testGzipWhenAccepted() throws Exception {
+		PartData cp = part(TEXT, "text/css");
+		Assert.assertNotNull(cp.getGzipData());
+		Response r = new Response().request("Accept-Encoding", "deflate, gzip;q=0.8");
+		m_service.sendPart(cp, r.proxy());
+		Assert.assertEquals(200, r.m_status);
+		Assert.assertTrue(r.hasHeader("Vary: Accept-Encoding"));
+		Assert.assertTrue(r.hasHeader("Content-Encoding: gzip"));
+		Assert.assertEquals(cp.getETag(true), r.header("ETag"));
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try(GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(r.m_output.toByteArray()))) {
+			byte[] buf = new byte[8192];
+			int len;
+			while((len = is.read(buf)) > 0)
+				bos.write(buf, 0, len);
+		}
+		Assert.assertEquals(TEXT, new String(bos.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testPlainWhenNotAccepted() throws Exception {
+		PartData cp = part(TEXT, "text/css");
+		for(String ae : new String[]{null, "identity", "gzip;q=0", "br"}) {
+			Response r = new Response();
+			if(null != ae)
+				r.request("Accept-Encoding", ae);
+			m_service.sendPart(cp, r.proxy());
+			Assert.assertEquals(ae, 200, r.m_status);
+			Assert.assertTrue(ae, r.hasHeader("Vary: Accept-Encoding"));
+			Assert.assertNull(ae, r.header("Content-Encoding"));
+			Assert.assertEquals(ae, cp.getETag(false), r.header("ETag"));
+			Assert.assertEquals(ae, TEXT, new String(r.m_output.toByteArray(), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testNotCompressible() throws Exception {
+		PartData cp = part(TEXT, "image/png");
+		Assert.assertNull(cp.getGzipData());
+		Response r = new Response().request("Accept-Encoding", "gzip");
+		m_service.sendPart(cp, r.proxy());
+		Assert.assertNull(r.header("Content-Encoding"));
+		Assert.assertNull("No Vary for content that has a single representation", r.header("Vary"));
+		Assert.assertEquals(TEXT.length(), r.m_output.size());
+	}
+
+	@Test
+	public void testIfNoneMatch() throws Exception {
+		PartData cp = part(TEXT, "text/css");
+
+		//-- The tag for the gzip variant gives a 304 without content,
+		Response r = new Response().request("Accept-Encoding", "gzip").request("If-None-Match", "\"other\", " + cp.getETag(true));
+		m_service.sendPart(cp, r.proxy());
+		Assert.assertEquals(304, r.m_status);
+		Assert.assertFalse(r.m_outputRequested);
+		Assert.assertEquals(cp.getETag(true), r.header("ETag"));
+		Assert.assertTrue(r.hasHeader("Vary: Accept-Encoding"));
+
+		//-- but not when the browser now gets the other variant.
+		r = new Response().request("If-None-Match", cp.getETag(true));
+		m_service.sendPart(cp, r.proxy());
+		Assert.assertEquals(200, r.m_status);
+		Assert.assertEquals(TEXT.length(), r.m_output.size());
+
+		r = new Response().request("If-None-Match", "*");
+		m_service.sendPart(cp, r.proxy());
+		Assert.assertEquals(304, r.m_status);
+	}
+}
@@ -0,0 +1,159 @@
+package to.etc.domui.state;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.server.DomApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks the per-window locks of an AppSession: windows do not block each other, while the
+ * same window and the full session lock still exclude each other.
+ */
+public class TestAppSessionLocking {
+	static private DomApplication m_application;
+
+	@BeforeClass
+	static public void setUp() {
+		m_application = new DomApplication() {
+			@Override
+			public Class<? extends UrlPage> getRootPage() {
+				return UrlPage.class;
+			}
+		};
+	}
+
+	@AfterClass
+	static public void tearDown() {
+		m_application.getAsyncExecutor().terminate();
+	}
+
+	/**
+	 * Start a thread that takes a lock, signals that, and keeps it until released.
+	 */
+	static private Thread holdLock(Runnable lock, Runnable unlock, CountDownLatch locked, CountDownLatch release) {
+		Thread t = new Thread(() -> {
+			lock.run();
+			locked.countDown();
+			try {
+				release.await();
+			} catch(InterruptedException ignored) {
+			}
+			unlock.run();
+		});
+		t.start();
+		return t;
+	}
+
+	@Test
+	public void testOtherWindowDoesNotBlock() throws Exception {
+		AppSession ses = new AppSession(m_application);
+		CountDownLatch aLocked = new CountDownLatch(1);
+		CountDownLatch aRelease = new CountDownLatch(1);
+		Thread a = holdLock(() -> ses.internalLockWindow("a"), () -> ses.internalUnlockWindow("a"), aLocked, aRelease);
+		Assert.assertTrue(aLocked.await(5, TimeUnit.SECONDS));
+
+		//-- While window a is locked, a request for window b can run.
+		CountDownLatch bLocked = new CountDownLatch(1);
+		CountDownLatch bRelease = new CountDownLatch(1);
+		Thread b = holdLock(() -> ses.internalLockWindow("b"), () -> ses.internalUnlockWindow("b"), bLocked, bRelease);
+		Assert.assertTrue("Window b was blocked by window a", bLocked.await(5, TimeUnit.SECONDS));
+		bRelease.countDown();
+		aRelease.countDown();
+		a.join();
+		b.join();
+	}
+
+	@Test
+	public void testSameWindowBlocks() throws Exception {
+		AppSession ses = new AppSession(m_application);
+		CountDownLatch aLocked = new CountDownLatch(1);
+		CountDownLatch aRelease = new CountDownLatch(1);
+		Thread a = holdLock(() -> ses.internalLockWindow("a"), () -> ses.internalUnlockWindow("a"), aLocked, aRelease);
+		Assert.assertTrue(aLocked.await(5, TimeUnit.SECONDS));
+
+		CountDownLatch a2Locked = new CountDownLatch(1);
+		CountDownLatch a2Release = new CountDownLatch(1);
+		Thread a2 = holdLock(() -> ses.internalLockWindow("a"), () -> ses.internalUnlockWindow("a"), a2Locked, a2Release);
+		Assert.assertFalse("A second request for the same window was not blocked", a2Locked.await(200, TimeUnit.MILLISECONDS));
+		aRelease.countDown();
+		Assert.assertTrue(a2Locked.await(5, TimeUnit.SECONDS));
+		a2Release.countDown();
+		a.join();
+		a2.join();
+	}
+
+	@Test
+	public void testSessionLockExcludesWindows() throws Exception {
+		AppSession ses = new AppSession(m_application);
+		CountDownLatch aLocked = new CountDownLatch(1);
+		CountDownLatch aRelease = new CountDownLatch(1);
+		Thread a = holdLock(() -> ses.internalLockWindow("a"), () -> ses.internalUnlockWindow("a"), aLocked, aRelease);
+		Assert.assertTrue(aLocked.await(5, TimeUnit.SECONDS));
+
+		//-- The session lock waits for the window lock,
+		CountDownLatch sLocked = new CountDownLatch(1);
+		CountDownLatch sRelease = new CountDownLatch(1);
+		Thread s = holdLock(ses::internalLockSession, ses::internalUnlockSession, sLocked, sRelease);
+		Assert.assertFalse("The session lock was granted while a window was locked", sLocked.await(200, TimeUnit.MILLISECONDS));
+
+		//-- and while it waits no new window locks are granted.
+		CountDownLatch bLocked = new CountDownLatch(1);
+		CountDownLatch bRelease = new CountDownLatch(1);
+		Thread b = holdLock(() -> ses.internalLockWindow("b"), () -> ses.internalUnlockWindow("b"), bLocked, bRelease);
+		Assert.assertFalse("A window lock was granted while the session lock was waiting", bLocked.await(200, TimeUnit.MILLISECONDS));
+
+		aRelease.countDown();
+		Assert.assertTrue(sLocked.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(1, bLocked.getCount());
+		sRelease.countDown();
+		Assert.assertTrue(bLocked.await(5, TimeUnit.SECONDS));
+		bRelease.countDown();
+		a.join();
+		s.join();
+		b.join();
+	}
+
+	@Test
+	public void testWindowMapChangesSerialize() throws Exception {
+		AppSession ses = new AppSession(m_application);
+		int threads = 4;
+		int count = 200;
+		List<Thread> list = new ArrayList<>();
+		List<String> ids = new ArrayList<>();
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		for(int i = 0; i < threads; i++) {
+			String wid = "w" + i;
+			Thread t = new Thread(() -> {
+				ses.internalLockWindow(wid);
+				try {
+					for(int j = 0; j < count; j++) {
+						WindowSession ws = ses.createWindowSession();
+						synchronized(ids) {
+							ids.add(ws.getWindowID());
+						}
+					}
+				} catch(Throwable x) {
+					error.set(x);
+				} finally {
+					ses.internalUnlockWindow(wid);
+				}
+			});
+			list.add(t);
+			t.start();
+		}
+		for(Thread t : list)
+			t.join();
+		Assert.assertNull(error.get());
+		Assert.assertEquals(threads * count, ids.size());
+		for(String id : ids)
+			Assert.assertNotNull("Window session " + id + " was lost", ses.findWindowSession(id));
+	}
+}
@@ -0,0 +1,55 @@
+package to.etc.domui.state;
+
+import org.junit.Assert;
+import org.junit.Test;
+import to.etc.domui.component.delayed.AsyncExecutor;
+
+/**
+ * Checks that a push request waiting for asynchronous results is released in time.
+ */
+public class TestDelayedActivitiesManager {
+	@Test
+	public void testWaitTimesOut() throws Exception {
+		DelayedActivitiesManager dm = new DelayedActivitiesManager(new AsyncExecutor(), new Object());
+		long ts = System.currentTimeMillis();
+		dm.waitForChanges(200, 10000);
+		ts = System.currentTimeMillis() - ts;
+		Assert.assertTrue("waited " + ts, ts >= 190 && ts < 5000);
+	}
+
+	@Test
+	public void testRequestUpdateReleasesWait() throws Exception {
+		DelayedActivitiesManager dm = new DelayedActivitiesManager(new AsyncExecutor(), new Object());
+		new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch(InterruptedException ignored) {
+			}
+			dm.requestUpdate();
+		}).start();
+		long ts = System.currentTimeMillis();
+		dm.waitForChanges(20000, 20000);
+		ts = System.currentTimeMillis() - ts;
+		Assert.assertTrue("waited " + ts, ts < 10000);
+
+		//-- The request is consumed by the wait.
+		ts = System.currentTimeMillis();
+		dm.waitForChanges(100, 100);
+		Assert.assertTrue(System.currentTimeMillis() - ts >= 90);
+	}
+
+	@Test
+	public void testTerminateReleasesWait() throws Exception {
+		DelayedActivitiesManager dm = new DelayedActivitiesManager(new AsyncExecutor(), new Object());
+		new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch(InterruptedException ignored) {
+			}
+			dm.terminate();
+		}).start();
+		long ts = System.currentTimeMillis();
+		dm.waitForChanges(20000, 20000);
+		Assert.assertTrue(System.currentTimeMillis() - ts < 10000);
+	}
+}
@@ -0,0 +1,135 @@
+package to.etc.domui.test.delta;
+
+import org.junit.Assert;
+import org.junit.Test;
+import to.etc.domui.dom.html.Div;
+import to.etc.domui.dom.html.NodeBase;
+import to.etc.domui.dom.html.Page;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.test.DirtyNodeChecker;
+import to.etc.domui.testsupport.TUtilDomUI;
+
+/**
+ * Checks the page's tree change journal, which tells the delta renderer which nodes were
+ * present before the first tree change of a request.
+ */
+public class TestChangeJournal {
+	private final TestDelta m_render = new TestDelta();
+
+	/**
+	 * Create a rendered page with two containers of 3 divs each.
+	 */
+	private Page createRenderedPage() throws Exception {
+		Page p = TUtilDomUI.createPage(UrlPage.class);
+		for(int c = 0; c < 2; c++) {
+			Div container = new Div();
+			p.getBody().add(container);
+			for(int i = 0; i < 3; i++) {
+				Div d = new Div();
+				d.setText("line " + c + "." + i);
+				container.add(d);
+			}
+		}
+		m_render.getFullRenderText(p);
+		return p;
+	}
+
+	static private Div container(Page p, int ix) {
+		return (Div) p.getBody().getChild(ix);
+	}
+
+	/**
+	 * Render the delta, and check that everything is clean after it.
+	 */
+	private String renderDelta(Page p) throws Exception {
+		String render = m_render.getDeltaRenderText(p);
+		p.getBody().visit(new DirtyNodeChecker());
+		Assert.assertFalse("The journal was not cleared by rendering", p.hasTreeChanges());
+		return render;
+	}
+
+	@Test
+	public void testNoChanges() throws Exception {
+		Page p = createRenderedPage();
+		Assert.assertFalse(p.hasTreeChanges());
+		container(p, 0).getChild(0).setCssClass("changed");		// Attribute changes are not tree changes
+		Assert.assertFalse(p.hasTreeChanges());
+		renderDelta(p);
+	}
+
+	@Test
+	public void testAdd() throws Exception {
+		Page p = createRenderedPage();
+		String existing = container(p, 0).getChild(1).getActualID();
+		Div d = new Div();
+		d.setText("new");
+		container(p, 0).add(1, d);
+		Assert.assertTrue(p.hasTreeChanges());
+		Assert.assertFalse(p.wasPresentBeforeChange(d.getActualID()));
+		Assert.assertTrue(p.wasPresentBeforeChange(existing));
+		Assert.assertTrue(p.wasPresentBeforeChange(container(p, 1).getActualID()));
+		String render = renderDelta(p);
+		Assert.assertTrue(render, render.contains("new"));
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		Page p = createRenderedPage();
+		NodeBase removed = container(p, 0).getChild(2);
+		String id = removed.getActualID();
+		removed.remove();
+		Assert.assertTrue(p.hasTreeChanges());
+		Assert.assertTrue("A removed node existed before the change", p.wasPresentBeforeChange(id));
+		String render = renderDelta(p);
+		Assert.assertTrue(render, render.contains("<remove select=\"#" + id + "\"/>"));
+	}
+
+	@Test
+	public void testMove() throws Exception {
+		Page p = createRenderedPage();
+		NodeBase moved = container(p, 0).getChild(0);
+		String id = moved.getActualID();
+		moved.remove();
+		container(p, 1).add(moved);
+		Assert.assertTrue(p.wasPresentBeforeChange(id));
+		Assert.assertSame(moved, p.findNodeByID(id));
+		String render = renderDelta(p);
+		Assert.assertTrue(render, render.contains("line 0.0"));
+		Assert.assertEquals(2, container(p, 0).getChildCount());
+		Assert.assertEquals(4, container(p, 1).getChildCount());
+	}
+
+	@Test
+	public void testAddThenRemove() throws Exception {
+		Page p = createRenderedPage();
+		Div d = new Div();
+		d.setText("temporary");
+		container(p, 1).add(d);
+		String id = d.getActualID();
+		d.remove();
+		Assert.assertTrue(p.hasTreeChanges());
+		Assert.assertFalse("A node added and removed in the same request was never there", p.wasPresentBeforeChange(id));
+		String render = renderDelta(p);
+		Assert.assertFalse(render, render.contains("temporary"));
+	}
+
+	@Test
+	public void testRemoveThenAddBack() throws Exception {
+		Page p = createRenderedPage();
+		Div c = container(p, 0);
+		NodeBase child = c.getChild(1);
+		String id = child.getActualID();
+		c.removeChild(child);
+		Assert.assertTrue(p.wasPresentBeforeChange(id));
+		c.add(1, child);
+		Assert.assertTrue(p.wasPresentBeforeChange(id));
+
+		//-- A journal that starts in the next request does not know about the previous one.
+		renderDelta(p);
+		Div d = new Div();
+		c.add(d);
+		Assert.assertTrue(p.wasPresentBeforeChange(id));
+		Assert.assertFalse(p.wasPresentBeforeChange(d.getActualID()));
+		renderDelta(p);
+	}
+}
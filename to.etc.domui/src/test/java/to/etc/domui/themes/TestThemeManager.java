@@ -0,0 +1,143 @@
+package to.etc.domui.themes;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import to.etc.domui.dom.html.UrlPage;
+import to.etc.domui.server.DomApplication;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks single builds, eviction and precompiling of themes in the theme manager.
+ */
+public class TestThemeManager {
+	static private DomApplication m_application;
+
+	static private final AtomicInteger m_builds = new AtomicInteger();
+
+	static private final class SlowFactory implements IThemeFactory {
+		@NonNull
+		@Override
+		public String getFactoryName() {
+			return "testslow";
+		}
+
+		@NonNull
+		@Override
+		public ITheme getTheme(@NonNull DomApplication da, @NonNull String themeName) throws Exception {
+			m_builds.incrementAndGet();
+			Thread.sleep(50);
+			if(themeName.contains("-bad"))
+				throw new IllegalArgumentException("Unknown theme " + themeName);
+			return (ITheme) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ITheme.class}, (proxy, method, args) -> {
+				if(method.getName().equals("getThemeName"))
+					return themeName;
+				if(method.getName().equals("toString"))
+					return "theme " + themeName;
+				return null;
+			});
+		}
+
+		@NonNull
+		@Override
+		public String getDefaultThemeName() {
+			return "testslow-a";
+		}
+	}
+
+	@BeforeClass
+	static public void setUp() {
+		DomApplication.register(new SlowFactory());
+		m_application = new DomApplication() {
+			@Override
+			public Class<? extends UrlPage> getRootPage() {
+				return UrlPage.class;
+			}
+		};
+	}
+
+	@AfterClass
+	static public void tearDown() {
+		m_application.getAsyncExecutor().terminate();
+	}
+
+	@Test
+	public void testSingleBuild() throws Exception {
+		ThemeManager tm = new ThemeManager(m_application);
+		m_builds.set(0);
+		int threads = 8;
+		CountDownLatch done = new CountDownLatch(threads);
+		List<ITheme> results = new ArrayList<>();
+		for(int i = 0; i < threads; i++) {
+			new Thread(() -> {
+				ITheme theme = tm.getTheme("testslow-single", null);
+				synchronized(results) {
+					results.add(theme);
+				}
+				done.countDown();
+			}).start();
+		}
+		done.await();
+		Assert.assertEquals(1, m_builds.get());
+		Assert.assertEquals(1, tm.getBuildCount());
+		Assert.assertEquals(threads, results.size());
+		for(ITheme theme : results)
+			Assert.assertSame(results.get(0), theme);
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		ThemeManager tm = new ThemeManager(m_application);
+		tm.setIdleTime(100);
+		ITheme a = tm.getTheme("testslow-a", null);
+		tm.getTheme("testslow-b", null);
+		Assert.assertEquals(2, tm.getThemeCount());
+
+		//-- After the idle time only the most recently used theme is kept.
+		Thread.sleep(150);
+		tm.getTheme("testslow-b", null);
+		Assert.assertEquals(1, tm.getThemeCount());
+		Assert.assertEquals(1, tm.getEvictionCount());
+		Assert.assertNotSame(a, tm.getTheme("testslow-a", null));
+		Assert.assertEquals(3, tm.getBuildCount());
+	}
+
+	@Test
+	public void testPrecompile() throws Exception {
+		ThemeManager tm = new ThemeManager(m_application);
+		int count = tm.precompileThemes(Arrays.asList("testslow-p", "nofactory-p"), Arrays.asList(DefaultThemeVariant.INSTANCE, CleanThemeVariant.INSTANCE));
+		Assert.assertEquals(2, count);
+		Assert.assertEquals(2, tm.getThemeCount());
+		Assert.assertEquals(0, tm.precompileThemes(Collections.emptyList(), Collections.singletonList(DefaultThemeVariant.INSTANCE)));
+		tm.getTheme("testslow-p-clean", null);
+		Assert.assertEquals(2, tm.getBuildCount());
+	}
+
+	/**
+	 * A theme that fails to build must not leave an entry behind.
+	 */
+	@Test
+	public void testFailedBuild() throws Exception {
+		ThemeManager tm = new ThemeManager(m_application);
+		tm.getTheme("testslow-ok", null);
+		int count = tm.getThemeCount();
+		for(int i = 0; i < 3; i++) {
+			try {
+				tm.getTheme("testslow-bad" + i, null);
+				Assert.fail("Theme should not build");
+			} catch(IllegalArgumentException x) {
+				// Expected
+			}
+		}
+		Assert.assertEquals(count, tm.getThemeCount());
+	}
+}
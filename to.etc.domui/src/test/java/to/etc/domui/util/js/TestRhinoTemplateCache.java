@@ -0,0 +1,47 @@
+package to.etc.domui.util.js;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Checks that compiled templates are shared, and can run in a scope on top of a sealed, shared scope.
+ */
+public class TestRhinoTemplateCache {
+	@Test
+	public void testSharing() throws Exception {
+		RhinoTemplateCache tc = new RhinoTemplateCache(2);
+		RhinoTemplate a = tc.getTemplate("a <%= 1 + 2 %>", "a.txt");
+		Assert.assertSame(a, tc.getTemplate("a <%= 1 + 2 %>", "other.txt"));
+		Assert.assertEquals(1, tc.getHits());
+		Assert.assertEquals(1, tc.getMisses());
+
+		//-- The least recently used template is dropped when over the limit.
+		RhinoTemplate b = tc.getTemplate("b", "b.txt");
+		tc.getTemplate("a <%= 1 + 2 %>", "a.txt");
+		tc.getTemplate("c", "c.txt");
+		Assert.assertEquals(2, tc.size());
+		Assert.assertSame(a, tc.getTemplate("a <%= 1 + 2 %>", "a.txt"));
+		Assert.assertNotSame(b, tc.getTemplate("b", "b.txt"));
+	}
+
+	@Test
+	public void testSealedSharedScope() throws Exception {
+		IScriptScope shared = RhinoExecutorFactory.getInstance().createExecutor().newScope();
+		shared.put("color", "red");
+		Scriptable so = shared.getAdapter(Scriptable.class);
+		Assert.assertTrue(so instanceof ScriptableObject);
+		((ScriptableObject) so).sealObject();
+
+		RhinoTemplate t = new RhinoTemplateCache(10).getTemplate("<% var x = browser; %>c=<%= color %> b=<%= x %>", "t.txt");
+		for(String browser : new String[]{"ie", "ff"}) {
+			IScriptScope ss = shared.newScope();
+			ss.put("browser", browser);
+			StringBuilder sb = new StringBuilder();
+			t.execute(sb, ss);
+			Assert.assertEquals("c=red b=" + browser, sb.toString());
+		}
+		Assert.assertNull(shared.getValue(Object.class, "x"));
+	}
+}
@@ -26,6 +26,7 @@ package to.etc.webapp.qsql;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import to.etc.function.ConsumerEx;
 import to.etc.webapp.core.IRunnable;
 import to.etc.webapp.query.ICriteriaTableDef;
 import to.etc.webapp.query.IQDataContextListener;
@@ -206,6 +207,18 @@ public class JdbcDataContext implements QDataContext {
 		return JdbcQuery.query(this, sel);
 	}
 
+	@Override
+	public <T> void queryEach(@NonNull QCriteria<T> q, @NonNull ConsumerEx<T> consumer) throws Exception {
+		unclosed();
+		JdbcQuery.queryEach(this, q, consumer);
+	}
+
+	@Override
+	public void queryEach(@NonNull QSelection< ? > sel, @NonNull ConsumerEx<Object[]> consumer) throws Exception {
+		unclosed();
+		JdbcQuery.queryEach(this, sel, consumer);
+	}
+
 	@Override
 	public <T> T queryOne(@NonNull QCriteria<T> q) throws Exception {
 		unclosed();
@@ -28,6 +28,8 @@ import java.lang.reflect.*;
 import java.sql.*;
 import java.util.*;
 
+import to.etc.dbutil.*;
+import to.etc.function.*;
 import to.etc.util.*;
 import to.etc.webapp.query.*;
 
@@ -48,58 +50,102 @@ public class JdbcQuery<T> {
 
 	final private int m_timeout;
 
+	final private int m_fetchSize;
+
+	/** The names of the result columns, or null if not known. */
+	final private List<String> m_columnNames;
+
+	/** The max #of rows read in a single round trip when the query has a limit but no explicit fetch size. */
+	static private final int MAX_LIMIT_FETCHSIZE = 1000;
+
+	/** The max #of rows returned by a list query without a limit. */
+	static private final int MAX_UNLIMITED_ROWS = 10000;
+
 	/** Enables logging of executed jdbc queries, specified by DeveloperOptions setting "domui.jdbc.sql". Defaults (if not specified in DeveloperOptions) to F. */
 	static private boolean m_showSQL = DeveloperOptions.getBool("domui.jdbc.sql", false);
 
 	public JdbcQuery(String sql, List<IInstanceMaker> retrieverList, List<IQValueSetter> vl, int start, int limit, int timeout) {
+		this(sql, retrieverList, vl, start, limit, timeout, 0, null);
+	}
+
+	public JdbcQuery(String sql, List<IInstanceMaker> retrieverList, List<IQValueSetter> vl, int start, int limit, int timeout, int fetchSize, List<String> columnNames) {
 		m_sql = sql;
 		m_rowMaker = retrieverList;
 		m_valList = vl;
 		m_start = start;
 		m_limit = limit;
 		m_timeout = timeout;
+		m_fetchSize = fetchSize;
+		m_columnNames = columnNames;
 	}
 
 	public List< ? > query(QDataContext dc) throws Exception {
+		List<Object> res = new ArrayList<Object>();
+		query(dc, row -> {
+			if(m_limit <= 0 && res.size() >= MAX_UNLIMITED_ROWS)
+				throw new IllegalStateException("Your query result has > 10.000 rows. I aborted to prevent OOM.\nThe query was:\n" + m_sql);
+			res.add(row);
+		});
+		return res;
+	}
+
+	/**
+	 * Execute the query and pass every row to the consumer as it is read, so that the result never
+	 * needs to be in memory as a whole. A row is either the single result object or an Object[] when
+	 * the query returns multiple columns.
+	 */
+	public void query(QDataContext dc, ConsumerEx<Object> consumer) throws Exception {
+		Connection dbc = dc.getConnection();
+
+		//-- If possible, let the database do the offset and limit
+		String sql = m_sql;
+		int skip = m_start;
+		int limit = m_limit;
+		if(m_start > 0 || m_limit > 0) {
+			String limitedSql = GenericDB.getDbType(dbc).getLimitedSQL(m_sql, m_columnNames, m_start, m_limit);
+			if(null != limitedSql) {
+				sql = limitedSql;
+				skip = 0;
+			}
+		}
 		if(m_showSQL) {
-			System.out.println("jdbc: " + m_sql);
+			System.out.println("jdbc: " + sql);
 		}
 
 		//-- 1. Create the prepared statement,
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 		try {
-			ps = dc.getConnection().prepareStatement(m_sql);
+			ps = dbc.prepareStatement(sql);
 			for(IQValueSetter vs : m_valList)
 				vs.assign(ps);
 			if(m_timeout > 0)
 				ps.setQueryTimeout(m_timeout);
-			List<Object> res = new ArrayList<Object>();
+			int fetchSize = m_fetchSize;
+			if(fetchSize <= 0 && limit > 0)
+				fetchSize = Math.min(limit, MAX_LIMIT_FETCHSIZE);
+			if(fetchSize > 0)
+				ps.setFetchSize(fetchSize);
 			rs = ps.executeQuery();
 			int rownum = 0;
+			int count = 0;
 			while(rs.next()) {
-				if(rownum >= m_start) {
-					if(m_limit > 0) {
-						if(res.size() >= m_limit) {
-							break;
-						}
-					} else if(res.size() > 10000) {
-						throw new IllegalStateException("Your query result has > 10.000 rows. I aborted to prevent OOM.\nThe query was:\n" + m_sql);
-					}
+				if(rownum++ < skip)
+					continue;
+				if(limit > 0 && count >= limit)
+					break;
+				count++;
 
-					if(m_rowMaker.size() == 1) {
-						res.add(m_rowMaker.get(0).make(dc, rs));
-					} else {
-						Object[] row = new Object[m_rowMaker.size()];
-						for(int i = 0; i < m_rowMaker.size(); i++) {
-							row[i] = m_rowMaker.get(i).make(dc, rs);
-						}
-						res.add(row);
+				if(m_rowMaker.size() == 1) {
+					consumer.accept(m_rowMaker.get(0).make(dc, rs));
+				} else {
+					Object[] row = new Object[m_rowMaker.size()];
+					for(int i = 0; i < m_rowMaker.size(); i++) {
+						row[i] = m_rowMaker.get(i).make(dc, rs);
 					}
+					consumer.accept(row);
 				}
-				rownum++;
 			}
-			return res;
 		} catch(Exception x) {
 			QDbException dx = QDbException.findTranslation(x);
 			if(dx != null)
@@ -118,9 +164,7 @@ public class JdbcQuery<T> {
 	}
 
 	static public <T> JdbcQuery<T> create(QCriteria<T> q) throws Exception {
-		JdbcSQLGenerator qg = new JdbcSQLGenerator();
-		qg.visitCriteria(q);
-		return (JdbcQuery<T>) qg.getQuery();
+		return JdbcQueryCache.getQuery(q);
 	}
 
 	static public <T> JdbcQuery<T> create(QSelection<T> q) throws Exception {
@@ -194,6 +238,16 @@ public class JdbcQuery<T> {
 		return (List<Object[]>) query.query(dc);
 	}
 
+	static public <T> void queryEach(QDataContext dc, QCriteria<T> q, ConsumerEx<T> consumer) throws Exception {
+		JdbcQuery<T> query = JdbcQuery.create(q);
+		query.query(dc, row -> consumer.accept((T) row));
+	}
+
+	static public void queryEach(QDataContext dc, QSelection< ? > sel, ConsumerEx<Object[]> consumer) throws Exception {
+		JdbcQuery< ? > query = JdbcQuery.create(sel);
+		query.query(dc, row -> consumer.accept((Object[]) row));
+	}
+
 	static public <T> T queryOne(QDataContext dc, QCriteria<T> q) throws Exception {
 		List<T> res = query(dc, q);
 		if(res.size() == 0)
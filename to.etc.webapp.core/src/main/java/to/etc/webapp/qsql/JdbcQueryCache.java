@@ -0,0 +1,314 @@
+package to.etc.webapp.qsql;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import to.etc.util.DeveloperOptions;
+import to.etc.webapp.query.QBetweenNode;
+import to.etc.webapp.query.QCriteria;
+import to.etc.webapp.query.QExistsSubquery;
+import to.etc.webapp.query.QLiteral;
+import to.etc.webapp.query.QMultiNode;
+import to.etc.webapp.query.QNodeVisitorBase;
+import to.etc.webapp.query.QOperatorNode;
+import to.etc.webapp.query.QOrder;
+import to.etc.webapp.query.QPropertyComparison;
+import to.etc.webapp.query.QPropertyIn;
+import to.etc.webapp.query.QPropertyJoinComparison;
+import to.etc.webapp.query.QSelectionSubquery;
+import to.etc.webapp.query.QSqlRestriction;
+import to.etc.webapp.query.QSubQuery;
+import to.etc.webapp.query.QUnaryNode;
+import to.etc.webapp.query.QUnaryProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the SQL generated for a QCriteria by the shape of the criteria: the queried class, the
+ * operators, properties and sort order, but not the literal values used. A query with a known shape
+ * only needs to collect its values and bind them to the cached parameter plan, instead of running
+ * the generator and all of its metadata lookups again.
+ *
+ * <p>Start, limit, timeout and fetch size are not part of the shape because the generated SQL does
+ * not depend on them. Criteria using constructs that the generator cannot render (subqueries, SQL
+ * restrictions with parameters) are never cached.</p>
+ */
+final public class JdbcQueryCache {
+	/** When the cache grows beyond this #of shapes it gets cleared, to protect against queries that generate a new shape every time. */
+	static private final int MAX_SHAPES = 2000;
+
+	/** Enables the cache, specified by DeveloperOptions setting "domui.jdbc.querycache". Defaults to T. */
+	static private final boolean m_enabled = DeveloperOptions.getBool("domui.jdbc.querycache", true);
+
+	static private final Map<String, Plan> m_planMap = new ConcurrentHashMap<>();
+
+	static private final AtomicLong m_hits = new AtomicLong();
+
+	static private final AtomicLong m_misses = new AtomicLong();
+
+	static private final AtomicLong m_uncacheable = new AtomicLong();
+
+	private JdbcQueryCache() {}
+
+	/**
+	 * The generated SQL and the parameter setters created for it, with the values of the query
+	 * that was used to generate it.
+	 */
+	static private final class Plan {
+		@NonNull
+		private final Class< ? > m_dataClass;
+
+		@NonNull
+		private final String m_sql;
+
+		@NonNull
+		private final List<IInstanceMaker> m_retrieverList;
+
+		@NonNull
+		private final List<IQValueSetter> m_setterList;
+
+		@Nullable
+		private final List<String> m_columnNames;
+
+		Plan(@NonNull Class< ? > dataClass, @NonNull String sql, @Nullable List<String> columnNames, @NonNull List<IInstanceMaker> retrieverList, @NonNull List<IQValueSetter> setterList) {
+			m_dataClass = dataClass;
+			m_sql = sql;
+			m_columnNames = columnNames;
+			m_retrieverList = retrieverList;
+			m_setterList = setterList;
+		}
+	}
+
+	/**
+	 * Create the query for a criteria, reusing the SQL for an earlier criteria of the same shape if possible.
+	 */
+	@NonNull
+	static public <T> JdbcQuery<T> getQuery(@NonNull QCriteria<T> q) throws Exception {
+		Class<T> baseClass = q.getBaseClass();
+		ShapeVisitor sv = new ShapeVisitor();
+		if(!m_enabled || null == baseClass || !sv.render(q)) {
+			m_uncacheable.incrementAndGet();
+			return generate(q);
+		}
+
+		String key = baseClass.getName() + "|" + sv.getShape();
+		List<Object> values = sv.getValues();
+		Plan plan = m_planMap.get(key);
+		if(null != plan && plan.m_dataClass == baseClass && plan.m_setterList.size() == values.size()) {
+			m_hits.incrementAndGet();
+			List<IQValueSetter> setters = new ArrayList<>(values.size());
+			for(int i = 0; i < values.size(); i++)
+				setters.add(bind(plan.m_setterList.get(i), values.get(i)));
+			return new JdbcQuery<T>(plan.m_sql, plan.m_retrieverList, setters, q.getStart(), q.getLimit(), JdbcSQLGenerator.calculateTimeout(q), q.getFetchSize(), plan.m_columnNames);
+		}
+
+		//-- Generate, and cache the result if its parameters are what the shape expects.
+		m_misses.incrementAndGet();
+		JdbcSQLGenerator qg = new JdbcSQLGenerator();
+		qg.visitCriteria(q);
+		List<IQValueSetter> valList = qg.getValList();
+		if(valList.size() == values.size() && isRebindable(valList)) {
+			if(m_planMap.size() >= MAX_SHAPES)
+				m_planMap.clear();
+			m_planMap.put(key, new Plan(baseClass, qg.getSQL(), qg.getColumnNames(), qg.getRetrieverList(), new ArrayList<>(valList)));
+		}
+		return (JdbcQuery<T>) qg.getQuery();
+	}
+
+	@NonNull
+	static private <T> JdbcQuery<T> generate(@NonNull QCriteria<T> q) throws Exception {
+		JdbcSQLGenerator qg = new JdbcSQLGenerator();
+		qg.visitCriteria(q);
+		return (JdbcQuery<T>) qg.getQuery();
+	}
+
+	static private boolean isRebindable(@NonNull List<IQValueSetter> list) {
+		for(IQValueSetter vs : list) {
+			if(!(vs instanceof ValSetter) && !(vs instanceof LikeSetter))
+				return false;
+		}
+		return true;
+	}
+
+	@NonNull
+	static private IQValueSetter bind(@NonNull IQValueSetter template, @Nullable Object value) {
+		if(template instanceof LikeSetter)
+			return ((LikeSetter) template).withValue(value);
+		ValSetter vs = (ValSetter) template;
+		JdbcPropertyMeta pm = vs.getProperty();
+		if(value != null && pm.isCompound() && !pm.getActualClass().isAssignableFrom(value.getClass()))
+			throw new QQuerySyntaxException("The value of type " + value.getClass() + " is not assignment-compatible with the compound type=" + pm.getActualClass() + " in property "
+				+ pm.getName());
+		return vs.withValue(value);
+	}
+
+	/**
+	 * Remove all cached SQL, for instance after the jdbc classes were reloaded.
+	 */
+	static public void clear() {
+		m_planMap.clear();
+	}
+
+	/**
+	 * The #of queries that used cached SQL.
+	 */
+	static public long getHitCount() {
+		return m_hits.get();
+	}
+
+	/**
+	 * The #of queries whose SQL had to be generated.
+	 */
+	static public long getMissCount() {
+		return m_misses.get();
+	}
+
+	/**
+	 * The #of queries that could not be cached at all.
+	 */
+	static public long getUncacheableCount() {
+		return m_uncacheable.get();
+	}
+
+	/**
+	 * The #of query shapes currently cached.
+	 */
+	static public int getSize() {
+		return m_planMap.size();
+	}
+
+	/**
+	 * Renders the shape of a criteria as a string, and collects its literal values in the exact
+	 * order in which {@link JdbcSQLGenerator} creates the parameters for them.
+	 */
+	static private final class ShapeVisitor extends QNodeVisitorBase {
+		private final StringBuilder m_sb = new StringBuilder(128);
+
+		private final List<Object> m_values = new ArrayList<>();
+
+		private boolean m_cacheable = true;
+
+		boolean render(@NonNull QCriteria< ? > q) throws Exception {
+			QOperatorNode r = q.getRestrictions();
+			QOperatorNode.prune(r);							// The generator does this too, so do it before looking at the tree
+			if(null != r)
+				r.visit(this);
+			m_sb.append(" order ");
+			visitOrderList(q.getOrder());
+			return m_cacheable;
+		}
+
+		@NonNull
+		String getShape() {
+			return m_sb.toString();
+		}
+
+		@NonNull
+		List<Object> getValues() {
+			return m_values;
+		}
+
+		private void literal(@NonNull QOperatorNode node) {
+			if(node instanceof QLiteral) {
+				m_values.add(((QLiteral) node).getValue());
+				m_sb.append('?');
+			} else
+				m_cacheable = false;
+		}
+
+		@Override
+		public void visitPropertyComparison(@NonNull QPropertyComparison n) throws Exception {
+			m_sb.append('(').append(n.getOperation().name()).append(' ').append(n.getProperty()).append(' ');
+			literal(n.getExpr());
+			m_sb.append(')');
+		}
+
+		@Override
+		public void visitPropertyIn(@NonNull QPropertyIn n) throws Exception {
+			m_sb.append("(in ").append(n.getProperty());
+			QOperatorNode expr = n.getExpr();
+			Object value = expr instanceof QLiteral ? ((QLiteral) expr).getValue() : null;
+			if(value instanceof List) {
+				List<?> list = (List<?>) value;
+				m_sb.append(' ').append(list.size());
+				m_values.addAll(list);
+			} else
+				m_cacheable = false;
+			m_sb.append(')');
+		}
+
+		@Override
+		public void visitBetween(@NonNull QBetweenNode n) throws Exception {
+			m_sb.append("(between ").append(n.getProp()).append(' ');
+			literal(n.getA());
+			literal(n.getB());
+			m_sb.append(')');
+		}
+
+		@Override
+		public void visitUnaryProperty(@NonNull QUnaryProperty n) throws Exception {
+			m_sb.append('(').append(n.getOperation().name()).append(' ').append(n.getProperty()).append(')');
+		}
+
+		@Override
+		public void visitUnaryNode(@NonNull QUnaryNode n) throws Exception {
+			m_sb.append('(').append(n.getOperation().name()).append(' ');
+			QOperatorNode node = n.getNode();
+			if(node instanceof QLiteral)
+				m_sb.append(String.valueOf(((QLiteral) node).getValue()));		// Literal SQL is part of the shape
+			else
+				node.visit(this);
+			m_sb.append(')');
+		}
+
+		@Override
+		public void visitMulti(@NonNull QMultiNode n) throws Exception {
+			m_sb.append('(').append(n.getOperation().name());
+			for(QOperatorNode o : n.getChildren()) {
+				m_sb.append(' ');
+				o.visit(this);
+			}
+			m_sb.append(')');
+		}
+
+		@Override
+		public void visitSqlRestriction(@NonNull QSqlRestriction v) throws Exception {
+			if(v.getParameters().length != 0)
+				m_cacheable = false;
+			m_sb.append("(sql ").append(v.getSql()).append(')');
+		}
+
+		@Override
+		public void visitOrder(@NonNull QOrder o) throws Exception {
+			m_sb.append(o.getProperty()).append(' ').append(o.getDirection().name()).append(',');
+		}
+
+		@Override
+		public void visitLiteral(@NonNull QLiteral n) throws Exception {
+			m_cacheable = false;
+		}
+
+		@Override
+		public void visitPropertyJoinComparison(@NonNull QPropertyJoinComparison qPropertyJoinComparison) throws Exception {
+			m_cacheable = false;
+		}
+
+		@Override
+		public void visitExistsSubquery(@NonNull QExistsSubquery< ? > q) throws Exception {
+			m_cacheable = false;
+		}
+
+		@Override
+		public void visitSubquery(@NonNull QSubQuery< ? , ? > n) throws Exception {
+			m_cacheable = false;
+		}
+
+		@Override
+		public void visitSelectionSubquery(@NonNull QSelectionSubquery n) throws Exception {
+			m_cacheable = false;
+		}
+	}
+}
@@ -25,6 +25,7 @@
 package to.etc.webapp.qsql;
 
 import org.eclipse.jdt.annotation.NonNull;
+import to.etc.function.ConsumerEx;
 import to.etc.webapp.query.ICriteriaTableDef;
 import to.etc.webapp.query.IQueryExecutor;
 import to.etc.webapp.query.IQueryExecutorFactory;
@@ -107,6 +108,16 @@ public class JdbcQueryExecutor implements IQueryExecutor<QDataContext>, IQueryEx
 		return JdbcQuery.query(root, sel);
 	}
 
+	@Override
+	public <T> void queryEach(@NonNull QDataContext root, @NonNull QCriteria<T> q, @NonNull ConsumerEx<T> consumer) throws Exception {
+		JdbcQuery.queryEach(root, q, consumer);
+	}
+
+	@Override
+	public void queryEach(@NonNull QDataContext root, @NonNull QSelection< ? > sel, @NonNull ConsumerEx<Object[]> consumer) throws Exception {
+		JdbcQuery.queryEach(root, sel, consumer);
+	}
+
 	@Override
 	public void refresh(@NonNull QDataContext root, @NonNull Object o) throws Exception {
 	//-- Noop
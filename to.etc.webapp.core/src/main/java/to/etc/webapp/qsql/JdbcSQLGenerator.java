@@ -66,6 +66,9 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 
 	private StringBuilder m_fields = new StringBuilder();
 
+	/** The names of the selected columns, or null if a column has no name (like a function result). */
+	private List<String> m_columnNames = new ArrayList<String>();
+
 	/** The list of all retrievers for a single row */
 	private List<IInstanceMaker> m_retrieverList = new ArrayList<IInstanceMaker>();
 
@@ -86,6 +89,8 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 
 	private int m_timeout = -1;
 
+	private int m_fetchSize;
+
 	private String m_sql;
 
 	@Override
@@ -95,10 +100,8 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 		m_rootMeta = JdbcMetaManager.getMeta(qc.getBaseClass());
 		m_start = qc.getStart();
 		m_limit = qc.getLimit();
-		if(qc.getTimeout() < 0)
-			m_timeout = 60;
-		else if(qc.getTimeout() != 0)
-			m_timeout = qc.getTimeout();
+		m_timeout = calculateTimeout(qc);
+		m_fetchSize = qc.getFetchSize();
 
 		generateClassGetter(m_root);
 		super.visitCriteria(qc);
@@ -107,11 +110,6 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 		 * Generate SQL. Most of this is disgusting and should be replaced by a SN* tree passed to a database-dependent handler.
 		 */
 		StringBuilder sb = new StringBuilder(256);
-		boolean limiting = qc.getLimit() > 0 || qc.getStart() > 0;
-		if(m_oracle && limiting) {
-			sb.append("select * from (");
-		}
-
 		sb.append("select ");
 		sb.append(m_fields);
 		sb.append(" from ");
@@ -129,17 +127,7 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 			sb.append(" order by ");
 			sb.append(m_order);
 		}
-		if(m_oracle && limiting) {
-			sb.append(") where");
-			if(qc.getStart() > 0)
-				sb.append(" rownum >= ").append(qc.getStart());
-			if(qc.getLimit() > 0) {
-				if(qc.getStart() > 0)
-					sb.append(" and");
-				sb.append(" rownum <= ").append(qc.getLimit());
-			}
-		}
-		m_sql = sb.toString();
+		m_sql = sb.toString();					// start and limit are added by JdbcQuery, in the dialect of the database used
 	}
 
 	@Override
@@ -147,7 +135,10 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 		m_root = new PClassRef(qc.getBaseClass(), "this_");
 		m_tblMap.put(m_root.getAlias(), m_root);
 		m_rootMeta = JdbcMetaManager.getMeta(qc.getBaseClass());
+		m_start = qc.getStart();
+		m_limit = qc.getLimit();
 		m_timeout = 60;
+		m_fetchSize = qc.getFetchSize();
 
 
 		m_retrieverList.add(new SelectorColumnsResultMaker(qc));
@@ -177,13 +168,18 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 					append("(distinct ");
 					append(cm.findProperty(n.getProperty()).getColumnName());
 					append(")");
+					m_columnNames = null;						// Function results have no name
 				} else if (n.getFunction().equals(QSelectionFunction.PROPERTY)) {
-					append(cm.findProperty(n.getProperty()).getColumnName());
+					String name = cm.findProperty(n.getProperty()).getColumnName();
+					append(name);
+					if(m_columnNames != null)
+						m_columnNames.add(name);
 				} else {
 					append(n.getFunction().name().toLowerCase());
 					append("(");
 					append(cm.findProperty(n.getProperty()).getColumnName());
 					append(")");
+					m_columnNames = null;
 				}
 			}
 		};
@@ -209,6 +205,17 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 		m_sql = sb.toString();
 	}
 
+	/**
+	 * The statement timeout to use for a criteria query: 60 seconds when not set, none when set to 0.
+	 */
+	static int calculateTimeout(@NonNull QCriteria< ? > qc) {
+		if(qc.getTimeout() < 0)
+			return 60;
+		else if(qc.getTimeout() != 0)
+			return qc.getTimeout();
+		return -1;
+	}
+
 	private String getColumnRef(PClassRef ref, String name) {
 		return ref.getAlias() + "." + name;
 	}
@@ -234,6 +241,8 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 			m_fields.append(",");
 		m_fields.append(getColumnRef(root, name));
 		m_nextFieldIndex++;
+		if(m_columnNames != null)
+			m_columnNames.add(name);
 	}
 
 	private void generatePropertyGetter(PClassRef root, JdbcPropertyMeta pm) throws Exception {
@@ -249,12 +258,19 @@ public class JdbcSQLGenerator extends QRenderingVisitorBase {
 		return m_valList;
 	}
 
+	/**
+	 * The names of the result columns, or null if one of them has no name.
+	 */
+	public List<String> getColumnNames() {
+		return m_columnNames;
+	}
+
 	public List<IInstanceMaker> getRetrieverList() {
 		return m_retrieverList;
 	}
 
 	public JdbcQuery< ? > getQuery() throws Exception {
-		return new JdbcQuery<Object>(getSQL(), m_retrieverList, m_valList, m_start, m_limit, m_timeout);
+		return new JdbcQuery<Object>(getSQL(), m_retrieverList, m_valList, m_start, m_limit, m_timeout, m_fetchSize, m_columnNames);
 	}
 
 	@Override
@@ -25,6 +25,17 @@ class LikeSetter implements IQValueSetter {
 		return m_index;
 	}
 
+	/**
+	 * Create a setter for the same parameter and property, but with another value. Used
+	 * to execute a cached query again.
+	 */
+	@NonNull
+	public LikeSetter withValue(Object value) {
+		if(!(value instanceof String))
+			throw new QQuerySyntaxException("Invalid value type " + value + " for LIKE operation - expecting string.");
+		return new LikeSetter(m_index, (String) value, m_property);
+	}
+
 	/**
 	 * @see to.etc.webapp.qsql.IQValueSetter#assign(java.sql.PreparedStatement)
 	 */
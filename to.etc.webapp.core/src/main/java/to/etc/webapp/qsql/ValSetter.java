@@ -61,6 +61,15 @@ class ValSetter implements IQValueSetter {
 		return m_value;
 	}
 
+	/**
+	 * Create a setter for the same parameter and property, but with another value. Used
+	 * to execute a cached query again.
+	 */
+	@NonNull
+	public ValSetter withValue(Object value) {
+		return new ValSetter(m_index, value, m_converter, m_property);
+	}
+
 //	public IJdbcType getConverter() {
 //		return m_converter;
 //	}
@@ -26,6 +26,7 @@ package to.etc.webapp.query;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import to.etc.function.ConsumerEx;
 
 import java.util.List;
 
@@ -51,6 +52,23 @@ public interface IQueryExecutor<C extends QDataContext> {
 	@NonNull
 	List<Object[]> query(@NonNull C root, @NonNull QSelection< ? > sel) throws Exception;
 
+	/**
+	 * Execute the query and pass every result row to the consumer as it is read. The default implementation
+	 * reads the whole result as a list first; implementations should override it to stream the rows.
+	 */
+	default <T> void queryEach(@NonNull C root, @NonNull QCriteria<T> q, @NonNull ConsumerEx<T> consumer) throws Exception {
+		for(T item : query(root, q))
+			consumer.accept(item);
+	}
+
+	/**
+	 * Execute the selection and pass every result row to the consumer as it is read.
+	 */
+	default void queryEach(@NonNull C root, @NonNull QSelection< ? > sel, @NonNull ConsumerEx<Object[]> consumer) throws Exception {
+		for(Object[] item : query(root, sel))
+			consumer.accept(item);
+	}
+
 	/**
 	 * Load the persistent object with the specified type and primary key from the database. This will
 	 * execute an actual select in the database if the object is not yet cached, ensuring that the
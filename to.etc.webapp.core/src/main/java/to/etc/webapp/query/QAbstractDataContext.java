@@ -26,6 +26,7 @@ package to.etc.webapp.query;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import to.etc.function.ConsumerEx;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -135,6 +136,18 @@ abstract public class QAbstractDataContext implements QDataContext {
 		return getHandlerFactory().getHandler(this, sel).query(this, sel);
 	}
 
+	@Override
+	public <T> void queryEach(@NonNull QCriteria<T> q, @NonNull ConsumerEx<T> consumer) throws Exception {
+		getFactory().getEventListeners().callOnBeforeQuery(this, q);
+		getHandlerFactory().getHandler(this, q).queryEach(this, q, consumer);
+	}
+
+	@Override
+	public void queryEach(@NonNull QSelection< ? > sel, @NonNull ConsumerEx<Object[]> consumer) throws Exception {
+		getFactory().getEventListeners().callOnBeforeQuery(this, sel);
+		getHandlerFactory().getHandler(this, sel).queryEach(this, sel, consumer);
+	}
+
 	@Override
 	@NonNull
 	public <R> List<R> query(@NonNull Class<R> resultInterface, @NonNull QSelection< ? > sel) throws Exception {
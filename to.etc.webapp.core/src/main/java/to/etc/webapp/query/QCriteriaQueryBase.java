@@ -52,6 +52,8 @@ public class QCriteriaQueryBase<T, R extends QCriteriaQueryBase<T, R>> extends Q
 
 	private int m_timeout = -1;
 
+	private int m_fetchSize;
+
 	@Nullable
 	private String m_testId;
 
@@ -541,6 +543,23 @@ public class QCriteriaQueryBase<T, R extends QCriteriaQueryBase<T, R>> extends Q
 		m_timeout = timeout;
 	}
 
+	/**
+	 * Returns the #of rows the query should fetch from the database per round trip; 0 means "use the default".
+	 */
+	public int getFetchSize() {
+		return m_fetchSize;
+	}
+
+	/**
+	 * Hint for the #of rows to fetch from the database per round trip, for query platforms that support it. Use
+	 * a large value for queries that read many rows.
+	 */
+	@NonNull
+	public R fetchSize(int fetchSize) {
+		m_fetchSize = fetchSize;
+		return (R) this;
+	}
+
 	/**
 	 * Set a fetch strategy for a relation.
 	 */
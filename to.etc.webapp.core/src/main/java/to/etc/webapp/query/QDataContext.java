@@ -26,6 +26,7 @@ package to.etc.webapp.query;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import to.etc.function.ConsumerEx;
 import to.etc.webapp.core.IRunnable;
 
 import java.sql.Connection;
@@ -97,6 +98,24 @@ public interface QDataContext extends AutoCloseable {
 	@NonNull
 	List<Object[]> query(@NonNull QSelection< ? > sel) throws Exception;
 
+	/**
+	 * Execute the query and pass every result row to the consumer as soon as it is read, without
+	 * collecting the result in a list first. This is meant for processing large results; the
+	 * default implementation does load the whole result, contexts that can stream override it.
+	 */
+	default <T> void queryEach(@NonNull QCriteria<T> q, @NonNull ConsumerEx<T> consumer) throws Exception {
+		for(T item : query(q))
+			consumer.accept(item);
+	}
+
+	/**
+	 * Execute the selection and pass every result row to the consumer as soon as it is read.
+	 */
+	default void queryEach(@NonNull QSelection< ? > sel, @NonNull ConsumerEx<Object[]> consumer) throws Exception {
+		for(Object[] item : query(sel))
+			consumer.accept(item);
+	}
+
 	/**
 	 * Query a selection, and return the result in the specified proxied interface. Members in the interface must
 	 * be annotated with {@link QFld} annotations to define the order in the result set.
@@ -28,6 +28,7 @@ import org.junit.Assert;
 import org.junit.Test;
 import to.etc.webapp.qsql.JdbcDataContext;
 import to.etc.webapp.qsql.JdbcQuery;
+import to.etc.webapp.qsql.JdbcQueryCache;
 import to.etc.webapp.qsql.JdbcSQLGenerator;
 import to.etc.webapp.query.QCriteria;
 import to.etc.webapp.query.QDataContext;
@@ -187,5 +188,22 @@ public class TestBasic {
 		Assert.assertEquals(1, gc.getRetrieverList().size());
 		Assert.assertEquals(3, gc.getValList().size());
 	}
-	
+
+	@Test
+	public void testQueryCache() throws Exception {
+		JdbcQueryCache.clear();
+		JdbcQuery.create(QCriteria.create(LedgerAccount.class).eq("id", Long.valueOf(12)).like("code", "BR%").ascending("code"));
+		long misses = JdbcQueryCache.getMissCount();
+		long hits = JdbcQueryCache.getHitCount();
+
+		//-- Same shape, other values: must reuse the SQL
+		JdbcQuery.create(QCriteria.create(LedgerAccount.class).eq("id", Long.valueOf(13)).like("code", "E%").ascending("code"));
+		Assert.assertEquals(hits + 1, JdbcQueryCache.getHitCount());
+		Assert.assertEquals(misses, JdbcQueryCache.getMissCount());
+
+		//-- Another sort order is another shape
+		JdbcQuery.create(QCriteria.create(LedgerAccount.class).eq("id", Long.valueOf(13)).like("code", "E%").descending("code"));
+		Assert.assertEquals(misses + 1, JdbcQueryCache.getMissCount());
+		Assert.assertEquals(2, JdbcQueryCache.getSize());
+	}
 }